@@ -0,0 +1,45 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.extension;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns a small integer slot to each extension class when it is used for the first time.
+ *
+ * @author Dimitry Polivaev
+ */
+public class ExtensionSlots {
+	private static final AtomicInteger slotCount = new AtomicInteger();
+	private static final ClassValue<Integer> slots = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(final Class<?> type) {
+			return slotCount.getAndIncrement();
+		}
+	};
+
+	public static int slotOf(final Class<?> clazz) {
+		return slots.get(clazz);
+	}
+
+	public static int slotCount() {
+		return slotCount.get();
+	}
+}
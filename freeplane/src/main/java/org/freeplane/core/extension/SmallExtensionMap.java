@@ -19,89 +19,112 @@
  */
 package org.freeplane.core.extension;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Extension map for nodes keeping the extensions in insertion order.
+ *
+ * Extensions are found by the slot of their class given by {@link ExtensionSlots}.
+ * The positions indexed by the slot are kept in a {@link Layout} shared by all maps
+ * which got the same extension classes in the same order, so that a map only holds
+ * its extension array and a reference to the layout.
+ */
 public class SmallExtensionMap implements Map<Class<? extends IExtension>, IExtension> {
-	private static final int INITIAL_CAPACITY = 5;
-	private List<IExtension> collection;
+	private static final int INITIAL_CAPACITY = 2;
+	private static final int MAX_SIZE = 0xFF;
+	private IExtension[] extensions;
+	private Layout layout = Layout.EMPTY;
+	private int size;
+
+	/** Immutable slot table shared between maps, layouts differing by one appended slot are cached. */
+	static class Layout {
+		static final Layout EMPTY = new Layout(new byte[0]);
+		final private byte[] positions;
+		final private ConcurrentHashMap<Integer, Layout> successors = new ConcurrentHashMap<Integer, Layout>();
+
+		private Layout(final byte[] positions) {
+			this.positions = positions;
+		}
+
+		int positionOf(final int slot) {
+			if (slot >= positions.length) {
+				return -1;
+			}
+			return (positions[slot] & 0xFF) - 1;
+		}
+
+		Layout append(final int slot, final int position) {
+			final Layout cached = successors.get(slot);
+			if (cached != null) {
+				return cached;
+			}
+			final byte[] newPositions = new byte[Math.max(positions.length, slot + 1)];
+			System.arraycopy(positions, 0, newPositions, 0, positions.length);
+			newPositions[slot] = (byte) (position + 1);
+			final Layout successor = new Layout(newPositions);
+			final Layout concurrent = successors.putIfAbsent(slot, successor);
+			return concurrent != null ? concurrent : successor;
+		}
+	}
 
 	public void clear() {
-		collection = null;
+		extensions = null;
+		layout = Layout.EMPTY;
+		size = 0;
 	}
 
 	public boolean containsKey(final Object key) {
-		if (collection == null) {
-			return false;
-		}
 		if (!(key instanceof Class<?>)) {
 			return false;
 		}
-		for (int i = 0; i < collection.size(); i++) {
-			final Object extension = collection.get(i);
-			if (key.equals(extension.getClass())) {
-				return true;
-			}
-		}
-		return false;
+		return find((Class<?>) key) >= 0;
 	}
 
 	public boolean containsValue(final Object value) {
-		if (collection == null) {
-			return false;
-		}
 		if (!(value instanceof IExtension)) {
 			return false;
 		}
-		for (int i = 0; i < collection.size(); i++) {
-			if ( value.equals(collection.get(i))) {
+		for (int i = 0; i < size; i++) {
+			if (value.equals(extensions[i])) {
 				return true;
 			}
 		}
 		return false;
 	}
 
-	private List<IExtension> createCollection() {
-		if (collection == null) {
-			collection = new ArrayList<IExtension>(INITIAL_CAPACITY);
-		}
-		return collection;
-	}
-
 	public Set<java.util.Map.Entry<Class<? extends IExtension>, IExtension>> entrySet() {
 		throw new NoSuchMethodError();
 	}
 
-	private int find(final Class<? extends IExtension> clazz) {
-		if (collection == null) {
+	private int find(final Class<?> clazz) {
+		if (size == 0) {
 			return -1;
 		}
-		for (int i = 0; i < collection.size(); i++) {
-			if (clazz.equals(collection.get(i).getClass())) {
-				return i;
-			}
-		}
-		return -1;
+		return layout.positionOf(ExtensionSlots.slotOf(clazz));
 	}
 
-	@SuppressWarnings("unchecked")
-    public IExtension get(final Object key) {
+	Layout layout() {
+		return layout;
+	}
+
+	public IExtension get(final Object key) {
 		if (!(key instanceof Class<?>)) {
 			return null;
 		}
-		final int index = find((Class<? extends IExtension>) key);
+		final int index = find((Class<?>) key);
 		if (index >= 0) {
-			return collection.get(index);
+			return extensions[index];
 		}
 		return null;
 	}
 
 	public boolean isEmpty() {
-		return collection == null;
+		return size == 0;
 	}
 
 	public Set<Class<? extends IExtension>> keySet() {
@@ -111,17 +134,27 @@ public class SmallExtensionMap implements Map<Class<? extends IExtension>, IExte
 	public IExtension put(final Class<? extends IExtension> key, final IExtension value) {
 		final int index = find(key);
 		if (index >= 0) {
-			final IExtension oldValue = collection.get(index);
-			collection.set(index, value);
+			final IExtension oldValue = extensions[index];
+			extensions[index] = value;
 			return oldValue;
 		}
-		else {
-			if (!key.equals(value.getClass())) {
-				throw new ClassCastException();
-			}
-			createCollection().add(value);
-			return null;
+		if (!key.equals(value.getClass())) {
+			throw new ClassCastException();
+		}
+		if (size == MAX_SIZE) {
+			throw new IllegalStateException("too many extensions");
 		}
+		if (extensions == null) {
+			extensions = new IExtension[INITIAL_CAPACITY];
+		}
+		else if (size == extensions.length) {
+			final IExtension[] newExtensions = new IExtension[size * 2];
+			System.arraycopy(extensions, 0, newExtensions, 0, size);
+			extensions = newExtensions;
+		}
+		layout = layout.append(ExtensionSlots.slotOf(key), size);
+		extensions[size++] = value;
+		return null;
 	}
 
 	public void putAll(final Map<? extends Class<? extends IExtension>, ? extends IExtension> source) {
@@ -132,32 +165,63 @@ public class SmallExtensionMap implements Map<Class<? extends IExtension>, IExte
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-    public IExtension remove(final Object key) {
-		if (collection == null || !(key instanceof Class<?>)) {
+	public IExtension remove(final Object key) {
+		if (!(key instanceof Class<?>)) {
 			return null;
 		}
-		final int index = find((Class<? extends IExtension>) key);
+		final int index = find((Class<?>) key);
 		if (index == -1) {
 			return null;
 		}
-		final IExtension remove = collection.remove(index);
-		removeEmptyCollection();
-		return remove;
+		return removeAt(index);
 	}
 
-	private void removeEmptyCollection() {
-		if (collection.size() == 0) {
-			collection = null;
-		}
+	private IExtension removeAt(final int index) {
+		final IExtension removed = extensions[index];
+		if (size == 1) {
+			clear();
+			return removed;
+		}
+		size--;
+		System.arraycopy(extensions, index + 1, extensions, index, size - index);
+		extensions[size] = null;
+		Layout newLayout = Layout.EMPTY;
+		for (int i = 0; i < size; i++) {
+			newLayout = newLayout.append(ExtensionSlots.slotOf(extensions[i].getClass()), i);
+		}
+		layout = newLayout;
+		return removed;
 	}
 
 	public int size() {
-		return collection == null ? 0 : collection.size();
+		return size;
 	}
 
 	public Collection<IExtension> values() {
-		final Collection<IExtension> emptyList = Collections.emptyList();
-		return collection == null ? emptyList : collection;
+		if (size == 0) {
+			return Collections.emptyList();
+		}
+		return new AbstractList<IExtension>() {
+			@Override
+			public IExtension get(final int index) {
+				if (index >= size) {
+					throw new IndexOutOfBoundsException();
+				}
+				return extensions[index];
+			}
+
+			@Override
+			public IExtension remove(final int index) {
+				if (index >= size) {
+					throw new IndexOutOfBoundsException();
+				}
+				return removeAt(index);
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
 	}
 }
@@ -0,0 +1,34 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io;
+
+import org.freeplane.n3.nanoxml.XMLElement;
+
+/**
+ * Element handler which can take whole elements as unparsed xml.
+ *
+ * No element is created and no attribute handlers are called for such elements,
+ * the handler receives their attributes and their raw content instead.
+ */
+public interface IUnparsedElementHandler extends IElementHandler {
+	boolean keepsUnparsed(Object parent, String tag);
+
+	void unparsedElementRead(Object parent, String tag, XMLElement attributes, String content);
+}
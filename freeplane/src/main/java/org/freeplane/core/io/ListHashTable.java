@@ -46,6 +46,16 @@ public class ListHashTable<K, V> {
 
 	final private Map<K, List<V>> table = new Hashtable<K, List<V>>();
 
+	public ListHashTable() {
+	}
+
+	/** Creates a table with copies of the element lists of the given table. */
+	public ListHashTable(final ListHashTable<K, V> source) {
+		for (final Map.Entry<K, List<V>> entry : source.table.entrySet()) {
+			table.put(entry.getKey(), new LinkedList<V>(entry.getValue()));
+		}
+	}
+
 	public void add(final K tag, final V element) {
 		List<V> elementsForTag = table.get(tag);
 		if (elementsForTag == null) {
@@ -75,6 +85,20 @@ public class ListHashTable<K, V> {
 		return table.get(tag);
 	}
 
+	/** Replaces the element keeping its position in the list of the tag. */
+	public boolean replace(final K tag, final V element, final V replacement) {
+		final List<V> elementsForTag = list(tag);
+		if (elementsForTag == null) {
+			return false;
+		}
+		final int index = elementsForTag.indexOf(element);
+		if (index == -1) {
+			return false;
+		}
+		elementsForTag.set(index, replacement);
+		return true;
+	}
+
 	public boolean remove(final K tag, final V element) {
 		final List<V> elementsForTag = list(tag);
 		if (elementsForTag == null) {
@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.freeplane.features.map.NodeModel;
@@ -76,6 +77,23 @@ public class ReadManager {
 		return elementHandlers;
 	}
 
+	/**
+	 * Returns the handler which takes the element as unparsed xml or null if the element should be parsed.
+	 */
+	public IUnparsedElementHandler getUnparsedElementHandler(final Object parent, final String tag) {
+		final List<IElementHandler> handlers = elementHandlers.list(tag);
+		if (handlers == null) {
+			return null;
+		}
+		for (final IElementHandler handler : handlers) {
+			if (handler instanceof IUnparsedElementHandler
+			        && ((IUnparsedElementHandler) handler).keepsUnparsed(parent, tag)) {
+				return (IUnparsedElementHandler) handler;
+			}
+		}
+		return null;
+	}
+
 	public void readingCompleted(final NodeModel topNode, final Map<String, String> newIds) {
 		final Iterator<IReadCompletionListener> iterator = readCompletionListeners.iterator();
 		while (iterator.hasNext()) {
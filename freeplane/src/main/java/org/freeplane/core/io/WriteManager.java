@@ -22,10 +22,30 @@ package org.freeplane.core.io;
 import org.freeplane.core.extension.IExtension;
 
 public class WriteManager {
-	final private ListHashTable<String, IAttributeWriter> attributeWriters = new ListHashTable<String, IAttributeWriter>();
-	final private ListHashTable<String, IElementWriter> elementWriters = new ListHashTable<String, IElementWriter>();
-	final private ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter> extensionAttributeWriters = new ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter>();;
-	final private ListHashTable<Class<? extends IExtension>, IExtensionElementWriter> extensionElementWriters = new ListHashTable<Class<? extends IExtension>, IExtensionElementWriter>();
+	final private ListHashTable<String, IAttributeWriter> attributeWriters;
+	final private ListHashTable<String, IElementWriter> elementWriters;
+	final private ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter> extensionAttributeWriters;
+	final private ListHashTable<Class<? extends IExtension>, IExtensionElementWriter> extensionElementWriters;
+
+	public WriteManager() {
+		attributeWriters = new ListHashTable<String, IAttributeWriter>();
+		elementWriters = new ListHashTable<String, IElementWriter>();
+		extensionAttributeWriters = new ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter>();
+		extensionElementWriters = new ListHashTable<Class<? extends IExtension>, IExtensionElementWriter>();
+	}
+
+	/**
+	 * Creates a manager with the writers registered by the given one.
+	 * Writers added to or removed from either manager later are not shared.
+	 */
+	public WriteManager(final WriteManager source) {
+		attributeWriters = new ListHashTable<String, IAttributeWriter>(source.attributeWriters);
+		elementWriters = new ListHashTable<String, IElementWriter>(source.elementWriters);
+		extensionAttributeWriters = new ListHashTable<Class<? extends IExtension>, IExtensionAttributeWriter>(
+		    source.extensionAttributeWriters);
+		extensionElementWriters = new ListHashTable<Class<? extends IExtension>, IExtensionElementWriter>(
+		    source.extensionElementWriters);
+	}
 
 	/*
 	 * (non-Javadoc)
@@ -70,6 +90,17 @@ public class WriteManager {
 		return extensionElementWriters;
 	}
 
+	public void replaceAttributeWriter(final String parentTag, final IAttributeWriter aw,
+	                                   final IAttributeWriter replacement) {
+		final boolean replaced = attributeWriters.replace(parentTag, aw, replacement);
+		assert replaced;
+	}
+
+	public void replaceElementWriter(final String parentTag, final IElementWriter nw, final IElementWriter replacement) {
+		final boolean replaced = elementWriters.replace(parentTag, nw, replacement);
+		assert replaced;
+	}
+
 	public void removeAttributeWriter(final String parentTag, final IAttributeWriter aw) {
 		final boolean removed = attributeWriters.remove(parentTag, aw);
 		assert removed;
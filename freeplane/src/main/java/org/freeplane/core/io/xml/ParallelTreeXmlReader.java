@@ -0,0 +1,327 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.BufferedXMLReader;
+import org.freeplane.n3.nanoxml.XMLException;
+
+/**
+ * Reader parsing the child branches of the root node in parallel.
+ *
+ * The document is split at the boundaries of the root node children. The branches are parsed into
+ * recorded elements on a shared pool of daemon threads while the rest of the document is parsed in the calling thread.
+ * Afterwards all elements are passed in document order to the element and attribute handlers in the calling thread,
+ * so the handlers see exactly the same calls as with a sequential reader. Branches are recorded only a few
+ * at a time ahead of the replay, so the recorded elements do not duplicate the whole document.
+ *
+ * Documents which are small, have no such branches or use document type declarations or namespaces
+ * outside of the branches are read sequentially, as well as all documents on single processor machines.
+ *
+ * @author Dimitry Polivaev
+ */
+public class ParallelTreeXmlReader {
+	private static final int MIN_PARALLEL_LENGTH = 1024 * 1024;
+	private static final int RECORDED_BRANCHES_PER_THREAD = 2;
+	private static final int MIN_BRANCH_COUNT = 2;
+	private static final int ROOT_CHILD_DEPTH = 2;
+	private static ForkJoinPool pool;
+	final private IXMLParserBuilder builder;
+	final private ReadManager readManager;
+
+	public ParallelTreeXmlReader(final ReadManager readManager, final boolean streaming) {
+		this.readManager = readManager;
+		builder = streaming ? new StreamingTreeXmlReader(readManager) : new TreeXmlReader(readManager);
+	}
+
+	public void load(final Object currentElement, final Reader reader) throws XMLException {
+		final char[] document;
+		try {
+			document = readFully(reader);
+		}
+		catch (final IOException e) {
+			throw new XMLException(e);
+		}
+		final boolean parallel = document.length >= MIN_PARALLEL_LENGTH && Runtime.getRuntime().availableProcessors() > 1;
+		final List<int[]> branches = parallel ? findBranches(document) : null;
+		if (branches == null || branches.size() < MIN_BRANCH_COUNT) {
+			final XMLParser parser = new XMLParser();
+			parser.setReader(new BufferedXMLReader(new CharArrayReader(document)));
+			builder.load(currentElement, parser);
+			return;
+		}
+		load(currentElement, document, branches);
+	}
+
+	void load(final Object currentElement, final char[] document, final List<int[]> branches) throws XMLException {
+		final RecordedBranches recordedBranches = new RecordedBranches(document, branches);
+		try {
+			final XMLRecorder.Element skeleton = new XMLRecorder(readManager, 0).load(new CharArrayReader(
+			    createSkeleton(document, branches)));
+			builder.load(currentElement, new XMLReplayer(readManager, skeleton, recordedBranches));
+		}
+		finally {
+			recordedBranches.cancel();
+		}
+	}
+
+	/**
+	 * Records the branches ahead of the replay, at most {@link #RECORDED_BRANCHES_PER_THREAD} per pool thread
+	 * are kept in memory at a time.
+	 */
+	private class RecordedBranches implements Iterator<Future<XMLRecorder.Element>> {
+		final private char[] document;
+		final private Iterator<int[]> branches;
+		final private ArrayDeque<Future<XMLRecorder.Element>> recordings;
+
+		RecordedBranches(final char[] document, final List<int[]> branches) {
+			this.document = document;
+			this.branches = branches.iterator();
+			recordings = new ArrayDeque<Future<XMLRecorder.Element>>();
+			final int recordedBranchCount = getPool().getParallelism() * RECORDED_BRANCHES_PER_THREAD;
+			for (int i = 0; i < recordedBranchCount && this.branches.hasNext(); i++) {
+				recordNext();
+			}
+		}
+
+		private void recordNext() {
+			final int[] branch = branches.next();
+			recordings.add(getPool().submit(new Callable<XMLRecorder.Element>() {
+				public XMLRecorder.Element call() throws Exception {
+					final CharArrayReader branchReader = new CharArrayReader(document, branch[0], branch[1] - branch[0]);
+					return new XMLRecorder(readManager, branch[2]).load(branchReader);
+				}
+			}));
+		}
+
+		public boolean hasNext() {
+			return !recordings.isEmpty();
+		}
+
+		public Future<XMLRecorder.Element> next() {
+			final Future<XMLRecorder.Element> recording = recordings.remove();
+			if (branches.hasNext()) {
+				recordNext();
+			}
+			return recording;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		void cancel() {
+			for (final Future<XMLRecorder.Element> recording : recordings) {
+				recording.cancel(false);
+			}
+			recordings.clear();
+		}
+	}
+
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), new ForkJoinWorkerThreadFactory() {
+				public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+					final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+					thread.setName("xml branch reader " + thread.getPoolIndex());
+					thread.setDaemon(true);
+					return thread;
+				}
+			}, null, false);
+		}
+		return pool;
+	}
+
+	/**
+	 * Replaces the branches by processing instructions containing the same number of line breaks.
+	 */
+	private static char[] createSkeleton(final char[] document, final List<int[]> branches) {
+		final StringBuilder skeleton = new StringBuilder();
+		int start = 0;
+		for (final int[] branch : branches) {
+			skeleton.append(document, start, branch[0] - start);
+			skeleton.append("<?").append(XMLReplayer.BRANCH_TARGET);
+			for (int i = branch[0]; i < branch[1]; i++) {
+				if (document[i] == '\n') {
+					skeleton.append('\n');
+				}
+			}
+			skeleton.append("?>");
+			start = branch[1];
+		}
+		skeleton.append(document, start, document.length - start);
+		final char[] chars = new char[skeleton.length()];
+		skeleton.getChars(0, chars.length, chars, 0);
+		return chars;
+	}
+
+	/**
+	 * Returns start, end and preceding line count of every child element of the root node,
+	 * or null if the document can not be split.
+	 */
+	public static List<int[]> findBranches(final char[] document) {
+		final List<int[]> branches = new ArrayList<int[]>();
+		final List<String> openElements = new ArrayList<String>();
+		int lineCount = 0;
+		int countedUntil = 0;
+		int i = 0;
+		while (i < document.length) {
+			if (document[i] != '<') {
+				i++;
+				continue;
+			}
+			if (startsWith(document, i, "<!--")) {
+				i = skipPast(document, i + 4, "-->");
+			}
+			else if (startsWith(document, i, "<![CDATA[")) {
+				i = skipPast(document, i + 9, "]]>");
+			}
+			else if (startsWith(document, i, "<!")) {
+				return null;
+			}
+			else if (startsWith(document, i, "<?")) {
+				i = skipPast(document, i + 2, "?>");
+			}
+			else if (startsWith(document, i, "</")) {
+				if (openElements.isEmpty()) {
+					return null;
+				}
+				openElements.remove(openElements.size() - 1);
+				final int end = skipPast(document, i + 2, ">");
+				if (openElements.size() == ROOT_CHILD_DEPTH && !branches.isEmpty()
+				        && branches.get(branches.size() - 1)[1] == -1) {
+					branches.get(branches.size() - 1)[1] = end;
+				}
+				i = end;
+			}
+			else {
+				final int nameEnd = skipName(document, i + 1);
+				final String name = new String(document, i + 1, nameEnd - i - 1);
+				final int end = skipTag(document, nameEnd);
+				if (end < 0) {
+					return null;
+				}
+				final boolean isEmpty = document[end - 2] == '/';
+				final int depth = openElements.size();
+				if (depth < ROOT_CHILD_DEPTH && new String(document, i, end - i).contains("xmlns")) {
+					return null;
+				}
+				if (depth == ROOT_CHILD_DEPTH && "node".equals(name) && "node".equals(openElements.get(1))) {
+					for (; countedUntil < i; countedUntil++) {
+						if (document[countedUntil] == '\n') {
+							lineCount++;
+						}
+					}
+					branches.add(new int[] { i, isEmpty ? end : -1, lineCount });
+				}
+				if (!isEmpty) {
+					openElements.add(name);
+				}
+				i = end;
+			}
+			if (i < 0) {
+				return null;
+			}
+		}
+		if (!branches.isEmpty() && branches.get(branches.size() - 1)[1] == -1) {
+			return null;
+		}
+		return branches;
+	}
+
+	private static char[] readFully(final Reader reader) throws IOException {
+		char[] buffer = new char[64 * 1024];
+		int length = 0;
+		for (;;) {
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			final int count = reader.read(buffer, length, buffer.length - length);
+			if (count < 0) {
+				break;
+			}
+			length += count;
+		}
+		reader.close();
+		return Arrays.copyOf(buffer, length);
+	}
+
+	private static int skipName(final char[] document, int i) {
+		while (i < document.length && " \t\r\n/>".indexOf(document[i]) < 0) {
+			i++;
+		}
+		return i;
+	}
+
+	private static int skipPast(final char[] document, final int from, final String end) {
+		for (int i = from; i <= document.length - end.length(); i++) {
+			if (startsWith(document, i, end)) {
+				return i + end.length();
+			}
+		}
+		return -1;
+	}
+
+	/** returns the position after the closing '&gt;' of a start tag */
+	private static int skipTag(final char[] document, int i) {
+		char quote = 0;
+		for (; i < document.length; i++) {
+			final char c = document[i];
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			}
+			else if (c == '"' || c == '\'') {
+				quote = c;
+			}
+			else if (c == '>') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	private static boolean startsWith(final char[] document, final int i, final String prefix) {
+		if (i + prefix.length() > document.length) {
+			return false;
+		}
+		for (int j = 0; j < prefix.length(); j++) {
+			if (document[i + j] != prefix.charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,331 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2008 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.freeplane.core.io.IAttributeHandler;
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.IUnparsedElementHandler;
+import org.freeplane.core.io.ListHashTable;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.n3.nanoxml.BufferedXMLReader;
+import org.freeplane.n3.nanoxml.IXMLReader;
+import org.freeplane.n3.nanoxml.NonValidator;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.freeplane.n3.nanoxml.XMLException;
+import org.freeplane.n3.nanoxml.XMLParseException;
+
+/**
+ * Reader dispatching parser events directly to the handlers registered in the {@link ReadManager}.
+ *
+ * Unlike {@link TreeXmlReader} it does not build a parallel XMLElement tree for the whole document.
+ * An XMLElement is only created for elements handled by an {@link IElementDOMHandler} or
+ * an {@link IElementContentHandler}, for elements whose handler can only be chosen after all attributes
+ * are known, and for unknown elements which are kept as {@link org.freeplane.core.io.UnknownElements}.
+ * Such elements contain only the attributes and the children which were not consumed by any handler,
+ * exactly like the elements passed by {@link TreeXmlReader}.
+ *
+ * @author Dimitry Polivaev
+ */
+public class StreamingTreeXmlReader implements IXMLParserBuilder {
+	private static final Object UNPARSED_ELEMENT = new Object();
+	private Hashtable<String, IAttributeHandler> attributeHandlersForTag;
+	private XMLElement currentDom;
+	private Object currentElement;
+	final private LinkedList<XMLElement> domStack = new LinkedList<XMLElement>();
+	private String elementContentAsString;
+	final private LinkedList<Object> elementStack = new LinkedList<Object>();
+	private IElementHandler nodeCreator;
+	final private LinkedList<IElementHandler> nodeCreatorStack = new LinkedList<IElementHandler>();
+	private Object parentElement;
+	final private ReadManager parseManager;
+	private XMLParser parser;
+	private XMLElement saveAsXmlUntil;
+	private String tag;
+	private boolean waitsForAllAttributes;
+
+	public StreamingTreeXmlReader(final ReadManager parseManager) {
+		super();
+		this.parseManager = parseManager;
+	}
+
+	private boolean addAttribute(final String key, final String value) {
+		if (saveAsXmlUntil == null && !waitsForAllAttributes && attributeHandlersForTag != null) {
+			final IAttributeHandler attributeHandler = attributeHandlersForTag.get(key);
+			if (attributeHandler != null) {
+				try {
+					attributeHandler.setAttribute(currentElement, value);
+					return true;
+				} catch (Exception e) {
+					LogUtils.severe("Can not process attribute" + key + " = '" + value + "'", e);
+				}
+			}
+		}
+		return false;
+	}
+
+	public void addAttribute(final String key, final String nsPrefix, final String nsURI, final String value,
+	                         final String type) throws Exception {
+		if (addAttribute(key, value) || currentDom == null) {
+			return;
+		}
+		String fullName = key;
+		if (nsPrefix != null) {
+			fullName = nsPrefix + ':' + key;
+		}
+		if (currentDom.hasAttribute(fullName)) {
+			throw new XMLParseException(currentDom.getSystemID(), currentDom.getLineNr(), "Duplicate attribute: " + key);
+		}
+		if (nsPrefix != null) {
+			currentDom.setAttribute(fullName, nsURI, value);
+		}
+		else {
+			currentDom.setAttribute(fullName, value);
+		}
+	}
+
+	public void addPCData(final Reader reader, final String systemID, final int lineNr) throws Exception {
+		if (currentDom == null) {
+			return;
+		}
+		final StringBuilder str = new StringBuilder();
+		final char[] buf = new char[2048];
+		for (;;) {
+			int size;
+			try {
+				size = reader.read(buf);
+			}
+			catch (final IOException e) {
+				break;
+			}
+			if (size < 0) {
+				break;
+			}
+			str.append(buf, 0, size);
+		}
+		final XMLElement elt = new XMLElement(null, systemID, lineNr);
+		elt.setContent(str.toString());
+		currentDom.addChild(elt);
+	}
+
+	private static boolean needsDom(final IElementHandler handler) {
+		return handler instanceof IElementDOMHandler || handler instanceof IElementContentHandler;
+	}
+
+	public void elementAttributesProcessed(final String name, final String nsPrefix, final String nsURI)
+	        throws Exception {
+		if (saveAsXmlUntil != null || !waitsForAllAttributes) {
+			return;
+		}
+		waitsForAllAttributes = false;
+		final Iterator<IElementHandler> iterator = getElementHandlers().iterator(tag);
+		while (iterator.hasNext() && currentElement == null) {
+			nodeCreator = iterator.next();
+			try {
+				currentElement = nodeCreator.createElement(parentElement, name, currentDom);
+			} catch (Exception e) {
+				LogUtils.severe("Can not process element" + name, e);
+			}
+		}
+		if (currentElement != null) {
+			if (nodeCreator instanceof IElementContentHandler) {
+				parser.notParseNextElementContent();
+			}
+			attributeHandlersForTag = getAttributeLoaders().get(tag);
+			if (attributeHandlersForTag == null) {
+				return;
+			}
+			final Enumeration<String> attributeNames = currentDom.enumerateAttributeNames();
+			while (attributeNames.hasMoreElements()) {
+				final String atName = (String) attributeNames.nextElement();
+				if (addAttribute(atName, currentDom.getAttribute(atName, null))) {
+					currentDom.removeAttribute(atName);
+				}
+			}
+		}
+		else {
+			currentElement = null;
+			nodeCreator = null;
+			saveAsXmlUntil = currentDom;
+			final XMLElement parentDom = domStack.getLast();
+			if (parentDom != null) {
+				parentDom.addChild(currentDom);
+			}
+		}
+	}
+
+	public void endElement(final String name, final String nsPrefix, final String nsURI) throws Exception {
+		final XMLElement dom = currentDom;
+		if (dom != null && dom.getChildrenCount() == 1) {
+			final XMLElement child = dom.getChildAtIndex(0);
+			if (child.getName() == null) {
+				dom.setContent(child.getContent());
+				dom.removeChildAtIndex(0);
+			}
+		}
+		if (saveAsXmlUntil != null && saveAsXmlUntil != dom) {
+			currentDom = dom.getParent();
+			return;
+		}
+		saveAsXmlUntil = null;
+		tag = null;
+		if (0 == elementStack.size()) {
+			return;
+		}
+		final Object element = currentElement;
+		currentElement = elementStack.removeLast();
+		try {
+			if (element == UNPARSED_ELEMENT) {
+				((IUnparsedElementHandler) nodeCreator).unparsedElementRead(currentElement, name, dom,
+				    elementContentAsString);
+			}
+			else if (nodeCreator instanceof IElementContentHandler) {
+				((IElementContentHandler) nodeCreator).endElement(currentElement, name, element, dom,
+				    elementContentAsString);
+			}
+			else if (nodeCreator instanceof IElementDOMHandler) {
+				((IElementDOMHandler) nodeCreator).endElement(currentElement, name, element, dom);
+			}
+		} catch (Exception e) {
+			LogUtils.severe("Can not process element" + name, e);
+		}
+		currentDom = domStack.removeLast();
+		nodeCreator = nodeCreatorStack.removeLast();
+		elementContentAsString = null;
+	}
+
+	private Hashtable<String, Hashtable<String, IAttributeHandler>> getAttributeLoaders() {
+		return parseManager.getAttributeHandlers();
+	}
+
+	private ListHashTable<String, IElementHandler> getElementHandlers() {
+		return parseManager.getElementHandlers();
+	}
+
+	public Object getResult() throws Exception {
+		return null;
+	}
+
+	public void load(final Reader reader) throws XMLException {
+		final XMLParser parser = new XMLParser();
+		final IXMLReader nanoxmlReader = new BufferedXMLReader(reader);
+		parser.setReader(nanoxmlReader);
+		load(parser);
+	}
+
+	private void load(final XMLParser parser) throws XMLException {
+		this.parser = parser;
+		parser.setBuilder(this);
+		parser.setValidator(new NonValidator());
+		parser.parse();
+	}
+
+	public void load(final Object currentElement, final XMLParser parser) throws XMLException {
+		this.currentElement = currentElement;
+		load(parser);
+	}
+
+	public void load(final Object currentElement, final Reader pReader) throws XMLException {
+		this.currentElement = currentElement;
+		load(pReader);
+	}
+
+	public void newProcessingInstruction(final String target, final Reader reader) throws Exception {
+	}
+
+	private void pushParentObjects() {
+		elementStack.addLast(currentElement);
+		nodeCreatorStack.addLast(nodeCreator);
+		domStack.addLast(currentDom);
+	}
+
+	public void setElementContent(final String content) {
+		elementContentAsString = content;
+	}
+
+	public void startBuilding(final String systemID, final int lineNr) throws Exception {
+		saveAsXmlUntil = null;
+		currentDom = null;
+		waitsForAllAttributes = false;
+	}
+
+	public void startElement(final String name, final String nsPrefix, final String nsURI, final String systemID,
+	                         final int lineNr) throws Exception {
+		String fullName = name;
+		if (nsPrefix != null) {
+			fullName = nsPrefix + ':' + name;
+		}
+		if (saveAsXmlUntil != null) {
+			final XMLElement elt = new XMLElement(fullName, nsURI, systemID, lineNr);
+			currentDom.addChild(elt);
+			currentDom = elt;
+			return;
+		}
+		tag = name;
+		pushParentObjects();
+		parentElement = currentElement;
+		currentElement = null;
+		final IUnparsedElementHandler unparsedElementHandler = parseManager.getUnparsedElementHandler(parentElement,
+		    tag);
+		if (unparsedElementHandler != null) {
+			nodeCreator = unparsedElementHandler;
+			currentElement = UNPARSED_ELEMENT;
+			attributeHandlersForTag = null;
+			parser.notParseNextElementContent();
+			waitsForAllAttributes = false;
+			currentDom = new XMLElement(fullName, nsURI, systemID, lineNr);
+			return;
+		}
+		final List<IElementHandler> handlers = getElementHandlers().list(tag);
+		if (handlers != null && handlers.size() == 1) {
+			nodeCreator = handlers.get(0);
+			try {
+				currentElement = nodeCreator.createElement(parentElement, tag, null);
+			} catch (Exception e) {
+				LogUtils.severe("Can not process element" + tag, e);
+			}
+		}
+		if (currentElement != null) {
+			waitsForAllAttributes = false;
+			attributeHandlersForTag = getAttributeLoaders().get(tag);
+			if (nodeCreator instanceof IElementContentHandler) {
+				parser.notParseNextElementContent();
+			}
+			currentDom = needsDom(nodeCreator) ? new XMLElement(fullName, nsURI, systemID, lineNr) : null;
+		}
+		else {
+			waitsForAllAttributes = true;
+			attributeHandlersForTag = null;
+			currentElement = null;
+			nodeCreator = null;
+			currentDom = new XMLElement(fullName, nsURI, systemID, lineNr);
+		}
+	}
+}
@@ -33,17 +33,18 @@ import org.freeplane.core.io.IAttributeHandler;
 import org.freeplane.core.io.IElementContentHandler;
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.IUnparsedElementHandler;
 import org.freeplane.core.io.ListHashTable;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.util.LogUtils;
+import org.freeplane.n3.nanoxml.BufferedXMLReader;
 import org.freeplane.n3.nanoxml.IXMLBuilder;
 import org.freeplane.n3.nanoxml.IXMLReader;
 import org.freeplane.n3.nanoxml.NonValidator;
-import org.freeplane.n3.nanoxml.StdXMLReader;
 import org.freeplane.n3.nanoxml.XMLElement;
 import org.freeplane.n3.nanoxml.XMLException;
 
-public class TreeXmlReader implements IXMLBuilder {
+public class TreeXmlReader implements IXMLParserBuilder {
 	public static boolean xmlToBoolean(final String string) {
 		if (string == null) {
 			return false;
@@ -82,6 +83,7 @@ public class TreeXmlReader implements IXMLBuilder {
 		return new Point(x, y);
 	}
 
+	private static final Object UNPARSED_ELEMENT = new Object();
 	private Hashtable<String, IAttributeHandler> attributeHandlersForTag;
 	private Object currentElement;
 	private String elementContentAsString;
@@ -206,7 +208,11 @@ public class TreeXmlReader implements IXMLBuilder {
 		final Object element = currentElement;
 		currentElement = elementStack.removeLast();
 		try {
-			if (nodeCreator instanceof IElementContentHandler) {
+			if (element == UNPARSED_ELEMENT) {
+				((IUnparsedElementHandler) nodeCreator).unparsedElementRead(currentElement, name, lastBuiltElement,
+				    elementContentAsString);
+			}
+			else if (nodeCreator instanceof IElementContentHandler) {
 				((IElementContentHandler) nodeCreator).endElement(currentElement, name, element, lastBuiltElement,
 						elementContentAsString);
 			}
@@ -246,14 +252,24 @@ public class TreeXmlReader implements IXMLBuilder {
 	 * @see freeplane.persistence.Reader#load()
 	 */
 	public void load(final Reader reader) throws XMLException {
-		parser = new XMLParser();
-		final IXMLReader nanoxmlReader = new StdXMLReader(reader);
+		final XMLParser parser = new XMLParser();
+		final IXMLReader nanoxmlReader = new BufferedXMLReader(reader);
 		parser.setReader(nanoxmlReader);
+		load(parser);
+	}
+
+	private void load(final XMLParser parser) throws XMLException {
+		this.parser = parser;
 		parser.setBuilder(this);
 		parser.setValidator(new NonValidator());
 		parser.parse();
 	}
 
+	public void load(final Object currentElement, final XMLParser parser) throws XMLException {
+		this.currentElement = currentElement;
+		load(parser);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
@@ -304,6 +320,15 @@ public class TreeXmlReader implements IXMLBuilder {
 		pushParentObjects();
 		parentElement = currentElement;
 		currentElement = null;
+		final IUnparsedElementHandler unparsedElementHandler = parseManager.getUnparsedElementHandler(parentElement,
+		    tag);
+		if (unparsedElementHandler != null) {
+			nodeCreator = unparsedElementHandler;
+			currentElement = UNPARSED_ELEMENT;
+			attributeHandlersForTag = null;
+			parser.notParseNextElementContent();
+			return;
+		}
 		final List<IElementHandler> handlers = getElementHandlers().list(tag);
 		if (handlers != null && handlers.size() == 1) {
 			nodeCreator = handlers.get(0);
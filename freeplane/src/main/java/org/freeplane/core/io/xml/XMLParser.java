@@ -22,6 +22,7 @@ package org.freeplane.core.io.xml;
 import java.io.IOException;
 import java.util.Properties;
 
+import org.freeplane.n3.nanoxml.BufferedXMLReader;
 import org.freeplane.n3.nanoxml.IXMLParser;
 import org.freeplane.n3.nanoxml.IXMLReader;
 import org.freeplane.n3.nanoxml.StdXMLParser;
@@ -34,6 +35,12 @@ class XMLParser extends StdXMLParser implements IXMLParser {
 		skipNextElementContent = true;
 	}
 
+	boolean resetNotParseNextElementContent() {
+		final boolean skipsContent = skipNextElementContent;
+		skipNextElementContent = false;
+		return skipsContent;
+	}
+
 	@Override
 	protected void processElement(final String defaultNamespace, final Properties namespaces) throws Exception {
 		try {
@@ -50,11 +57,14 @@ class XMLParser extends StdXMLParser implements IXMLParser {
 	        throws IOException, XMLParseException, Exception {
 		if (skipNextElementContent) {
 			boolean inComment = false;
-			final TreeXmlReader builder = (TreeXmlReader) getBuilder();
+			final IElementContentReceiver builder = (IElementContentReceiver) getBuilder();
 			final StringBuilder waitingBuf = new StringBuilder();
 			int level = 1;
 			for (;;) {
 				final IXMLReader reader = getReader();
+				if (!inComment && reader instanceof BufferedXMLReader) {
+					waitingBuf.append(((BufferedXMLReader) reader).readPlainText('<', '/'));
+				}
 				char ch = reader.read();
 				if (inComment) {
 					waitingBuf.append(ch);
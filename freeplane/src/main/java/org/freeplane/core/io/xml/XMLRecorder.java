@@ -0,0 +1,192 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.BufferedXMLReader;
+import org.freeplane.n3.nanoxml.IXMLBuilder;
+import org.freeplane.n3.nanoxml.NonValidator;
+import org.freeplane.n3.nanoxml.XMLException;
+
+/**
+ * Builder recording the parsed elements so that they can be passed to the element handlers later,
+ * possibly in another thread.
+ *
+ * Content of elements handled only by {@link IElementContentHandler}s is recorded unparsed
+ * if a ReadManager is given. The recorder itself does not call any handler.
+ *
+ * @author Dimitry Polivaev
+ */
+class XMLRecorder implements IXMLBuilder, IElementContentReceiver {
+	static class Element {
+		final String name;
+		final String nsPrefix;
+		final String nsURI;
+		final String systemID;
+		final int lineNr;
+		final List<String[]> attributes = new ArrayList<String[]>(4);
+		final List<Object> children = new ArrayList<Object>(2);
+		String content;
+
+		Element(final String name, final String nsPrefix, final String nsURI, final String systemID, final int lineNr) {
+			this.name = name;
+			this.nsPrefix = nsPrefix;
+			this.nsURI = nsURI;
+			this.systemID = systemID;
+			this.lineNr = lineNr;
+		}
+
+		String getFullName() {
+			return nsPrefix == null ? name : nsPrefix + ':' + name;
+		}
+	}
+
+	static class Text {
+		final String text;
+		final String systemID;
+		final int lineNr;
+
+		Text(final String text, final String systemID, final int lineNr) {
+			this.text = text;
+			this.systemID = systemID;
+			this.lineNr = lineNr;
+		}
+	}
+
+	static class ProcessingInstruction {
+		final String target;
+		final String data;
+
+		ProcessingInstruction(final String target, final String data) {
+			this.target = target;
+			this.data = data;
+		}
+	}
+
+	static String readFully(final Reader reader) throws IOException {
+		final StringBuilder str = new StringBuilder();
+		final char[] buf = new char[2048];
+		for (;;) {
+			final int size = reader.read(buf);
+			if (size < 0) {
+				return str.toString();
+			}
+			str.append(buf, 0, size);
+		}
+	}
+
+	final private Map<String, Boolean> contentTags = new HashMap<String, Boolean>();
+	private Element currentElement;
+	final private Element document;
+	final private LinkedList<Element> elementStack = new LinkedList<Element>();
+	final private int lineOffset;
+	private XMLParser parser;
+	final private ReadManager readManager;
+
+	XMLRecorder(final ReadManager readManager, final int lineOffset) {
+		this.readManager = readManager;
+		this.lineOffset = lineOffset;
+		document = new Element(null, null, null, null, 0);
+	}
+
+	public void addAttribute(final String key, final String nsPrefix, final String nsURI, final String value,
+	                         final String type) throws Exception {
+		currentElement.attributes.add(new String[] { key, nsPrefix, nsURI, value, type });
+	}
+
+	public void addPCData(final Reader reader, final String systemID, final int lineNr) throws Exception {
+		currentElement.children.add(new Text(readFully(reader), systemID, lineNr + lineOffset));
+	}
+
+	public void elementAttributesProcessed(final String name, final String nsPrefix, final String nsURI)
+	        throws Exception {
+	}
+
+	public void endElement(final String name, final String nsPrefix, final String nsURI) throws Exception {
+		currentElement = elementStack.removeLast();
+	}
+
+	public Object getResult() throws Exception {
+		return null;
+	}
+
+	private boolean isContentTag(final String tag) {
+		if (readManager == null) {
+			return false;
+		}
+		Boolean isContentTag = contentTags.get(tag);
+		if (isContentTag == null) {
+			final List<IElementHandler> handlers = readManager.getElementHandlers().list(tag);
+			isContentTag = handlers != null && !handlers.isEmpty();
+			if (handlers != null) {
+				for (final IElementHandler handler : handlers) {
+					if (!(handler instanceof IElementContentHandler)) {
+						isContentTag = false;
+						break;
+					}
+				}
+			}
+			contentTags.put(tag, isContentTag);
+		}
+		return isContentTag;
+	}
+
+	Element load(final Reader reader) throws XMLException {
+		parser = new XMLParser();
+		parser.setReader(new BufferedXMLReader(reader));
+		parser.setBuilder(this);
+		parser.setValidator(new NonValidator());
+		parser.parse();
+		return document;
+	}
+
+	public void newProcessingInstruction(final String target, final Reader reader) throws Exception {
+		currentElement.children.add(new ProcessingInstruction(target, readFully(reader)));
+	}
+
+	public void setElementContent(final String content) {
+		currentElement.content = content;
+	}
+
+	public void startBuilding(final String systemID, final int lineNr) throws Exception {
+		currentElement = document;
+	}
+
+	public void startElement(final String name, final String nsPrefix, final String nsURI, final String systemID,
+	                         final int lineNr) throws Exception {
+		final Element element = new Element(name, nsPrefix, nsURI, systemID, lineNr + lineOffset);
+		currentElement.children.add(element);
+		elementStack.addLast(currentElement);
+		currentElement = element;
+		if (isContentTag(name)) {
+			parser.notParseNextElementContent();
+		}
+	}
+}
@@ -0,0 +1,188 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.IXMLBuilder;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.freeplane.n3.nanoxml.XMLException;
+import org.freeplane.n3.nanoxml.XMLWriter;
+
+/**
+ * Parser passing recorded elements to its builder as if they were parsed right now.
+ *
+ * Processing instructions with the target {@link #BRANCH_TARGET} are replaced by
+ * the next element recorded in the given branches.
+ *
+ * @author Dimitry Polivaev
+ */
+class XMLReplayer extends XMLParser {
+	static final String BRANCH_TARGET = "freeplane-branch";
+	final private Iterator<Future<XMLRecorder.Element>> branches;
+	final private XMLRecorder.Element document;
+	final private ReadManager readManager;
+
+	XMLReplayer(final ReadManager readManager, final XMLRecorder.Element document,
+	            final Iterator<Future<XMLRecorder.Element>> branches) {
+		this.readManager = readManager;
+		this.document = document;
+		this.branches = branches;
+	}
+
+	@Override
+	public Object parse() throws XMLException {
+		try {
+			getBuilder().startBuilding("file:.", 1);
+			replayChildren(document);
+			return getBuilder().getResult();
+		}
+		catch (final XMLException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private void replay(final XMLRecorder.Element element) throws Exception {
+		final IXMLBuilder builder = getBuilder();
+		builder.startElement(element.name, element.nsPrefix, element.nsURI, element.systemID, element.lineNr);
+		for (final String[] attribute : element.attributes) {
+			builder.addAttribute(attribute[0], attribute[1], attribute[2], attribute[3], attribute[4]);
+		}
+		builder.elementAttributesProcessed(element.name, element.nsPrefix, element.nsURI);
+		if (resetNotParseNextElementContent()) {
+			final String content = element.content != null ? element.content : toXml(element);
+			if (content != null) {
+				((IElementContentReceiver) builder).setElementContent(content);
+			}
+		}
+		else if (element.content != null) {
+			replayChildren(parseContent(element, readManager));
+		}
+		else {
+			replayChildren(element);
+		}
+		builder.endElement(element.name, element.nsPrefix, element.nsURI);
+	}
+
+	private void replayChildren(final XMLRecorder.Element element) throws Exception {
+		for (final Object child : element.children) {
+			if (child instanceof XMLRecorder.Element) {
+				replay((XMLRecorder.Element) child);
+			}
+			else if (child instanceof XMLRecorder.Text) {
+				final XMLRecorder.Text text = (XMLRecorder.Text) child;
+				getBuilder().addPCData(new StringReader(text.text), text.systemID, text.lineNr);
+			}
+			else {
+				final XMLRecorder.ProcessingInstruction pi = (XMLRecorder.ProcessingInstruction) child;
+				if (BRANCH_TARGET.equals(pi.target)) {
+					replayChildren(nextBranch());
+				}
+				else {
+					getBuilder().newProcessingInstruction(pi.target, new StringReader(pi.data));
+				}
+			}
+		}
+	}
+
+	private XMLRecorder.Element nextBranch() throws Exception {
+		try {
+			return branches.next().get();
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw e;
+		}
+	}
+
+	private static String toXml(final XMLRecorder.Element element) {
+		if (element.children.isEmpty()) {
+			return null;
+		}
+		final StringWriter out = new StringWriter();
+		final XMLWriter writer = new XMLWriter(out);
+		try {
+			for (final Object child : children(element)) {
+				if (child instanceof XMLRecorder.Element) {
+					writer.write(toXMLElement((XMLRecorder.Element) child), false, 0, true);
+				}
+				else if (child instanceof XMLRecorder.Text) {
+					final XMLElement text = new XMLElement();
+					text.setContent(((XMLRecorder.Text) child).text);
+					writer.write(text, false);
+				}
+			}
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+		return out.toString();
+	}
+
+	private static Iterable<Object> children(final XMLRecorder.Element element) {
+		if (element.content == null) {
+			return element.children;
+		}
+		try {
+			return parseContent(element, null).children;
+		}
+		catch (final XMLException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static XMLRecorder.Element parseContent(final XMLRecorder.Element element, final ReadManager readManager)
+	        throws XMLException {
+		final String xml = "<" + element.getFullName() + ">" + element.content + "</" + element.getFullName() + ">";
+		final XMLRecorder.Element wrapper = new XMLRecorder(readManager, element.lineNr - 1).load(new StringReader(xml));
+		return (XMLRecorder.Element) wrapper.children.get(0);
+	}
+
+	private static XMLElement toXMLElement(final XMLRecorder.Element element) {
+		final XMLElement xmlElement = new XMLElement(element.getFullName(), element.nsURI, element.systemID,
+		    element.lineNr);
+		for (final String[] attribute : element.attributes) {
+			final String name = attribute[1] == null ? attribute[0] : attribute[1] + ':' + attribute[0];
+			xmlElement.setAttribute(name, attribute[3]);
+		}
+		for (final Object child : children(element)) {
+			if (child instanceof XMLRecorder.Element) {
+				xmlElement.addChild(toXMLElement((XMLRecorder.Element) child));
+			}
+			else if (child instanceof XMLRecorder.Text) {
+				final XMLElement text = new XMLElement();
+				text.setContent(((XMLRecorder.Text) child).text);
+				xmlElement.addChild(text);
+			}
+		}
+		return xmlElement;
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.XMLException;
+
+/**
+ * Parsed xml document which can be stored in a compact binary form and passed to the element handlers later.
+ *
+ * The binary form consists of a table of all distinct strings followed by the elements in document order,
+ * all names, values and texts are written as indices into the string table.
+ *
+ * @author Dimitry Polivaev
+ */
+public class XMLSnapshot {
+	private static final int END = 0;
+	private static final int ELEMENT = 1;
+	private static final int TEXT = 2;
+	private static final int PROCESSING_INSTRUCTION = 3;
+	private static final int NULL_STRING = 0;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	public static XMLSnapshot record(final ReadManager readManager, final Reader reader) throws XMLException {
+		return new XMLSnapshot(new XMLRecorder(readManager, 0).load(reader));
+	}
+
+	public static XMLSnapshot read(final DataInput in) throws IOException {
+		final int stringCount = readInt(in);
+		final String[] strings = new String[stringCount + 1];
+		for (int i = 1; i <= stringCount; i++) {
+			final byte[] bytes = new byte[readInt(in)];
+			in.readFully(bytes);
+			strings[i] = new String(bytes, UTF8);
+		}
+		final XMLRecorder.Element document = new XMLRecorder.Element(null, null, null, null, 0);
+		readChildren(in, strings, document);
+		return new XMLSnapshot(document);
+	}
+
+	private static void readChildren(final DataInput in, final String[] strings, final XMLRecorder.Element parent)
+	        throws IOException {
+		for (;;) {
+			final int type = in.readByte();
+			switch (type) {
+				case END:
+					return;
+				case ELEMENT:
+					final XMLRecorder.Element element = new XMLRecorder.Element(strings[readInt(in)],
+					    strings[readInt(in)], strings[readInt(in)], strings[readInt(in)], readInt(in));
+					final int attributeCount = readInt(in);
+					for (int i = 0; i < attributeCount; i++) {
+						element.attributes.add(new String[] { strings[readInt(in)], strings[readInt(in)],
+						        strings[readInt(in)], strings[readInt(in)], strings[readInt(in)] });
+					}
+					element.content = strings[readInt(in)];
+					readChildren(in, strings, element);
+					parent.children.add(element);
+					break;
+				case TEXT:
+					parent.children.add(new XMLRecorder.Text(strings[readInt(in)], strings[readInt(in)], readInt(in)));
+					break;
+				case PROCESSING_INSTRUCTION:
+					parent.children.add(new XMLRecorder.ProcessingInstruction(strings[readInt(in)],
+					    strings[readInt(in)]));
+					break;
+				default:
+					throw new IOException("Unknown snapshot entry " + type);
+			}
+		}
+	}
+
+	/** reads an unsigned int written by {@link #writeInt(DataOutput, int)} */
+	private static int readInt(final DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0;; shift += 7) {
+			final int b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+	}
+
+	/** writes an unsigned int using 7 bits per byte */
+	private static void writeInt(final DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	final private XMLRecorder.Element document;
+
+	private XMLSnapshot(final XMLRecorder.Element document) {
+		this.document = document;
+	}
+
+	private void collectStrings(final XMLRecorder.Element element, final Map<String, Integer> strings) {
+		for (final Object child : element.children) {
+			if (child instanceof XMLRecorder.Element) {
+				final XMLRecorder.Element childElement = (XMLRecorder.Element) child;
+				index(strings, childElement.name);
+				index(strings, childElement.nsPrefix);
+				index(strings, childElement.nsURI);
+				index(strings, childElement.systemID);
+				for (final String[] attribute : childElement.attributes) {
+					for (final String part : attribute) {
+						index(strings, part);
+					}
+				}
+				index(strings, childElement.content);
+				collectStrings(childElement, strings);
+			}
+			else if (child instanceof XMLRecorder.Text) {
+				index(strings, ((XMLRecorder.Text) child).text);
+				index(strings, ((XMLRecorder.Text) child).systemID);
+			}
+			else {
+				index(strings, ((XMLRecorder.ProcessingInstruction) child).target);
+				index(strings, ((XMLRecorder.ProcessingInstruction) child).data);
+			}
+		}
+	}
+
+	private static void index(final Map<String, Integer> strings, final String string) {
+		if (string != null && !strings.containsKey(string)) {
+			strings.put(string, strings.size() + 1);
+		}
+	}
+
+	/**
+	 * Passes the recorded elements to the handlers registered in the readManager.
+	 */
+	public void load(final ReadManager readManager, final boolean streaming, final Object currentElement)
+	        throws XMLException {
+		final IXMLParserBuilder builder = streaming ? new StreamingTreeXmlReader(readManager) : new TreeXmlReader(
+		    readManager);
+		final Iterator<Future<XMLRecorder.Element>> noBranches = Collections.<Future<XMLRecorder.Element>> emptyList()
+		    .iterator();
+		builder.load(currentElement, new XMLReplayer(readManager, document, noBranches));
+	}
+
+	public void write(final DataOutput out) throws IOException {
+		final Map<String, Integer> strings = new HashMap<String, Integer>();
+		collectStrings(document, strings);
+		final List<String> stringTable = new ArrayList<String>(Collections.<String> nCopies(strings.size(), null));
+		for (final Map.Entry<String, Integer> entry : strings.entrySet()) {
+			stringTable.set(entry.getValue() - 1, entry.getKey());
+		}
+		writeInt(out, stringTable.size());
+		for (final String string : stringTable) {
+			final byte[] bytes = string.getBytes(UTF8);
+			writeInt(out, bytes.length);
+			out.write(bytes);
+		}
+		writeChildren(out, strings, document);
+	}
+
+	private static void writeChildren(final DataOutput out, final Map<String, Integer> strings,
+	                                  final XMLRecorder.Element element) throws IOException {
+		for (final Object child : element.children) {
+			if (child instanceof XMLRecorder.Element) {
+				final XMLRecorder.Element childElement = (XMLRecorder.Element) child;
+				out.writeByte(ELEMENT);
+				writeString(out, strings, childElement.name);
+				writeString(out, strings, childElement.nsPrefix);
+				writeString(out, strings, childElement.nsURI);
+				writeString(out, strings, childElement.systemID);
+				writeInt(out, childElement.lineNr);
+				writeInt(out, childElement.attributes.size());
+				for (final String[] attribute : childElement.attributes) {
+					for (final String part : attribute) {
+						writeString(out, strings, part);
+					}
+				}
+				writeString(out, strings, childElement.content);
+				writeChildren(out, strings, childElement);
+			}
+			else if (child instanceof XMLRecorder.Text) {
+				out.writeByte(TEXT);
+				writeString(out, strings, ((XMLRecorder.Text) child).text);
+				writeString(out, strings, ((XMLRecorder.Text) child).systemID);
+				writeInt(out, ((XMLRecorder.Text) child).lineNr);
+			}
+			else {
+				out.writeByte(PROCESSING_INSTRUCTION);
+				writeString(out, strings, ((XMLRecorder.ProcessingInstruction) child).target);
+				writeString(out, strings, ((XMLRecorder.ProcessingInstruction) child).data);
+			}
+		}
+		out.writeByte(END);
+	}
+
+	private static void writeString(final DataOutput out, final Map<String, Integer> strings, final String string)
+	        throws IOException {
+		writeInt(out, string == null ? NULL_STRING : strings.get(string));
+	}
+}
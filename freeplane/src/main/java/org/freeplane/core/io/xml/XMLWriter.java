@@ -227,6 +227,10 @@ class XMLWriter {
 	 * Writes a string encoding reserved characters.
 	 */
 	private void writeEncoded(final String str, final boolean atributeValue, final boolean xmlInclude) {
+		if (xmlInclude) {
+			writeIncluded(str);
+			return;
+		}
 		for (int i = 0; i < str.length(); i++) {
 			final char c = str.charAt(i);
 			if (c > 0x7E) {
@@ -235,10 +239,6 @@ class XMLWriter {
 				writer.print(';');
 				continue;
 			}
-			if (xmlInclude) {
-				writer.print(c);
-				continue;
-			}
 			switch (c) {
 				case '<':
 					writer.print("&lt;");
@@ -274,4 +274,20 @@ class XMLWriter {
 			}
 		}
 	}
+
+	/** Copies included xml in runs, only characters above 0x7E are encoded. */
+	private void writeIncluded(final String str) {
+		int start = 0;
+		for (int i = 0; i < str.length(); i++) {
+			final char c = str.charAt(i);
+			if (c > 0x7E) {
+				writer.write(str, start, i - start);
+				writer.print("&#x");
+				writer.print(Integer.toString(c, 16));
+				writer.print(';');
+				start = i + 1;
+			}
+		}
+		writer.write(str, start, str.length() - start);
+	}
 }
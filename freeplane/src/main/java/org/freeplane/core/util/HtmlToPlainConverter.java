@@ -0,0 +1,315 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.util;
+
+/**
+ * Converts html to plain text in one scan with the same result as {@link HtmlUtils#htmlToPlainByPatterns(String, boolean)}.
+ *
+ * The pattern replacements are applied one after another, so a tag is replaced depending on the text
+ * the previous replacements left around it: paragraph, div and table row tags are only replaced by a line break
+ * if they are followed by white space, closing tags remove the spaces before them and other tags the spaces after them.
+ * The converter looks at the same neighborhood of each tag instead.
+ * Markup the patterns would not handle as a sequence of separate tags, like nested or unbalanced angle brackets,
+ * is not converted.
+ *
+ * @author Dimitry Polivaev
+ */
+class HtmlToPlainConverter {
+	private static final int BR = 3;
+	private static final int P = 4;
+	private static final int DIV = 5;
+	private static final int TR = 6;
+	private static final int DT = 7;
+	private static final int DD = 8;
+	private static final int TD = 9;
+	private static final int LIST = 10;
+	private static final int LI = 11;
+	private static final int CLOSING = 12;
+	private static final int OTHER = 13;
+	final private String html;
+	final private boolean removesNewLines;
+	final private StringBuilder text;
+	/** closing tags remove the spaces before them down to this position only */
+	private int spaceLimit = 0;
+	/** set after tags which remove the spaces after them */
+	private boolean removesSpaces = false;
+
+	HtmlToPlainConverter(final String html, final boolean removesNewLines) {
+		this.html = html;
+		this.removesNewLines = removesNewLines;
+		text = new StringBuilder(html.length());
+	}
+
+	/** @return the plain text, or null if the markup is not a sequence of separate tags */
+	String convert() {
+		if (!hasSeparateTags()) {
+			return null;
+		}
+		int i = 0;
+		final int length = html.length();
+		while (i < length) {
+			final char c = html.charAt(i);
+			if (c == '<') {
+				i = skipLineBreaks(convertTag(i));
+			}
+			else if (removesNewLines && (c == ' ' || c == '\n' || c == '\t')) {
+				do {
+					i++;
+				} while (i < length && (html.charAt(i) == ' ' || html.charAt(i) == '\n' || html.charAt(i) == '\t'));
+				append(' ');
+			}
+			else {
+				append(c);
+				i++;
+			}
+		}
+		return replaceEntities(HtmlUtils.unescapeHTMLUnicodeEntity(text.toString().trim()));
+	}
+
+	private boolean hasSeparateTags() {
+		boolean inTag = false;
+		for (int i = 0; i < html.length(); i++) {
+			final char c = html.charAt(i);
+			if (c == '<') {
+				if (inTag || i + 1 == html.length() || html.charAt(i + 1) == '>') {
+					return false;
+				}
+				inTag = true;
+			}
+			else if (c == '>') {
+				if (!inTag) {
+					return false;
+				}
+				inTag = false;
+			}
+		}
+		return !inTag;
+	}
+
+	/** line breaks and tabs after tags are removed first of all */
+	private int skipLineBreaks(int i) {
+		while (i < html.length() && (html.charAt(i) == '\n' || html.charAt(i) == '\t')) {
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private boolean nameStartsWith(final int start, final String prefix) {
+		return html.regionMatches(true, start + 1, prefix, 0, prefix.length());
+	}
+
+	private int kind(final int start) {
+		if (html.charAt(start + 1) == '/') {
+			return CLOSING;
+		}
+		if (nameStartsWith(start, "br")) {
+			return BR;
+		}
+		if (nameStartsWith(start, "p")) {
+			return P;
+		}
+		if (nameStartsWith(start, "div")) {
+			return DIV;
+		}
+		if (nameStartsWith(start, "tr")) {
+			return TR;
+		}
+		if (nameStartsWith(start, "dt")) {
+			return DT;
+		}
+		if (nameStartsWith(start, "dd")) {
+			return DD;
+		}
+		if (nameStartsWith(start, "td")) {
+			return TD;
+		}
+		if (nameStartsWith(start, "ul") || nameStartsWith(start, "ol")) {
+			return LIST;
+		}
+		if (nameStartsWith(start, "li")) {
+			return LI;
+		}
+		return OTHER;
+	}
+
+	/** @return the position after the tag and the white space it replaces */
+	private int convertTag(final int start) {
+		final int end = html.indexOf('>', start) + 1;
+		final int kind = kind(start);
+		switch (kind) {
+			case CLOSING:
+				removeSpacesBefore();
+				return end;
+			case BR:
+			case LIST:
+			case DT:
+				append("\n");
+				return end;
+			case DD:
+				append("\n   ");
+				return end;
+			case TD:
+				append(" ");
+				return end;
+			case LI:
+				append("\n   * ");
+				return end;
+			case P:
+			case DIV:
+			case TR:
+				if (isFollowedByWhitespace(end, kind)) {
+					append("\n");
+					return skipWhitespace(end, kind);
+				}
+				break;
+		}
+		spaceLimit = text.length();
+		removesSpaces = true;
+		return end;
+	}
+
+	/**
+	 * Checks if a block tag of the given kind is followed by white space at the time it is replaced,
+	 * that is after line breaks and the tags replaced before it.
+	 */
+	private boolean isFollowedByWhitespace(final int position, final int blockKind) {
+		final int i = skipLineBreaks(position);
+		if (i == html.length()) {
+			return false;
+		}
+		final char c = html.charAt(i);
+		return isWhitespace(c) || c == '<' && isReplacedByWhitespace(i, blockKind);
+	}
+
+	private boolean isReplacedByWhitespace(final int start, final int blockKind) {
+		final int kind = kind(start);
+		return kind == BR || kind < blockKind && (kind == P || kind == DIV)
+		        && isFollowedByWhitespace(html.indexOf('>', start) + 1, kind);
+	}
+
+	private int skipWhitespace(int i, final int blockKind) {
+		while (i < html.length()) {
+			final char c = html.charAt(i);
+			if (isWhitespace(c)) {
+				i++;
+			}
+			else if (c == '<' && isReplacedByWhitespace(i, blockKind)) {
+				i = html.indexOf('>', i) + 1;
+			}
+			else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	private void append(final char c) {
+		if (removesSpaces) {
+			if (c == ' ') {
+				return;
+			}
+			removesSpaces = false;
+		}
+		text.append(c);
+	}
+
+	private void append(final String replacement) {
+		for (int i = 0; i < replacement.length(); i++) {
+			append(replacement.charAt(i));
+		}
+	}
+
+	private void removeSpacesBefore() {
+		int length = text.length();
+		while (length > spaceLimit && text.charAt(length - 1) == ' ') {
+			length--;
+		}
+		text.setLength(length);
+	}
+
+	private static boolean matchesIgnoringAsciiCase(final String text, final int start, final String name) {
+		if (start + name.length() > text.length()) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			final char c = text.charAt(start + i);
+			if ((c < 128 ? Character.toLowerCase(c) : c) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Replaces the named entities, removes spaces and tabs before line ends and replaces non breaking spaces.
+	 */
+	private static String replaceEntities(final String text) {
+		final StringBuilder result = new StringBuilder(text.length());
+		int spaceLimit = 0;
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '&') {
+				if (matchesIgnoringAsciiCase(text, i, "&lt;")) {
+					result.append('<');
+					i += 3;
+					continue;
+				}
+				if (matchesIgnoringAsciiCase(text, i, "&gt;")) {
+					result.append('>');
+					i += 3;
+					continue;
+				}
+				if (matchesIgnoringAsciiCase(text, i, "&quot;")) {
+					result.append('"');
+					i += 5;
+					continue;
+				}
+				if (matchesIgnoringAsciiCase(text, i, "&nbsp;")) {
+					result.append(' ');
+					i += 5;
+					continue;
+				}
+				if (matchesIgnoringAsciiCase(text, i, "&amp;")) {
+					result.append('&');
+					i += 4;
+					continue;
+				}
+			}
+			else if (c == '\n') {
+				int length = result.length();
+				while (length > spaceLimit && (result.charAt(length - 1) == ' ' || result.charAt(length - 1) == '\t')) {
+					length--;
+				}
+				result.setLength(length);
+			}
+			else if (c == '\u00a0') {
+				result.append(' ');
+				spaceLimit = result.length();
+				continue;
+			}
+			result.append(c);
+		}
+		return result.toString();
+	}
+}
@@ -80,9 +80,51 @@ public class HtmlUtils {
 		}
 	}
 
+	/**
+	 * Result of {@link HtmlUtils#htmlToPlain(String)} cached together with the text it was converted from.
+	 * Models keep it until their text is replaced; readers on other threads see a consistent pair.
+	 */
+	public static class PlainText {
+		final private Object source;
+		final private String text;
+
+		public PlainText(final Object source, final String text) {
+			this.source = source;
+			this.text = text;
+		}
+
+		public boolean isConvertedFrom(final Object source) {
+			return this.source == source;
+		}
+
+		public String getText() {
+			return text;
+		}
+	}
+
 	private static final Pattern FIND_TAGS_PATTERN = Pattern.compile("([^<]*)(<[^>]+>)");
 	private static final Pattern HTML_PATTERN = Pattern.compile("(?s)^\\s*<\\s*html[^>]*>.*", Pattern.CASE_INSENSITIVE);
-	private static Pattern[] PATTERNS;
+	private static final Pattern[] PATTERNS = {
+	        Pattern.compile("(?ims)>[\n\t]+"), 
+	        Pattern.compile("(?ims)[\n\t ]+"), 
+	        Pattern.compile("(?ims)<br[^>]*>"), 
+	        Pattern.compile("(?ims)<p[^>]*>\\s+"),
+	        Pattern.compile("(?ims)<div[^>]*>\\s+"), 
+	        Pattern.compile("(?ims)<tr[^>]*>\\s+"),
+	        Pattern.compile("(?ims)<dt[^>]*>"), 
+	        Pattern.compile("(?ims)<dd[^>]*>"),
+	        Pattern.compile("(?ims)<td[^>]*>"), 
+	        Pattern.compile("(?ims)<[uo]l[^>]*>"),
+	        Pattern.compile("(?ims)<li[^>]*>"), 
+	        Pattern.compile("(?ims) *</[^>]*>"),
+	        Pattern.compile("(?ims)<[^/][^>]*> *"), 
+	        Pattern.compile("^\n+"), 
+	        Pattern.compile("(?ims)&lt;"),
+	        Pattern.compile("(?ims)&gt;"), 
+	        Pattern.compile("(?ims)&quot;"), 
+	        Pattern.compile("(?ims)&nbsp;"),
+	        Pattern.compile("(?ims)&amp;"),
+	        Pattern.compile("(?ims)[ \t]+\n") };
 	private static HtmlUtils sInstance = new HtmlUtils();
 	private static final Pattern SLASHED_TAGS_PATTERN = Pattern.compile("<((" + "br|area|base|basefont|"
 	        + "bgsound|button|col|colgroup|embed|hr" + "|img|input|isindex|keygen|link|meta"
@@ -113,29 +155,15 @@ public class HtmlUtils {
 		if (strictHTMLOnly && !HtmlUtils.isHtmlNode(text)) {
 			return text;
 		}
-		if (PATTERNS == null) {
-			PATTERNS = new Pattern[] { 
-					Pattern.compile("(?ims)>[\n\t]+"), 
-					Pattern.compile("(?ims)[\n\t ]+"), 
-			        Pattern.compile("(?ims)<br[^>]*>"), 
-			        Pattern.compile("(?ims)<p[^>]*>\\s+"),
-			        Pattern.compile("(?ims)<div[^>]*>\\s+"), 
-			        Pattern.compile("(?ims)<tr[^>]*>\\s+"),
-			        Pattern.compile("(?ims)<dt[^>]*>"), 
-			        Pattern.compile("(?ims)<dd[^>]*>"),
-			        Pattern.compile("(?ims)<td[^>]*>"), 
-			        Pattern.compile("(?ims)<[uo]l[^>]*>"),
-			        Pattern.compile("(?ims)<li[^>]*>"), 
-			        Pattern.compile("(?ims) *</[^>]*>"),
-			        Pattern.compile("(?ims)<[^/][^>]*> *"), 
-			        Pattern.compile("^\n+"), 
-			        Pattern.compile("(?ims)&lt;"),
-			        Pattern.compile("(?ims)&gt;"), 
-			        Pattern.compile("(?ims)&quot;"), 
-			        Pattern.compile("(?ims)&nbsp;"),
-			        Pattern.compile("(?ims)&amp;"),
-			        Pattern.compile("(?ims)[ \t]+\n") };
-		}
+		final String plainText = new HtmlToPlainConverter(text, removeNewLines).convert();
+		return plainText != null ? plainText : htmlToPlainByPatterns(text, removeNewLines);
+	}
+
+	/**
+	 * Original implementation of {@link #htmlToPlain(String, boolean, boolean)}, used for markup
+	 * which {@link HtmlToPlainConverter} does not handle.
+	 */
+	static String htmlToPlainByPatterns(final String text, final boolean removeNewLines) {
 		String intermediate = text;
 		int i = 0;
 		intermediate = PATTERNS[i++].matcher(intermediate).replaceAll(">");
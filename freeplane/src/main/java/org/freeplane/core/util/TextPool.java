@@ -0,0 +1,148 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.util;
+
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps long texts which are rarely read, like the xml form of rich texts, as UTF-8 encoded bytes
+ * shared between all nodes of all open maps.
+ *
+ * Compacted texts are decoded again by {@link #expand(Object)} on each access,
+ * unless the thread keeps expanded texts while it saves a map, see {@link #keepExpandedTexts()}.
+ * They are only referenced weakly by the pool, so they are released together with the last node using them.
+ *
+ * @author Dimitry Polivaev
+ */
+public class TextPool {
+	/** Shorter texts are not worth compacting because of the additional objects. */
+	private static final int MINIMAL_COMPACT_LENGTH = 128;
+
+	private static final Map<Object, WeakReference<Object>> pool = new WeakHashMap<Object, WeakReference<Object>>();
+
+	private static final ThreadLocal<Map<Object, String>> expandedTexts = new ThreadLocal<Map<Object, String>>();
+
+	/** UTF-8 encoded text, compared by content. */
+	private static final class CompactText {
+		final private byte[] utf8;
+		final private int hash;
+
+		CompactText(final String text) {
+			utf8 = text.getBytes(StandardCharsets.UTF_8);
+			hash = text.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj == this || obj instanceof CompactText && hash == ((CompactText) obj).hash
+			        && Arrays.equals(utf8, ((CompactText) obj).utf8);
+		}
+
+		@Override
+		public String toString() {
+			return new String(utf8, StandardCharsets.UTF_8);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T pooled(final T value) {
+		synchronized (pool) {
+			final WeakReference<Object> reference = pool.get(value);
+			if (reference != null) {
+				final Object pooledValue = reference.get();
+				if (pooledValue != null) {
+					return (T) pooledValue;
+				}
+			}
+			pool.put(value, new WeakReference<Object>(value));
+			return value;
+		}
+	}
+
+	/**
+	 * Returns a shared representation of the text to be stored instead of the text.
+	 * Short texts are returned unchanged, the text can be obtained back by {@link #expand(Object)}.
+	 */
+	public static Object compact(final String text) {
+		if (text == null || text.length() < MINIMAL_COMPACT_LENGTH) {
+			return text;
+		}
+		return pooled(new CompactText(text));
+	}
+
+	/**
+	 * Like {@link #compact(String)}, but returns the text already stored in another form
+	 * if it is equal to the given text.
+	 */
+	public static Object compact(final String text, final String storedText) {
+		if (text != null && text.equals(storedText)) {
+			return storedText;
+		}
+		return compact(text);
+	}
+
+	/** @return the text passed to {@link #compact(String)} */
+	public static String expand(final Object compactText) {
+		if (compactText == null) {
+			return null;
+		}
+		final Map<Object, String> expandedTexts = TextPool.expandedTexts.get();
+		if (expandedTexts == null || !(compactText instanceof CompactText)) {
+			return compactText.toString();
+		}
+		String text = expandedTexts.get(compactText);
+		if (text == null) {
+			text = compactText.toString();
+			expandedTexts.put(compactText, text);
+		}
+		return text;
+	}
+
+	/**
+	 * Keeps texts expanded by the current thread until {@link #releaseExpandedTexts(boolean)} is called,
+	 * so that texts shared by several nodes are decoded once per save.
+	 *
+	 * @return false if the thread already keeps expanded texts
+	 */
+	public static boolean keepExpandedTexts() {
+		if (expandedTexts.get() != null) {
+			return false;
+		}
+		expandedTexts.set(new IdentityHashMap<Object, String>());
+		return true;
+	}
+
+	/** @param kept the value returned by the matching call of {@link #keepExpandedTexts()} */
+	public static void releaseExpandedTexts(final boolean kept) {
+		if (kept) {
+			expandedTexts.remove();
+		}
+	}
+}
@@ -28,7 +28,6 @@ import java.util.Map;
 import javax.swing.tree.MutableTreeNode;
 
 import org.freeplane.core.extension.IExtension;
-import org.freeplane.features.filter.FilterInfo;
 import org.freeplane.features.icon.MindIcon;
 import org.freeplane.features.map.HistoryInformationModel;
 import org.freeplane.features.map.INodeView;
@@ -161,15 +160,35 @@ class SingleCopySource extends NodeModel {
     }
 
 	@Override
-    public FilterInfo getFilterInfo() {
+    public int getFilterInfo() {
 	    return delegate.getFilterInfo();
     }
 
+	@Override
+    public void setFilterInfo(int filterInfo) {
+		throw new RuntimeException(METHOD_NOT_SUPPORTED);
+    }
+
 	@Override
     public HistoryInformationModel getHistoryInformation() {
 	    return delegate.getHistoryInformation();
     }
 
+	@Override
+    public boolean hasHistoryInformation() {
+	    return delegate.hasHistoryInformation();
+    }
+
+	@Override
+    public long getCreatedAt() {
+	    return delegate.getCreatedAt();
+    }
+
+	@Override
+    public long getLastModifiedAt() {
+	    return delegate.getLastModifiedAt();
+    }
+
 	@Override
     public MindIcon getIcon(int position) {
 	    return delegate.getIcon(position);
@@ -318,6 +337,16 @@ class SingleCopySource extends NodeModel {
 		throw new RuntimeException(METHOD_NOT_SUPPORTED);
     }
 
+	@Override
+    public void setCreatedAt(long createdAt) {
+		throw new RuntimeException(METHOD_NOT_SUPPORTED);
+    }
+
+	@Override
+    public void setLastModifiedAt(long lastModifiedAt) {
+		throw new RuntimeException(METHOD_NOT_SUPPORTED);
+    }
+
 	@Override
     public void setID(String value) {
 		throw new RuntimeException(METHOD_NOT_SUPPORTED);
@@ -0,0 +1,52 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.filter;
+
+import java.awt.event.ActionEvent;
+
+import org.freeplane.core.ui.AFreeplaneAction;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.mode.Controller;
+
+/**
+ * Stops a running filter calculation and restores the previous filter.
+ * The action of the status bar button cancels the calculation of its map, the menu action the one of the current map.
+ *
+ * @author Dimitry Polivaev
+ */
+final class CancelFilterAction extends AFreeplaneAction {
+	private static final long serialVersionUID = 1L;
+	final private FilterController filterController;
+	final private MapModel map;
+
+	CancelFilterAction(final FilterController filterController) {
+		this(filterController, null);
+	}
+
+	CancelFilterAction(final FilterController filterController, final MapModel map) {
+		super("CancelFilterAction");
+		this.filterController = filterController;
+		this.map = map;
+	}
+
+	public void actionPerformed(final ActionEvent e) {
+		filterController.cancelFilter(map != null ? map : Controller.getCurrentController().getMap());
+	}
+}
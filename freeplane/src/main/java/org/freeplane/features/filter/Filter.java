@@ -19,6 +19,8 @@
  */
 package org.freeplane.features.filter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 
@@ -26,11 +28,13 @@ import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
 import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.filter.condition.ICondition;
 import org.freeplane.features.map.IMapSelection;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeTraversal;
 import org.freeplane.features.mode.Controller;
 
 /**
@@ -42,32 +46,40 @@ public class Filter {
 		return new Filter(null, resourceController.getBooleanProperty("filter.showAncestors"), resourceController.getBooleanProperty("filter.showDescendants"), false);
 	}
 	
+	/** Reads and writes the {@link FilterInfo} flags of the nodes. */
 	public interface FilterInfoAccessor{
-		public FilterInfo getFilterInfo(NodeModel node);
+		public int getFilterInfo(NodeModel node);
+		public void setFilterInfo(NodeModel node, int info);
 	}
 	
 	static public FilterInfoAccessor DEFAULT_FILTER_INFO_ACCESSOR = new FilterInfoAccessor() {
 		
 		@Override
-		public FilterInfo getFilterInfo(NodeModel node) {
+		public int getFilterInfo(NodeModel node) {
 			return node.getFilterInfo();
 		}
+
+		@Override
+		public void setFilterInfo(NodeModel node, int info) {
+			node.setFilterInfo(info);
+		}
 	};
 	
 	static public Filter createOneTimeFilter(final ICondition condition, final boolean areAncestorsShown,
             final boolean areDescendantsShown, final boolean applyToVisibleNodesOnly) {
 		
 		FilterInfoAccessor oneTimeFilterAccessor = new FilterInfoAccessor() {
-			HashMap<NodeModel, FilterInfo> filterInfos = new HashMap<>();
+			HashMap<NodeModel, Integer> filterInfos = new HashMap<>();
 			
 			@Override
-			public FilterInfo getFilterInfo(NodeModel node) {
-				FilterInfo filterInfo = filterInfos.get(node);
-				if(filterInfo == null) {
-					filterInfo = new FilterInfo();
-					filterInfos.put(node, filterInfo);
-				}
-				return filterInfo;
+			public int getFilterInfo(NodeModel node) {
+				final Integer filterInfo = filterInfos.get(node);
+				return filterInfo != null ? filterInfo : FilterInfo.FILTER_INITIAL_VALUE;
+			}
+
+			@Override
+			public void setFilterInfo(NodeModel node, int info) {
+				filterInfos.put(node, info);
 			}
 		};
 		return new Filter(condition, areAncestorsShown, areDescendantsShown, applyToVisibleNodesOnly, oneTimeFilterAccessor);
@@ -102,7 +114,7 @@ public class Filter {
 	}
 
 	void addFilterResult(final NodeModel node, final int flag) {
-		getFilterInfo(node).add(flag);
+		setFilterResult(node, FilterInfo.add(getFilterResult(node), flag));
 	}
 
 	protected boolean appliesToVisibleNodesOnly() {
@@ -132,6 +144,7 @@ public class Filter {
 		if (map == null) {
 			return;
 		}
+		FilterCalculationTask.stop(map);
 		try {
 			displayFilterStatus();
 			Controller.getCurrentController().getViewController().setWaitingCursor(true);
@@ -140,49 +153,343 @@ public class Filter {
 			if (force || !isConditionStronger(oldFilter)) {
 				calculateFilterResults(map);
 			}
-			final IMapSelection selection = Controller.getCurrentController().getSelection();
-			final NodeModel selected = selection.getSelected();
-			final NodeModel selectedVisible = selected.getVisibleAncestorOrSelf();
-			selection.keepNodePosition(selectedVisible, 0.5f, 0.5f);
-			refreshMap(source, map);
-			selectVisibleNode();
+			showFilterResults(source, map);
 		}
 		finally {
 			Controller.getCurrentController().getViewController().setWaitingCursor(false);
 		}
 	}
+
+	/**
+	 * Applies the filter like {@link #applyFilter(Object, MapModel, boolean)}, but a calculation which takes
+	 * longer than a moment goes on in the background showing the matches found so far,
+	 * see {@link FilterCalculationTask}. The given runnable is run after the calculation completes.
+	 */
+	void applyFilterProgressively(final Object source, final MapModel map, final boolean force,
+	                              final Runnable onCompletion) {
+		if (map == null) {
+			return;
+		}
+		FilterCalculationTask.stop(map);
+		final Filter oldFilter = map.getFilter();
+		if (!force && isConditionStronger(oldFilter) || condition == null || appliesToVisibleNodesOnly
+		        || checksNodesConcurrently()) {
+			applyFilter(source, map, force);
+			onCompletion.run();
+			return;
+		}
+		new FilterCalculationTask(source, map, oldFilter, this, onCompletion).start();
+	}
+
+	void showFilterResults(final Object source, final MapModel map) {
+		final IMapSelection selection = Controller.getCurrentController().getSelection();
+		final NodeModel selected = selection.getSelected();
+		final NodeModel selectedVisible = selected.getVisibleAncestorOrSelf();
+		selection.keepNodePosition(selectedVisible, 0.5f, 0.5f);
+		refreshMap(source, map);
+		selectVisibleNode();
+	}
 	public void calculateFilterResults(final MapModel map) {
-		final NodeModel root = map.getRootNode();
+		calculateFilterResults(map.getRootNode());
+	}
+
+	/**
+	 * Calculates the results using the given matches of the nodes in pre-order.
+	 * Unchecked nodes are checked if checksUncheckedNodes is set and are treated as not matched otherwise.
+	 */
+	void calculateFilterResults(final NodeModel root, final byte[] prechecked, final boolean checksUncheckedNodes) {
+		resetFilter(root);
+		final FilterCalculator calculator = new FilterCalculator(root);
+		calculator.prechecked = prechecked;
+		calculator.checksUncheckedNodes = checksUncheckedNodes;
+		NodeTraversal.walk(root, calculator);
+	}
+
+	void calculateFilterResults(final NodeModel root) {
 		resetFilter(root);
-		if (filterChildren(root, checkNode(root), false)) {
-			addFilterResult(root, FilterInfo.FILTER_SHOW_ANCESTOR);
+		final FilterCalculator calculator = new FilterCalculator(root);
+		if (checksNodesConcurrently()) {
+			final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+			for (final NodeModel node : NodeTraversal.preOrder(root)) {
+				nodes.add(node);
+			}
+			if (nodes.size() >= ParallelMatchChecker.MINIMAL_NODE_COUNT) {
+				calculator.prechecked = ParallelMatchChecker.check((ASelectableCondition) condition, nodes);
+			}
 		}
+		NodeTraversal.walk(root, calculator);
 	}
 
-	private boolean applyFilter(final NodeModel node,
-	                            final boolean isAncestorSelected, final boolean isAncestorEclipsed,
-	                            boolean isDescendantSelected) {
+	/**
+	 * The matches of conditions which only read node data are checked in parallel before the sequential walk.
+	 */
+	private boolean checksNodesConcurrently() {
+		return condition instanceof ASelectableCondition && !appliesToVisibleNodesOnly
+		        && ((ASelectableCondition) condition).canCheckConcurrently() && ParallelMatchChecker.isAvailable()
+		        && ResourceController.getResourceController().getBooleanProperty("filter.parallel");
+	}
+
+	private static final int ANCESTOR_SELECTED = 1;
+	private static final int ANCESTOR_ECLIPSED = 2;
+
+	/**
+	 * Calculates the filter results walking the tree, the state of the ancestors is kept as bits in an array.
+	 */
+	private class FilterCalculator implements NodeTraversal.INodeVisitor {
+		private static final int MATCHED = 4;
+		private static final int DESCENDANT_SELECTED = 8;
+		private static final int WAS_VISIBLE = 16;
+		private final NodeModel root;
+		private final Collection<NodeModel> nodesWithChangedVisibility;
+		private int[] states = new int[64];
+		private int top = -1;
+		/** Results of {@link ParallelMatchChecker} for the nodes in the order they are entered. */
+		private byte[] prechecked;
+		private boolean checksUncheckedNodes = true;
+		private int enteredNodeCount;
+
+		FilterCalculator(final NodeModel root) {
+			this(root, null);
+		}
+
+		/** Calculates the results of the whole map collecting the nodes whose visibility changes. */
+		FilterCalculator(final NodeModel root, final Collection<NodeModel> nodesWithChangedVisibility) {
+			this.root = root;
+			this.nodesWithChangedVisibility = nodesWithChangedVisibility;
+		}
+
+		/**
+		 * Calculates the results of a subtree whose parent passes the given state to its children,
+		 * collecting the nodes whose visibility changes.
+		 */
+		FilterCalculator(final int parentState, final Collection<NodeModel> nodesWithChangedVisibility) {
+			this.root = null;
+			this.nodesWithChangedVisibility = nodesWithChangedVisibility;
+			push(parentState);
+		}
+
+		public boolean enter(final NodeModel node) {
+			if (node == root) {
+				push(checkEnteredNode(root) ? ANCESTOR_SELECTED : 0);
+				return true;
+			}
+			final int parentState = states[top];
+			final boolean isAncestorSelected = (parentState & ANCESTOR_SELECTED) != 0;
+			final boolean isAncestorEclipsed = (parentState & ANCESTOR_ECLIPSED) != 0;
+			final boolean conditionSatisfied = checkEnteredNode(node);
+			int state = nodesWithChangedVisibility != null && isVisible(node) ? WAS_VISIBLE : 0;
+			resetFilter(node);
+			if (isAncestorSelected) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_DESCENDANT);
+			}
+			if (conditionSatisfied) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_MATCHED);
+			}
+			else {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_HIDDEN);
+			}
+			if (isAncestorEclipsed) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_ECLIPSED);
+			}
+			if (conditionSatisfied) {
+				state |= MATCHED;
+			}
+			if (conditionSatisfied || isAncestorSelected) {
+				state |= ANCESTOR_SELECTED;
+			}
+			if (!conditionSatisfied || isAncestorEclipsed) {
+				state |= ANCESTOR_ECLIPSED;
+			}
+			push(state);
+			return true;
+		}
+
+		public void leave(final NodeModel node) {
+			final int state = states[top--];
+			final boolean isDescendantSelected = (state & DESCENDANT_SELECTED) != 0;
+			if (isDescendantSelected) {
+				addFilterResult(node, FilterInfo.FILTER_SHOW_ANCESTOR);
+			}
+			if (top >= 0 && (isDescendantSelected || (state & MATCHED) != 0)) {
+				states[top] |= DESCENDANT_SELECTED;
+			}
+			if (nodesWithChangedVisibility != null && node != root
+			        && ((state & WAS_VISIBLE) != 0) != isVisible(node)) {
+				nodesWithChangedVisibility.add(node);
+			}
+		}
+
+		private boolean checkEnteredNode(final NodeModel node) {
+			final int index = enteredNodeCount++;
+			if (prechecked != null && prechecked[index] != ParallelMatchChecker.UNCHECKED) {
+				return prechecked[index] == ParallelMatchChecker.MATCHED;
+			}
+			return checksUncheckedNodes && checkNode(node);
+		}
+
+		private void push(final int state) {
+			if (++top == states.length) {
+				states = Arrays.copyOf(states, top * 2);
+			}
+			states[top] = state;
+		}
+	}
+
+	/**
+	 * Returns false if the condition depends on other nodes, see {@link ASelectableCondition#checksOtherNodes()}.
+	 * The results are then updated by {@link #recalculateFilterResults(NodeModel, Collection)}.
+	 */
+	boolean updatesChangedNodesOnly() {
+		return !(condition instanceof ASelectableCondition)
+		        || !((ASelectableCondition) condition).checksOtherNodes();
+	}
+
+	private boolean checksParent() {
+		return condition instanceof ASelectableCondition && ((ASelectableCondition) condition).checksParent();
+	}
+
+	/**
+	 * Calculates the results of the whole map again collecting the nodes whose visibility changes.
+	 */
+	void recalculateFilterResults(final NodeModel root, final Collection<NodeModel> nodesWithChangedVisibility) {
+		resetFilter(root);
+		NodeTraversal.walk(root, new FilterCalculator(root, nodesWithChangedVisibility));
+	}
+
+	/**
+	 * Rechecks a changed node and, for conditions checking the parent, its children.
+	 * The flags of its ancestors and descendants are updated only as far as they change.
+	 * A node shown by {@link org.freeplane.features.map.MapController#displayNode(NodeModel)} is not hidden again.
+	 */
+	void updateChangedNode(final NodeModel node, final Collection<NodeModel> nodesWithChangedVisibility) {
+		recheckNode(node, nodesWithChangedVisibility);
+		if (checksParent()) {
+			for (final NodeModel child : node.getChildren()) {
+				recheckNode(child, nodesWithChangedVisibility);
+			}
+		}
+	}
+
+	private void recheckNode(final NodeModel node, final Collection<NodeModel> nodesWithChangedVisibility) {
+		final NodeModel parent = node.getParentNode();
+		if (parent == null) {
+			updateDescendantFlags(node, nodesWithChangedVisibility);
+			return;
+		}
 		final boolean conditionSatisfied = checkNode(node);
-		resetFilter(node);
-		if (isAncestorSelected) {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_DESCENDANT);
+		if (!conditionSatisfied && getFilterResult(node) == FilterInfo.FILTER_INITIAL_VALUE) {
+			return;
+		}
+		updateMatch(node, conditionSatisfied, nodesWithChangedVisibility);
+	}
+
+	/**
+	 * Sets a known match of the node updating its ancestors and descendants as far as they change.
+	 */
+	void updateMatch(final NodeModel node, final boolean conditionSatisfied,
+	                 final Collection<NodeModel> nodesWithChangedVisibility) {
+		final NodeModel parent = node.getParentNode();
+		if (parent == null) {
+			updateDescendantFlags(node, nodesWithChangedVisibility);
+			return;
 		}
-		if (conditionSatisfied) {
-			isDescendantSelected = true;
-			addFilterResult(node, FilterInfo.FILTER_SHOW_MATCHED);
+		final int matchFlag = conditionSatisfied ? FilterInfo.FILTER_SHOW_MATCHED : FilterInfo.FILTER_SHOW_HIDDEN;
+		if (replaceFlags(node, FilterInfo.FILTER_INITIAL_VALUE | FilterInfo.FILTER_SHOW_MATCHED
+		        | FilterInfo.FILTER_SHOW_HIDDEN, matchFlag, nodesWithChangedVisibility)) {
+			updateDescendantFlags(node, nodesWithChangedVisibility);
+			updateAncestorFlags(parent, nodesWithChangedVisibility);
 		}
-		else {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_HIDDEN);
+	}
+
+	/**
+	 * Calculates the results of an inserted or moved subtree and rechecks its parent.
+	 */
+	void updateInsertedSubtree(final NodeModel node, final Collection<NodeModel> nodesWithChangedVisibility) {
+		final NodeModel parent = node.getParentNode();
+		NodeTraversal.walk(node, new FilterCalculator(passedState(parent), nodesWithChangedVisibility));
+		updateRemainingChildren(parent, nodesWithChangedVisibility);
+	}
+
+	/**
+	 * Rechecks the parent of a deleted or moved away subtree.
+	 */
+	void updateRemainingChildren(final NodeModel parent, final Collection<NodeModel> nodesWithChangedVisibility) {
+		updateChangedNode(parent, nodesWithChangedVisibility);
+		updateAncestorFlags(parent, nodesWithChangedVisibility);
+	}
+
+	/** Returns the state a node passes to its children, the root passes only its own match. */
+	private int passedState(final NodeModel node) {
+		if (node.getParentNode() == null) {
+			return checkNode(node) ? ANCESTOR_SELECTED : 0;
+		}
+		final int info = getFilterResult(node);
+		int state = 0;
+		if ((info & (FilterInfo.FILTER_SHOW_MATCHED | FilterInfo.FILTER_SHOW_DESCENDANT)) != 0) {
+			state |= ANCESTOR_SELECTED;
 		}
-		if (isAncestorEclipsed) {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_ECLIPSED);
+		if ((info & (FilterInfo.FILTER_SHOW_HIDDEN | FilterInfo.FILTER_SHOW_ECLIPSED)) != 0) {
+			state |= ANCESTOR_ECLIPSED;
 		}
-		if (filterChildren(node, conditionSatisfied || isAncestorSelected, !conditionSatisfied
-		        || isAncestorEclipsed)) {
-			addFilterResult(node, FilterInfo.FILTER_SHOW_ANCESTOR);
-			isDescendantSelected = true;
+		return state;
+	}
+
+	private void updateDescendantFlags(final NodeModel start, final Collection<NodeModel> nodesWithChangedVisibility) {
+		final int startState = passedState(start);
+		NodeTraversal.walk(start, new NodeTraversal.INodeVisitor() {
+			public boolean enter(final NodeModel node) {
+				if (node == start) {
+					return true;
+				}
+				final NodeModel parent = node.getParentNode();
+				final int parentState = parent == start ? startState : passedState(parent);
+				int flags = 0;
+				if ((parentState & ANCESTOR_SELECTED) != 0) {
+					flags |= FilterInfo.FILTER_SHOW_DESCENDANT;
+				}
+				if ((parentState & ANCESTOR_ECLIPSED) != 0) {
+					flags |= FilterInfo.FILTER_SHOW_ECLIPSED;
+				}
+				return replaceFlags(node, FilterInfo.FILTER_SHOW_DESCENDANT | FilterInfo.FILTER_SHOW_ECLIPSED, flags,
+				    nodesWithChangedVisibility);
+			}
+
+			public void leave(final NodeModel node) {
+			}
+		});
+	}
+
+	private void updateAncestorFlags(final NodeModel start, final Collection<NodeModel> nodesWithChangedVisibility) {
+		for (NodeModel node = start; node != null; node = node.getParentNode()) {
+			final int flags = hasMatchingDescendants(node) ? FilterInfo.FILTER_SHOW_ANCESTOR : 0;
+			if (!replaceFlags(node, FilterInfo.FILTER_SHOW_ANCESTOR, flags, nodesWithChangedVisibility)) {
+				return;
+			}
 		}
-		return isDescendantSelected;
+	}
+
+	private boolean hasMatchingDescendants(final NodeModel node) {
+		for (final NodeModel child : node.getChildren()) {
+			if (0 != (getFilterResult(child) & (FilterInfo.FILTER_SHOW_MATCHED | FilterInfo.FILTER_SHOW_ANCESTOR))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean replaceFlags(final NodeModel node, final int mask, final int flags,
+	                             final Collection<NodeModel> nodesWithChangedVisibility) {
+		final int oldInfo = getFilterResult(node);
+		final int newInfo = oldInfo & ~mask | flags;
+		if (newInfo == oldInfo) {
+			return false;
+		}
+		final boolean wasVisible = isVisible(node);
+		setFilterResult(node, newInfo);
+		if (wasVisible != isVisible(node)) {
+			nodesWithChangedVisibility.add(node);
+		}
+		return true;
 	}
 
 	/*
@@ -201,7 +508,7 @@ public class Filter {
 		return 0 != (options & FilterInfo.FILTER_SHOW_DESCENDANT);
 	}
 
-	private boolean checkNode(final NodeModel node) {
+	boolean checkNode(final NodeModel node) {
 		if (condition == null) {
 			return true;
 		}
@@ -211,16 +518,6 @@ public class Filter {
 		return condition.checkNode(node);
 	}
 
-	private boolean filterChildren(final NodeModel node,
-	                               final boolean isAncestorSelected, final boolean isAncestorEclipsed) {
-		boolean isDescendantSelected = false;
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
-			isDescendantSelected = applyFilter(child, isAncestorSelected, isAncestorEclipsed,
-			    isDescendantSelected);
-		}
-		return isDescendantSelected;
-	}
-
 	public ICondition getCondition() {
 		return condition;
 	}
@@ -240,7 +537,7 @@ public class Filter {
 		if (condition == null) {
 			return true;
 		}
-		final int filterResult = getFilterInfo(node).get();
+		final int filterResult = getFilterResult(node);
 		return ((options & FilterInfo.FILTER_SHOW_ANCESTOR) != 0 || (options & FilterInfo.FILTER_SHOW_ECLIPSED) >= (filterResult & FilterInfo.FILTER_SHOW_ECLIPSED))
 		        && ((options & filterResult & ~FilterInfo.FILTER_SHOW_ECLIPSED) != 0);
 	}
@@ -250,14 +547,18 @@ public class Filter {
 	}
 
 	private void resetFilter(final NodeModel node) {
-		getFilterInfo(node).reset();
+		setFilterResult(node, FilterInfo.FILTER_INITIAL_VALUE);
 	}
 
-	private FilterInfo getFilterInfo(final NodeModel node) {
+	int getFilterResult(final NodeModel node) {
 		return accessor.getFilterInfo(node);
 	}
 
-	private void selectVisibleNode() {
+	void setFilterResult(final NodeModel node, final int result) {
+		accessor.setFilterInfo(node, result);
+	}
+
+	void selectVisibleNode() {
 		final IMapSelection mapSelection = Controller.getCurrentController().getSelection();
 		final Collection<NodeModel> selectedNodes = mapSelection.getSelection();
 		final NodeModel[] array = new NodeModel[selectedNodes.size()];
@@ -283,6 +584,6 @@ public class Filter {
 	}
 
 	public boolean matches(NodeModel nodeModel) {
-		return 0 != (getFilterInfo(nodeModel).get() & FilterInfo.FILTER_SHOW_MATCHED);
+		return 0 != (getFilterResult(nodeModel) & FilterInfo.FILTER_SHOW_MATCHED);
 	}
 }
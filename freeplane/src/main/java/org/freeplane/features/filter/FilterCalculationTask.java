@@ -0,0 +1,270 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.filter;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.Timer;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeTraversal;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.ViewController;
+
+/**
+ * Calculates the results of a filter in slices on the event dispatch thread, so that the user interface
+ * stays responsive while a slow condition checks a large map.
+ *
+ * The first slice runs at once. If it does not check all nodes, the matches found so far are shown and
+ * the remaining nodes are checked by a timer, each found match is shown immediately.
+ * Changes of the map meanwhile are applied by the {@link FilterUpdater}, which also records them here.
+ * A cancelled calculation restores the results of the previous filter and rechecks the recorded changes.
+ *
+ * @author Dimitry Polivaev
+ */
+class FilterCalculationTask implements IExtension, ActionListener {
+	private static final int FIRST_SLICE_MILLIS = 200;
+	private static final int SLICE_MILLIS = 50;
+	private static final int SLICE_DELAY_MILLIS = 10;
+	private static final String PROGRESS_STATUS = "filter_progress";
+	private static final String CANCEL_STATUS = "filter_cancel";
+
+	static void stop(final MapModel map) {
+		final FilterCalculationTask task = map.getExtension(FilterCalculationTask.class);
+		if (task != null) {
+			task.stop();
+		}
+	}
+
+	private static FilterCalculationTask running(final MapModel map) {
+		return map == null ? null : map.getExtension(FilterCalculationTask.class);
+	}
+
+	static void nodeChanged(final NodeModel node) {
+		final FilterCalculationTask task = running(node.getMap());
+		if (task != null) {
+			task.changedNodes.add(node);
+		}
+	}
+
+	static void subtreeInserted(final NodeModel node) {
+		final FilterCalculationTask task = running(node.getMap());
+		if (task != null) {
+			task.insertedNodes.add(node);
+		}
+	}
+
+	static void subtreeRemoved(final NodeModel parent) {
+		final FilterCalculationTask task = running(parent.getMap());
+		if (task != null) {
+			task.parentsOfRemovedNodes.add(parent);
+		}
+	}
+
+	/**
+	 * @return false if no calculation was running on the map
+	 */
+	static boolean cancel(final MapModel map) {
+		final FilterCalculationTask task = map.getExtension(FilterCalculationTask.class);
+		if (task == null) {
+			return false;
+		}
+		task.stop();
+		task.restorePreviousFilter();
+		return true;
+	}
+
+	final private Object source;
+	final private MapModel map;
+	final private Filter previousFilter;
+	final private Filter filter;
+	final private Runnable onCompletion;
+	final private List<NodeModel> nodes = new ArrayList<NodeModel>();
+	final private List<NodeModel> changedNodes = new ArrayList<NodeModel>();
+	final private List<NodeModel> insertedNodes = new ArrayList<NodeModel>();
+	final private List<NodeModel> parentsOfRemovedNodes = new ArrayList<NodeModel>();
+	private int[] previousResults;
+	private byte[] results;
+	private int checkedNodeCount;
+	private long modificationStamp;
+	private Timer timer;
+
+	FilterCalculationTask(final Object source, final MapModel map, final Filter previousFilter, final Filter filter,
+	                      final Runnable onCompletion) {
+		this.source = source;
+		this.map = map;
+		this.previousFilter = previousFilter;
+		this.filter = filter;
+		this.onCompletion = onCompletion;
+	}
+
+	void start() {
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		try {
+			filter.displayFilterStatus();
+			viewController.setWaitingCursor(true);
+			final NodeModel root = map.getRootNode();
+			for (final NodeModel node : NodeTraversal.preOrder(root)) {
+				nodes.add(node);
+			}
+			previousResults = new int[nodes.size()];
+			for (int i = 0; i < previousResults.length; i++) {
+				previousResults[i] = previousFilter.getFilterResult(nodes.get(i));
+			}
+			results = new byte[nodes.size()];
+			modificationStamp = map.getModificationStamp();
+			map.setFilter(filter);
+			checkNodes(FIRST_SLICE_MILLIS);
+			final boolean isComplete = checkedNodeCount == results.length;
+			filter.calculateFilterResults(root, results, isComplete);
+			filter.showFilterResults(source, map);
+			if (isComplete) {
+				onCompletion.run();
+				return;
+			}
+			map.addExtension(this);
+			final JButton cancelButton = new JButton(new CancelFilterAction(
+			    FilterController.getCurrentFilterController(), map));
+			viewController.addStatusComponent(CANCEL_STATUS, cancelButton);
+			showProgress();
+			timer = new Timer(SLICE_DELAY_MILLIS, this);
+			timer.start();
+		}
+		finally {
+			viewController.setWaitingCursor(false);
+		}
+	}
+
+	private void checkNodes(final int millis) {
+		final long end = System.currentTimeMillis() + millis;
+		final boolean mayContainRemovedNodes = map.getModificationStamp() != modificationStamp;
+		do {
+			final NodeModel node = nodes.get(checkedNodeCount);
+			final boolean matches = (!mayContainRemovedNodes || belongsToMap(node)) && filter.checkNode(node);
+			results[checkedNodeCount++] = matches ? ParallelMatchChecker.MATCHED : ParallelMatchChecker.NOT_MATCHED;
+		} while (checkedNodeCount < results.length && System.currentTimeMillis() < end);
+	}
+
+	private boolean belongsToMap(final NodeModel node) {
+		NodeModel root = node;
+		while (root.getParentNode() != null) {
+			root = root.getParentNode();
+		}
+		return root == map.getRootNode();
+	}
+
+	public void actionPerformed(final ActionEvent e) {
+		final Controller controller = Controller.getCurrentController();
+		if (map.getFilter() != filter || !controller.getMapViewManager().getMaps().containsValue(map)) {
+			stop();
+			return;
+		}
+		final int firstNode = checkedNodeCount;
+		checkNodes(SLICE_MILLIS);
+		final Collection<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+		for (int i = firstNode; i < checkedNodeCount; i++) {
+			if (results[i] == ParallelMatchChecker.MATCHED) {
+				filter.updateMatch(nodes.get(i), true, nodesWithChangedVisibility);
+			}
+		}
+		if (!nodesWithChangedVisibility.isEmpty()) {
+			final MapController mapController = controller.getModeController().getMapController();
+			for (final NodeModel node : nodesWithChangedVisibility) {
+				mapController.nodeRefresh(node, Filter.class, null, null);
+			}
+			if (map == controller.getMap() && controller.getSelection() != null) {
+				filter.selectVisibleNode();
+			}
+		}
+		if (checkedNodeCount == results.length) {
+			stop();
+			onCompletion.run();
+		}
+		else {
+			showProgress();
+		}
+	}
+
+	private void showProgress() {
+		final String progress = TextUtils.format(PROGRESS_STATUS, checkedNodeCount, results.length);
+		Controller.getCurrentController().getViewController().addStatusInfo(PROGRESS_STATUS, progress);
+	}
+
+	private void stop() {
+		if (timer != null) {
+			timer.stop();
+		}
+		map.removeExtension(FilterCalculationTask.class);
+		final ViewController viewController = Controller.getCurrentController().getViewController();
+		viewController.removeStatus(PROGRESS_STATUS);
+		viewController.removeStatus(CANCEL_STATUS);
+	}
+
+	/**
+	 * Restores the results of the previous filter and rechecks the nodes changed meanwhile,
+	 * whose restored results may be stale.
+	 */
+	private void restorePreviousFilter() {
+		for (int i = 0; i < previousResults.length; i++) {
+			previousFilter.setFilterResult(nodes.get(i), previousResults[i]);
+		}
+		if (!changedNodes.isEmpty() || !insertedNodes.isEmpty() || !parentsOfRemovedNodes.isEmpty()) {
+			updatePreviousFilter();
+		}
+		map.setFilter(previousFilter);
+		previousFilter.displayFilterStatus();
+		previousFilter.showFilterResults(source, map);
+	}
+
+	private void updatePreviousFilter() {
+		if (previousFilter.getCondition() == null) {
+			return;
+		}
+		if (previousFilter.appliesToVisibleNodesOnly() || !previousFilter.updatesChangedNodesOnly()) {
+			previousFilter.calculateFilterResults(map);
+			return;
+		}
+		final Collection<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+		for (final NodeModel node : insertedNodes) {
+			if (belongsToMap(node)) {
+				previousFilter.updateInsertedSubtree(node, nodesWithChangedVisibility);
+			}
+		}
+		for (final NodeModel parent : parentsOfRemovedNodes) {
+			if (belongsToMap(parent)) {
+				previousFilter.updateRemainingChildren(parent, nodesWithChangedVisibility);
+			}
+		}
+		for (final NodeModel node : changedNodes) {
+			if (belongsToMap(node)) {
+				previousFilter.updateChangedNode(node, nodesWithChangedVisibility);
+			}
+		}
+	}
+}
@@ -259,6 +259,7 @@ public class FilterController implements IMapSelectionListener, IExtension {
 		controller.addAction(new UndoFilterAction(this));
 		controller.addAction(new RedoFilterAction(this));
 		controller.addAction(new ReapplyFilterAction(this));
+		controller.addAction(new CancelFilterAction(this));
 		controller.addAction(new ShowAncestorsAction(this));
 		controller.addAction(new ShowDescendantsAction(this));
 		controller.addAction(new ApplyToVisibleAction(this));
@@ -326,7 +327,21 @@ public class FilterController implements IMapSelectionListener, IExtension {
 		if(condition != selectedCondition && condition instanceof ASelectableCondition)
 			getFilterConditions().setSelectedItem(condition);
 		else
-			applyFilter(filter, Controller.getCurrentController().getMap(), force);
+			applyFilterProgressively(filter, Controller.getCurrentController().getMap(), force);
+	}
+
+	private void applyFilterProgressively(final Filter filter, final MapModel map, final boolean force) {
+		filter.applyFilterProgressively(this, map, force, new Runnable() {
+			public void run() {
+				history.add(filter);
+			}
+		});
+	}
+
+	void cancelFilter(final MapModel map) {
+		if (map != null && FilterCalculationTask.cancel(map) && map == Controller.getCurrentController().getMap()) {
+			updateSettingsFromHistory();
+		}
 	}
 
 	public void applyFilter(final Filter filter, MapModel map, final boolean force) {
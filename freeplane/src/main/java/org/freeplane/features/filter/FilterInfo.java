@@ -19,7 +19,11 @@
  */
 package org.freeplane.features.filter;
 
+import org.freeplane.features.map.NodeModel;
+
 /**
+ * Filter flags of a node, kept in an int field of the node.
+ *
  * @author Dimitry Polivaev
  */
 public class FilterInfo {
@@ -29,55 +33,19 @@ public class FilterInfo {
 	public static final int FILTER_SHOW_ECLIPSED = 16;
 	public static final int FILTER_SHOW_HIDDEN = 32;
 	public static final int FILTER_SHOW_MATCHED = 2;
-	private int info = FilterInfo.FILTER_INITIAL_VALUE;
 
-	/**
-	 *
-	 */
-	public FilterInfo() {
-		super();
+	private FilterInfo() {
 	}
 
-	void add(final int flag) {
+	/** Returns the flags with the given flag added, a match or a miss clears the initial value. */
+	static int add(int info, final int flag) {
 		if ((flag & (FilterInfo.FILTER_SHOW_MATCHED | FilterInfo.FILTER_SHOW_HIDDEN)) != 0) {
 			info &= ~FilterInfo.FILTER_INITIAL_VALUE;
 		}
-		info |= flag;
-	}
-
-	int get() {
-		return info;
-	}
-
-	/**
-	 */
-	public boolean isAncestor() {
-		return (info & FilterInfo.FILTER_SHOW_ANCESTOR) != 0;
-	}
-
-	/**
-	 */
-	public boolean isMatched() {
-		return (info & FilterInfo.FILTER_SHOW_MATCHED) != 0;
-	}
-
-	public void reset() {
-		info = FilterInfo.FILTER_INITIAL_VALUE;
-	}
-
-	public void setAncestor() {
-		add(FilterInfo.FILTER_SHOW_ANCESTOR);
-	}
-
-	public void setDescendant() {
-		add(FilterInfo.FILTER_SHOW_DESCENDANT);
-	}
-
-	public void setMatched() {
-		add(FilterInfo.FILTER_SHOW_MATCHED);
+		return info | flag;
 	}
 
-	public boolean isUnset() {
-		return info == FilterInfo.FILTER_INITIAL_VALUE;
+	public static void reset(final NodeModel node) {
+		node.setFilterInfo(FilterInfo.FILTER_INITIAL_VALUE);
 	}
 }
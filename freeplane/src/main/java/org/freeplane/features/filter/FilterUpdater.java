@@ -0,0 +1,210 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.freeplane.features.map.IMapChangeListener;
+import org.freeplane.features.map.INodeChangeBatchListener;
+import org.freeplane.features.map.MapChangeEvent;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeDeletionEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeModel.NodeChangeType;
+import org.freeplane.features.map.NodeMoveEvent;
+import org.freeplane.features.mode.Controller;
+
+/**
+ * Keeps the results of the active filter up to date after node changes, insertions, deletions and moves,
+ * so that only the affected nodes are rechecked instead of the whole map.
+ * Conditions depending on other nodes or on the selection are checked for the whole map again.
+ *
+ * @author Dimitry Polivaev
+ */
+public class FilterUpdater implements INodeChangeBatchListener, IMapChangeListener {
+	final private MapController mapController;
+
+	public FilterUpdater(final MapController mapController) {
+		this.mapController = mapController;
+	}
+
+	private Filter getUpdatedFilter(final MapModel map) {
+		if (map == null) {
+			return null;
+		}
+		final Filter filter = map.getFilter();
+		if (filter == null || filter.getCondition() == null || filter.appliesToVisibleNodesOnly()) {
+			return null;
+		}
+		return filter;
+	}
+
+	/** Nodes inserted or moved within a change batch can be deleted again before the batch ends. */
+	private boolean isAttached(final NodeModel node) {
+		final MapModel map = node.getMap();
+		if (map == null) {
+			return false;
+		}
+		NodeModel ancestor = node;
+		while (ancestor.getParentNode() != null) {
+			ancestor = ancestor.getParentNode();
+		}
+		return ancestor == map.getRootNode();
+	}
+
+	private static boolean affectsFilter(final NodeChangeEvent event) {
+		final Object property = event.getProperty();
+		return property != Filter.class && property != NodeChangeType.FOLDING;
+	}
+
+	public void nodeChanged(final NodeChangeEvent event) {
+		if (!affectsFilter(event)) {
+			return;
+		}
+		final NodeModel node = event.getNode();
+		FilterCalculationTask.nodeChanged(node);
+		final Filter filter = getUpdatedFilter(node.getMap());
+		if (filter != null && isAttached(node)) {
+			final Collection<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+			if (filter.updatesChangedNodesOnly()) {
+				filter.updateChangedNode(node, nodesWithChangedVisibility);
+			}
+			else {
+				filter.recalculateFilterResults(node.getMap().getRootNode(), nodesWithChangedVisibility);
+			}
+			refresh(filter, node.getMap(), nodesWithChangedVisibility);
+		}
+	}
+
+	/**
+	 * Updates the changed nodes and refreshes the nodes with changed visibility once per map.
+	 * The results of conditions depending on other nodes are calculated again once per map.
+	 */
+	public void nodesChanged(final List<NodeChangeEvent> events) {
+		final LinkedHashMap<Filter, Collection<NodeModel>> changedVisibility = new LinkedHashMap<Filter, Collection<NodeModel>>();
+		final LinkedHashMap<Filter, MapModel> maps = new LinkedHashMap<Filter, MapModel>();
+		for (final NodeChangeEvent event : events) {
+			final NodeModel node = event.getNode();
+			if (!affectsFilter(event)) {
+				continue;
+			}
+			FilterCalculationTask.nodeChanged(node);
+			final Filter filter = getUpdatedFilter(node.getMap());
+			if (filter != null && isAttached(node)) {
+				Collection<NodeModel> nodesWithChangedVisibility = changedVisibility.get(filter);
+				if (nodesWithChangedVisibility == null) {
+					nodesWithChangedVisibility = new ArrayList<NodeModel>();
+					changedVisibility.put(filter, nodesWithChangedVisibility);
+					maps.put(filter, node.getMap());
+					if (!filter.updatesChangedNodesOnly()) {
+						filter.recalculateFilterResults(node.getMap().getRootNode(), nodesWithChangedVisibility);
+					}
+				}
+				if (filter.updatesChangedNodesOnly()) {
+					filter.updateChangedNode(node, nodesWithChangedVisibility);
+				}
+			}
+		}
+		for (final Entry<Filter, Collection<NodeModel>> entry : changedVisibility.entrySet()) {
+			refresh(entry.getKey(), maps.get(entry.getKey()), entry.getValue());
+		}
+	}
+
+	public void mapChanged(final MapChangeEvent event) {
+	}
+
+	public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+		final NodeModel parent = nodeDeletionEvent.parent;
+		FilterCalculationTask.subtreeRemoved(parent);
+		final Filter filter = getUpdatedFilter(parent.getMap());
+		if (filter != null && isAttached(parent)) {
+			final Collection<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+			if (filter.updatesChangedNodesOnly()) {
+				filter.updateRemainingChildren(parent, nodesWithChangedVisibility);
+			}
+			else {
+				filter.recalculateFilterResults(parent.getMap().getRootNode(), nodesWithChangedVisibility);
+			}
+			refresh(filter, parent.getMap(), nodesWithChangedVisibility);
+		}
+	}
+
+	public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+		FilterCalculationTask.subtreeInserted(child);
+		final Filter filter = getUpdatedFilter(parent.getMap());
+		if (filter != null && isAttached(child)) {
+			final Collection<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+			if (filter.updatesChangedNodesOnly()) {
+				filter.updateInsertedSubtree(child, nodesWithChangedVisibility);
+			}
+			else {
+				filter.recalculateFilterResults(parent.getMap().getRootNode(), nodesWithChangedVisibility);
+			}
+			refresh(filter, parent.getMap(), nodesWithChangedVisibility);
+		}
+	}
+
+	public void onNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+		final NodeModel child = nodeMoveEvent.child;
+		FilterCalculationTask.subtreeInserted(child);
+		FilterCalculationTask.subtreeRemoved(nodeMoveEvent.oldParent);
+		final Filter filter = getUpdatedFilter(child.getMap());
+		if (filter != null) {
+			final Collection<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+			if (!filter.updatesChangedNodesOnly()) {
+				filter.recalculateFilterResults(child.getMap().getRootNode(), nodesWithChangedVisibility);
+				refresh(filter, child.getMap(), nodesWithChangedVisibility);
+				return;
+			}
+			if (isAttached(child)) {
+				filter.updateInsertedSubtree(child, nodesWithChangedVisibility);
+			}
+			if (nodeMoveEvent.oldParent != nodeMoveEvent.newParent && isAttached(nodeMoveEvent.oldParent)) {
+				filter.updateRemainingChildren(nodeMoveEvent.oldParent, nodesWithChangedVisibility);
+			}
+			refresh(filter, child.getMap(), nodesWithChangedVisibility);
+		}
+	}
+
+	public void onPreNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+	}
+
+	public void onPreNodeDelete(final NodeDeletionEvent nodeDeletionEvent) {
+	}
+
+	private void refresh(final Filter filter, final MapModel map, final Collection<NodeModel> nodesWithChangedVisibility) {
+		if (nodesWithChangedVisibility.isEmpty()) {
+			return;
+		}
+		for (final NodeModel node : nodesWithChangedVisibility) {
+			mapController.nodeRefresh(node, Filter.class, null, null);
+		}
+		final Controller controller = Controller.getCurrentController();
+		if (map == controller.getMap() && controller.getSelection() != null) {
+			filter.selectVisibleNode();
+		}
+	}
+}
@@ -29,7 +29,7 @@ public class NextPresentationItemAction extends AFreeplaneAction {
 		if(next != null){
 			final MapController mapController = Controller.getCurrentModeController().getMapController();
 			if (!next.hasVisibleContent()) {
-            	next.getFilterInfo().reset();
+            	FilterInfo.reset(next);
             	mapController.nodeRefresh(next);
             }
             final NodeModel[] path = next.getPathToRoot();
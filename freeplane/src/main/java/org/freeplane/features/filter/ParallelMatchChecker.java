@@ -0,0 +1,106 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.filter;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.freeplane.features.filter.condition.ASelectableCondition;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.text.NodeTextIndex;
+
+/**
+ * Checks the nodes of a map in pre-order on the threads of a fork join pool.
+ * Every task splits its range of nodes until it covers a chunk of consecutive branches.
+ * Nodes the condition can not check concurrently are left {@link #UNCHECKED}.
+ * The map must not be changed meanwhile, so the calling thread waits for the result.
+ * Text conditions read a snapshot of the {@link NodeTextIndex} taken before the check, so that they do not lock it.
+ *
+ * @author Dimitry Polivaev
+ */
+@SuppressWarnings("serial")
+class ParallelMatchChecker extends RecursiveAction {
+	static final byte UNCHECKED = 0;
+	static final byte MATCHED = 1;
+	static final byte NOT_MATCHED = 2;
+	private static final int CHUNK_SIZE = 256;
+	static final int MINIMAL_NODE_COUNT = 4 * CHUNK_SIZE;
+	private static ForkJoinPool pool;
+
+	static boolean isAvailable() {
+		return Runtime.getRuntime().availableProcessors() > 1;
+	}
+
+	static byte[] check(final ASelectableCondition condition, final List<NodeModel> nodes) {
+		final byte[] results = new byte[nodes.size()];
+		if (results.length == 0) {
+			return results;
+		}
+		final MapModel map = nodes.get(0).getMap();
+		NodeTextIndex.beginConcurrentQueries(map);
+		try {
+			sharedPool().invoke(new ParallelMatchChecker(condition, nodes, results, 0, results.length));
+		}
+		finally {
+			NodeTextIndex.endConcurrentQueries(map);
+		}
+		return results;
+	}
+
+	private static synchronized ForkJoinPool sharedPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
+	final private ASelectableCondition condition;
+	final private List<NodeModel> nodes;
+	final private byte[] results;
+	final private int from;
+	final private int to;
+
+	private ParallelMatchChecker(final ASelectableCondition condition, final List<NodeModel> nodes,
+	                             final byte[] results, final int from, final int to) {
+		this.condition = condition;
+		this.nodes = nodes;
+		this.results = results;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from > CHUNK_SIZE) {
+			final int middle = (from + to) >>> 1;
+			invokeAll(new ParallelMatchChecker(condition, nodes, results, from, middle), new ParallelMatchChecker(
+			    condition, nodes, results, middle, to));
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			final NodeModel node = nodes.get(i);
+			if (condition.canCheckConcurrently(node)) {
+				results[i] = condition.checkNode(node) ? MATCHED : NOT_MATCHED;
+			}
+		}
+	}
+}
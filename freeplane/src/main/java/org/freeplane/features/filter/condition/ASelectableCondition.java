@@ -8,6 +8,7 @@ import java.security.PrivilegedExceptionAction;
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 
+import org.freeplane.features.map.NodeModel;
 import org.freeplane.n3.nanoxml.XMLElement;
 
 
@@ -67,6 +68,38 @@ public abstract class ASelectableCondition  implements ICondition{
         }
     }
 	protected abstract String createDescription();
+
+	/**
+	 * Returns true if {@link #checkNode(NodeModel)} only reads node data,
+	 * so that the nodes of an unchanged map can be checked on several threads at once.
+	 */
+	public boolean canCheckConcurrently() {
+		return false;
+	}
+
+	/**
+	 * Returns false if the node has to be checked on the event dispatch thread anyway,
+	 * e.g. because its text is calculated by a formula.
+	 */
+	public boolean canCheckConcurrently(final NodeModel node) {
+		return true;
+	}
+
+	/**
+	 * Returns true if the result for a node depends on its parent,
+	 * so that the children of a changed node are checked again.
+	 */
+	public boolean checksParent() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the result for a node depends on other nodes than the node and its parent or on the selection,
+	 * so that the results of the whole map are calculated again after a change.
+	 */
+	public boolean checksOtherNodes() {
+		return false;
+	}
 	
 	final public JComponent getListCellRendererComponent() {
 		if (renderer == null) {
@@ -64,6 +64,26 @@ public class ConditionNotSatisfiedDecorator extends ASelectableCondition impleme
 		return !originalCondition.checkNode(node);
 	}
 
+	@Override
+	public boolean canCheckConcurrently() {
+		return originalCondition.canCheckConcurrently();
+	}
+
+	@Override
+	public boolean canCheckConcurrently(final NodeModel node) {
+		return originalCondition.canCheckConcurrently(node);
+	}
+
+	@Override
+	public boolean checksParent() {
+		return originalCondition.checksParent();
+	}
+
+	@Override
+	public boolean checksOtherNodes() {
+		return originalCondition.checksOtherNodes();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
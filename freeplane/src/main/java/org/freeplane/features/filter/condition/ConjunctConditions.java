@@ -70,6 +70,46 @@ public class ConjunctConditions extends ASelectableCondition implements ICombine
 		return true;
 	}
 
+	@Override
+	public boolean canCheckConcurrently() {
+		for (final ASelectableCondition condition : conditions) {
+			if (!condition.canCheckConcurrently()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean canCheckConcurrently(final NodeModel node) {
+		for (final ASelectableCondition condition : conditions) {
+			if (!condition.canCheckConcurrently(node)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean checksParent() {
+		for (final ASelectableCondition condition : conditions) {
+			if (condition.checksParent()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean checksOtherNodes() {
+		for (final ASelectableCondition condition : conditions) {
+			if (condition.checksOtherNodes()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see
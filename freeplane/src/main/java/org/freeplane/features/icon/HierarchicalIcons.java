@@ -20,17 +20,21 @@
  */
 package org.freeplane.features.icon;
 
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import org.freeplane.core.extension.IExtension;
 import org.freeplane.core.io.IReadCompletionListener;
+import org.freeplane.features.filter.condition.ICondition;
 import org.freeplane.features.map.IMapChangeListener;
-import org.freeplane.features.map.INodeChangeListener;
+import org.freeplane.features.map.INodeChangeBatchListener;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.NodeChangeEvent;
 import org.freeplane.features.map.NodeDeletionEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.NodeMoveEvent;
+import org.freeplane.features.map.NodeTraversal;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.NodeHookDescriptor;
@@ -43,7 +47,7 @@ import org.freeplane.n3.nanoxml.XMLElement;
  * @author Foltin
  */
 @NodeHookDescriptor(hookName = "accessories/plugins/HierarchicalIcons.properties")
-public class HierarchicalIcons extends PersistentNodeHook implements INodeChangeListener, IMapChangeListener,
+public class HierarchicalIcons extends PersistentNodeHook implements INodeChangeBatchListener, IMapChangeListener,
         IReadCompletionListener, IExtension {
 	public static final String ICONS = "hierarchical_icons";
 
@@ -85,30 +89,30 @@ public class HierarchicalIcons extends PersistentNodeHook implements INodeChange
 		return this;
 	}
 
+	private static final ICondition LEAVES = new ICondition() {
+		public boolean checkNode(final NodeModel node) {
+			return node.getChildCount() == 0;
+		}
+	};
+
 	/**
 	 */
 	private void gatherLeavesAndSetParentsStyle(final NodeModel node) {
-		if (node.getChildCount() == 0) {
-			for (NodeModel parent = node.getParentNode(); parent != null; parent = parent.getParentNode()) {
+		for (final NodeModel leaf : NodeTraversal.preOrder(node).selecting(LEAVES)) {
+			for (NodeModel parent = leaf.getParentNode(); parent != null; parent = parent.getParentNode()) {
 				AccumulatedIcons.setStyleCheckForChange(parent, mode);
 			}
-			return;
-		}
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
-			gatherLeavesAndSetParentsStyle(child);
 		}
 	}
 
 	/**
 	 */
 	private void gatherLeavesAndSetStyle(final NodeModel node) {
-		node.removeExtension(AccumulatedIcons.class);
-		if (node.getChildCount() == 0) {
-			AccumulatedIcons.setStyleCheckForChange(node, mode);
-			return;
-		}
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
-			gatherLeavesAndSetStyle(child);
+		for (final NodeModel descendant : NodeTraversal.preOrder(node)) {
+			descendant.removeExtension(AccumulatedIcons.class);
+			if (descendant.getChildCount() == 0) {
+				AccumulatedIcons.setStyleCheckForChange(descendant, mode);
+			}
 		}
 	}
 
@@ -137,6 +141,18 @@ public class HierarchicalIcons extends PersistentNodeHook implements INodeChange
 		setStyleRecursive(node);
 	}
 
+	public void nodesChanged(final List<NodeChangeEvent> events) {
+		final LinkedHashSet<NodeModel> changedNodes = new LinkedHashSet<NodeModel>();
+		for (final NodeChangeEvent event : events) {
+			changedNodes.add(event.getNode());
+		}
+		for (final NodeModel node : changedNodes) {
+			if (isActive(node)) {
+				setStyleRecursive(node);
+			}
+		}
+	}
+
 	public void onNodeDeleted(NodeDeletionEvent nodeDeletionEvent) {
 		if (!isActive(nodeDeletionEvent.parent)) {
 			return;
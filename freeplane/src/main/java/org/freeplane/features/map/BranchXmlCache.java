@@ -0,0 +1,138 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freeplane.core.extension.IExtension;
+
+/**
+ * Keeps the xml written for each child of the root node by the last save,
+ * so that only branches changed since then need to be rendered again.
+ *
+ * A branch is dropped from the cache as soon as any node inside of it is changed, inserted, moved or deleted.
+ *
+ * @author Dimitry Polivaev
+ */
+class BranchXmlCache implements IExtension {
+	static class Updater implements INodeChangeBatchListener, IMapChangeListener {
+		public void nodeChanged(final NodeChangeEvent event) {
+			invalidate(event.getNode());
+		}
+
+		public void nodesChanged(final List<NodeChangeEvent> events) {
+			for (final NodeChangeEvent event : events) {
+				invalidate(event.getNode());
+			}
+		}
+
+		public void mapChanged(final MapChangeEvent event) {
+		}
+
+		public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+			invalidate(nodeDeletionEvent.parent, nodeDeletionEvent.node);
+		}
+
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			invalidate(parent, child);
+		}
+
+		public void onNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+			invalidate(nodeMoveEvent.oldParent, nodeMoveEvent.child);
+			invalidate(nodeMoveEvent.newParent, nodeMoveEvent.child);
+		}
+
+		public void onPreNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+		}
+
+		public void onPreNodeDelete(final NodeDeletionEvent nodeDeletionEvent) {
+		}
+	}
+
+	static BranchXmlCache getCache(final MapModel map) {
+		BranchXmlCache cache = map.getExtension(BranchXmlCache.class);
+		if (cache == null) {
+			cache = new BranchXmlCache();
+			map.addExtension(cache);
+		}
+		return cache;
+	}
+
+	static void invalidate(final NodeModel node) {
+		final MapModel map = node.getMap();
+		if (map == null) {
+			return;
+		}
+		final BranchXmlCache cache = map.getExtension(BranchXmlCache.class);
+		if (cache != null) {
+			cache.remove(node);
+		}
+	}
+
+	private static void invalidate(final NodeModel parent, final NodeModel child) {
+		invalidate(child);
+		invalidate(parent);
+	}
+
+	final private Map<NodeModel, String> branches = new HashMap<NodeModel, String>();
+	private boolean savesModificationTimes;
+	private boolean savesFolding;
+
+	/**
+	 * Drops all branches if the cached xml was written with another setting of the modification times
+	 * or the folding options.
+	 */
+	void checkWriterOptions(final boolean savesModificationTimes, final boolean savesFolding) {
+		if (this.savesModificationTimes != savesModificationTimes || this.savesFolding != savesFolding) {
+			branches.clear();
+			this.savesModificationTimes = savesModificationTimes;
+			this.savesFolding = savesFolding;
+		}
+	}
+
+	String get(final NodeModel branch) {
+		return branches.get(branch);
+	}
+
+	void put(final NodeModel branch, final String xml) {
+		branches.put(branch, xml);
+	}
+
+	/**
+	 * Drops the branch containing the given node.
+	 */
+	void remove(final NodeModel node) {
+		if (branches.isEmpty()) {
+			return;
+		}
+		NodeModel branch = node;
+		for (NodeModel parent = node.getParentNode(); parent != null && parent.getParentNode() != null; parent = parent
+		    .getParentNode()) {
+			branch = parent;
+		}
+		branches.remove(branch);
+	}
+
+	int size() {
+		return branches.size();
+	}
+}
@@ -47,6 +47,11 @@ public class CloneOfSelectedViewCondition extends ASelectableCondition implement
 		return false;
 	}
 
+	@Override
+	public boolean checksOtherNodes() {
+		return true;
+	}
+
 	@Override
     protected String createDescription() {
 		if (CloneOfSelectedViewCondition.description == null) {
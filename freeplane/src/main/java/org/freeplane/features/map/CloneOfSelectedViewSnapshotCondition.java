@@ -49,6 +49,11 @@ public class CloneOfSelectedViewSnapshotCondition extends ASelectableCondition {
 		return false;
 	}
 
+	@Override
+	public boolean checksOtherNodes() {
+		return true;
+	}
+
 	@Override
     protected String createDescription() {
 		if (CloneOfSelectedViewSnapshotCondition.description == null) {
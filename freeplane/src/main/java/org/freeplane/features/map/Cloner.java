@@ -44,11 +44,10 @@ class Cloner {
 		if(node.containsExtension(EncryptionModel.class))
 			throw new CloneEncryptedNodeException();
 		final NodeModel clone = node.cloneNode(CloneType.TREE);
-		final List<NodeModel> cloneChildren = clone.getChildrenInternal();
 		for (NodeModel childNode : node.getChildrenInternal()){
 			final NodeModel childClone = cloneStructure(childNode);
 			childClone.setParent(clone);
-			cloneChildren.add(childClone);
+			clone.getModifiableChildren().add(childClone);
 		}
 		return clone;
     }
@@ -145,6 +145,11 @@ public class EncryptionModel implements IExtension {
 		encryptedContent = encryptXml(childXml);
 	}
 
+	/** @return true if the encrypted content is generated from the children on writing */
+	boolean isDecrypted() {
+		return isDecrypted;
+	}
+
 	public String calculateEncryptedContent(final MapController mapController) {
 		if (isDecrypted) {
 			try {
@@ -182,6 +187,12 @@ public class EncryptionModel implements IExtension {
 	 */
 	public void setAccessible(final boolean isAccessible) {
 		this.isAccessible = isAccessible;
+		SubtreeAggregates.invalidate(node);
+		for (final NodeModel clone : node.allClones()) {
+			if (clone != node) {
+				SubtreeAggregates.invalidate(clone);
+			}
+		}
 	}
 
 	public void setEncrypter(final IEncrypter encrypter) {
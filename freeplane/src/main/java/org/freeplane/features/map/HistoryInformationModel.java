@@ -42,8 +42,12 @@ public class HistoryInformationModel {
 	}
 
 	public HistoryInformationModel(final Date createdAt, final Date lastModifiedAt) {
-		this.createdAt = createdAt.getTime();
-		this.lastModifiedAt = lastModifiedAt.getTime();
+		this(createdAt.getTime(), lastModifiedAt.getTime());
+	}
+
+	HistoryInformationModel(final long createdAt, final long lastModifiedAt) {
+		this.createdAt = createdAt;
+		this.lastModifiedAt = lastModifiedAt;
 	}
 
 	public Date getCreatedAt() {
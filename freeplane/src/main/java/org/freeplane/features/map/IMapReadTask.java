@@ -0,0 +1,33 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+/**
+ * Reading task which can be run on any thread by {@link MapModel#readConsistently(IMapReadTask)}.
+ *
+ * @author Dimitry Polivaev
+ */
+public interface IMapReadTask<T> {
+	/**
+	 * Reads the map. The task should call {@link MapSnapshot#checkNotStale()} from time to time
+	 * and must not change the map.
+	 */
+	T read(MapSnapshot snapshot);
+}
@@ -0,0 +1,42 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.util.List;
+
+/**
+ * Node change listener which accepts the changes made during a change batch in a single call.
+ *
+ * Outside of change batches it is notified by {@link #nodeChanged(NodeChangeEvent)} like any other listener.
+ * If it is also registered as {@link IMapChangeListener}, the insertions, deletions and moves of a batch
+ * are passed to it when the batch ends, right before {@link #nodesChanged(List)}. Their nodes can be
+ * detached from the map by then.
+ *
+ * @see MapController#beginChangeBatch()
+ * @author Dimitry Polivaev
+ */
+public interface INodeChangeBatchListener extends INodeChangeListener {
+	/**
+	 * Called once when a change batch ends. Contains one event per changed node and property,
+	 * its old value is taken from the first change and its new value from the last change.
+	 * The list is empty if the batch only inserted, deleted or moved nodes.
+	 */
+	public void nodesChanged(List<NodeChangeEvent> events);
+}
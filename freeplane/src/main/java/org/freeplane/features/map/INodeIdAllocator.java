@@ -0,0 +1,36 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+/**
+ * Supplies the numbers of ids generated for new nodes, the ids are written as ID_&lt;number&gt;.
+ * Numbers of ids already used by the map are skipped.
+ *
+ * @author Dimitry Polivaev
+ */
+public interface INodeIdAllocator {
+	int nextIdNumber();
+
+	/**
+	 * Called for each id of form ID_&lt;number&gt; registered in the map.
+	 * The number must not be returned later because the node can be deleted and restored by undo.
+	 */
+	void idNumberUsed(int number);
+}
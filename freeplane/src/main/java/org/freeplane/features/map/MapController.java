@@ -33,6 +33,7 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
@@ -52,6 +53,8 @@ import org.freeplane.core.ui.AFreeplaneAction;
 import org.freeplane.core.undo.IActor;
 import org.freeplane.core.util.DelayedRunner;
 import org.freeplane.features.filter.FilterController;
+import org.freeplane.features.filter.FilterInfo;
+import org.freeplane.features.filter.FilterUpdater;
 import org.freeplane.features.filter.condition.ConditionFactory;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.NodeModel.NodeChangeType;
@@ -78,7 +81,7 @@ public class MapController extends SelectionController implements IExtension{
 		return selection != null && selection.getSelected() != null;
 	}
 
-	private static class ActionEnablerOnChange implements INodeChangeListener, INodeSelectionListener, IMapChangeListener {
+	private static class ActionEnablerOnChange implements INodeChangeBatchListener, INodeSelectionListener, IMapChangeListener {
 		final private Collection<AFreeplaneAction> actions;
 		final private DelayedRunner runner;
 
@@ -98,6 +101,10 @@ public class MapController extends SelectionController implements IExtension{
 			setActionEnabled();
 		}
 
+		public void nodesChanged(final List<NodeChangeEvent> events) {
+			setActionEnabled();
+		}
+
 		public void onDeselect(final NodeModel node) {
 		}
 
@@ -149,7 +156,7 @@ public class MapController extends SelectionController implements IExtension{
 		}
 	}
 
-	private static class ActionSelectorOnChange implements INodeChangeListener, INodeSelectionListener, IMapChangeListener {
+	private static class ActionSelectorOnChange implements INodeChangeBatchListener, INodeSelectionListener, IMapChangeListener {
 		final private Collection<AFreeplaneAction> actions;
 		final private DelayedRunner runner;
 
@@ -172,6 +179,15 @@ public class MapController extends SelectionController implements IExtension{
 			setActionsSelected();
 		}
 
+		public void nodesChanged(final List<NodeChangeEvent> events) {
+			for (final NodeChangeEvent event : events) {
+				if (!NodeChangeType.REFRESH.equals(event.getProperty())) {
+					setActionsSelected();
+					return;
+				}
+			}
+		}
+
 		private void setActionsSelected() {
 			if (hasValidSelection())
 				runner.runLater();
@@ -283,6 +299,9 @@ public class MapController extends SelectionController implements IExtension{
 	final private MapWriter mapWriter;
  	final private ModeController modeController;
 	final LinkedList<INodeChangeListener> nodeChangeListeners;
+	private int changeBatchDepth;
+	private LinkedHashMap<NodeRefreshKey, NodeChangeEvent> batchedNodeChanges;
+	private ArrayList<StructureChange> batchedStructureChanges;
 	final private ReadManager readManager;
 	private final WriteManager writeManager;
 
@@ -320,6 +339,12 @@ public class MapController extends SelectionController implements IExtension{
 		addNodeSelectionListener(actionSelectorOnChange);
 		addNodeChangeListener(actionSelectorOnChange);
 		addMapChangeListener(actionSelectorOnChange);
+		final BranchXmlCache.Updater branchXmlCacheUpdater = new BranchXmlCache.Updater();
+		addNodeChangeListener(branchXmlCacheUpdater);
+		addMapChangeListener(branchXmlCacheUpdater);
+		final FilterUpdater filterUpdater = new FilterUpdater(this);
+		addNodeChangeListener(filterUpdater);
+		addMapChangeListener(filterUpdater);
 
 		createActions(modeController);
 	}
@@ -527,7 +552,7 @@ public class MapController extends SelectionController implements IExtension{
 	 */
 	public void displayNode(final NodeModel node, final ArrayList<NodeModel> nodesUnfoldedByDisplay) {
 		if (!node.hasVisibleContent()) {
-			node.getFilterInfo().reset();
+			FilterInfo.reset(node);
 			nodeRefresh(node);
 		}
 		final NodeModel[] path = node.getPathToRoot();
@@ -543,6 +568,7 @@ public class MapController extends SelectionController implements IExtension{
 	public void fireMapChanged(final MapChangeEvent event) {
 		final MapModel map = event.getMap();
 		if (map != null) {
+			map.modified();
 			setSaved(map, false);
 		}
 		final IMapChangeListener[] list = mapChangeListeners.toArray(new IMapChangeListener[]{});
@@ -569,32 +595,173 @@ public class MapController extends SelectionController implements IExtension{
 	}
 
 	private void fireNodeChanged(final NodeModel node, final NodeChangeEvent nodeChangeEvent) {
+		final MapModel map = node.getMap();
+		if (map != null) {
+			map.modified();
+		}
+		if (changeBatchDepth > 0) {
+			node.fireNodeChanged(getImmediateNodeChangeListeners(), nodeChangeEvent, false);
+			addToChangeBatch(node, nodeChangeEvent);
+			return;
+		}
 		final INodeChangeListener[] nodeChangeListeners = this.nodeChangeListeners.toArray(new INodeChangeListener[]{});
 	    node.fireNodeChanged(nodeChangeListeners, nodeChangeEvent);
 	}
 
-	protected void fireNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+	/**
+	 * Starts a change batch. Batches can be nested, the changes are delivered when the outermost batch ends.
+	 *
+	 * During a batch node change events are passed to {@link INodeChangeListener}s immediately,
+	 * while node views and {@link INodeChangeBatchListener}s receive one coalesced event per node and property
+	 * when the batch ends. Insertions, deletions and moves are passed to {@link INodeChangeBatchListener}s
+	 * when the batch ends too, in the order they happened and before the node changes.
+	 * Other listeners receive them immediately. Map change events are never delayed.
+	 */
+	public void beginChangeBatch() {
+		changeBatchDepth++;
+	}
+
+	public void endChangeBatch() {
+		if (changeBatchDepth == 0) {
+			return;
+		}
+		changeBatchDepth--;
+		if (changeBatchDepth == 0) {
+			flushChangeBatch();
+		}
+	}
+
+	public boolean isChangeBatchInProgress() {
+		return changeBatchDepth > 0;
+	}
+
+	private INodeChangeListener[] getImmediateNodeChangeListeners() {
+		final ArrayList<INodeChangeListener> immediateListeners = new ArrayList<INodeChangeListener>(
+		    nodeChangeListeners.size());
+		for (final INodeChangeListener listener : nodeChangeListeners) {
+			if (!(listener instanceof INodeChangeBatchListener)) {
+				immediateListeners.add(listener);
+			}
+		}
+		return immediateListeners.toArray(new INodeChangeListener[immediateListeners.size()]);
+	}
+
+	/** Insertion, deletion or move buffered during a change batch. */
+	private static abstract class StructureChange {
+		abstract void deliverTo(IMapChangeListener listener);
+	}
+
+	private void scheduleBatchFlush() {
+		if (batchedNodeChanges == null && batchedStructureChanges == null) {
+			// delivers the changes even if some batch is never ended
+			EventQueue.invokeLater(new Runnable() {
+				public void run() {
+					flushChangeBatch();
+				}
+			});
+		}
+	}
+
+	private void addToChangeBatch(final NodeModel node, final NodeChangeEvent nodeChangeEvent) {
+		if (batchedNodeChanges == null) {
+			scheduleBatchFlush();
+			batchedNodeChanges = new LinkedHashMap<NodeRefreshKey, NodeChangeEvent>();
+		}
+		final NodeRefreshKey key = new NodeRefreshKey(node, nodeChangeEvent.getProperty());
+		final NodeChangeEvent firstEvent = batchedNodeChanges.get(key);
+		if (firstEvent == null) {
+			batchedNodeChanges.put(key, nodeChangeEvent);
+		}
+		else {
+			batchedNodeChanges.put(key, new NodeChangeEvent(node, nodeChangeEvent.getProperty(),
+			    firstEvent.getOldValue(), nodeChangeEvent.getNewValue()));
+		}
+	}
+
+	/**
+	 * Passes the change to the listeners which receive it now, within a change batch
+	 * it is buffered for the {@link INodeChangeBatchListener}s.
+	 */
+	private void fireStructureChange(final StructureChange change) {
 		final IMapChangeListener[] list = mapChangeListeners.toArray(new IMapChangeListener[]{});
+		final boolean isBatched = changeBatchDepth > 0;
+		if (isBatched) {
+			if (batchedStructureChanges == null) {
+				scheduleBatchFlush();
+				batchedStructureChanges = new ArrayList<StructureChange>();
+			}
+			batchedStructureChanges.add(change);
+		}
 		for (final IMapChangeListener next : list) {
-			next.onNodeDeleted(nodeDeletionEvent);
+			if (!(isBatched && next instanceof INodeChangeBatchListener)) {
+				change.deliverTo(next);
+			}
+		}
+	}
+
+	private void flushChangeBatch() {
+		final LinkedHashMap<NodeRefreshKey, NodeChangeEvent> batchedNodeChanges = this.batchedNodeChanges;
+		final ArrayList<StructureChange> batchedStructureChanges = this.batchedStructureChanges;
+		if (batchedNodeChanges == null && batchedStructureChanges == null) {
+			return;
+		}
+		this.batchedNodeChanges = null;
+		this.batchedStructureChanges = null;
+		if (batchedStructureChanges != null) {
+			final IMapChangeListener[] list = mapChangeListeners.toArray(new IMapChangeListener[]{});
+			for (final IMapChangeListener next : list) {
+				if (next instanceof INodeChangeBatchListener) {
+					for (final StructureChange change : batchedStructureChanges) {
+						change.deliverTo(next);
+					}
+				}
+			}
+		}
+		final ArrayList<NodeChangeEvent> events = new ArrayList<NodeChangeEvent>();
+		if (batchedNodeChanges != null) {
+			for (final NodeChangeEvent event : batchedNodeChanges.values()) {
+				for (final NodeModel clone : event.getNode().allClones()) {
+					events.add(event.forNode(clone));
+				}
+			}
+		}
+		final List<NodeChangeEvent> unmodifiableEvents = Collections.unmodifiableList(events);
+		final INodeChangeListener[] list = nodeChangeListeners.toArray(new INodeChangeListener[]{});
+		for (final INodeChangeListener next : list) {
+			if (next instanceof INodeChangeBatchListener) {
+				((INodeChangeBatchListener) next).nodesChanged(unmodifiableEvents);
+			}
 		}
+		for (final NodeChangeEvent event : events) {
+			event.getNode().fireNodeChanged(event);
+		}
+	}
+
+	protected void fireNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+		fireStructureChange(new StructureChange() {
+			void deliverTo(final IMapChangeListener listener) {
+				listener.onNodeDeleted(nodeDeletionEvent);
+			}
+		});
 		NodeModel node = nodeDeletionEvent.node;
 		node.getMap().unregistryNodes(node);
 	}
 
 	protected void fireNodeInserted(final NodeModel parent, final NodeModel child, final int index) {
 		parent.getMap().registryNodeRecursive(child);
-		final IMapChangeListener[] list = mapChangeListeners.toArray(new IMapChangeListener[]{});
-		for (final IMapChangeListener next : list) {
-			next.onNodeInserted(parent, child, index);
-		}
+		fireStructureChange(new StructureChange() {
+			void deliverTo(final IMapChangeListener listener) {
+				listener.onNodeInserted(parent, child, index);
+			}
+		});
 	}
 
 	protected void fireNodeMoved(final NodeMoveEvent nodeMoveEvent) {
-		final IMapChangeListener[] list = mapChangeListeners.toArray(new IMapChangeListener[]{});
-		for (final IMapChangeListener next : list) {
-			next.onNodeMoved(nodeMoveEvent);
-		}
+		fireStructureChange(new StructureChange() {
+			void deliverTo(final IMapChangeListener listener) {
+				listener.onNodeMoved(nodeMoveEvent);
+			}
+		});
 	}
 
 	protected void firePreNodeMoved(final NodeMoveEvent nodeMoveEvent) {
@@ -712,12 +879,7 @@ public class MapController extends SelectionController implements IExtension{
 	 * sufficient to return true.
 	 */
 	public boolean hasFoldedStrictDescendant(final NodeModel node) {
-		for (final NodeModel child : childrenUnfolded(node)) {
-			if (isFolded(child) || hasFoldedStrictDescendant(child)) {
-				return true;
-			}
-		}
-		return false;
+		return SubtreeAggregates.hasFoldedDescendant(node);
 	}
 
 	/*
@@ -826,21 +988,20 @@ public class MapController extends SelectionController implements IExtension{
 			return;
 		}
 		if (isUpdate && !Controller.getCurrentModeController().isUndoAction()) {
-			final HistoryInformationModel historyInformation = node.getHistoryInformation();
-			if (historyInformation != null) {
+			if (node.hasHistoryInformation()) {
 				final IActor historyActor = new IActor() {
-					private final Date lastModifiedAt = historyInformation.getLastModifiedAt();
-					private final Date now = new Date();
+					private final long lastModifiedAt = node.getLastModifiedAt();
+					private final long now = System.currentTimeMillis();
 
 					public void undo() {
-						setDate(historyInformation, lastModifiedAt);
+						setDate(lastModifiedAt);
 					}
 
-					private void setDate(final HistoryInformationModel historyInformation, final Date lastModifiedAt) {
-						final Date oldLastModifiedAt = historyInformation.getLastModifiedAt();
-						historyInformation.setLastModifiedAt(lastModifiedAt);
+					private void setDate(final long lastModifiedAt) {
+						final Date oldLastModifiedAt = new Date(node.getLastModifiedAt());
+						node.setLastModifiedAt(lastModifiedAt);
 						final NodeChangeEvent nodeChangeEvent = new NodeChangeEvent(node,
-						    HistoryInformationModel.class, oldLastModifiedAt, lastModifiedAt);
+						    HistoryInformationModel.class, oldLastModifiedAt, new Date(lastModifiedAt));
 						fireNodeChanged(node, nodeChangeEvent);
 					}
 
@@ -849,7 +1010,7 @@ public class MapController extends SelectionController implements IExtension{
 					}
 
 					public void act() {
-						setDate(historyInformation, now);
+						setDate(now);
 					}
 				};
 				Controller.getCurrentModeController().execute(historyActor, node.getMap());
@@ -22,12 +22,11 @@ package org.freeplane.features.map;
 import java.io.File;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
 
 import org.freeplane.core.extension.ExtensionContainer;
 import org.freeplane.core.extension.IExtension;
@@ -41,8 +40,7 @@ import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 
 public class MapModel {
-	private static Random ran = new Random();
-	private static final int UNDEFINED_NODE_ID = 2000000000;
+	private static final int MAXIMAL_READ_ATTEMPTS = 5;
 	/**
 	 * denotes the amount of changes since the last save. The initial value is
 	 * zero, such that new models are not to be saved.
@@ -52,7 +50,12 @@ public class MapModel {
 	private Filter filter = null;
 	final private IconRegistry iconRegistry;
 	final private List<IMapChangeListener> listeners;
-	final private Map<String, NodeModel> nodes;
+	final private NodeRegistry nodes;
+	private INodeIdAllocator nodeIdAllocator;
+	final private Map<String, NodeModel> unloadedNodeParents;
+	private volatile long modificationStamp = 0;
+	private volatile int structureVersion = 0;
+	final private NodeIntervalIndex intervalIndex = new NodeIntervalIndex(this);
 	private boolean readOnly = false;
 	private NodeModel root;
 	private URL url;
@@ -61,7 +64,9 @@ public class MapModel {
 		extensionContainer = new ExtensionContainer(new HashMap<Class<? extends IExtension>, IExtension>());
 		this.root = null;
 		listeners = new LinkedList<IMapChangeListener>();
-		nodes = new HashMap<String, NodeModel>();
+		nodes = new NodeRegistry();
+		nodeIdAllocator = new SequentialNodeIdAllocator();
+		unloadedNodeParents = new HashMap<String, NodeModel>();
 		final FilterController filterController = FilterController.getCurrentFilterController();
 		if (filterController != null) {
 			filter = filterController.createTransparentFilter();
@@ -109,19 +114,91 @@ public class MapModel {
 	}
 
 	public String generateNodeID(final String proposedID) {
-		if (proposedID != null && !"".equals(proposedID) && getNodeForID(proposedID) == null) {
+		if (proposedID != null && !"".equals(proposedID) && nodes.get(proposedID) == null
+		        && !unloadedNodeParents.containsKey(proposedID)) {
 			return proposedID;
 		}
-		String returnValue;
-		do {
-			final String prefix = "ID_";
+		for (;;) {
+			final int number = nodeIdAllocator.nextIdNumber();
+			if (nodes.containsNumber(number)) {
+				continue;
+			}
 			/*
 			 * The prefix is to enable the id to be an ID in the sense of
 			 * XML/DTD.
 			 */
-			returnValue = prefix + Integer.toString(ran.nextInt(UNDEFINED_NODE_ID));
-		} while (nodes.containsKey(returnValue));
-		return returnValue;
+			final String id = NodeRegistry.idOf(number);
+			if (!unloadedNodeParents.containsKey(id)) {
+				return id;
+			}
+		}
+	}
+
+	/**
+	 * Returns the stamp which is changed by every model change. It is odd while a structural change is in progress.
+	 * @see MapSnapshot
+	 */
+	public long getModificationStamp() {
+		return modificationStamp;
+	}
+
+	void modificationStarted() {
+		modificationStamp++;
+	}
+
+	void modificationFinished() {
+		modificationStamp++;
+	}
+
+	void modified() {
+		modificationStamp += 2;
+	}
+
+	/** changed whenever a node gets a new parent */
+	int getStructureVersion() {
+		return structureVersion;
+	}
+
+	void structureChanged() {
+		structureVersion++;
+	}
+
+	NodeIntervalIndex getIntervalIndex() {
+		return intervalIndex;
+	}
+
+	public MapSnapshot createSnapshot() {
+		return new MapSnapshot(this);
+	}
+
+	/**
+	 * Runs the task until it completes on a snapshot which is still valid afterwards.
+	 * Runtime exceptions thrown by the task on a stale snapshot are ignored.
+	 *
+	 * @throws StaleSnapshotException if the map was changed during each of the attempts
+	 */
+	public <T> T readConsistently(final IMapReadTask<T> task) throws StaleSnapshotException {
+		for (int attempt = 1;; attempt++) {
+			final MapSnapshot snapshot = createSnapshot();
+			try {
+				final T result = task.read(snapshot);
+				snapshot.checkNotStale();
+				return result;
+			}
+			catch (final RuntimeException e) {
+				if (!snapshot.isStale()) {
+					throw e;
+				}
+				if (attempt == MAXIMAL_READ_ATTEMPTS) {
+					throw e instanceof StaleSnapshotException ? (StaleSnapshotException) e : new StaleSnapshotException();
+				}
+			}
+			Thread.yield();
+		}
+	}
+
+	public void setNodeIdAllocator(final INodeIdAllocator nodeIdAllocator) {
+		this.nodeIdAllocator = nodeIdAllocator;
 	}
 
 	public <T extends IExtension> T getExtension(final Class<T> clazz) {
@@ -157,7 +234,15 @@ public class MapModel {
 	 * @return
 	 */
 	public NodeModel getNodeForID(final String nodeID) {
-		final NodeModel node = nodes.get(nodeID);
+		NodeModel node = nodes.get(nodeID);
+		while (node == null && !unloadedNodeParents.isEmpty()) {
+			final NodeModel unloadedNodeParent = unloadedNodeParents.get(nodeID);
+			if (unloadedNodeParent == null) {
+				break;
+			}
+			unloadedNodeParent.loadChildren();
+			node = nodes.get(nodeID);
+		}
 		return node;
 	}
 
@@ -204,6 +289,25 @@ public class MapModel {
 		if (null != old && nodeModel != old) {
 			throw new RuntimeException("id " + value + " already registered");
 		}
+		final int number = NodeRegistry.numberOf(value);
+		if (number >= 0) {
+			nodeIdAllocator.idNumberUsed(number);
+		}
+	}
+
+	/**
+	 * Registers ids found in children of the parent node which are not loaded yet.
+	 */
+	void registryUnloadedIDs(final Collection<String> ids, final NodeModel parent) {
+		for (final String id : ids) {
+			unloadedNodeParents.put(id, parent);
+		}
+	}
+
+	void unregistryUnloadedIDs(final Collection<String> ids) {
+		for (final String id : ids) {
+			unloadedNodeParents.remove(id);
+		}
 	}
 
 	/**
@@ -217,21 +321,17 @@ public class MapModel {
 	}
 
 	public void registryNodeRecursive(final NodeModel nodeModel) {
-		registryNodeRecursive(nodeModel, 0);
-	}
-
-	private void registryNodeRecursive(final NodeModel nodeModel, final int depth) {
-		if (depth > 400) {
-			throw new StackOverflowError();
-		}
-		final String id = nodeModel.getID();
-		if (id != null) {
-			registryID(id, nodeModel);
-		}
-		final Iterator<NodeModel> iterator = nodeModel.getChildren().iterator();
+		final NodeTraversal.NodeIterator iterator = NodeTraversal.preOrder(nodeModel).includingEncryptedChildren().iterator();
 		while (iterator.hasNext()) {
-			final NodeModel next = iterator.next();
-			registryNodeRecursive(next, depth + 1);
+			final NodeModel node = iterator.next();
+			final String id = node.getID();
+			if (id != null) {
+				registryID(id, node);
+			}
+			if (node.hasUnloadedChildren()) {
+				registryUnloadedIDs(node.getUnloadedChildren().getIds(), node);
+				iterator.skipChildren();
+			}
 		}
 	}
 
@@ -286,14 +386,18 @@ public class MapModel {
 		url = v;
 	}
 
-	public void unregistryNodes(final NodeModel node) {
-		final List<NodeModel> children = node.getChildren();
-		for (final NodeModel child : children) {
-			unregistryNodes(child);
-		}
-		final String id = node.getID();
-		if (id != null) {
-			nodes.put(id, null);
+	public void unregistryNodes(final NodeModel branch) {
+		final NodeTraversal.NodeIterator iterator = NodeTraversal.preOrder(branch).includingEncryptedChildren().iterator();
+		while (iterator.hasNext()) {
+			final NodeModel node = iterator.next();
+			if (node.hasUnloadedChildren()) {
+				unregistryUnloadedIDs(node.getUnloadedChildren().getIds());
+				iterator.skipChildren();
+			}
+			final String id = node.getID();
+			if (id != null) {
+				nodes.remove(id);
+			}
 		}
 	}
 }
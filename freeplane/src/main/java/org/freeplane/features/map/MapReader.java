@@ -27,7 +27,11 @@ import java.util.Map;
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.io.UnknownElements;
+import org.freeplane.core.io.xml.ParallelTreeXmlReader;
+import org.freeplane.core.io.xml.StreamingTreeXmlReader;
 import org.freeplane.core.io.xml.TreeXmlReader;
+import org.freeplane.core.io.xml.XMLSnapshot;
+import org.freeplane.core.resources.ResourceController;
 import org.freeplane.features.map.MapWriter.Hint;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.n3.nanoxml.XMLElement;
@@ -55,11 +59,23 @@ public class MapReader implements IElementDOMHandler {
         }
 
 		public NodeModel create(final Reader pReader) throws XMLException {
+			return create(pReader, null);
+		}
+
+		private NodeModel create(final Reader pReader, final XMLSnapshot snapshot) throws XMLException {
 			final NodeTreeCreator oldNodeTreeCreator = nodeTreeCreator;
-			final TreeXmlReader reader = new TreeXmlReader(readManager);
 			try {
 				nodeTreeCreator = this;
-				reader.load(createdMap, pReader);
+				final ResourceController resourceController = ResourceController.getResourceController();
+				final boolean streaming = resourceController.getBooleanProperty(LOAD_MAPS_STREAMING);
+				if (snapshot != null)
+					snapshot.load(readManager, streaming, createdMap);
+				else if (Mode.FILE.equals(getHint(Hint.MODE)) && resourceController.getBooleanProperty(LOAD_MAPS_IN_PARALLEL))
+					new ParallelTreeXmlReader(readManager, streaming).load(createdMap, pReader);
+				else if (streaming)
+					new StreamingTreeXmlReader(readManager).load(createdMap, pReader);
+				else
+					new TreeXmlReader(readManager).load(createdMap, pReader);
 				final NodeModel node = nodeBuilder.getMapChild();
 				return node;
 			}
@@ -71,8 +87,18 @@ public class MapReader implements IElementDOMHandler {
 
 		public NodeModel createNodeTreeFromXml(final MapModel map, final Reader pReader) throws IOException,
 		        XMLException {
+			return createNodeTree(map, pReader, null);
+		}
+
+		NodeModel createNodeTreeFromSnapshot(final MapModel map, final XMLSnapshot snapshot) throws IOException,
+		        XMLException {
+			return createNodeTree(map, null, snapshot);
+		}
+
+		private NodeModel createNodeTree(final MapModel map, final Reader pReader, final XMLSnapshot snapshot)
+		        throws IOException, XMLException {
 			start(map);
-			final NodeModel node = create(pReader);
+			final NodeModel node = create(pReader, snapshot);
 			if (node == null)
 				throw new RuntimeException("corrupted map, no root node found");
 			finish(node);
@@ -135,6 +161,8 @@ public class MapReader implements IElementDOMHandler {
 		}
 	}
 
+	private static final String LOAD_MAPS_IN_PARALLEL = "load_maps_in_parallel";
+	private static final String LOAD_MAPS_STREAMING = "load_maps_streaming";
 	private final NodeBuilder nodeBuilder;
 	final private ReadManager readManager;
 	private NodeTreeCreator nodeTreeCreator;
@@ -172,6 +200,27 @@ public class MapReader implements IElementDOMHandler {
 		}
 	}
 
+	public NodeModel createNodeTreeFromSnapshot(final MapModel map, final XMLSnapshot snapshot, final Mode mode)
+	        throws IOException, XMLException {
+		final NodeTreeCreator oldNodeTreeCreator = nodeTreeCreator;
+		try {
+			final Map<Object, Object> hints = new HashMap<Object, Object>(1);
+			hints.put(Hint.MODE, mode);
+			nodeTreeCreator = new NodeTreeCreator(hints);
+			return nodeTreeCreator.createNodeTreeFromSnapshot(map, snapshot);
+		}
+		finally {
+			nodeTreeCreator = oldNodeTreeCreator;
+		}
+	}
+
+	/**
+	 * Parses the xml without passing it to the handlers.
+	 */
+	public XMLSnapshot createSnapshot(final Reader pReader) throws XMLException {
+		return XMLSnapshot.record(readManager, pReader);
+	}
+
 	public void endElement(final Object parent, final String tag, final Object element, final XMLElement dom) {
 		final MapModel map = (MapModel) element;
 		if (dom.getAttributeCount() != 0 || dom.hasChildren()) {
@@ -0,0 +1,71 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+/**
+ * Stamped read access to a map from threads other than the event dispatch thread.
+ *
+ * The map is only changed on the event dispatch thread. Every change increments the modification stamp
+ * of the map, structural changes increment it once before and once after the change.
+ * A background reader takes a snapshot, reads the nodes without locking and checks the snapshot afterwards:
+ * if it is stale, the results may be inconsistent and should be discarded or read again.
+ * Reading a stale snapshot can even throw runtime exceptions like {@link IndexOutOfBoundsException}.
+ *
+ * Only changes reported to the {@link MapController}, e.g. by {@link MapController#nodeRefresh(NodeModel, Object, Object, Object)},
+ * and insertions or removals of children change the stamp. Setters like {@link NodeModel#setUserObject(Object)}
+ * or {@link NodeModel#putExtension(org.freeplane.core.extension.IExtension)} called without such a report do not,
+ * readers can not detect these changes.
+ *
+ * @see MapModel#readConsistently(IMapReadTask)
+ * @see NodeTraversal#validatedBy(MapSnapshot)
+ * @author Dimitry Polivaev
+ */
+public class MapSnapshot {
+	final private MapModel map;
+	final private long stamp;
+
+	MapSnapshot(final MapModel map) {
+		this.map = map;
+		this.stamp = map.getModificationStamp();
+	}
+
+	public MapModel getMap() {
+		return map;
+	}
+
+	public NodeModel getRootNode() {
+		return map.getRootNode();
+	}
+
+	public long getStamp() {
+		return stamp;
+	}
+
+	/** @return true if the map was changed after the snapshot was taken or a change was in progress */
+	public boolean isStale() {
+		return (stamp & 1) != 0 || map.getModificationStamp() != stamp;
+	}
+
+	public void checkNotStale() throws StaleSnapshotException {
+		if (isStale()) {
+			throw new StaleSnapshotException();
+		}
+	}
+}
@@ -30,6 +30,7 @@ import org.freeplane.core.io.ITreeWriter;
 import org.freeplane.core.io.WriteManager;
 import org.freeplane.core.io.xml.TreeXmlWriter;
 import org.freeplane.core.util.FreeplaneVersion;
+import org.freeplane.core.util.TextPool;
 import org.freeplane.features.link.LinkBuilder;
 import org.freeplane.features.link.LinkController;
 import org.freeplane.n3.nanoxml.XMLElement;
@@ -41,7 +42,7 @@ import org.freeplane.n3.nanoxml.XMLElement;
 public class MapWriter implements IElementWriter, IAttributeWriter {
 
 	public enum WriterHint {
-		FORCE_FORMATTING, ALREADY_WRITTEN
+		FORCE_FORMATTING, ALREADY_WRITTEN, BRANCH_PLACEHOLDER, EXISTING_IDS_ONLY, BACKGROUND_WRITER
 	}
 	private static final String USAGE_COMMENT = "<!--To view this file,"
 	        + " download free mind mapping software Freeplane from http://freeplane.sourceforge.net -->"
@@ -59,10 +60,54 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 	final private MapController mapController;
 	private boolean saveInvisible;
 	final WriteManager writeManager;
+	final private boolean writesInBackground;
 
 	public MapWriter(final MapController mapController) {
+		this(mapController, mapController.getWriteManager(), false);
+	}
+
+	private MapWriter(final MapController mapController, final WriteManager writeManager,
+	                  final boolean writesInBackground) {
 		this.mapController = mapController;
-		writeManager = mapController.getWriteManager();
+		this.writeManager = writeManager;
+		this.writesInBackground = writesInBackground;
+	}
+
+	/**
+	 * Returns a writer with its own copy of the registered writers, which writes the map on another thread
+	 * while this writer is used on the event dispatch thread. The background writer allocates no ids
+	 * and does not use the {@link BranchXmlCache}, so this method allocates the missing ids of the loaded nodes.
+	 * Must be called on the event dispatch thread.
+	 *
+	 * @return null if the map can only be written on the event dispatch thread
+	 * because it contains decrypted nodes or branches which would be loaded for writing
+	 */
+	public MapWriter createBackgroundWriter(final MapModel map) {
+		final boolean writesFolding = NodeWriter.writesFolding();
+		for (final NodeModel node : NodeTraversal.preOrder(map.getRootNode()).visitingLoadedChildrenOnly()) {
+			final EncryptionModel encryptionModel = EncryptionModel.getModel(node);
+			if (encryptionModel != null && encryptionModel.isDecrypted()) {
+				return null;
+			}
+			if (node.hasUnloadedChildren() && !writesFolding) {
+				return null;
+			}
+			node.createID();
+		}
+		final WriteManager backgroundWriteManager = new WriteManager(writeManager);
+		final MapWriter backgroundWriter = new MapWriter(mapController, backgroundWriteManager, true);
+		backgroundWriteManager.replaceElementWriter("map", this, backgroundWriter);
+		backgroundWriteManager.replaceAttributeWriter("map", this, backgroundWriter);
+		return backgroundWriter;
+	}
+
+	private TreeXmlWriter createXmlWriter(final Writer writer) {
+		final TreeXmlWriter xmlWriter = new TreeXmlWriter(writeManager, writer);
+		if (writesInBackground) {
+			xmlWriter.setHint(WriterHint.EXISTING_IDS_ONLY);
+			xmlWriter.setHint(WriterHint.BACKGROUND_WRITER, this);
+		}
+		return xmlWriter;
 	}
 
 	public boolean isSaveInvisible() {
@@ -89,14 +134,43 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 
 	public void writeMapAsXml(final MapModel map, final Writer fileout, final Mode mode, final boolean saveInvisible,
 	                          final boolean forceFormat) throws IOException {
-		final TreeXmlWriter xmlWriter = new TreeXmlWriter(writeManager, fileout);
+		final TreeXmlWriter xmlWriter = createXmlWriter(fileout);
 		xmlWriter.setHint(Hint.MODE, mode);
 		if (forceFormat) {
 			xmlWriter.setHint(WriterHint.FORCE_FORMATTING);
 		}
 		final XMLElement xmlMap = new XMLElement("map");
 		setSaveInvisible(saveInvisible);
-		xmlWriter.addElement(map, xmlMap);
+		final boolean keptExpandedTexts = TextPool.keepExpandedTexts();
+		try {
+			xmlWriter.addElement(map, xmlMap);
+		}
+		finally {
+			TextPool.releaseExpandedTexts(keptExpandedTexts);
+		}
+		xmlWriter.flush();
+		fileout.close();
+	}
+
+	/**
+	 * Writes the map with the given placeholder in place of the children of the root node.
+	 * Like {@link #writeNodeWithExistingIdsAsXml(Writer, NodeModel, boolean)} it allocates no ids.
+	 */
+	public void writeMapWithoutBranchesAsXml(final MapModel map, final Writer fileout, final String branchPlaceholder)
+	        throws IOException {
+		final TreeXmlWriter xmlWriter = createXmlWriter(fileout);
+		xmlWriter.setHint(Hint.MODE, Mode.FILE);
+		xmlWriter.setHint(WriterHint.BRANCH_PLACEHOLDER, branchPlaceholder);
+		xmlWriter.setHint(WriterHint.EXISTING_IDS_ONLY);
+		final XMLElement xmlMap = new XMLElement("map");
+		setSaveInvisible(true);
+		final boolean keptExpandedTexts = TextPool.keepExpandedTexts();
+		try {
+			xmlWriter.addElement(map, xmlMap);
+		}
+		finally {
+			TextPool.releaseExpandedTexts(keptExpandedTexts);
+		}
 		xmlWriter.flush();
 		fileout.close();
 	}
@@ -131,7 +205,7 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 
 	public void writeNodeAsXml(final Writer writer, final NodeModel node, final Mode mode,
 	                           final boolean writeInvisible, final boolean writeChildren, boolean forceFormat) throws IOException {
-		final TreeXmlWriter xmlWriter = new TreeXmlWriter(writeManager, writer);
+		final TreeXmlWriter xmlWriter = createXmlWriter(writer);
 		xmlWriter.setHint(Hint.MODE, mode);
 		if (forceFormat) {
 			xmlWriter.setHint(WriterHint.FORCE_FORMATTING);
@@ -139,5 +213,18 @@ public class MapWriter implements IElementWriter, IAttributeWriter {
 		writeNode(xmlWriter, node, writeInvisible, writeChildren);
 		xmlWriter.flush();
 	}
+
+	/**
+	 * Writes the node with or without its descendants for a file, but without allocating ids.
+	 * Nodes without id are written without ID attribute unless they are cloned.
+	 */
+	public void writeNodeWithExistingIdsAsXml(final Writer writer, final NodeModel node, final boolean writeChildren)
+	        throws IOException {
+		final TreeXmlWriter xmlWriter = createXmlWriter(writer);
+		xmlWriter.setHint(Hint.MODE, Mode.FILE);
+		xmlWriter.setHint(WriterHint.EXISTING_IDS_ONLY);
+		writeNode(xmlWriter, node, true, writeChildren);
+		xmlWriter.flush();
+	}
 }
 
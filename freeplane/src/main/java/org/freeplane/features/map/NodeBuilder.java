@@ -25,6 +25,7 @@ import java.util.Map;
 import org.freeplane.core.io.IAttributeHandler;
 import org.freeplane.core.io.IElementDOMHandler;
 import org.freeplane.core.io.IReadCompletionListener;
+import org.freeplane.core.io.IUnparsedElementHandler;
 import org.freeplane.core.io.ReadManager;
 import org.freeplane.core.io.UnknownElements;
 import org.freeplane.core.io.xml.TreeXmlReader;
@@ -34,7 +35,7 @@ import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.NodeModel.CloneType;
 import org.freeplane.n3.nanoxml.XMLElement;
 
-public class NodeBuilder implements IElementDOMHandler {
+public class NodeBuilder implements IElementDOMHandler, IUnparsedElementHandler {
 
 
 	private class CloneHandler implements IAttributeHandler {
@@ -60,6 +61,7 @@ public class NodeBuilder implements IElementDOMHandler {
 	private static final String RESOURCES_ALWAYS_FOLD_ALL_AFTER_LOAD = "always_fold_all_after_load";
 	private static final String RESOURCES_ALWAYS_UNFOLD_ALL_AFTER_LOAD = "always_unfold_all_after_load";
 	private static final String RESOURCES_LOAD_FOLDING = "load_folding";
+	private static final String RESOURCES_LOAD_FOLDED_BRANCHES_LAZILY = "load_folded_branches_lazily";
 	private static final String RESOURCES_LOAD_FOLDING_FROM_MAP_DEFAULT_FOLD_ALL = "load_folding_from_map_default_fold_all";
 	private static final String MAX_DISPLAYED_NODE_COUNT = "max_displayed_node_count";
 	private static final String RESOURCES_ALWAYS_SHOW_LESS_THAN_N_NODES_AFTER_LOAD = "always_show_less_than_N_nodes_after_load";
@@ -94,8 +96,27 @@ public class NodeBuilder implements IElementDOMHandler {
 		return new NodeModel(getMap());
 	}
 
+	public boolean keepsUnparsed(final Object parent, final String tag) {
+		return parent instanceof NodeModel && ((NodeModel) parent).hasUnloadedChildren() && XML_NODE.equals(tag);
+	}
+
+	public void unparsedElementRead(final Object parent, final String tag, final XMLElement attributes,
+	                                final String content) {
+		final NodeModel parentNode = (NodeModel) parent;
+		final String xml = UnloadedChildren.toXml(attributes, content);
+		final UnloadedChildren unloadedChildren = parentNode.getUnloadedChildren();
+		getMap().registryUnloadedIDs(unloadedChildren.add(xml), parentNode);
+		if (UnloadedChildren.containsClones(xml) || UnloadedChildren.containsConnectors(xml)) {
+			parentNode.loadChildren();
+		}
+	}
+
 	public void endElement(final Object parentObject, final String tag, final Object userObject, final XMLElement dom) {
 		final NodeModel node = (NodeModel) userObject;
+		final UnloadedChildren unloadedChildren = node.getUnloadedChildren();
+		if (unloadedChildren != null && unloadedChildren.size() == 0) {
+			node.setUnloadedChildren(null);
+		}
 		if (dom.getAttributeCount() != 0 || dom.hasChildren()) {
 			node.addExtension(new UnknownElements(dom));
 		}
@@ -138,20 +159,20 @@ public class NodeBuilder implements IElementDOMHandler {
 		    new IAttributeHandler() {
 			    public void setAttribute(final Object userObject, final String value) {
 				    final NodeModel node = (NodeModel) userObject;
-				    if (node.getHistoryInformation() == null) {
+				    if (!node.hasHistoryInformation()) {
 					    node.setHistoryInformation(new HistoryInformationModel());
 				    }
-				    node.getHistoryInformation().setCreatedAt(TreeXmlReader.xmlToDate(value));
+				    node.setCreatedAt(TreeXmlReader.xmlToDate(value).getTime());
 			    }
 		    });
 		reader.addAttributeHandler(NodeBuilder.XML_NODE, NodeBuilder.XML_NODE_HISTORY_LAST_MODIFIED_AT,
 		    new IAttributeHandler() {
 			    public void setAttribute(final Object userObject, final String value) {
 				    final NodeModel node = (NodeModel) userObject;
-				    if (node.getHistoryInformation() == null) {
+				    if (!node.hasHistoryInformation()) {
 					    node.setHistoryInformation(new HistoryInformationModel());
 				    }
-				    node.getHistoryInformation().setLastModifiedAt(TreeXmlReader.xmlToDate(value));
+				    node.setLastModifiedAt(TreeXmlReader.xmlToDate(value).getTime());
 			    }
 		    });
 		reader.addAttributeHandler(NodeBuilder.XML_STYLENODE, "FOLDED", new IAttributeHandler() {
@@ -175,6 +196,11 @@ public class NodeBuilder implements IElementDOMHandler {
 				}
 				if (value.equals("true")) {
 					node.setFolded(true);
+					if (mode.equals(Mode.FILE) && !node.isRoot()
+					        && ResourceController.getResourceController().getBooleanProperty(
+					            RESOURCES_LOAD_FOLDED_BRANCHES_LAZILY)) {
+						node.setUnloadedChildren(new UnloadedChildren(mapReader));
+					}
 				}
 			}
 		});
@@ -0,0 +1,177 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.awt.EventQueue;
+import java.util.Arrays;
+
+/**
+ * Pre order numbers of all nodes of a map together with the last number in their subtree and their depth.
+ * A node is a descendant of another node if its number lies in the interval of the other node,
+ * so that ancestry, depth and subtree size queries need constant time.
+ *
+ * Any structural change invalidates the index. It is rebuilt lazily when the parent pointer walks
+ * done since the change exceed the size of the map, so that alternating changes and queries
+ * do not rebuild it after each change. It is only rebuilt on the event dispatch thread, other threads
+ * use the current intervals or walk parent pointers.
+ *
+ * Children which are not loaded yet are neither loaded nor indexed. Subtree sizes of nodes
+ * containing such children are not known, so callers fall back to traversing them.
+ *
+ * @author Dimitry Polivaev
+ */
+class NodeIntervalIndex {
+	private static final int MINIMAL_REBUILD_STEPS = 1024;
+
+	static class Intervals {
+		final private int version;
+		final private NodeModel[] nodes;
+		final private int[] ends;
+		final private int[] depths;
+		final private boolean[] partial;
+
+		private Intervals(final int version, final NodeModel[] nodes, final int[] ends, final int[] depths,
+		                  final boolean[] partial) {
+			this.version = version;
+			this.nodes = nodes;
+			this.ends = ends;
+			this.depths = depths;
+			this.partial = partial;
+		}
+
+		/** @return the pre order number of the node or -1 if the node is not indexed */
+		int numberOf(final NodeModel node) {
+			final int number = node.intervalNumber;
+			return number >= 0 && number < nodes.length && nodes[number] == node ? number : -1;
+		}
+
+		boolean isDescendant(final int number, final int ancestorNumber) {
+			return ancestorNumber < number && number <= ends[ancestorNumber];
+		}
+
+		int depth(final int number) {
+			return depths[number];
+		}
+
+		/** @return false if the subtree contains children which are not loaded yet */
+		boolean isComplete(final int number) {
+			return !partial[number];
+		}
+
+		int subtreeSize(final int number) {
+			return ends[number] - number + 1;
+		}
+	}
+
+	final private MapModel map;
+	private volatile Intervals intervals;
+	private int stepsSinceChange;
+
+	NodeIntervalIndex(final MapModel map) {
+		this.map = map;
+	}
+
+	/** @return up to date intervals or null if they are not worth building yet */
+	Intervals getIntervals() {
+		final Intervals intervals = this.intervals;
+		final int version = map.getStructureVersion();
+		if (intervals != null && intervals.version == version) {
+			return intervals;
+		}
+		final int size = intervals != null ? intervals.nodes.length : 0;
+		if (stepsSinceChange < Math.max(MINIMAL_REBUILD_STEPS, size) || !EventQueue.isDispatchThread()) {
+			return null;
+		}
+		return rebuild(version);
+	}
+
+	/** records the cost of a query answered by walking parent pointers */
+	void walked(final int steps) {
+		stepsSinceChange += steps;
+	}
+
+	private synchronized Intervals rebuild(final int version) {
+		final Intervals oldIntervals = this.intervals;
+		if (oldIntervals != null && oldIntervals.version == version) {
+			return oldIntervals;
+		}
+		final NodeModel root = map.getRootNode();
+		if (root == null) {
+			return null;
+		}
+		final Builder builder = new Builder(oldIntervals != null ? oldIntervals.nodes.length : 64);
+		NodeTraversal.preOrder(root).includingEncryptedChildren().visitingLoadedChildrenOnly().walk(builder);
+		if (map.getStructureVersion() != version) {
+			return null;
+		}
+		final Intervals intervals = builder.build(version);
+		this.intervals = intervals;
+		stepsSinceChange = 0;
+		return intervals;
+	}
+
+	private static class Builder implements NodeTraversal.INodeVisitor {
+		private NodeModel[] nodes;
+		private int[] ends;
+		private int[] depths;
+		private boolean[] partial;
+		private int size = 0;
+		private int depth = 0;
+
+		Builder(final int capacity) {
+			nodes = new NodeModel[capacity];
+			ends = new int[capacity];
+			depths = new int[capacity];
+			partial = new boolean[capacity];
+		}
+
+		public boolean enter(final NodeModel node) {
+			if (size == nodes.length) {
+				final int capacity = size * 2;
+				nodes = Arrays.copyOf(nodes, capacity);
+				ends = Arrays.copyOf(ends, capacity);
+				depths = Arrays.copyOf(depths, capacity);
+				partial = Arrays.copyOf(partial, capacity);
+			}
+			node.intervalNumber = size;
+			nodes[size] = node;
+			depths[size] = depth;
+			partial[size] = node.hasUnloadedChildren();
+			size++;
+			depth++;
+			return true;
+		}
+
+		public void leave(final NodeModel node) {
+			depth--;
+			final int number = node.intervalNumber;
+			ends[number] = size - 1;
+			final NodeModel parent = node.getParentNode();
+			if (partial[number] && depth > 0 && parent != null) {
+				partial[parent.intervalNumber] = true;
+			}
+		}
+
+		Intervals build(final int version) {
+			return new Intervals(version, Arrays.copyOf(nodes, size), Arrays.copyOf(ends, size),
+			    Arrays.copyOf(depths, size), Arrays.copyOf(partial, size));
+		}
+	}
+}
@@ -25,6 +25,7 @@ import static org.freeplane.features.map.NodeModel.CloneType.TREE;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -33,7 +34,6 @@ import java.util.Map;
 
 import org.freeplane.core.extension.ExtensionContainer;
 import org.freeplane.core.extension.IExtension;
-import org.freeplane.core.util.HtmlUtils;
 import org.freeplane.features.filter.Filter;
 import org.freeplane.features.filter.FilterInfo;
 import org.freeplane.features.icon.MindIcon;
@@ -68,9 +68,9 @@ public class NodeModel{
 	public static final String NODE_ICON_SIZE = "icon_size";
 	static public final Object HYPERLINK_CHANGED = "hyperlink_changed";
 
-	private final List<NodeModel> children;
+	private List<NodeModel> children;
 	private NodeModel parent;
-	final private FilterInfo filterInfo;
+	private int filterInfo = FilterInfo.FILTER_INITIAL_VALUE;
 	private String id;
 	private MapModel map = null;
 	private int position = NodeModel.UNKNOWN_POSITION;
@@ -79,13 +79,45 @@ public class NodeModel{
 
 	private SharedNodeData sharedData;
 	private Clones[] clones;
+	private byte attachedCloneTypes;
+	/** pre order number assigned by {@link NodeIntervalIndex} */
+	int intervalNumber = -1;
+	/** values for the subtree kept by {@link SubtreeAggregates} */
+	SubtreeAggregates subtreeAggregates;
+	private UnloadedChildren unloadedChildren;
 
 	void setClones(Clones clones) {
-		this.clones[clones.getCloneType().ordinal()] = clones;
+		putClones(clones);
 		for(NodeModel clone : clones)
 			clone.fireNodeChanged(new NodeChangeEvent(this, NodeModel.UNKNOWN_PROPERTY, null, null));
 	}
 
+	/**
+	 * Lists containing only this node are not kept, they are created by {@link #clones(CloneType)} on demand.
+	 */
+	private void putClones(Clones clones) {
+		final int index = clones.getCloneType().ordinal();
+		final int attachedBit = 1 << index;
+		if (clones.size() != 0)
+			attachedCloneTypes |= attachedBit;
+		else
+			attachedCloneTypes &= ~attachedBit;
+		final boolean containsOnlyThisNode = clones instanceof SingleNodeList && clones.head() == this
+				|| clones instanceof DetachedNodeList && ((DetachedNodeList) clones).isNotCloned(this);
+		if (containsOnlyThisNode) {
+			if (this.clones != null) {
+				this.clones[index] = null;
+				if (this.clones[TREE_CLONE_INDEX] == null && this.clones[CONTENT_CLONE_INDEX] == null)
+					this.clones = null;
+			}
+		}
+		else {
+			if (this.clones == null)
+				this.clones = new Clones[CloneType.values().length];
+			this.clones[index] = clones;
+		}
+	}
+
 	public Object getUserObject() {
 		return sharedData.getUserObject();
 	}
@@ -98,17 +130,13 @@ public class NodeModel{
 		sharedData = new SharedNodeData();
 		init(userObject);
 		this.map = map;
-		children = new ArrayList<NodeModel>();
-		filterInfo = new FilterInfo();
-		clones = new Clones[]{new DetachedNodeList(this, TREE), new DetachedNodeList(this, CONTENT)};
 	}
 
 	private NodeModel(NodeModel toBeCloned, CloneType cloneType){
 		this.map = toBeCloned.map;
 		this.sharedData = toBeCloned.sharedData;
-		children = new ArrayList<NodeModel>();
-		filterInfo = new FilterInfo();
-		clones = new Clones[]{new DetachedNodeList(this, cloneType == TREE ? toBeCloned : this, TREE), new DetachedNodeList(this, toBeCloned, CONTENT)};
+		putClones(new DetachedNodeList(this, cloneType == TREE ? toBeCloned : this, TREE));
+		putClones(new DetachedNodeList(this, toBeCloned, CONTENT));
 	}
 
 	protected void init(final Object userObject) {
@@ -154,9 +182,58 @@ public class NodeModel{
 	}
 
 	protected List<NodeModel> getChildrenInternal() {
-	    return children;
+		if (unloadedChildren != null) {
+			loadChildren();
+		}
+	    return loadedChildren();
     }
 
+	private List<NodeModel> loadedChildren() {
+		if (children == null) {
+			return Collections.emptyList();
+		}
+		return children;
+	}
+
+	/**
+	 * Returns the children list creating it if the node has no children yet.
+	 */
+	protected List<NodeModel> getModifiableChildren() {
+		loadChildren();
+		if (children == null) {
+			children = new ArrayList<NodeModel>();
+		}
+		return children;
+	}
+
+	boolean hasUnloadedChildren() {
+		return unloadedChildren != null;
+	}
+
+	UnloadedChildren getUnloadedChildren() {
+		return unloadedChildren;
+	}
+
+	void setUnloadedChildren(final UnloadedChildren unloadedChildren) {
+		this.unloadedChildren = unloadedChildren;
+	}
+
+	/**
+	 * Parses the children kept as xml by the lazy map loading.
+	 */
+	void loadChildren() {
+		final UnloadedChildren unloaded = unloadedChildren;
+		if (unloaded == null) {
+			return;
+		}
+		unloadedChildren = null;
+		getMap().unregistryUnloadedIDs(unloaded.getIds());
+		for (final NodeModel child : unloaded.load(getMap())) {
+			getModifiableChildren().add(child);
+			child.setParent(this);
+		}
+	}
+
 	public Enumeration<NodeModel> children() {
 		final Iterator<NodeModel> i = getChildrenInternal().iterator();
 		return new Enumeration<NodeModel>() {
@@ -220,7 +297,13 @@ public class NodeModel{
 		return childIndex >= 0 ? getChildrenInternal().get(childIndex) : null; 
 	}
 
+	/**
+	 * Loads unloaded children first, branches which can not be parsed are not counted.
+	 */
 	public int getChildCount() {
+		if (unloadedChildren != null) {
+			loadChildren();
+		}
 		if (getChildrenInternal() == null) {
 			return 0;
 		}
@@ -247,12 +330,58 @@ public class NodeModel{
 		return getExtensionContainer().getExtensions();
 	};
 
-	public FilterInfo getFilterInfo() {
+	/** Returns the {@link FilterInfo} flags, use the static methods of {@link FilterInfo} to read and reset them. */
+	public int getFilterInfo() {
 		return filterInfo;
 	}
 
+	public void setFilterInfo(final int filterInfo) {
+		this.filterInfo = filterInfo;
+	}
+
+	/**
+	 * Creates a model writing through to this node on each call,
+	 * {@link #getCreatedAt()} and {@link #getLastModifiedAt()} read the times without allocation.
+	 */
 	public HistoryInformationModel getHistoryInformation() {
-		return sharedData.getHistoryInformation();
+		if (!hasHistoryInformation()) {
+			return null;
+		}
+		return new HistoryInformationModel(getCreatedAt(), getLastModifiedAt()) {
+			@Override
+			public void setCreatedAt(final Date date) {
+				super.setCreatedAt(date);
+				NodeModel.this.setCreatedAt(date.getTime());
+			}
+
+			@Override
+			public void setLastModifiedAt(final Date date) {
+				super.setLastModifiedAt(date);
+				NodeModel.this.setLastModifiedAt(date.getTime());
+			}
+		};
+	}
+
+	public boolean hasHistoryInformation() {
+		return sharedData.hasHistoryInformation();
+	}
+
+	/** Returns the creation time in milliseconds, 0 if the node has no history information. */
+	public long getCreatedAt() {
+		return sharedData.getCreatedAt();
+	}
+
+	public void setCreatedAt(final long createdAt) {
+		sharedData.setCreatedAt(createdAt);
+	}
+
+	/** Returns the modification time in milliseconds, 0 if the node has no history information. */
+	public long getLastModifiedAt() {
+		return sharedData.getLastModifiedAt();
+	}
+
+	public void setLastModifiedAt(final long lastModifiedAt) {
+		sharedData.setLastModifiedAt(lastModifiedAt);
 	}
 
 	public MindIcon getIcon(final int position) {
@@ -268,7 +397,7 @@ public class NodeModel{
 	}
 
 	public int getIndex(final NodeModel node) {
-		return children.indexOf(node);
+		return getChildrenInternal().indexOf(node);
 	}
 
 	public MapModel getMap() {
@@ -276,6 +405,13 @@ public class NodeModel{
 	}
 
 	public int getNodeLevel(final boolean countHidden) {
+		if (countHidden) {
+			final NodeIntervalIndex.Intervals intervals = getIntervals(null);
+			final int number = intervals != null ? intervals.numberOf(this) : -1;
+			if (number >= 0) {
+				return intervals.depth(number);
+			}
+		}
 		int level = 0;
 		NodeModel parent;
 		for (parent = getParentNode(); parent != null; parent = parent.getParentNode()) {
@@ -283,9 +419,50 @@ public class NodeModel{
 				level++;
 			}
 		}
+		walked(level);
 		return level;
 	}
 
+	/** @return the intervals of the map if both nodes belong to it and the index is up to date */
+	private NodeIntervalIndex.Intervals getIntervals(final NodeModel other) {
+		final NodeIntervalIndex intervalIndex = getIntervalIndex();
+		if (intervalIndex == null || other != null && other.map != map) {
+			return null;
+		}
+		return intervalIndex.getIntervals();
+	}
+
+	private void walked(final int steps) {
+		final NodeIntervalIndex intervalIndex = getIntervalIndex();
+		if (intervalIndex != null) {
+			intervalIndex.walked(steps);
+		}
+	}
+
+	private NodeIntervalIndex getIntervalIndex() {
+		return map != null ? map.getIntervalIndex() : null;
+	}
+
+	/**
+	 * Returns the number of nodes in the subtree of this node including the node itself.
+	 * Children of encrypted nodes are counted even if they are not decrypted.
+	 */
+	public int getSubtreeSize() {
+		final NodeIntervalIndex.Intervals intervals = getIntervals(null);
+		final int number = intervals != null ? intervals.numberOf(this) : -1;
+		if (number >= 0 && intervals.isComplete(number)) {
+			return intervals.subtreeSize(number);
+		}
+		int size = 0;
+		final Iterator<NodeModel> iterator = NodeTraversal.preOrder(this).includingEncryptedChildren().iterator();
+		while (iterator.hasNext()) {
+			iterator.next();
+			size++;
+		}
+		walked(size);
+		return size;
+	}
+
 	public NodeModel getParentNode() {
 		return parent;
 	}
@@ -309,6 +486,13 @@ public class NodeModel{
 		return string;
 	}
 
+	/**
+	 * Returns {@link #getText()} converted to plain text, html texts are converted only once.
+	 */
+	public String getPlainText() {
+		return sharedData.getPlainText();
+	}
+
 	public Collection<INodeView> getViewers() {
 		if (views == null) {
 			views = new LinkedList<INodeView>();
@@ -320,7 +504,13 @@ public class NodeModel{
 		return sharedData.getXmlText();
 	}
 
+	/**
+	 * Does not load unloaded children, they are assumed to contain at least one parsable branch.
+	 */
 	public boolean hasChildren() {
+		if (unloadedChildren != null) {
+			return true;
+		}
 		return getChildCount() != 0;
 	}
 
@@ -333,18 +523,37 @@ public class NodeModel{
 			throw new IllegalArgumentException("Trying to insert nodes into a ciphered node.");
 		}
 		final NodeModel childNode = child;
-		if (index < 0) {
-			index = getChildCount();
-			children.add(index, child);
+		modificationStarted();
+		try {
+			final List<NodeModel> children = getModifiableChildren();
+			if (index < 0) {
+				index = getChildCount();
+				children.add(index, child);
+			}
+			else {
+				children.add(index, child);
+				preferredChild = childNode;
+			}
+			child.setParent(this);
 		}
-		else {
-			children.add(index, child);
-			preferredChild = childNode;
+		finally {
+			modificationFinished();
 		}
-		child.setParent(this);
 		fireNodeInserted(childNode, getIndex(child));
 	}
 
+	private void modificationStarted() {
+		if (map != null) {
+			map.modificationStarted();
+		}
+	}
+
+	private void modificationFinished() {
+		if (map != null) {
+			map.modificationFinished();
+		}
+	}
+
 	private boolean isAccessible() {
 		final EncryptionModel encryptionModel = EncryptionModel.getModel(this);
 		return encryptionModel == null || encryptionModel.isAccessible();
@@ -358,12 +567,24 @@ public class NodeModel{
 		if (parent == null) {
 			return false;
 		}
-		else if (node == parent) {
-			return true;
+		final NodeIntervalIndex.Intervals intervals = getIntervals(node);
+		if (intervals != null) {
+			final int number = intervals.numberOf(this);
+			final int ancestorNumber = intervals.numberOf(node);
+			if (number >= 0 && ancestorNumber >= 0) {
+				return intervals.isDescendant(number, ancestorNumber);
+			}
 		}
-		else {
-			return parent.isDescendantOf(node);
+		int steps = 0;
+		for (NodeModel ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+			steps++;
+			if (ancestor == node) {
+				walked(steps);
+				return true;
+			}
 		}
+		walked(steps);
+		return false;
 	}
 
 	public boolean isFolded() {
@@ -422,7 +643,8 @@ public class NodeModel{
 	}
 
 	public void remove(final int index) {
-	    final NodeModel child = children.get(index);
+		loadChildren();
+	    final NodeModel child = loadedChildren().get(index);
 		if (child == preferredChild) {
 			if (getChildrenInternal().size() > index + 1) {
 				preferredChild = (getChildrenInternal().get(index + 1));
@@ -431,8 +653,17 @@ public class NodeModel{
 				preferredChild = (index > 0) ? (NodeModel) (getChildrenInternal().get(index - 1)) : null;
 			}
 		}
-		child.setParent(null);
-		children.remove(index);
+		modificationStarted();
+		try {
+			child.setParent(null);
+			children.remove(index);
+			if (children.isEmpty()) {
+				children = null;
+			}
+		}
+		finally {
+			modificationFinished();
+		}
 		fireNodeRemoved(child, index);
     }
 
@@ -471,6 +702,14 @@ public class NodeModel{
 		if (wasFolded != folded) {
 			final EncryptionModel encryptionModel = EncryptionModel.getModel(this);
 			sharedData.setFolded(encryptionModel != null && !encryptionModel.isAccessible() || folded && ! AlwaysUnfoldedNode.isConnectorNode(this));
+			BranchXmlCache.invalidate(this);
+			// detached nodes have no clone list containing themselves
+			SubtreeAggregates.invalidate(this);
+			for (final NodeModel clone : allClones()) {
+				if (clone != this) {
+					SubtreeAggregates.invalidate(clone);
+				}
+			}
 		}
 		fireNodeChanged(new NodeChangeEvent(this, NodeChangeType.FOLDING, Boolean.valueOf(wasFolded), Boolean.valueOf(folded)));
 	}
@@ -499,13 +738,19 @@ public class NodeModel{
 	/**
 	 */
 	public void setMap(final MapModel map) {
+		loadChildren();
 		this.map = map;
-		for (final NodeModel child : getChildrenInternal()) {
+		for (final NodeModel child : loadedChildren()) {
 			child.setMap(map);
 		}
 	}
 
 	public void setParent(final NodeModel newParent) {
+		if (map != null) {
+			map.structureChanged();
+		}
+		SubtreeAggregates.invalidate(parent);
+		SubtreeAggregates.invalidate(newParent);
 		if(parent == null && newParent != null && newParent.isAttached())
 	        attach();
 		else if(parent != null && parent.isAttached() &&  (newParent == null || !newParent.isAttached()))
@@ -515,29 +760,29 @@ public class NodeModel{
 
 	void attach() {
 		attachClones();
-	    for(NodeModel child : children)
+	    for(NodeModel child : loadedChildren())
 	    	child.attach();
     }
 
 	private void attachClones() {
-		for(Clones clonesGroup : clones)
-			clonesGroup.attach();
+		for(CloneType cloneType : CloneType.values())
+			clones(cloneType).attach();
 	}
 
 	private void detach() {
 		detachClones();
-	    for(NodeModel child : children)
+	    for(NodeModel child : loadedChildren())
 	    	child.detach();
     }
 
 	private void detachClones() {
-		for(Clones clonesGroup : clones)
-			clonesGroup.detach(this);
+		for(CloneType cloneType : CloneType.values())
+			clones(cloneType).detach(this);
 	}
 
 
 	boolean isAttached() {
-	    return clones[0].size() != 0;
+	    return clones(TREE).size() != 0;
     }
 
 	public final void setText(final String text) {
@@ -554,7 +799,7 @@ public class NodeModel{
 
 	@Override
 	public String toString() {
-		return HtmlUtils.htmlToPlain(getText());
+		return getPlainText();
 	}
 
 	public int depth() {
@@ -586,17 +831,24 @@ public class NodeModel{
     }
 
 	void fireNodeChanged(INodeChangeListener[] nodeChangeListeners, final NodeChangeEvent nodeChangeEvent) {
-		for(NodeModel node : clones[CONTENT.ordinal()]){
+		fireNodeChanged(nodeChangeListeners, nodeChangeEvent, true);
+	}
+
+	void fireNodeChanged(INodeChangeListener[] nodeChangeListeners, final NodeChangeEvent nodeChangeEvent,
+	                     final boolean notifyViews) {
+		for(NodeModel node : clones(CONTENT)){
 			final NodeChangeEvent cloneEvent = nodeChangeEvent.forNode(node);
-			node.fireSingleNodeChanged(nodeChangeListeners, cloneEvent);
+			node.fireSingleNodeChanged(nodeChangeListeners, cloneEvent, notifyViews);
 		}
 	}
 
-	private void fireSingleNodeChanged(INodeChangeListener[] nodeChangeListeners, final NodeChangeEvent nodeChangeEvent) {
+	private void fireSingleNodeChanged(INodeChangeListener[] nodeChangeListeners, final NodeChangeEvent nodeChangeEvent,
+	                                   final boolean notifyViews) {
 	    for (final INodeChangeListener listener : nodeChangeListeners) {
 			listener.nodeChanged(nodeChangeEvent);
 		}
-		fireNodeChanged(nodeChangeEvent);
+		if (notifyViews)
+			fireNodeChanged(nodeChangeEvent);
     }
 	
     public NodeModel cloneTree(){
@@ -626,8 +878,8 @@ public class NodeModel{
 	public void convertToClone(NodeModel node, CloneType cloneType) {
 		sharedData = node.sharedData;
 		if(cloneType == TREE)
-			this.clones[TREE.ordinal()] = new DetachedNodeList(this, node, TREE);
-		this.clones[CONTENT.ordinal()] = new DetachedNodeList(this, node, CONTENT);
+			putClones(new DetachedNodeList(this, node, TREE));
+		putClones(new DetachedNodeList(this, node, CONTENT));
     }
 
 	public  Clones subtreeClones() {
@@ -639,14 +891,20 @@ public class NodeModel{
     }
 
 	Clones clones(final CloneType cloneType) {
-		return clones[cloneType.ordinal()];
+		final int index = cloneType.ordinal();
+		if (clones != null && clones[index] != null)
+			return clones[index];
+		if ((attachedCloneTypes & 1 << index) != 0)
+			return new SingleNodeList(this, cloneType);
+		else
+			return new DetachedNodeList(this, cloneType);
 	}
 
 	public boolean subtreeContainsCloneOf(NodeModel node) {
 		for(NodeModel clone : node.subtreeClones())
 			if(equals(clone))
 				return true;
-		for(NodeModel child : children)
+		for(NodeModel child : loadedChildren())
 			if(child.subtreeContainsCloneOf(node))
 				return true;
 		return false;
@@ -669,12 +927,12 @@ public class NodeModel{
     }
 	
 	public boolean isCloneTreeRoot(){
-		return parent != null && parent.clones[TREE_CLONE_INDEX].size() < clones[TREE_CLONE_INDEX].size()
-				|| clones[TREE_CLONE_INDEX].size() == 1 && clones[CONTENT_CLONE_INDEX].size() > 1;
+		return parent != null && parent.clones(TREE).size() < clones(TREE).size()
+				|| clones(TREE).size() == 1 && clones(CONTENT).size() > 1;
 	}
 	
 	public boolean isCloneTreeNode(){
-		return parent != null && clones[TREE_CLONE_INDEX].size() > 1 && parent.clones[TREE_CLONE_INDEX].size() == clones[TREE_CLONE_INDEX].size();
+		return parent != null && clones(TREE).size() > 1 && parent.clones(TREE).size() == clones(TREE).size();
 	}
 	
 	public int nextNodeIndex(int index, final boolean leftSide) {
@@ -713,11 +971,16 @@ public class NodeModel{
 		Clones[] clonesSwap = clones;
 		this.clones = duplicate.clones;
 		duplicate.clones = clonesSwap;
+		byte attachedCloneTypesSwap = attachedCloneTypes;
+		this.attachedCloneTypes = duplicate.attachedCloneTypes;
+		duplicate.attachedCloneTypes = attachedCloneTypesSwap;
 		for(CloneType cloneType : CloneType.values()) {
-			final DetachedNodeList detachedClone = (DetachedNodeList) clones[cloneType.ordinal()];
-			clones[cloneType.ordinal()] = detachedClone.forClone(this);
+			final DetachedNodeList detachedClone = (DetachedNodeList) clones(cloneType);
+			putClones(detachedClone.forClone(this));
 		} 
 
 		this.attachClones();
+		SubtreeAggregates.invalidate(this);
+		SubtreeAggregates.invalidate(duplicate);
 	}
 }
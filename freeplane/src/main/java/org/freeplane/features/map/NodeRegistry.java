@@ -0,0 +1,174 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.util.HashMap;
+
+/**
+ * Maps node ids to nodes.
+ *
+ * Ids of form ID_&lt;number&gt; are kept in an open addressing table keyed by the number,
+ * other ids found in loaded files are kept in a hash map.
+ *
+ * @author Dimitry Polivaev
+ */
+class NodeRegistry {
+	static final String ID_PREFIX = "ID_";
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int NOT_A_NUMBER = -1;
+	private int[] keys;
+	private NodeModel[] values;
+	private int size;
+	final private HashMap<String, NodeModel> otherIds;
+
+	NodeRegistry() {
+		keys = new int[INITIAL_CAPACITY];
+		values = new NodeModel[INITIAL_CAPACITY];
+		otherIds = new HashMap<String, NodeModel>();
+	}
+
+	static String idOf(final int number) {
+		return ID_PREFIX + Integer.toString(number);
+	}
+
+	/**
+	 * Returns the number of an id which is exactly ID_&lt;number&gt; or -1.
+	 */
+	static int numberOf(final String id) {
+		final int length = id.length();
+		final int start = ID_PREFIX.length();
+		if (length <= start || length > start + 10 || !id.startsWith(ID_PREFIX)) {
+			return NOT_A_NUMBER;
+		}
+		if (id.charAt(start) == '0' && length > start + 1) {
+			return NOT_A_NUMBER;
+		}
+		long number = 0;
+		for (int i = start; i < length; i++) {
+			final char c = id.charAt(i);
+			if (c < '0' || c > '9') {
+				return NOT_A_NUMBER;
+			}
+			number = number * 10 + (c - '0');
+		}
+		return number <= Integer.MAX_VALUE ? (int) number : NOT_A_NUMBER;
+	}
+
+	private int slot(final int number) {
+		final int hash = number * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (keys.length - 1);
+	}
+
+	private int find(final int number) {
+		int slot = slot(number);
+		while (values[slot] != null) {
+			if (keys[slot] == number) {
+				return slot;
+			}
+			slot = (slot + 1) & (keys.length - 1);
+		}
+		return -1 - slot;
+	}
+
+	boolean containsNumber(final int number) {
+		return find(number) >= 0;
+	}
+
+	boolean containsKey(final String id) {
+		return get(id) != null;
+	}
+
+	NodeModel get(final String id) {
+		final int number = numberOf(id);
+		if (number == NOT_A_NUMBER) {
+			return otherIds.get(id);
+		}
+		final int slot = find(number);
+		return slot >= 0 ? values[slot] : null;
+	}
+
+	NodeModel put(final String id, final NodeModel node) {
+		if (node == null) {
+			return remove(id);
+		}
+		final int number = numberOf(id);
+		if (number == NOT_A_NUMBER) {
+			return otherIds.put(id, node);
+		}
+		final int slot = find(number);
+		if (slot >= 0) {
+			final NodeModel old = values[slot];
+			values[slot] = node;
+			return old;
+		}
+		if ((size + 1) * 4 > keys.length * 3) {
+			resize(keys.length * 2);
+			return put(id, node);
+		}
+		keys[-1 - slot] = number;
+		values[-1 - slot] = node;
+		size++;
+		return null;
+	}
+
+	private void resize(final int capacity) {
+		final int[] oldKeys = keys;
+		final NodeModel[] oldValues = values;
+		keys = new int[capacity];
+		values = new NodeModel[capacity];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				final int slot = -1 - find(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	NodeModel remove(final String id) {
+		final int number = numberOf(id);
+		if (number == NOT_A_NUMBER) {
+			return otherIds.remove(id);
+		}
+		int slot = find(number);
+		if (slot < 0) {
+			return null;
+		}
+		final NodeModel removed = values[slot];
+		final int mask = keys.length - 1;
+		int next = (slot + 1) & mask;
+		while (values[next] != null) {
+			final int home = slot(keys[next]);
+			if (((next - home) & mask) >= ((next - slot) & mask)) {
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+			next = (next + 1) & mask;
+		}
+		values[slot] = null;
+		size--;
+		return removed;
+	}
+
+	int size() {
+		return size + otherIds.size();
+	}
+}
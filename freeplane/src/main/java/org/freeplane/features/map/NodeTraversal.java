@@ -0,0 +1,439 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.freeplane.features.filter.condition.ICondition;
+
+/**
+ * Iterates over a subtree without recursion, so that the depth of the tree is limited by the heap only.
+ *
+ * By default children of encrypted nodes which are not decrypted are not visited,
+ * like {@link MapController#childrenUnfolded(NodeModel)} does.
+ * Iteration can be stopped at any time by leaving the loop.
+ *
+ * @author Dimitry Polivaev
+ */
+public class NodeTraversal implements Iterable<NodeModel> {
+	public enum Order {
+		PRE_ORDER, POST_ORDER, BREADTH_FIRST
+	}
+
+	/**
+	 * Receives the nodes of a depth first walk.
+	 */
+	public interface INodeVisitor {
+		/** @return false if the children of the node should not be visited */
+		boolean enter(NodeModel node);
+
+		/** called after the children of the node were visited or skipped */
+		void leave(NodeModel node);
+	}
+
+	public static abstract class NodeIterator implements Iterator<NodeModel> {
+		private NodeModel next;
+		private boolean nextComputed;
+
+		/**
+		 * The children of the node returned by the last call to {@link #next()} are not visited.
+		 * Has no effect for post order and if {@link #hasNext()} was called after {@link #next()}.
+		 */
+		public void skipChildren() {
+		}
+
+		/**
+		 * Returns the depth of the last returned node relatively to the start node.
+		 */
+		public abstract int depth();
+
+		abstract NodeModel computeNext();
+
+		public boolean hasNext() {
+			if (!nextComputed) {
+				next = computeNext();
+				nextComputed = true;
+			}
+			return next != null;
+		}
+
+		public NodeModel next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			nextComputed = false;
+			return next;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	public static final ICondition ALL_NODES = new ICondition() {
+		public boolean checkNode(final NodeModel node) {
+			return true;
+		}
+	};
+	public static final ICondition UNFOLDED_NODES = new ICondition() {
+		public boolean checkNode(final NodeModel node) {
+			return !node.isFolded();
+		}
+	};
+	public static final ICondition VISIBLE_NODES = new ICondition() {
+		public boolean checkNode(final NodeModel node) {
+			return node.hasVisibleContent();
+		}
+	};
+
+	private final NodeModel start;
+	private final Order order;
+	private ICondition descendCondition = ALL_NODES;
+	private ICondition selectCondition = ALL_NODES;
+	private boolean includesEncryptedChildren = false;
+	private MapSnapshot snapshot = null;
+	private boolean visitsLoadedChildrenOnly = false;
+
+	public NodeTraversal(final NodeModel start, final Order order) {
+		this.start = start;
+		this.order = order;
+	}
+
+	public static NodeTraversal preOrder(final NodeModel start) {
+		return new NodeTraversal(start, Order.PRE_ORDER);
+	}
+
+	public static NodeTraversal postOrder(final NodeModel start) {
+		return new NodeTraversal(start, Order.POST_ORDER);
+	}
+
+	public static NodeTraversal breadthFirst(final NodeModel start) {
+		return new NodeTraversal(start, Order.BREADTH_FIRST);
+	}
+
+	/** Only children of nodes satisfying the condition are visited, e.g. {@link #UNFOLDED_NODES}. */
+	public NodeTraversal descendingInto(final ICondition condition) {
+		descendCondition = condition;
+		return this;
+	}
+
+	/** Only nodes satisfying the condition are returned, the children of other nodes are still visited. */
+	public NodeTraversal selecting(final ICondition condition) {
+		selectCondition = condition;
+		return this;
+	}
+
+	/** Children of encrypted nodes are visited even if they are not decrypted. */
+	public NodeTraversal includingEncryptedChildren() {
+		includesEncryptedChildren = true;
+		return this;
+	}
+
+	/** Children which are not loaded from xml yet are not visited. */
+	public NodeTraversal visitingLoadedChildrenOnly() {
+		visitsLoadedChildrenOnly = true;
+		return this;
+	}
+
+	/**
+	 * Throws {@link StaleSnapshotException} before visiting children of any node if the snapshot gets stale.
+	 * Used for traversals on threads other than the event dispatch thread,
+	 * so like {@link #visitingLoadedChildrenOnly()} it never loads children.
+	 */
+	public NodeTraversal validatedBy(final MapSnapshot snapshot) {
+		this.snapshot = snapshot;
+		this.visitsLoadedChildrenOnly = true;
+		return this;
+	}
+
+	public NodeIterator iterator() {
+		switch (order) {
+			case POST_ORDER:
+				return new PostOrderIterator();
+			case BREADTH_FIRST:
+				return new BreadthFirstIterator();
+			default:
+				return new PreOrderIterator();
+		}
+	}
+
+	/**
+	 * Walks the subtree depth first calling the visitor before and after the children of each node.
+	 * The conditions given by {@link #descendingInto(ICondition)} and {@link #selecting(ICondition)} are ignored.
+	 */
+	public static void walk(final NodeModel start, final INodeVisitor visitor) {
+		new NodeTraversal(start, Order.PRE_ORDER).walk(visitor);
+	}
+
+	public void walk(final INodeVisitor visitor) {
+		final ChildrenStack stack = new ChildrenStack(start);
+		while (!stack.isEmpty()) {
+			if (stack.isExhausted()) {
+				stack.pop();
+				if (!stack.isEmpty()) {
+					visitor.leave(stack.current());
+					stack.advance();
+				}
+			}
+			else {
+				final NodeModel node = stack.current();
+				if (visitor.enter(node)) {
+					final List<NodeModel> children = children(node);
+					if (!children.isEmpty()) {
+						stack.push(children);
+						continue;
+					}
+				}
+				visitor.leave(node);
+				stack.advance();
+			}
+		}
+	}
+
+	private boolean descendsInto(final NodeModel node) {
+		return descendCondition.checkNode(node);
+	}
+
+	private boolean selects(final NodeModel node) {
+		return selectCondition.checkNode(node);
+	}
+
+	List<NodeModel> children(final NodeModel node) {
+		if (snapshot != null) {
+			snapshot.checkNotStale();
+		}
+		if (!includesEncryptedChildren) {
+			final EncryptionModel encryptionModel = EncryptionModel.getModel(node);
+			if (encryptionModel != null && !encryptionModel.isAccessible()) {
+				return Collections.emptyList();
+			}
+		}
+		if (visitsLoadedChildrenOnly && node.hasUnloadedChildren()) {
+			return Collections.emptyList();
+		}
+		return node.getChildrenInternal();
+	}
+
+	/**
+	 * Stack of children lists with the index of the current child in each list.
+	 */
+	private static class ChildrenStack {
+		private List<?>[] lists = new List<?>[16];
+		private int[] indexes = new int[16];
+		private boolean[] entered = new boolean[16];
+		private int top;
+
+		ChildrenStack(final NodeModel start) {
+			lists[0] = Collections.singletonList(start);
+			top = 0;
+		}
+
+		boolean isEmpty() {
+			return top < 0;
+		}
+
+		int depth() {
+			return top;
+		}
+
+		boolean isExhausted() {
+			return indexes[top] >= lists[top].size();
+		}
+
+		NodeModel current() {
+			return (NodeModel) lists[top].get(indexes[top]);
+		}
+
+		boolean isEntered() {
+			return entered[top];
+		}
+
+		void setEntered() {
+			entered[top] = true;
+		}
+
+		void advance() {
+			indexes[top]++;
+			entered[top] = false;
+		}
+
+		void push(final List<NodeModel> children) {
+			top++;
+			if (top == lists.length) {
+				lists = Arrays.copyOf(lists, top * 2);
+				indexes = Arrays.copyOf(indexes, top * 2);
+				entered = Arrays.copyOf(entered, top * 2);
+			}
+			lists[top] = children;
+			indexes[top] = 0;
+			entered[top] = false;
+		}
+
+		void pop() {
+			lists[top] = null;
+			top--;
+		}
+	}
+
+	private class PreOrderIterator extends NodeIterator {
+		private final ChildrenStack stack = new ChildrenStack(start);
+		private NodeModel lastNode;
+		private int lastDepth;
+		private boolean skipsChildren;
+
+		@Override
+		public void skipChildren() {
+			skipsChildren = true;
+		}
+
+		@Override
+		public int depth() {
+			return lastDepth;
+		}
+
+		@Override
+		NodeModel computeNext() {
+			if (lastNode != null && !skipsChildren && descendsInto(lastNode)) {
+				final List<NodeModel> children = children(lastNode);
+				if (!children.isEmpty()) {
+					stack.push(children);
+				}
+			}
+			lastNode = null;
+			skipsChildren = false;
+			while (!stack.isEmpty()) {
+				if (stack.isExhausted()) {
+					stack.pop();
+					continue;
+				}
+				final NodeModel node = stack.current();
+				final int depth = stack.depth();
+				stack.advance();
+				if (selects(node)) {
+					lastNode = node;
+					lastDepth = depth;
+					return node;
+				}
+				if (descendsInto(node)) {
+					final List<NodeModel> children = children(node);
+					if (!children.isEmpty()) {
+						stack.push(children);
+					}
+				}
+			}
+			return null;
+		}
+	}
+
+	private class PostOrderIterator extends NodeIterator {
+		private final ChildrenStack stack = new ChildrenStack(start);
+		private int lastDepth;
+
+		@Override
+		public int depth() {
+			return lastDepth;
+		}
+
+		@Override
+		NodeModel computeNext() {
+			while (!stack.isEmpty()) {
+				if (stack.isExhausted()) {
+					stack.pop();
+					continue;
+				}
+				final NodeModel node = stack.current();
+				if (!stack.isEntered()) {
+					stack.setEntered();
+					if (descendsInto(node)) {
+						final List<NodeModel> children = children(node);
+						if (!children.isEmpty()) {
+							stack.push(children);
+							continue;
+						}
+					}
+				}
+				final int depth = stack.depth();
+				stack.advance();
+				if (selects(node)) {
+					lastDepth = depth;
+					return node;
+				}
+			}
+			return null;
+		}
+	}
+
+	private class BreadthFirstIterator extends NodeIterator {
+		private final ArrayDeque<NodeModel> nodes = new ArrayDeque<NodeModel>();
+		private final ArrayDeque<Integer> depths = new ArrayDeque<Integer>();
+		private NodeModel lastNode;
+		private int lastDepth;
+		private boolean skipsChildren;
+
+		BreadthFirstIterator() {
+			nodes.add(start);
+			depths.add(0);
+		}
+
+		@Override
+		public void skipChildren() {
+			skipsChildren = true;
+		}
+
+		@Override
+		public int depth() {
+			return lastDepth;
+		}
+
+		private void enqueueChildren(final NodeModel node, final int depth) {
+			if (descendsInto(node)) {
+				for (final NodeModel child : children(node)) {
+					nodes.add(child);
+					depths.add(depth + 1);
+				}
+			}
+		}
+
+		@Override
+		NodeModel computeNext() {
+			if (lastNode != null && !skipsChildren) {
+				enqueueChildren(lastNode, lastDepth);
+			}
+			lastNode = null;
+			skipsChildren = false;
+			while (!nodes.isEmpty()) {
+				final NodeModel node = nodes.poll();
+				final int depth = depths.poll();
+				if (selects(node)) {
+					lastNode = node;
+					lastDepth = depth;
+					return node;
+				}
+				enqueueChildren(node, depth);
+			}
+			return null;
+		}
+	}
+}
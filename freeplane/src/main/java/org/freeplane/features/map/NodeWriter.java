@@ -20,6 +20,9 @@
 package org.freeplane.features.map;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,12 +36,15 @@ import org.freeplane.core.ui.LengthUnits;
 import org.freeplane.core.util.Quantity;
 import org.freeplane.features.icon.IconController;
 import org.freeplane.features.link.LinkBuilder;
+import org.freeplane.features.link.NodeLinks;
 import org.freeplane.features.map.MapWriter.Hint;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.MapWriter.WriterHint;
 import org.freeplane.n3.nanoxml.XMLElement;
 
 public class NodeWriter implements IElementWriter, IAttributeWriter {
+	public static final String SAVE_MAPS_INCREMENTALLY = "save_maps_incrementally";
+	private boolean isBranchCacheable;
 	private boolean mayWriteChildren;
 	final private MapController mapController;
 	final private boolean shouldWriteChildren;
@@ -66,22 +72,102 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 		this.mayWriteChildren = true;
 		this.writeInvisible = writeInvisible;
 		this.nodeTag = nodeTag;
+		writeFolded = writesFolding();
+	}
+
+	static boolean writesFolding() {
 		final String saveFolding = ResourceController.getResourceController().getProperty(
 		    NodeBuilder.RESOURCES_SAVE_FOLDING);
-		writeFolded = saveFolding.equals(NodeBuilder.RESOURCES_ALWAYS_SAVE_FOLDING)
+		return saveFolding.equals(NodeBuilder.RESOURCES_ALWAYS_SAVE_FOLDING)
 		        || saveFolding.equals(NodeBuilder.RESOURCES_SAVE_FOLDING_IF_MAP_IS_CHANGED);
 	}
 
 	private void saveChildren(final ITreeWriter writer, final NodeModel node) throws IOException {
+		final Object branchPlaceholder = writer.getHint(WriterHint.BRANCH_PLACEHOLDER);
+		if (node.isRoot() && branchPlaceholder instanceof String) {
+			writer.addElementContent((String) branchPlaceholder);
+			return;
+		}
+		final BranchXmlCache branchXmlCache = node.isRoot() ? getBranchXmlCache(writer, node.getMap()) : null;
 		for (final NodeModel child: mapController.childrenUnfolded(node)) {
-		if (writeInvisible || child.isVisible()) {
+			if (branchXmlCache != null) {
+				saveBranch(writer, child, branchXmlCache);
+			}
+			else if (writeInvisible || child.isVisible()) {
 				writer.setHint(WriterHint.ALREADY_WRITTEN, isAlreadyWritten(child));
 				writer.addElement(child, nodeTag);
 			}
 			else {
-				saveChildren(writer, child);
+				saveVisibleDescendants(writer, child);
+			}
+		}
+	}
+
+	private void saveVisibleDescendants(final ITreeWriter writer, final NodeModel node) throws IOException {
+		final NodeTraversal.NodeIterator iterator = NodeTraversal.preOrder(node).iterator();
+		iterator.next();
+		while (iterator.hasNext()) {
+			final NodeModel descendant = iterator.next();
+			if (descendant.isVisible()) {
+				writer.setHint(WriterHint.ALREADY_WRITTEN, isAlreadyWritten(descendant));
+				writer.addElement(descendant, nodeTag);
+				iterator.skipChildren();
+			}
+		}
+	}
+
+	private BranchXmlCache getBranchXmlCache(final ITreeWriter writer, final MapModel map) {
+		if (!(canCopyUnloadedChildren(writer) && shouldWriteChildren && map != null
+		        && !mapController.isChangeBatchInProgress()
+		        && !(writer.getHint(WriterHint.BACKGROUND_WRITER) instanceof MapWriter)
+		        && Boolean.FALSE.equals(writer.getHint(WriterHint.FORCE_FORMATTING)) && ResourceController
+		        .getResourceController().getBooleanProperty(SAVE_MAPS_INCREMENTALLY))) {
+			return null;
+		}
+		final BranchXmlCache branchXmlCache = BranchXmlCache.getCache(map);
+		branchXmlCache.checkWriterOptions(ResourceController.getResourceController().getBooleanProperty(
+		    NodeBuilder.RESOURCES_SAVE_MODIFICATION_TIMES), writeFolded);
+		return branchXmlCache;
+	}
+
+	/**
+	 * Copies the xml of unchanged branches from the cache, other branches are rendered and cached
+	 * unless they contain clones, connectors, local hyperlinks or encrypted nodes
+	 * whose xml depends on other branches.
+	 */
+	private void saveBranch(final ITreeWriter writer, final NodeModel branch, final BranchXmlCache branchXmlCache)
+	        throws IOException {
+		String xml = branchXmlCache.get(branch);
+		if (xml == null) {
+			final StringWriter branchWriter = new StringWriter();
+			final TreeXmlWriter branchXmlWriter = new TreeXmlWriter(mapController.getWriteManager(), branchWriter);
+			branchXmlWriter.setHint(Hint.MODE, mode(writer));
+			branchXmlWriter.setHint(WriterHint.ALREADY_WRITTEN, isAlreadyWritten(branch));
+			isBranchCacheable = true;
+			branchXmlWriter.addElement(branch, nodeTag);
+			branchXmlWriter.flush();
+			xml = branchWriter.toString();
+			if (isBranchCacheable) {
+				branchXmlCache.put(branch, xml);
 			}
+			isBranchCacheable = false;
 		}
+		writer.addElementContent(xml);
+	}
+
+	private static boolean dependsOnOtherBranches(final NodeModel node) {
+		if (node.allClones().size() > 1 || EncryptionModel.getModel(node) != null) {
+			return true;
+		}
+		final NodeLinks links = node.getExtension(NodeLinks.class);
+		if (links == null) {
+			return false;
+		}
+		if (!links.getLinks().isEmpty()) {
+			return true;
+		}
+		final URI hyperlink = links.getHyperLink(node);
+		return hyperlink != null && hyperlink.toString().startsWith("#");
 	}
 
 	/*
@@ -101,6 +187,9 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 	private void writeAttributesGenerateContent(final ITreeWriter writer, final NodeModel node) {
 		/** fc, 12.6.2005: XML must not contain any zero characters. */
 		xmlNode = new XMLElement();
+		if (isBranchCacheable && dependsOnOtherBranches(node)) {
+			isBranchCacheable = false;
+		}
 		EncryptionModel encryptionModel = EncryptionModel.getModel(node);
 		mayWriteChildren = true;
 		final Object mode = mode(writer);
@@ -126,19 +215,27 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 		}
 		final boolean saveID = !mode.equals(Mode.STYLE);
 		if (saveID) {
-			final String id = node.createID();
-			writer.addAttribute("ID", id);
+			final String id;
+			if (Boolean.TRUE.equals(writer.getHint(WriterHint.EXISTING_IDS_ONLY)) && node.allClones().size() <= 1) {
+				id = node.getID();
+			}
+			else {
+				id = node.createID();
+			}
+			if (id != null) {
+				writer.addAttribute("ID", id);
+			}
 			writeReferenceNodeId(writer, node);
 		}
 		if(! isNodeAlreadyWritten){
 			if (!mode.equals(Mode.STYLE)
-					&& node.getHistoryInformation() != null
+					&& node.hasHistoryInformation()
 					&& ResourceController.getResourceController().getBooleanProperty(
 						NodeBuilder.RESOURCES_SAVE_MODIFICATION_TIMES)) {
-				writer.addAttribute(NodeBuilder.XML_NODE_HISTORY_CREATED_AT, TreeXmlWriter.dateToString(node
-					.getHistoryInformation().getCreatedAt()));
-				writer.addAttribute(NodeBuilder.XML_NODE_HISTORY_LAST_MODIFIED_AT, TreeXmlWriter.dateToString(node
-					.getHistoryInformation().getLastModifiedAt()));
+				writer.addAttribute(NodeBuilder.XML_NODE_HISTORY_CREATED_AT, TreeXmlWriter.dateToString(new Date(node
+					.getCreatedAt())));
+				writer.addAttribute(NodeBuilder.XML_NODE_HISTORY_LAST_MODIFIED_AT, TreeXmlWriter.dateToString(new Date(node
+					.getLastModifiedAt())));
 			}
 		}
 		if(! isNodeAlreadyWritten || Mode.EXPORT.equals(mode)) {
@@ -194,11 +291,23 @@ public class NodeWriter implements IElementWriter, IAttributeWriter {
 				writer.addElement(null, xmlNode.getChildAtIndex(i));
 			}
 		}
-		if (mayWriteChildren && shouldWriteChildren && mapController.childrenUnfolded(node).size()>0) {
-			saveChildren(writer, node);
+		if (mayWriteChildren && shouldWriteChildren) {
+			if (node.hasUnloadedChildren() && canCopyUnloadedChildren(writer)) {
+				for (final String childXml : node.getUnloadedChildren().getChildrenXml()) {
+					writer.addElementContent(childXml);
+					writer.addElementContent("\n");
+				}
+			}
+			else if (mapController.childrenUnfolded(node).size()>0) {
+				saveChildren(writer, node);
+			}
 		}
 	}
 
+	private boolean canCopyUnloadedChildren(final ITreeWriter writer) {
+		return writeInvisible && writeFolded && Mode.FILE.equals(mode(writer)) && NodeBuilder.XML_NODE.equals(nodeTag);
+	}
+
 	private Object mode(final ITreeWriter writer) {
 	    return writer.getHint(Hint.MODE);
     }
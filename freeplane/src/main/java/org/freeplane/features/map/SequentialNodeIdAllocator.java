@@ -0,0 +1,41 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+/**
+ * Allocates increasing id numbers starting from 1 and following the greatest number used so far.
+ *
+ * @author Dimitry Polivaev
+ */
+public class SequentialNodeIdAllocator implements INodeIdAllocator {
+	private int next = 1;
+
+	public int nextIdNumber() {
+		final int number = next;
+		next = number == Integer.MAX_VALUE ? 1 : number + 1;
+		return number;
+	}
+
+	public void idNumberUsed(final int number) {
+		if (number >= next && number < Integer.MAX_VALUE) {
+			next = number + 1;
+		}
+	}
+}
@@ -19,9 +19,12 @@
  */
 package org.freeplane.features.map;
 
+
 import org.freeplane.core.extension.ExtensionContainer;
 import org.freeplane.core.extension.SmallExtensionMap;
 import org.freeplane.core.util.HtmlUtils;
+import org.freeplane.core.util.HtmlUtils.PlainText;
+import org.freeplane.core.util.TextPool;
 import org.freeplane.core.util.XmlUtils;
 
 /**
@@ -29,10 +32,14 @@ import org.freeplane.core.util.XmlUtils;
  */
 public class SharedNodeData {
 	final private ExtensionContainer extensionContainer;
-	private HistoryInformationModel historyInformation;
+	private boolean hasHistoryInformation;
+	private long createdAt;
+	private long lastModifiedAt;
 	final private NodeIconSetModel icons;
 	private Object userObject;
-	private String xmlText;
+	/** kept compacted by {@link TextPool#compact(String)} */
+	private Object xmlText;
+	private PlainText plainText;
 	private boolean folded;
 
 	public SharedNodeData() {
@@ -45,12 +52,32 @@ public class SharedNodeData {
 		return extensionContainer;
 	}
 
-	public HistoryInformationModel getHistoryInformation() {
-		return historyInformation;
+	public boolean hasHistoryInformation() {
+		return hasHistoryInformation;
+	}
+
+	public long getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(final long createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public long getLastModifiedAt() {
+		return lastModifiedAt;
+	}
+
+	public void setLastModifiedAt(final long lastModifiedAt) {
+		this.lastModifiedAt = lastModifiedAt;
 	}
 
 	public void setHistoryInformation(HistoryInformationModel historyInformation) {
-		this.historyInformation = historyInformation;
+		hasHistoryInformation = historyInformation != null;
+		if (hasHistoryInformation) {
+			createdAt = historyInformation.getCreatedAt().getTime();
+			lastModifiedAt = historyInformation.getLastModifiedAt().getTime();
+		}
 	}
 
 	public NodeIconSetModel getIcons() {
@@ -61,7 +88,23 @@ public class SharedNodeData {
 		return userObject;
 	}
 
+	/**
+	 * Returns the text of the user object converted to plain text, html texts are converted only once.
+	 */
+	public String getPlainText() {
+		final Object source = userObject;
+		final PlainText cachedText = plainText;
+		if (cachedText != null && cachedText.isConvertedFrom(source)) {
+			return cachedText.getText();
+		}
+		final String text = source != null ? source.toString() : "";
+		final String convertedText = HtmlUtils.htmlToPlain(text);
+		plainText = convertedText != text ? new PlainText(source, convertedText) : null;
+		return convertedText;
+	}
+
 	public void setUserObject(Object data) {
+		plainText = null;
 		if (data instanceof String) {
 			setText(data.toString());
 		}
@@ -72,22 +115,28 @@ public class SharedNodeData {
 	}
 
 	public String getXmlText() {
-		return xmlText;
+		return TextPool.expand(xmlText);
 	}
 
 	public void setXmlText(String content) {
-		xmlText = XmlUtils.makeValidXml(content);
-		userObject = HtmlUtils.toHtml(xmlText);
+		plainText = null;
+		final String validXml = XmlUtils.makeValidXml(content);
+		userObject = HtmlUtils.toHtml(validXml);
+		xmlText = TextPool.compact(validXml, (String) userObject);
 	}
 
 	public void setText(String text) {
+		plainText = null;
 		try {
 			userObject = XmlUtils.makeValidXml(text);
-			xmlText = HtmlUtils.toXhtml(text);
-			if (xmlText != null && !xmlText.startsWith("<")) {
+			final String xhtml = HtmlUtils.toXhtml(text);
+			if (xhtml != null && !xhtml.startsWith("<")) {
 				userObject = " " + text;
 				xmlText = null;
 			}
+			else {
+				xmlText = TextPool.compact(xhtml, (String) userObject);
+			}
 		} catch (Exception e) {
 			userObject = " " + text;
 			xmlText = null;
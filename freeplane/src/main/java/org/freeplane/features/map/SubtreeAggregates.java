@@ -0,0 +1,170 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.awt.EventQueue;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freeplane.features.filter.condition.ICondition;
+
+/**
+ * Values describing the whole subtree of a node: the number of its descendants,
+ * the number of descendants which are not hidden by folding, whether any descendant is folded
+ * and the height of the subtree.
+ * Children of encrypted nodes which are not decrypted are ignored like by {@link MapController#childrenUnfolded(NodeModel)}.
+ *
+ * The values are computed on demand from the values of the children and kept by the node until
+ * a child is inserted or removed, a descendant is folded or unfolded or an encrypted node is locked or unlocked
+ * anywhere in the subtree. Such changes invalidate the values of the changed node and all its ancestors.
+ * Values computed on threads other than the event dispatch thread are not kept.
+ * Computing the values loads all children which are not loaded yet, so callers which need to keep
+ * folded branches unloaded use {@link #hasFoldedDescendant(NodeModel)}.
+ *
+ * @author Dimitry Polivaev
+ */
+public class SubtreeAggregates {
+	private static final SubtreeAggregates LEAF = new SubtreeAggregates(0, 0, false, 0);
+	private static final ICondition WITHOUT_AGGREGATES = new ICondition() {
+		public boolean checkNode(final NodeModel node) {
+			return node.subtreeAggregates == null;
+		}
+	};
+
+	final private int descendantCount;
+	final private int unfoldedDescendantCount;
+	final private boolean hasFoldedDescendant;
+	final private int height;
+
+	private SubtreeAggregates(final int descendantCount, final int unfoldedDescendantCount,
+	                          final boolean hasFoldedDescendant, final int height) {
+		this.descendantCount = descendantCount;
+		this.unfoldedDescendantCount = unfoldedDescendantCount;
+		this.hasFoldedDescendant = hasFoldedDescendant;
+		this.height = height;
+	}
+
+	/** number of nodes in the subtree without the node itself */
+	public int getDescendantCount() {
+		return descendantCount;
+	}
+
+	/** number of descendants which have no folded ancestor in the subtree, the node itself may be folded */
+	public int getUnfoldedDescendantCount() {
+		return unfoldedDescendantCount;
+	}
+
+	/** @return true if any node in the subtree except the node itself is folded */
+	public boolean hasFoldedDescendant() {
+		return hasFoldedDescendant;
+	}
+
+	/** length of the longest path from the node to a leaf, 0 for leaves */
+	public int getHeight() {
+		return height;
+	}
+
+	public static SubtreeAggregates of(final NodeModel node) {
+		final SubtreeAggregates aggregates = node.subtreeAggregates;
+		if (aggregates != null) {
+			return aggregates;
+		}
+		final Map<NodeModel, SubtreeAggregates> computedAggregates = EventQueue.isDispatchThread() ? null
+		        : new IdentityHashMap<NodeModel, SubtreeAggregates>();
+		SubtreeAggregates nodeAggregates = null;
+		for (final NodeModel descendant : NodeTraversal.postOrder(node).descendingInto(WITHOUT_AGGREGATES).selecting(
+		    WITHOUT_AGGREGATES)) {
+			nodeAggregates = compute(descendant, computedAggregates);
+			if (computedAggregates == null) {
+				descendant.subtreeAggregates = nodeAggregates;
+			}
+			else {
+				computedAggregates.put(descendant, nodeAggregates);
+			}
+		}
+		return nodeAggregates;
+	}
+
+	/**
+	 * Answers whether any strict descendant is folded using kept values if there are any.
+	 * Otherwise it stops at the first folded child without computing the values,
+	 * so unloaded children of folded nodes stay unloaded.
+	 */
+	static boolean hasFoldedDescendant(final NodeModel node) {
+		final SubtreeAggregates aggregates = node.subtreeAggregates;
+		if (aggregates != null) {
+			return aggregates.hasFoldedDescendant;
+		}
+		for (final NodeModel child : children(node)) {
+			if (child.isFolded() || hasFoldedDescendant(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the values of the node and of its ancestors.
+	 * Values of a node are only kept if the values of all its descendants are kept,
+	 * so the walk stops at the first ancestor without values.
+	 */
+	static void invalidate(final NodeModel node) {
+		for (NodeModel ancestor = node; ancestor != null && ancestor.subtreeAggregates != null; ancestor = ancestor
+		    .getParentNode()) {
+			ancestor.subtreeAggregates = null;
+		}
+	}
+
+	private static SubtreeAggregates compute(final NodeModel node,
+	                                         final Map<NodeModel, SubtreeAggregates> computedAggregates) {
+		final List<NodeModel> children = children(node);
+		if (children.isEmpty()) {
+			return LEAF;
+		}
+		final boolean folded = node.isFolded();
+		int descendantCount = 0;
+		int unfoldedDescendantCount = 0;
+		boolean hasFoldedDescendant = false;
+		int height = 0;
+		for (final NodeModel child : children) {
+			SubtreeAggregates childAggregates = child.subtreeAggregates;
+			if (childAggregates == null) {
+				childAggregates = computedAggregates.get(child);
+			}
+			descendantCount += 1 + childAggregates.descendantCount;
+			if (!folded) {
+				unfoldedDescendantCount += 1 + childAggregates.unfoldedDescendantCount;
+			}
+			hasFoldedDescendant = hasFoldedDescendant || child.isFolded() || childAggregates.hasFoldedDescendant;
+			height = Math.max(height, 1 + childAggregates.height);
+		}
+		return new SubtreeAggregates(descendantCount, unfoldedDescendantCount, hasFoldedDescendant, height);
+	}
+
+	private static List<NodeModel> children(final NodeModel node) {
+		final EncryptionModel encryptionModel = EncryptionModel.getModel(node);
+		if (encryptionModel != null && !encryptionModel.isAccessible()) {
+			return Collections.emptyList();
+		}
+		return node.getChildrenInternal();
+	}
+}
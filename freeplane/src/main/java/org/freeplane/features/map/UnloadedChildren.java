@@ -0,0 +1,120 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.map.MapWriter.Hint;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.freeplane.n3.nanoxml.XMLWriter;
+
+/**
+ * Child elements of a folded node kept as xml until the children are accessed.
+ *
+ * @author Dimitry Polivaev
+ */
+class UnloadedChildren {
+	/** ID attribute of node elements, attributes of other elements can also be named ID */
+	private static final Pattern ID_PATTERN = Pattern.compile("<node\\s[^>]*?(?<=\\s)ID\\s*=\\s*([\"'])(.*?)\\1");
+	private static final Pattern CLONE_PATTERN = Pattern.compile("\\s(?:TREE_ID|CONTENT_ID|REFERENCE_ID)\\s*=");
+	private static final Pattern CONNECTOR_PATTERN = Pattern.compile("<arrowlink\\s");
+	final private MapReader mapReader;
+	final private List<String> childrenXml;
+	final private Collection<String> ids;
+
+	UnloadedChildren(final MapReader mapReader) {
+		this.mapReader = mapReader;
+		childrenXml = new ArrayList<String>();
+		ids = new ArrayList<String>();
+	}
+
+	static String toXml(final XMLElement attributes, final String content) {
+		final StringWriter out = new StringWriter();
+		try {
+			new XMLWriter(out).write(attributes, false, 0, false);
+		}
+		catch (final Exception e) {
+			throw new RuntimeException(e);
+		}
+		final StringBuffer xml = out.getBuffer();
+		if (content != null) {
+			xml.insert(xml.length() - attributes.getFullName().length() - 3, content);
+		}
+		return xml.toString();
+	}
+
+	static boolean containsClones(final String xml) {
+		return CLONE_PATTERN.matcher(xml).find();
+	}
+
+	/** Connectors are registered at their map only when their source node is loaded. */
+	static boolean containsConnectors(final String xml) {
+		return CONNECTOR_PATTERN.matcher(xml).find();
+	}
+
+	Collection<String> add(final String xml) {
+		childrenXml.add(xml);
+		final Collection<String> newIds = new ArrayList<String>();
+		final Matcher matcher = ID_PATTERN.matcher(xml);
+		while (matcher.find()) {
+			newIds.add(matcher.group(2));
+		}
+		ids.addAll(newIds);
+		return newIds;
+	}
+
+	Collection<String> getIds() {
+		return ids;
+	}
+
+	List<String> getChildrenXml() {
+		return childrenXml;
+	}
+
+	int size() {
+		return childrenXml.size();
+	}
+
+	List<NodeModel> load(final MapModel map) {
+		final List<NodeModel> children = new ArrayList<NodeModel>(childrenXml.size());
+		for (final String xml : childrenXml) {
+			final Map<Object, Object> hints = new HashMap<Object, Object>();
+			hints.put(Hint.MODE, Mode.FILE);
+			hints.put(NodeBuilder.FOLDING_LOADED, Boolean.TRUE);
+			try {
+				children.add(mapReader.createNodeTreeFromXml(map, new StringReader(xml), hints));
+			}
+			catch (final Exception e) {
+				LogUtils.severe("Can not load folded branch", e);
+			}
+		}
+		return children;
+	}
+}
@@ -62,7 +62,7 @@ class FNodeModel extends NodeModel {
 						final FNodeModel fileNodeModel = new FNodeModel(childFile, getMap());
 						NodeLinks.createLinkExtension(fileNodeModel).setHyperLink(childFile.toURI());
 						fileNodeModel.setLeft(isNewChildLeft());
-						getChildrenInternal().add(getChildCount(), fileNodeModel);
+						getModifiableChildren().add(getChildCount(), fileNodeModel);
 						fileNodeModel.setParent(this);
 					}
 				}
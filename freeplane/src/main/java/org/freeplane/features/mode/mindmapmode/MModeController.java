@@ -54,6 +54,8 @@ public class MModeController extends ModeController {
 	}
 
 	private OptionPanelBuilder optionPanelBuilder;
+	/** Number of change batches opened by {@link #startTransaction()} and not yet closed. */
+	private int transactionChangeBatches;
 
 	public MModeController(final Controller controller) {
 		super(controller);
@@ -76,18 +78,21 @@ public class MModeController extends ModeController {
 		final MapModel map = getController().getMap();
 		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
 		undoHandler.commit();
+		endTransactionChangeBatch();
 	}
 
 	public void delayedCommit() {
 		final MMapModel map = (MMapModel) getController().getMap();
 		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
 		undoHandler.delayedCommit();
+		endTransactionChangeBatch();
 	}
 
 	public void delayedRollback() {
 		final MMapModel map = (MMapModel) getController().getMap();
 		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
 		undoHandler.delayedRollback();
+		endTransactionChangeBatch();
 	}
 
 	private void createActions() {
@@ -165,6 +170,7 @@ public class MModeController extends ModeController {
 		final MapModel map = getController().getMap();
 		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
 		undoHandler.rollback();
+		endTransactionChangeBatch();
 	}
 
 	/**
@@ -187,9 +193,20 @@ public class MModeController extends ModeController {
 	public void startTransaction() {
 		final MapModel map = getController().getMap();
 		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
+		transactionChangeBatches++;
+		getMapController().beginChangeBatch();
 		undoHandler.startTransaction();
 	}
 
+	/** Closes only batches opened by {@link #startTransaction()}, other batches stay open until their owners end them. */
+	private void endTransactionChangeBatch() {
+		if (transactionChangeBatches == 0) {
+			return;
+		}
+		transactionChangeBatches--;
+		getMapController().endChangeBatch();
+	}
+
 	@Override
 	public void forceNewTransaction() {
 		final MapModel map = getController().getMap();
@@ -105,7 +105,7 @@ public class NoteController implements IExtension {
 	/**
 	 * @param data.node
 	 */
-	protected void onWrite(final MapModel map) {
+	public void onWrite(final MapModel map) {
 	}
 
 	private void registerNoteTooltipProvider(ModeController modeController) {
@@ -26,6 +26,7 @@ import org.freeplane.core.io.IAttributeWriter;
 import org.freeplane.core.io.IExtensionElementWriter;
 import org.freeplane.core.io.ITreeWriter;
 import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter;
 import org.freeplane.features.map.NodeWriter;
 import org.freeplane.features.text.NodeTextBuilder;
 import org.freeplane.features.text.RichTextModel;
@@ -43,7 +44,8 @@ class NoteWriter implements IExtensionElementWriter, IAttributeWriter {
 	}
 
 	public void writeAttributes(final ITreeWriter writer, final Object userObject, final String tag) {
-		if(! NodeWriter.shouldWriteSharedContent(writer))
+		if(! NodeWriter.shouldWriteSharedContent(writer)
+				|| writer.getHint(MapWriter.WriterHint.BACKGROUND_WRITER) instanceof MapWriter)
 			return;
 		noteManager.onWrite((MapModel) userObject);
 	}
@@ -55,7 +57,8 @@ class NoteWriter implements IExtensionElementWriter, IAttributeWriter {
 	 */
 	public void writeContent(final ITreeWriter writer, final Object element, final IExtension note) throws IOException {
 		RichTextModel note1 = (RichTextModel) note;
-		if (note1.getXml() != null) {
+		final String xml = note1.getXml();
+		if (xml != null) {
         	final XMLElement htmlElement = new XMLElement();
     		htmlElement.setName(NodeTextBuilder.XML_NODE_XHTML_CONTENT_TAG);
         	if(note instanceof NoteModel){
@@ -64,7 +67,7 @@ class NoteWriter implements IExtensionElementWriter, IAttributeWriter {
         	else{
         		htmlElement.setAttribute(NodeTextBuilder.XML_NODE_XHTML_TYPE_TAG, "UNKNOWN");
         	}
-        	final String content = note1.getXml().replace('\0', ' ');
+        	final String content = xml.replace('\0', ' ');
         	writer.addElement('\n' + content + '\n', htmlElement);
         }
 		return;
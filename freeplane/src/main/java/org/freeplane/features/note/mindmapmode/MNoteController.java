@@ -201,7 +201,7 @@ public class MNoteController extends NoteController {
 	}
 
 	@Override
-	protected void onWrite(final MapModel map) {
+	public void onWrite(final MapModel map) {
 		final ModeController modeController = Controller.getCurrentModeController();
 		final Controller controller = modeController.getController();
 		final IMapSelection selection = controller.getSelection();
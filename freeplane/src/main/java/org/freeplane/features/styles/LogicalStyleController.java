@@ -26,6 +26,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.freeplane.core.extension.IExtension;
 import org.freeplane.core.io.IAttributeHandler;
@@ -65,8 +67,24 @@ public class LogicalStyleController implements IExtension {
 // 	final private ModeController modeController;
 
 	private static final int STYLE_TOOLTIP = 0;
-	private WeakReference<NodeModel> cachedNode;
-	private Collection<IStyle>  cachedStyle;
+	/** Styles of the last requested node, it can be computed and read on any thread. */
+	private static class StyleCache {
+		final private WeakReference<NodeModel> node;
+		final private Collection<IStyle> styles;
+
+		StyleCache(final NodeModel node, final Collection<IStyle> styles) {
+			this.node = node != null ? new WeakReference<NodeModel>(node) : null;
+			this.styles = styles;
+		}
+
+		boolean contains(final NodeModel node) {
+			return this.node != null && node.equals(this.node.get());
+		}
+	}
+
+	private static final StyleCache NO_STYLES = new StyleCache(null, null);
+	final private AtomicReference<StyleCache> cache = new AtomicReference<StyleCache>(NO_STYLES);
+	final private AtomicInteger cacheGeneration = new AtomicInteger();
 	final private CombinedPropertyChain<Collection<IStyle>, NodeModel> styleHandlers;
 
 	public LogicalStyleController(ModeController modeController) {
@@ -144,7 +162,7 @@ public class LogicalStyleController implements IExtension {
 			if(conditionalStyleModel == null)
 				return;
 			Collection<IStyle> styles = conditionalStyleModel.getStyles(node);
-			cachedNode = null;
+			cache.set(NO_STYLES);
 			addAll(node, styleModel, currentValue, styles);
     }
 
@@ -295,14 +313,20 @@ public class LogicalStyleController implements IExtension {
 		return MapStyleModel.DEFAULT_STYLE;
 	}
 	public Collection<IStyle>  getStyles(final NodeModel node) {
-		if(cachedNode != null && node.equals(cachedNode.get())){
-			return cachedStyle;
+		final StyleCache cachedStyles = cache.get();
+		if(cachedStyles.contains(node)){
+			return cachedStyles.styles;
+		}
+		final int generation = cacheGeneration.get();
+		final Collection<IStyle> styles = styleHandlers.getProperty(node, new LinkedHashSet<IStyle>());
+		if (generation == cacheGeneration.get()) {
+			final StyleCache newCache = new StyleCache(node, styles);
+			cache.set(newCache);
+			// styles computed by a background reader must not survive a concurrent clearCache()
+			if (generation != cacheGeneration.get())
+				cache.compareAndSet(newCache, NO_STYLES);
 		}
-		cachedStyle = null;
-		cachedNode = null;
-		cachedStyle = styleHandlers.getProperty(node, new LinkedHashSet<IStyle>());
-		cachedNode = new WeakReference<NodeModel>(node);
-		return cachedStyle;
+		return styles;
 	}
 
 	public void moveConditionalStyleDown(final ConditionalStyleModel conditionalStyleModel, int index) {
@@ -328,8 +352,8 @@ public class LogicalStyleController implements IExtension {
     }
 
 	private void clearCache() {
-	    cachedStyle = null;
-	    cachedNode = null;
+	    cacheGeneration.incrementAndGet();
+	    cache.set(NO_STYLES);
     }
 
 	public IPropertyHandler<Collection<IStyle>, NodeModel> addStyleGetter(
@@ -341,7 +365,7 @@ public class LogicalStyleController implements IExtension {
 	public IPropertyHandler<Collection<IStyle>, NodeModel> removeStyleGetter(
 		final Integer key,
 		final IPropertyHandler<Collection<IStyle>, NodeModel> getter) {
-		return styleHandlers.addGetter(key, getter);
+		return styleHandlers.removeGetter(key);
 	}
 
 	public String getStyleNames(final Collection<IStyle> styles, String separator) {
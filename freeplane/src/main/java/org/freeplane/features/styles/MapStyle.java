@@ -167,7 +167,9 @@ public class MapStyle extends PersistentNodeHook implements IExtension, IMapLife
 			if (styleMap == null) {
 				return;
 			}
-			final MapWriter mapWriter = Controller.getCurrentModeController().getMapController().getMapWriter();
+			final Object backgroundWriter = writer.getHint(MapWriter.WriterHint.BACKGROUND_WRITER);
+			final MapWriter mapWriter = backgroundWriter instanceof MapWriter ? (MapWriter) backgroundWriter
+			        : Controller.getCurrentModeController().getMapController().getMapWriter();
 			final StringWriter sw = new StringWriter();
 			final String el = System.getProperty("line.separator");
 			sw.append(el);
@@ -60,6 +60,11 @@ public class DetailTextModel extends RichTextModel implements IExtension {
 		return extension != null ? extension.getHtml() : null;
 	}
 
+	public static String getPlainDetailText(final NodeModel node) {
+		final DetailTextModel extension = DetailTextModel.getDetailText(node);
+		return extension != null ? extension.getPlainText() : null;
+	}
+
 	public static String getXmlDetailTextText(final NodeModel node) {
 		final DetailTextModel extension = DetailTextModel.getDetailText(node);
 		return extension != null ? extension.getHtml() : null;
@@ -55,10 +55,28 @@ public class MatchCaseNodeContainsCondition extends ASelectableCondition {
 	}
 
 	public boolean checkNode(final NodeModel node) {
+		if (!matchApproximately && !NodeTextIndex.mayContain(node, nodeItem, value)) {
+			return false;
+		}
 		final Object content[] = NodeTextConditionController.getItemsForComparison(nodeItem, node);
 		return checkText(content);
 	}
 
+	@Override
+	public boolean canCheckConcurrently() {
+		return !matchApproximately;
+	}
+
+	@Override
+	public boolean canCheckConcurrently(final NodeModel node) {
+		return NodeTextConditionController.canReadConcurrently(nodeItem, node);
+	}
+
+	@Override
+	public boolean checksParent() {
+		return TextController.FILTER_PARENT.equals(nodeItem);
+	}
+
 	private boolean checkText(Object content[]) {
 		for(Object o : content){
 			if(checkText(o))
@@ -19,7 +19,6 @@
  */
 package org.freeplane.features.text;
 
-import org.freeplane.core.util.HtmlUtils;
 import org.freeplane.core.util.TextUtils;
 import org.freeplane.features.filter.StringMatchingStrategy;
 import org.freeplane.features.filter.condition.ASelectableCondition;
@@ -64,6 +63,11 @@ public class MatchCaseNoteContainsCondition extends ASelectableCondition {
 		return stringMatchingStrategy.matches(value, text, true, matchCase());
 	}
 
+	@Override
+	public boolean canCheckConcurrently() {
+		return !matchApproximately;
+	}
+
 	@Override
 	protected String createDescription() {
 		return createDescription(true);
@@ -76,8 +80,7 @@ public class MatchCaseNoteContainsCondition extends ASelectableCondition {
 	}
 
 	protected String getText(final NodeModel node) {
-		final String noteText = NoteModel.getNoteText(node);
-		return noteText == null ? null : HtmlUtils.htmlToPlain(noteText);
+		return NoteModel.getPlainNoteText(node);
 	}
 
 	public void fillXML(final XMLElement child) {
@@ -42,6 +42,7 @@ public class NodeMatchesRegexpCondition extends ASelectableCondition {
 
 	private final Pattern searchPattern;
 	final private String nodeItem;
+	final private String requiredText;
 
 	public NodeMatchesRegexpCondition(String nodeItem, final String searchPattern) {
 		this(nodeItem, searchPattern, false);
@@ -55,13 +56,84 @@ public class NodeMatchesRegexpCondition extends ASelectableCondition {
 		}
 		this.searchPattern = Pattern.compile(searchPattern, flags);
 		this.nodeItem=nodeItem;
+		this.requiredText = requiredText(searchPattern);
+	}
+
+	/**
+	 * Returns the longest literal text contained in every match of the regular expression,
+	 * or null if no such text of at least trigram length is found.
+	 * Alternatives, groups, embedded flags and character classes are not analyzed.
+	 */
+	static String requiredText(final String regexp) {
+		if (regexp.indexOf('|') >= 0 || regexp.contains("(?") || regexp.contains("\\Q")) {
+			return null;
+		}
+		String longest = "";
+		final StringBuilder run = new StringBuilder();
+		int groupDepth = 0;
+		for (int i = 0; i < regexp.length(); i++) {
+			char c = regexp.charAt(i);
+			boolean isLiteral;
+			if (c == '\\' && i + 1 < regexp.length()) {
+				c = regexp.charAt(++i);
+				isLiteral = !Character.isLetterOrDigit(c);
+			}
+			else if (c == '[') {
+				break;
+			}
+			else {
+				if (c == '(') {
+					groupDepth++;
+				}
+				else if (c == ')') {
+					groupDepth--;
+				}
+				else if (c == '{') {
+					i = Math.max(i, regexp.indexOf('}', i));
+				}
+				isLiteral = ".^$()+*?{}\\".indexOf(c) < 0;
+			}
+			final char next = i + 1 < regexp.length() ? regexp.charAt(i + 1) : 0;
+			final boolean isOptional = next == '?' || next == '*' || next == '{';
+			if (isLiteral && groupDepth == 0 && !isOptional) {
+				run.append(c);
+			}
+			if (!isLiteral || groupDepth != 0 || isOptional || next == '+') {
+				if (run.length() > longest.length()) {
+					longest = run.toString();
+				}
+				run.setLength(0);
+			}
+		}
+		if (run.length() > longest.length()) {
+			longest = run.toString();
+		}
+		return NodeTextIndex.isSearchable(longest) ? longest : null;
 	}
 
 	public boolean checkNode(final NodeModel node) {
+		if (requiredText != null && !NodeTextIndex.mayContain(node, nodeItem, requiredText)) {
+			return false;
+		}
 		final Object content[] = NodeTextConditionController.getItemsForComparison(nodeItem, node);
 		return content != null && checkText(content);
 	}
 
+	@Override
+	public boolean canCheckConcurrently() {
+		return true;
+	}
+
+	@Override
+	public boolean canCheckConcurrently(final NodeModel node) {
+		return NodeTextConditionController.canReadConcurrently(nodeItem, node);
+	}
+
+	@Override
+	public boolean checksParent() {
+		return TextController.FILTER_PARENT.equals(nodeItem);
+	}
+
 	private boolean checkText(Object content[]) {
 		for(Object o : content){
 			if(o != null && checkText(o.toString()))
@@ -215,7 +215,8 @@ public class NodeTextBuilder implements IElementContentHandler, IElementWriter,
 			return;
 		final NodeModel node = (NodeModel) element;
 		final TransformedXMLExtension transformedXML = node.getExtension(TransformedXMLExtension.class);
-		if (transformedXML != null || node.getXmlText() != null) {
+		final String nodeXmlText = transformedXML == null ? node.getXmlText() : null;
+		if (transformedXML != null || nodeXmlText != null) {
 			final XMLElement htmlElement = new XMLElement();
 			htmlElement.setName(NodeTextBuilder.XML_NODE_XHTML_CONTENT_TAG);
 			htmlElement.setAttribute(NodeTextBuilder.XML_NODE_XHTML_TYPE_TAG, NodeTextBuilder.XML_NODE_XHTML_TYPE_NODE);
@@ -225,7 +226,7 @@ public class NodeTextBuilder implements IElementContentHandler, IElementWriter,
 				node.removeExtension(transformedXML);
 			}
 			else
-				xmlText = node.getXmlText();
+				xmlText = nodeXmlText;
 			final String content = xmlText.replace('\0', ' ');
 			writer.addElement('\n' + content + '\n', htmlElement);
 		}
@@ -237,7 +238,8 @@ public class NodeTextBuilder implements IElementContentHandler, IElementWriter,
 	 */
 	public void writeContent(final ITreeWriter writer, final Object element, final IExtension note) throws IOException {
 		DetailTextModel model = (DetailTextModel) note;
-		if (model.getXml() != null) {
+		final String xml = model.getXml();
+		if (xml != null) {
 			final XMLElement htmlElement = new XMLElement();
 			htmlElement.setName(NodeTextBuilder.XML_NODE_XHTML_CONTENT_TAG);
 			htmlElement.setAttribute(NodeTextBuilder.XML_NODE_XHTML_TYPE_TAG, NodeTextBuilder.XML_NODE_XHTML_TYPE_DETAILS);
@@ -249,7 +251,7 @@ public class NodeTextBuilder implements IElementContentHandler, IElementWriter,
 				writer.addElement(null, htmlElement);
 			}
 			else {
-				final String content = model.getXml().replace('\0', ' ');
+				final String content = xml.replace('\0', ' ');
 				writer.addElement('\n' + content + '\n', htmlElement);
 			}
 		}
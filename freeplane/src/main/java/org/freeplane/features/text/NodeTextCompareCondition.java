@@ -81,6 +81,11 @@ public class NodeTextCompareCondition extends CompareConditionAdapter {
 		return content != null && checkContents(content);
 	}
 
+	@Override
+	public boolean checksParent() {
+		return TextController.FILTER_PARENT.equals(nodeItem);
+	}
+
 	private boolean checkContents(Object content[]) {
 		for(Object o : content){
 			if(o != null && checkContent(o))
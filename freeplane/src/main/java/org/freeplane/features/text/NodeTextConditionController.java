@@ -187,33 +187,53 @@ class NodeTextConditionController implements IElementaryConditionController {
 	}
 	
 	private static Object getItemForComparison(Object nodeItem, final NodeModel node) {
-		final Object result;
 		if(nodeItem.equals(TextController.FILTER_NODE)){
-			result = transformedObject(node);
+			return plainTransformedObject(node);
 		}
 		else if(nodeItem.equals(TextController.FILTER_PARENT)){
 			final NodeModel parentNode = node.getParentNode();
 			if(parentNode == null)
-				result = null;
+				return null;
 			else
-				result = transformedObject(parentNode);
+				return plainTransformedObject(parentNode);
 		}
 		else if(nodeItem.equals(TextController.FILTER_DETAILS)){
-			result = DetailTextModel.getDetailTextText(node);
+			return DetailTextModel.getPlainDetailText(node);
 		}
 		else if(nodeItem.equals(TextController.FILTER_NOTE)){
-			result = NoteModel.getNoteText(node);
+			return NoteModel.getPlainNoteText(node);
 		}
 		else
-			result = null;
-		if(result instanceof String)
-			return HtmlUtils.htmlToPlain((String)result);
-		return result;
+			return null;
     }
 
-	private static Object transformedObject(final NodeModel node) {
+	/**
+	 * Returns false if a compared text of the node may be calculated by a formula,
+	 * formulas are only evaluated on the event dispatch thread.
+	 */
+	static boolean canReadConcurrently(final Object nodeItem, final NodeModel node) {
+		if (nodeItem.equals(TextController.FILTER_NODE) || nodeItem.equals(TextController.FILTER_ANYTEXT)) {
+			return isUntransformedText(node);
+		}
+		if (nodeItem.equals(TextController.FILTER_PARENT)) {
+			final NodeModel parentNode = node.getParentNode();
+			return parentNode == null || isUntransformedText(parentNode);
+		}
+		return true;
+	}
+
+	private static boolean isUntransformedText(final NodeModel node) {
+		return node.getUserObject() instanceof String && !node.getPlainText().startsWith("=");
+	}
+
+	private static Object plainTransformedObject(final NodeModel node) {
 		final Object userObject = node.getUserObject();
-		return TextController.getController().getTransformedObjectNoFormattingNoThrow(userObject, node);
+		final Object transformedObject = TextController.getController().getTransformedObjectNoFormattingNoThrow(userObject, node);
+		if(transformedObject == userObject && userObject instanceof String)
+			return node.getPlainText();
+		if(transformedObject instanceof String)
+			return HtmlUtils.htmlToPlain((String)transformedObject);
+		return transformedObject;
 	}
 
 	public ListCellRenderer getValueRenderer(Object selectedProperty, TranslatedObject selectedCondition) {
@@ -0,0 +1,634 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.text;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.util.HtmlUtils;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.map.IMapReadTask;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapSnapshot;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeTraversal;
+import org.freeplane.features.map.StaleSnapshotException;
+import org.freeplane.features.note.NoteModel;
+
+/**
+ * Trigram index over the plain texts, details and notes of the nodes of a map.
+ *
+ * Text conditions use it to skip nodes which can not contain the searched text
+ * without converting their html to plain text, see {@link #mayContain(NodeModel, String, String)}.
+ * Characters are folded to a form which is coarser than the case insensitive matching of the conditions,
+ * so that a node containing the text is never skipped.
+ * Nodes whose text may be changed by content transformers, that is formulas starting with '='
+ * and user objects which are not strings, are recorded when they are indexed and never skipped either.
+ *
+ * The index is built on a background thread after a map is created.
+ * Changed nodes are indexed again before the next query.
+ * The postings are kept in open addressing arrays by their trigram, so that the index needs
+ * no boxed keys and no map entries.
+ * Queries from several threads read a snapshot without locking the index,
+ * see {@link #beginConcurrentQueries(MapModel)}.
+ *
+ * @author Dimitry Polivaev
+ */
+public class NodeTextIndex implements IExtension {
+	static final String INDEX_NODE_TEXTS = "index_node_texts";
+	static final int TRIGRAM_LENGTH = 3;
+	private static final int NODE_TEXT = 0;
+	private static final int DETAILS = 1;
+	private static final int NOTE = 2;
+	private static final int ALL_ITEMS = 1 << NODE_TEXT | 1 << DETAILS | 1 << NOTE;
+	private static final ExecutorService indexer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(final Runnable r) {
+			final Thread thread = Executors.defaultThreadFactory().newThread(r);
+			thread.setName("node text indexer");
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			return thread;
+		}
+	});
+
+	/**
+	 * Ascending numbers of the nodes containing a trigram.
+	 */
+	private static class Postings {
+		private int[] numbers = new int[2];
+		private int size;
+
+		void add(final int number) {
+			if (size > 0 && numbers[size - 1] == number) {
+				return;
+			}
+			if (size == numbers.length) {
+				numbers = Arrays.copyOf(numbers, size * 2);
+			}
+			numbers[size++] = number;
+		}
+
+		boolean contains(final int number) {
+			return Arrays.binarySearch(numbers, 0, size, number) >= 0;
+		}
+
+		boolean endsWith(final int number) {
+			return size > 0 && numbers[size - 1] == number;
+		}
+
+		/** @return the number of remaining entries */
+		int renumber(final int[] newNumbers) {
+			int newSize = 0;
+			for (int i = 0; i < size; i++) {
+				final int newNumber = newNumbers[numbers[i]];
+				if (newNumber >= 0) {
+					numbers[newSize++] = newNumber;
+				}
+			}
+			size = newSize;
+			return newSize;
+		}
+	}
+
+	/**
+	 * Postings by trigram key using linear probing.
+	 */
+	private static class PostingsTable {
+		private static final long FREE = -1L;
+		private long[] keys;
+		private Postings[] values;
+		private int size;
+
+		PostingsTable() {
+			keys = new long[64];
+			Arrays.fill(keys, FREE);
+			values = new Postings[64];
+		}
+
+		private int slot(final long key) {
+			final int mask = keys.length - 1;
+			int slot = (int) ((key ^ key >>> 29) * 0x9E3779B97F4A7C15L >>> 32) & mask;
+			while (keys[slot] != FREE && keys[slot] != key) {
+				slot = slot + 1 & mask;
+			}
+			return slot;
+		}
+
+		Postings get(final long key) {
+			return values[slot(key)];
+		}
+
+		Postings getOrCreate(final long key) {
+			int slot = slot(key);
+			if (values[slot] == null) {
+				if (4 * (size + 1) > 3 * keys.length) {
+					resize(keys.length * 2);
+					slot = slot(key);
+				}
+				keys[slot] = key;
+				values[slot] = new Postings();
+				size++;
+			}
+			return values[slot];
+		}
+
+		/** Moves the postings to arrays of the given capacity dropping the empty ones. */
+		private void resize(final int capacity) {
+			final long[] oldKeys = keys;
+			final Postings[] oldValues = values;
+			keys = new long[capacity];
+			Arrays.fill(keys, FREE);
+			values = new Postings[capacity];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldValues[i] != null && oldValues[i].size > 0) {
+					final int slot = slot(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					values[slot] = oldValues[i];
+				}
+			}
+		}
+
+		/** Renumbers all postings and drops the empty ones. */
+		void renumber(final int[] newNumbers) {
+			size = 0;
+			for (final Postings list : values) {
+				if (list != null && list.renumber(newNumbers) > 0) {
+					size++;
+				}
+			}
+			int capacity = 64;
+			while (4 * size > 3 * capacity) {
+				capacity *= 2;
+			}
+			resize(capacity);
+		}
+	}
+
+	private static class NodeTexts {
+		final NodeModel node;
+		final Object userObject;
+		final String details;
+		final String note;
+
+		NodeTexts(final NodeModel node) {
+			this.node = node;
+			this.userObject = node.getUserObject();
+			this.details = DetailTextModel.getDetailTextText(node);
+			this.note = NoteModel.getNoteText(node);
+		}
+	}
+
+	/**
+	 * The node numbers and transformed nodes at the time concurrent queries begin.
+	 * The postings are shared because changed nodes are not indexed until the queries end.
+	 */
+	private static class Snapshot {
+		final private IdentityHashMap<NodeModel, Integer> numbers;
+		final private PostingsTable postings;
+		final private BitSet transformedNodes;
+		final private int nodeCount;
+		final private ConcurrentHashMap<String, BitSet> candidates = new ConcurrentHashMap<String, BitSet>();
+
+		Snapshot(final IdentityHashMap<NodeModel, Integer> numbers, final PostingsTable postings,
+		         final BitSet transformedNodes, final int nodeCount) {
+			this.numbers = numbers;
+			this.postings = postings;
+			this.transformedNodes = transformedNodes;
+			this.nodeCount = nodeCount;
+		}
+
+		boolean contains(final NodeModel node, final int items, final String text) {
+			final Integer number = numbers.get(node);
+			if (number == null) {
+				return true;
+			}
+			final String query = items + ":" + text;
+			BitSet found = candidates.get(query);
+			if (found == null) {
+				found = findCandidates(postings, nodeCount, items, trigrams(text));
+				candidates.putIfAbsent(query, found);
+			}
+			return found.get(number) || (items & 1 << NODE_TEXT) != 0 && transformedNodes.get(number);
+		}
+	}
+
+	final private MapModel map;
+	/** Changes made during its change batches reach the index when the batch ends. */
+	final private MapController mapController;
+	private IdentityHashMap<NodeModel, Integer> numbers = new IdentityHashMap<NodeModel, Integer>();
+	private ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+	private PostingsTable postings = new PostingsTable();
+	/** numbers of the nodes whose text may be changed by content transformers */
+	private BitSet transformedNodes = new BitSet();
+	final private Set<NodeModel> changedNodes = Collections.newSetFromMap(new IdentityHashMap<NodeModel, Boolean>());
+	private int removedNodeCount = 0;
+	private boolean isBuilt = false;
+	private String lastQuery;
+	private int lastQueryItems;
+	private long[] lastQueryTrigrams;
+	private BitSet lastCandidates;
+	private volatile Snapshot snapshot;
+
+	private NodeTextIndex(final MapModel map, final MapController mapController) {
+		this.map = map;
+		this.mapController = mapController;
+	}
+
+	/**
+	 * Adds an empty index to the map and builds it on a background thread.
+	 */
+	static void build(final MapModel map, final MapController mapController) {
+		final NodeTextIndex index = new NodeTextIndex(map, mapController);
+		map.addExtension(index);
+		indexer.execute(new Runnable() {
+			public void run() {
+				final NodeTextIndex builtIndex;
+				try {
+					builtIndex = index(map);
+				}
+				catch (final StaleSnapshotException e) {
+					LogUtils.info("map " + map.getTitle() + " is not indexed because it was changed during indexing");
+					return;
+				}
+				EventQueue.invokeLater(new Runnable() {
+					public void run() {
+						index.adopt(builtIndex);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Adds the index to the map building it on the current thread.
+	 */
+	static NodeTextIndex buildNow(final MapModel map, final MapController mapController) {
+		final NodeTextIndex index = new NodeTextIndex(map, mapController);
+		map.addExtension(index);
+		index.adopt(index(map));
+		return index;
+	}
+
+	private static NodeTextIndex index(final MapModel map) {
+		final NodeTextIndex builtIndex = new NodeTextIndex(map, null);
+		for (final NodeTexts texts : readTexts(map)) {
+			builtIndex.add(texts);
+		}
+		return builtIndex;
+	}
+
+	private static ArrayList<NodeTexts> readTexts(final MapModel map) {
+		return map.readConsistently(new IMapReadTask<ArrayList<NodeTexts>>() {
+			public ArrayList<NodeTexts> read(final MapSnapshot snapshot) {
+				final ArrayList<NodeTexts> texts = new ArrayList<NodeTexts>();
+				for (final NodeModel node : NodeTraversal.preOrder(snapshot.getRootNode()).validatedBy(snapshot)) {
+					texts.add(new NodeTexts(node));
+				}
+				return texts;
+			}
+		});
+	}
+
+	private synchronized void adopt(final NodeTextIndex builtIndex) {
+		if (map.getExtension(NodeTextIndex.class) != this) {
+			return;
+		}
+		numbers = builtIndex.numbers;
+		nodes = builtIndex.nodes;
+		postings = builtIndex.postings;
+		transformedNodes = builtIndex.transformedNodes;
+		isBuilt = true;
+	}
+
+	static void remove(final MapModel map) {
+		map.removeExtension(NodeTextIndex.class);
+	}
+
+	/**
+	 * Returns false only if the item of the node can not contain the text, that is if
+	 * neither the plain text of the item nor the text produced by content transformers contains it.
+	 * Case is ignored.
+	 *
+	 * @param nodeItem one of the item keys defined in {@link TextController}, e.g. {@link TextController#FILTER_NODE}
+	 */
+	public static boolean mayContain(final NodeModel node, final String nodeItem, final String text) {
+		final MapModel map = node.getMap();
+		final NodeTextIndex index = map != null ? map.getExtension(NodeTextIndex.class) : null;
+		return index == null || index.contains(node, items(nodeItem), text);
+	}
+
+	private static int items(final String nodeItem) {
+		if (TextController.FILTER_NODE.equals(nodeItem)) {
+			return 1 << NODE_TEXT;
+		}
+		if (TextController.FILTER_DETAILS.equals(nodeItem)) {
+			return 1 << DETAILS;
+		}
+		if (TextController.FILTER_NOTE.equals(nodeItem)) {
+			return 1 << NOTE;
+		}
+		if (TextController.FILTER_ANYTEXT.equals(nodeItem)) {
+			return ALL_ITEMS;
+		}
+		return 0;
+	}
+
+	/** Formulas and objects like numbers, dates or links are shown and compared with another text. */
+	private static boolean mayBeTransformed(final Object userObject, final String plainText) {
+		return !(userObject instanceof String) || plainText.startsWith("=");
+	}
+
+	/**
+	 * Texts shorter than a trigram or containing combining characters can not be looked up.
+	 */
+	static boolean isSearchable(final String text) {
+		if (text == null || text.length() < TRIGRAM_LENGTH) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (Character.getType(text.charAt(i)) == Character.NON_SPACING_MARK) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lets queries from several threads read a snapshot of the index of the map without locking it.
+	 * The map must not be changed until {@link #endConcurrentQueries(MapModel)} is called.
+	 */
+	public static void beginConcurrentQueries(final MapModel map) {
+		final NodeTextIndex index = map != null ? map.getExtension(NodeTextIndex.class) : null;
+		if (index != null) {
+			index.takeSnapshot();
+		}
+	}
+
+	public static void endConcurrentQueries(final MapModel map) {
+		final NodeTextIndex index = map != null ? map.getExtension(NodeTextIndex.class) : null;
+		if (index != null) {
+			index.snapshot = null;
+		}
+	}
+
+	private synchronized void takeSnapshot() {
+		if (!isBuilt || mapController != null && mapController.isChangeBatchInProgress()) {
+			snapshot = new Snapshot(new IdentityHashMap<NodeModel, Integer>(), postings, new BitSet(), 0);
+			return;
+		}
+		indexChangedNodes();
+		snapshot = new Snapshot(new IdentityHashMap<NodeModel, Integer>(numbers), postings,
+		    (BitSet) transformedNodes.clone(), nodes.size());
+	}
+
+	private boolean contains(final NodeModel node, final int items, final String text) {
+		if (items == 0 || !isSearchable(text)) {
+			return true;
+		}
+		final Snapshot snapshot = this.snapshot;
+		if (snapshot != null) {
+			return snapshot.contains(node, items, text);
+		}
+		return containsIndexed(node, items, text);
+	}
+
+	private synchronized boolean containsIndexed(final NodeModel node, final int items, final String text) {
+		if (!isBuilt || mapController != null && mapController.isChangeBatchInProgress()) {
+			return true;
+		}
+		indexChangedNodes();
+		final Integer number = numbers.get(node);
+		if (number == null) {
+			changedNodes.add(node);
+			return true;
+		}
+		return candidates(items, text).get(number)
+		        || (items & 1 << NODE_TEXT) != 0 && transformedNodes.get(number);
+	}
+
+	private BitSet candidates(final int items, final String text) {
+		if (lastCandidates == null || items != lastQueryItems || !text.equals(lastQuery)) {
+			lastQuery = text;
+			lastQueryItems = items;
+			lastQueryTrigrams = trigrams(text);
+			lastCandidates = findCandidates(postings, nodes.size(), items, lastQueryTrigrams);
+		}
+		return lastCandidates;
+	}
+
+	private static BitSet findCandidates(final PostingsTable postings, final int nodeCount, final int items,
+	                                     final long[] trigrams) {
+		final BitSet candidates = new BitSet(nodeCount);
+		for (int item = NODE_TEXT; item <= NOTE; item++) {
+			if ((items & 1 << item) != 0) {
+				addCandidates(postings, trigrams, item, candidates);
+			}
+		}
+		return candidates;
+	}
+
+	private static void addCandidates(final PostingsTable postings, final long[] trigrams, final int item,
+	                                  final BitSet candidates) {
+		final Postings[] lists = new Postings[trigrams.length];
+		Postings shortest = null;
+		for (int i = 0; i < lists.length; i++) {
+			lists[i] = postings.get(trigrams[i] | item);
+			if (lists[i] == null) {
+				return;
+			}
+			if (shortest == null || lists[i].size < shortest.size) {
+				shortest = lists[i];
+			}
+		}
+		nextNumber: for (int i = 0; i < shortest.size; i++) {
+			final int number = shortest.numbers[i];
+			for (final Postings list : lists) {
+				if (list != shortest && !list.contains(number)) {
+					continue nextNumber;
+				}
+			}
+			candidates.set(number);
+		}
+	}
+
+	private boolean matchesLastQuery(final int number) {
+		nextItem: for (int item = NODE_TEXT; item <= NOTE; item++) {
+			if ((lastQueryItems & 1 << item) == 0) {
+				continue;
+			}
+			for (final long trigram : lastQueryTrigrams) {
+				final Postings list = postings.get(trigram | item);
+				if (list == null || !list.endsWith(number)) {
+					continue nextItem;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private void add(final NodeTexts texts) {
+		final int number = nodes.size();
+		nodes.add(texts.node);
+		numbers.put(texts.node, number);
+		final String nodeText = plainText(texts.userObject);
+		if (mayBeTransformed(texts.userObject, nodeText)) {
+			transformedNodes.set(number);
+		}
+		addTrigrams(number, NODE_TEXT, nodeText);
+		addTrigrams(number, DETAILS, plainText(texts.details));
+		addTrigrams(number, NOTE, plainText(texts.note));
+		if (lastCandidates != null && matchesLastQuery(number)) {
+			lastCandidates.set(number);
+		}
+	}
+
+	private static String plainText(final Object text) {
+		if (text instanceof String) {
+			return HtmlUtils.htmlToPlain((String) text);
+		}
+		return text == null ? null : text.toString();
+	}
+
+	private void addTrigrams(final int number, final int item, final String text) {
+		if (text == null || text.length() < TRIGRAM_LENGTH) {
+			return;
+		}
+		long trigram = fold(text.charAt(0)) << 16 | fold(text.charAt(1));
+		for (int i = 2; i < text.length(); i++) {
+			trigram = (trigram << 16 | fold(text.charAt(i))) & 0xFFFFFFFFFFFFL;
+			postings.getOrCreate(trigram << 2 | item).add(number);
+		}
+	}
+
+	/** @return the distinct trigrams of the text shifted left by two bits reserved for the item */
+	static long[] trigrams(final String text) {
+		final LinkedHashSet<Long> trigrams = new LinkedHashSet<Long>();
+		long trigram = fold(text.charAt(0)) << 16 | fold(text.charAt(1));
+		for (int i = 2; i < text.length(); i++) {
+			trigram = (trigram << 16 | fold(text.charAt(i))) & 0xFFFFFFFFFFFFL;
+			trigrams.add(trigram << 2);
+		}
+		final long[] result = new long[trigrams.size()];
+		int i = 0;
+		for (final Long value : trigrams) {
+			result[i++] = value;
+		}
+		return result;
+	}
+
+	/** Maps all characters which are equal ignoring case to the same character. */
+	static long fold(final char c) {
+		return Character.toLowerCase(Character.toUpperCase(Character.toLowerCase(c)));
+	}
+
+	synchronized void nodeChanged(final NodeModel node) {
+		changedNodes.add(node);
+	}
+
+	/**
+	 * Forgets a deleted subtree. Its nodes are indexed again if they are inserted back.
+	 */
+	synchronized void subtreeDeleted(final NodeModel root) {
+		for (final NodeModel node : NodeTraversal.preOrder(root).visitingLoadedChildrenOnly()) {
+			forget(node);
+			if (isBuilt) {
+				changedNodes.remove(node);
+			}
+			else {
+				changedNodes.add(node);
+			}
+		}
+	}
+
+	private void forget(final NodeModel node) {
+		final Integer number = numbers.remove(node);
+		if (number != null) {
+			nodes.set(number, null);
+			transformedNodes.clear(number);
+			removedNodeCount++;
+		}
+	}
+
+	private void indexChangedNodes() {
+		if (changedNodes.isEmpty()) {
+			return;
+		}
+		final NodeModel[] changed = changedNodes.toArray(new NodeModel[changedNodes.size()]);
+		changedNodes.clear();
+		for (final NodeModel node : changed) {
+			forget(node);
+			if (belongsToMap(node)) {
+				add(new NodeTexts(node));
+			}
+		}
+		if (removedNodeCount > numbers.size()) {
+			compact();
+		}
+	}
+
+	private boolean belongsToMap(final NodeModel node) {
+		NodeModel ancestor = node;
+		while (ancestor.getParentNode() != null) {
+			ancestor = ancestor.getParentNode();
+		}
+		return ancestor == map.getRootNode();
+	}
+
+	/**
+	 * Renumbers the nodes dropping the entries of forgotten nodes.
+	 */
+	private void compact() {
+		final int[] newNumbers = new int[nodes.size()];
+		final ArrayList<NodeModel> indexedNodes = new ArrayList<NodeModel>(numbers.size());
+		final BitSet indexedTransformedNodes = new BitSet();
+		for (int i = 0; i < newNumbers.length; i++) {
+			final NodeModel node = nodes.get(i);
+			if (node == null) {
+				newNumbers[i] = -1;
+			}
+			else {
+				newNumbers[i] = indexedNodes.size();
+				numbers.put(node, indexedNodes.size());
+				if (transformedNodes.get(i)) {
+					indexedTransformedNodes.set(indexedNodes.size());
+				}
+				indexedNodes.add(node);
+			}
+		}
+		postings.renumber(newNumbers);
+		nodes = indexedNodes;
+		transformedNodes = indexedTransformedNodes;
+		removedNodeCount = 0;
+		lastCandidates = null;
+	}
+}
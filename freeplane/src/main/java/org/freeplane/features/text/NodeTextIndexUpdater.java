@@ -0,0 +1,83 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.text;
+
+import java.util.List;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.features.map.AMapChangeListenerAdapter;
+import org.freeplane.features.map.INodeChangeBatchListener;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeDeletionEvent;
+import org.freeplane.features.map.NodeModel;
+
+/**
+ * Builds the {@link NodeTextIndex} of created maps and passes node changes to it.
+ *
+ * @author Dimitry Polivaev
+ */
+class NodeTextIndexUpdater extends AMapChangeListenerAdapter implements INodeChangeBatchListener {
+	final private MapController mapController;
+
+	NodeTextIndexUpdater(final MapController mapController) {
+		this.mapController = mapController;
+	}
+
+	private static NodeTextIndex getIndex(final NodeModel node) {
+		final MapModel map = node == null ? null : node.getMap();
+		return map == null ? null : map.getExtension(NodeTextIndex.class);
+	}
+
+	@Override
+	public void nodeChanged(final NodeChangeEvent event) {
+		final NodeTextIndex index = getIndex(event.getNode());
+		if (index != null) {
+			index.nodeChanged(event.getNode());
+		}
+	}
+
+	public void nodesChanged(final List<NodeChangeEvent> events) {
+		for (final NodeChangeEvent event : events) {
+			nodeChanged(event);
+		}
+	}
+
+	@Override
+	public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+		final NodeTextIndex index = getIndex(nodeDeletionEvent.parent);
+		if (index != null) {
+			index.subtreeDeleted(nodeDeletionEvent.node);
+		}
+	}
+
+	@Override
+	public void onCreate(final MapModel map) {
+		if (ResourceController.getResourceController().getBooleanProperty(NodeTextIndex.INDEX_NODE_TEXTS)) {
+			NodeTextIndex.build(map, mapController);
+		}
+	}
+
+	@Override
+	public void onRemove(final MapModel map) {
+		NodeTextIndex.remove(map);
+	}
+}
@@ -19,7 +19,6 @@
  */
 package org.freeplane.features.text;
 
-import org.freeplane.core.util.HtmlUtils;
 import org.freeplane.features.filter.condition.ASelectableCondition;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.note.NoteModel;
@@ -50,7 +49,7 @@ public class NoteContainsCondition extends MatchCaseNoteContainsCondition {
 
 	@Override
 	protected String getText(final NodeModel node) {
-		final String noteText = NoteModel.getNoteText(node);
-		return noteText == null ? null : HtmlUtils.htmlToPlain(noteText).toLowerCase();
+		final String noteText = NoteModel.getPlainNoteText(node);
+		return noteText == null ? null : noteText.toLowerCase();
 	}
 }
@@ -1,22 +1,44 @@
 package org.freeplane.features.text;
 
 import org.freeplane.core.util.HtmlUtils;
+import org.freeplane.core.util.HtmlUtils.PlainText;
+import org.freeplane.core.util.TextPool;
 import org.freeplane.core.util.XmlUtils;
 
 
 public class RichTextModel {
 	private String html = null;
-	private String xml = null;
+	/** kept compacted by {@link TextPool#compact(String)} */
+	private Object xml = null;
+	private PlainText plainText = null;
 
 	public String getHtml() {
 		return html;
 	}
 
+	/**
+	 * Returns the html converted to plain text, which is converted only once.
+	 */
+	public String getPlainText() {
+		final String source = html;
+		if (source == null) {
+			return null;
+		}
+		final PlainText cachedText = plainText;
+		if (cachedText != null && cachedText.isConvertedFrom(source)) {
+			return cachedText.getText();
+		}
+		final String convertedText = HtmlUtils.htmlToPlain(source);
+		plainText = convertedText != source ? new PlainText(source, convertedText) : null;
+		return convertedText;
+	}
+
 	public String getXml() {
-		return xml;
+		return TextPool.expand(xml);
 	}
 
 	public final void setHtml(final String pNoteText) {
+		plainText = null;
 		if (pNoteText == null) {
 			xml = null;
 			html = null;
@@ -24,22 +46,26 @@ public class RichTextModel {
 		}
 		try {
 			html = XmlUtils.makeValidXml(pNoteText);
-			xml = HtmlUtils.toXhtml(html);
-			if (xml != null && !xml.startsWith("<")) {
-				html = xml;
+			final String xhtml = HtmlUtils.toXhtml(html);
+			if (xhtml != null && !xhtml.startsWith("<")) {
+				html = xhtml;
 			}
+			xml = TextPool.compact(xhtml, html);
 		} catch (Exception e) {
-			html = xml = HtmlUtils.unescapeHTMLUnicodeEntity(pNoteText);
+			html = HtmlUtils.unescapeHTMLUnicodeEntity(pNoteText);
+			xml = html;
 		}
 	}
 
 	public final void setXml(final String pXmlNoteText) {
+		plainText = null;
 		if (pXmlNoteText == null) {
 			xml = null;
 			html = null;
 			return;
 		}
-		xml = XmlUtils.makeValidXml(pXmlNoteText);
-		html = HtmlUtils.toHtml(xml);
+		final String validXml = XmlUtils.makeValidXml(pXmlNoteText);
+		html = HtmlUtils.toHtml(validXml);
+		xml = TextPool.compact(validXml, html);
 	}
 }
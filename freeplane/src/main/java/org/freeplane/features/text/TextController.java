@@ -105,6 +105,10 @@ public class TextController implements IExtension {
 		textBuilder.registerBy(readManager, writeManager);
 		writeManager.addExtensionElementWriter(DetailTextModel.class, textBuilder);
 		writeManager.addExtensionAttributeWriter(ShortenedTextModel.class, textBuilder);
+		final NodeTextIndexUpdater indexUpdater = new NodeTextIndexUpdater(mapController);
+		mapController.addNodeChangeListener(indexUpdater);
+		mapController.addMapChangeListener(indexUpdater);
+		mapController.addMapLifeCycleListener(indexUpdater);
 
 		modeController.addAction(new ToggleDetailsAction());
 		modeController.addAction(new SetShortenerStateAction());
@@ -230,8 +234,8 @@ public class TextController implements IExtension {
 	public String getTransformedTextNoThrow(NodeModel nodeModel) {
 	    final Object userObject = nodeModel.getUserObject();
 		final Object input;
-		if(userObject instanceof String &&  HtmlUtils.isHtmlNode((String) userObject))
-			input = HtmlUtils.htmlToPlain((String) userObject);
+		if(userObject instanceof String)
+			input = nodeModel.getPlainText();
 		else
 			input = userObject;
 		final String text = getTransformedTextNoThrow(input, nodeModel, userObject);
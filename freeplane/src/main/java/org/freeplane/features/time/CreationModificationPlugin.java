@@ -22,6 +22,7 @@ package org.freeplane.features.time;
 
 import java.awt.Component;
 import java.text.MessageFormat;
+import java.util.Date;
 
 import org.freeplane.core.extension.IExtension;
 import org.freeplane.core.util.TextUtils;
@@ -47,8 +48,8 @@ public class CreationModificationPlugin extends PersistentNodeHook implements IE
 			public String getTooltip(ModeController modeController, NodeModel node, Component view) {
 				if (! isActive(node))
 					return null;
-				final Object[] messageArguments = { node.getHistoryInformation().getCreatedAt(),
-				        node.getHistoryInformation().getLastModifiedAt() };
+				final Object[] messageArguments = { new Date(node.getCreatedAt()),
+				        new Date(node.getLastModifiedAt()) };
 				if (tooltipFormat == null) {
 					final StringBuilder sb = new StringBuilder();
 					sb.append("<html>");
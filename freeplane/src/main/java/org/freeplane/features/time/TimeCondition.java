@@ -56,6 +56,11 @@ public abstract class TimeCondition extends ASelectableCondition {
 
 	abstract protected String createDescription();
 
+	@Override
+	public boolean canCheckConcurrently() {
+		return true;
+	}
+
 	public Date getDate() {
 		return date;
 	}
@@ -38,9 +38,9 @@ public class TimeConditionCreatedBefore extends TimeCondition {
 	}
 
 	public boolean checkNode(final NodeModel node) {
-		final Date createdAt = node.getHistoryInformation().getCreatedAt();
+		final long createdAt = node.getCreatedAt();
 		final Date filterDate = getDate();
-		final boolean before = createdAt.getTime() < filterDate.getTime();
+		final boolean before = createdAt < filterDate.getTime();
 		return before;
 	}
 
@@ -0,0 +1,131 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.freeplane.core.util.FileUtils;
+
+/**
+ * Reads and writes backup files compressed with gzip.
+ * Compressed backups are recognized by their file extension, so that other backups can still be read.
+ *
+ * @author Dimitry Polivaev
+ */
+class BackupCompression {
+	static final String COMPRESSED_EXTENSION = "gz";
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	static String compressedExtension(final String extension) {
+		return extension + '.' + COMPRESSED_EXTENSION;
+	}
+
+	static String plainExtension(final String extension) {
+		final String compressedSuffix = '.' + COMPRESSED_EXTENSION;
+		if (extension.endsWith(compressedSuffix)) {
+			return extension.substring(0, extension.length() - compressedSuffix.length());
+		}
+		return extension;
+	}
+
+	static boolean isCompressed(final File file) {
+		return file.getName().endsWith('.' + COMPRESSED_EXTENSION);
+	}
+
+	static InputStream openInputStream(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		if (!isCompressed(file)) {
+			return in;
+		}
+		try {
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		}
+		catch (final IOException e) {
+			FileUtils.silentlyClose(in);
+			throw e;
+		}
+	}
+
+	static OutputStream openOutputStream(final File file) throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		if (!isCompressed(file)) {
+			return out;
+		}
+		try {
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+		}
+		catch (final IOException e) {
+			FileUtils.silentlyClose(out);
+			throw e;
+		}
+	}
+
+	static void compress(final File file, final File compressedFile) throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		OutputStream out = null;
+		try {
+			out = new GZIPOutputStream(new FileOutputStream(compressedFile), BUFFER_SIZE);
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+				out.write(buffer, 0, count);
+			}
+			out.close();
+			out = null;
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+			FileUtils.silentlyClose(out);
+		}
+	}
+
+	/**
+	 * Returns the size of the backup content read from the gzip trailer without decompressing the file.
+	 * The gzip format stores the size modulo 2^32.
+	 */
+	static long contentLength(final File file) {
+		if (!isCompressed(file)) {
+			return file.length();
+		}
+		RandomAccessFile in = null;
+		try {
+			in = new RandomAccessFile(file, "r");
+			if (in.length() < 4) {
+				return file.length();
+			}
+			in.seek(in.length() - 4);
+			return in.read() | in.read() << 8 | in.read() << 16 | (long) in.read() << 24;
+		}
+		catch (final IOException e) {
+			return file.length();
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+	}
+}
@@ -20,17 +20,26 @@
 package org.freeplane.features.url.mindmapmode;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.net.URL;
 import java.util.TimerTask;
 
 import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.undo.IUndoHandler;
 import org.freeplane.core.util.LogUtils;
 import org.freeplane.core.util.TextUtils;
+import org.freeplane.features.map.IMapReadTask;
 import org.freeplane.features.map.MapModel;
-import org.freeplane.features.map.mindmapmode.MMapModel;
+import org.freeplane.features.map.MapSnapshot;
+import org.freeplane.features.map.MapWriter;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.StaleSnapshotException;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
+import org.freeplane.features.note.NoteController;
+import org.freeplane.features.ui.ViewController;
 import org.freeplane.features.url.UrlManager;
 
 public class DoAutomaticSave extends TimerTask {
@@ -57,64 +66,152 @@ public class DoAutomaticSave extends TimerTask {
 		changeState = model.getNumberOfChangesSinceLastSave();
 	}
 
+	/**
+	 * Renders the map xml on the timer thread from a consistent snapshot of the map and writes it.
+	 * The event dispatch thread only checks the undo state, stores the edited note and allocates missing node ids.
+	 * If the map keeps changing or contains decrypted nodes, the xml is rendered on the event dispatch thread.
+	 * The map is saved only once, the task is scheduled again after the user saves the map.
+	 * While an undo transaction is in progress the save is postponed to the next interval.
+	 */
 	@Override
 	public void run() {
 		/* Map is dirty enough? */
 		if (model.getNumberOfChangesSinceLastSave() == changeState) {
 			return;
 		}
+		final int lastChangeState = changeState;
 		changeState = model.getNumberOfChangesSinceLastSave();
 		if (changeState == 0) {
 			/* map was recently saved. */
 			return;
 		}
 		try {
+			final MapXml mapXml = new MapXml();
+			final ViewController viewController = Controller.getCurrentController().getViewController();
+			viewController.invokeAndWait(mapXml);
+			if (mapXml.transactionInProgress) {
+				changeState = lastChangeState;
+				return;
+			}
 			cancel();
-			Controller.getCurrentController().getViewController().invokeAndWait(new Runnable() {
-
-				public void run() {
-					/* Now, it is dirty, we save it. */
-					try {
-						final ModeController currentModeController = Controller.getCurrentModeController();
-						if(!(currentModeController instanceof MModeController))
-							return;
-						MModeController modeController = ((MModeController) currentModeController);
-						final File pathToStore;
-						final URL url = model.getURL();
-						final File file = new File(url != null ? url.getFile() //
-						        : model.getTitle() + UrlManager.FREEPLANE_FILE_EXTENSION);
-						if (url == null) {
-							pathToStore = new File(ResourceController.getResourceController()
-							    .getFreeplaneUserDirectory(), BACKUP_DIR);
-						}
-						else if (singleBackupDirectory != null) {
-							pathToStore = singleBackupDirectory;
-						}
-						else {
-							pathToStore = new File(file.getParent(), BACKUP_DIR);
-						}
-						pathToStore.mkdirs();
-						final File tempFile = MFileManager.renameBackupFiles(pathToStore, file, numberOfFiles,
-						    AUTOSAVE_EXTENSION);
-						if (tempFile == null) {
-							return;
-						}
-						if (filesShouldBeDeletedAfterShutdown) {
-							tempFile.deleteOnExit();
+			if (mapXml.xml == null && mapXml.backgroundWriter != null) {
+				mapXml.renderInBackground();
+				if (mapXml.xml == null) {
+					viewController.invokeAndWait(new Runnable() {
+						public void run() {
+							mapXml.render(Controller.getCurrentModeController().getMapController().getMapWriter());
 						}
-						((MFileManager) UrlManager.getController())
-						    .saveInternal((MMapModel) model, tempFile, true /*=internal call*/);
-						modeController.getController().getViewController()
-						    .out(TextUtils.format("automatically_save_message", tempFile));
-					}
-					catch (final Exception e) {
-						LogUtils.severe("Error in automatic MapModel.save(): ", e);
-					}
+					});
+				}
+			}
+			if (mapXml.xml == null) {
+				return;
+			}
+			synchronized (MFileManager.BACKUP_FILES_LOCK) {
+				final File tempFile = MFileManager.renameBackupFiles(mapXml.pathToStore, mapXml.file, numberOfFiles,
+				    MFileManager.backupExtension(AUTOSAVE_EXTENSION));
+				if (tempFile == null) {
+					return;
+				}
+				if (filesShouldBeDeletedAfterShutdown) {
+					tempFile.deleteOnExit();
+				}
+				showStatus(TextUtils.format("automatically_saving_message", tempFile));
+				try {
+					MFileManager.writeToFile(mapXml.xml, tempFile);
+					showStatus(TextUtils.format("automatically_save_message", tempFile));
+				}
+				catch (final IOException e) {
+					showStatus(TextUtils.format("save_failed", tempFile.getName()));
 				}
-			});
+			}
 		}
 		catch (final Exception e) {
-			LogUtils.severe(e);
+			LogUtils.severe("Error in automatic MapModel.save(): ", e);
+		}
+	}
+
+	private void showStatus(final String message) {
+		Controller.getCurrentController().getViewController().invokeLater(new Runnable() {
+			public void run() {
+				Controller.getCurrentController().getViewController().out(message);
+			}
+		});
+	}
+
+	private class MapXml implements Runnable {
+		private File file;
+		private File pathToStore;
+		private boolean transactionInProgress;
+		private MapWriter backgroundWriter;
+		private String xml;
+
+		public void run() {
+			final ModeController currentModeController = Controller.getCurrentModeController();
+			if (!(currentModeController instanceof MModeController)) {
+				return;
+			}
+			final IUndoHandler undoHandler = model.getExtension(IUndoHandler.class);
+			if (undoHandler != null && (undoHandler.getTransactionLevel() > 0 || undoHandler.isUndoActionRunning())) {
+				transactionInProgress = true;
+				return;
+			}
+			final URL url = model.getURL();
+			file = new File(url != null ? url.getFile() //
+			        : model.getTitle() + UrlManager.FREEPLANE_FILE_EXTENSION);
+			if (url == null) {
+				pathToStore = new File(ResourceController.getResourceController().getFreeplaneUserDirectory(),
+				    BACKUP_DIR);
+			}
+			else if (singleBackupDirectory != null) {
+				pathToStore = singleBackupDirectory;
+			}
+			else {
+				pathToStore = new File(file.getParent(), BACKUP_DIR);
+			}
+			pathToStore.mkdirs();
+			final NoteController noteController = NoteController.getController(currentModeController);
+			if (noteController != null) {
+				noteController.onWrite(model);
+			}
+			final MapWriter mapWriter = currentModeController.getMapController().getMapWriter();
+			backgroundWriter = mapWriter.createBackgroundWriter(model);
+			if (backgroundWriter == null) {
+				render(mapWriter);
+			}
+		}
+
+		void renderInBackground() {
+			try {
+				xml = model.readConsistently(new IMapReadTask<String>() {
+					public String read(final MapSnapshot snapshot) {
+						return write(backgroundWriter);
+					}
+				});
+			}
+			catch (final StaleSnapshotException e) {
+				LogUtils.info("map changed during automatic save, rendering it on the event dispatch thread");
+			}
+		}
+
+		void render(final MapWriter mapWriter) {
+			try {
+				xml = write(mapWriter);
+			}
+			catch (final RuntimeException e) {
+				LogUtils.severe("Error in automatic MapModel.save(): ", e);
+			}
+		}
+
+		private String write(final MapWriter mapWriter) {
+			final StringWriter writer = new StringWriter();
+			try {
+				mapWriter.writeMapAsXml(model, writer, Mode.FILE, true, false);
+			}
+			catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+			return writer.toString();
 		}
 	}
 }
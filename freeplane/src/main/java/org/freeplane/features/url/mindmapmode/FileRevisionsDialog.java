@@ -288,7 +288,7 @@ class FileRevisionsDialog extends JDialog {
 	}
 
 	private Object[] createRow(final File file) {
-		return new Object[] { new FileWrapper(file), fileSizeFormat.format(file.length()),
+		return new Object[] { new FileWrapper(file), fileSizeFormat.format(BackupCompression.contentLength(file)),
 		        dateFormat.format(file.lastModified()) };
 	}
 
@@ -26,6 +26,7 @@ import java.awt.event.ActionListener;
 import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.CharArrayReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -34,9 +35,11 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.SequenceInputStream;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -61,6 +64,7 @@ import javax.swing.JOptionPane;
 import javax.swing.filechooser.FileFilter;
 
 import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.io.xml.XMLSnapshot;
 import org.freeplane.core.resources.TranslatedObject;
 import org.freeplane.core.resources.ResourceController;
 import org.freeplane.core.resources.components.ComboProperty;
@@ -81,6 +85,7 @@ import org.freeplane.features.link.LinkController;
 import org.freeplane.features.map.MapChangeEvent;
 import org.freeplane.features.map.MapController;
 import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapReader;
 import org.freeplane.features.map.MapWriter.Mode;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.mindmapmode.DocuMapAttribute;
@@ -105,6 +110,7 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	public static final String STANDARD_TEMPLATE = "standard_template";
 	private static final String DEFAULT_SAVE_DIR_PROPERTY = "default_save_dir";
 	private static final String BACKUP_EXTENSION = "bak";
+	private static final String FAILED_JOURNAL_EXTENSION = "failed";
 	private static final int DEBUG_OFFSET = 0;
 
 	static private class BackupFlag implements IExtension {
@@ -135,8 +141,13 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 	}
 
 	private static final String BACKUP_FILE_NUMBER = "backup_file_number";
+	private static final String COMPRESS_BACKUPS = "compress_backups";
+	private static final String LOAD_MAPS_FROM_SNAPSHOT = "load_maps_from_snapshot";
+	private static final String LOAD_MAPS_MEMORY_MAPPED = "load_maps_memory_mapped";
 	private static final String FREEPLANE_VERSION_UPDATER_XSLT = "/xslt/freeplane_version_updater.xslt";
 	private static File singleBackupDirectory;
+	/** Serializes the rotation of backup files by saves on the event dispatch thread and automatic saves. */
+	static final Object BACKUP_FILES_LOCK = new Object();
 
 	private File[] findFileRevisions(final File file, final File backupDir, final AlternativeFileMode mode) {
 		final String fileExtensionPattern;
@@ -144,7 +155,8 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			fileExtensionPattern = "(" + BACKUP_EXTENSION + "|"+ DoAutomaticSave.AUTOSAVE_EXTENSION + ")";
 		else
 			fileExtensionPattern = DoAutomaticSave.AUTOSAVE_EXTENSION;
-		final Pattern pattern = Pattern.compile("^" + Pattern.quote(backupFileName(file)) + "\\.+\\d+\\." + fileExtensionPattern);
+		final Pattern pattern = Pattern.compile("^" + Pattern.quote(backupFileName(file)) + "\\.+\\d+\\." + fileExtensionPattern
+		        + "(\\." + BackupCompression.COMPRESSED_EXTENSION + ")?");
 		if (backupDir.exists()) {
 			final File[] fileList = backupDir.listFiles(new java.io.FileFilter() {
 				public boolean accept(final File f) {
@@ -173,16 +185,21 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		final File backupDir = MFileManager.backupDir(file);
 		backupDir.mkdir();
 		if (backupDir.exists()) {
-			final File backupFile = MFileManager.renameBackupFiles(backupDir, file, backupFileNumber, extension);
-			if (!backupFile.exists()) {
-				performBackup(file, backupFile);
+			synchronized (BACKUP_FILES_LOCK) {
+				final File backupFile = MFileManager.renameBackupFiles(backupDir, file, backupFileNumber, extension);
+				if (backupFile != null && !backupFile.exists()) {
+					performBackup(file, backupFile);
+				}
 			}
 		}
 	}
 
 	private static void performBackup(final File file, final File backupFile) {
 	    try {
-	        FileUtils.copyFile(file, backupFile);
+	        if (BackupCompression.isCompressed(backupFile))
+	        	BackupCompression.compress(file, backupFile);
+	        else
+	        	FileUtils.copyFile(file, backupFile);
 	        backupFile.setLastModified(file.lastModified());
         }
         catch (IOException e) {
@@ -195,26 +212,42 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		return new File(file.getParentFile(), DoAutomaticSave.BACKUP_DIR);
 	}
 
+	/**
+	 * Returns the extension of new backup files, which are compressed if property compress_backups is set.
+	 */
+	static String backupExtension(final String extension) {
+		if (ResourceController.getResourceController().getBooleanProperty(COMPRESS_BACKUPS))
+			return BackupCompression.compressedExtension(extension);
+		return extension;
+	}
+
+	static File journalFile(final File file) {
+		return new File(backupDir(file), backupFileName(file) + '.' + MapJournal.JOURNAL_EXTENSION);
+	}
+
 	static File createBackupFile(final File backupDir, final File file, final int number, final String extension) {
 		return new File(backupDir, backupFileName(file) + '.' + number + '.' + extension);
 	}
 
+	/**
+	 * Shifts the numbered backup files to free the number of the next backup and deletes surplus backups.
+	 * Plain and compressed backups are rotated alike, so that toggling compress_backups keeps their order.
+	 * @return the file for the next backup with the given extension or null if a backup can not be renamed
+	 */
 	static File renameBackupFiles(final File backupDir, final File file, final int backupFileNumber,
 	                              final String extension) {
 		if (backupFileNumber == 0) {
 			return null;
 		}
+		final String plainExtension = BackupCompression.plainExtension(extension);
 		for (int i = backupFileNumber + 1;; i++) {
-			final File newFile = MFileManager.createBackupFile(backupDir, file, i, extension);
-			if (!newFile.exists()) {
+			if (!deleteBackupFiles(backupDir, file, i, plainExtension)) {
 				break;
 			}
-			newFile.delete();
 		}
 		int i = backupFileNumber;
 		for (;;) {
-			final File newFile = MFileManager.createBackupFile(backupDir, file, i, extension);
-			if (newFile.exists()) {
+			if (findBackupFile(backupDir, file, i, plainExtension) != null) {
 				break;
 			}
 			i--;
@@ -226,17 +259,45 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			return MFileManager.createBackupFile(backupDir, file, i + 1, extension);
 		}
 		for (i = 1; i < backupFileNumber; i++) {
-			final File newFile = MFileManager.createBackupFile(backupDir, file, i, extension);
-			final File oldFile = MFileManager.createBackupFile(backupDir, file, i + 1, extension);
-			newFile.delete();
-			if (!oldFile.renameTo(newFile)) {
+			deleteBackupFiles(backupDir, file, i, plainExtension);
+			final File oldFile = findBackupFile(backupDir, file, i + 1, plainExtension);
+			if (oldFile == null) {
+				continue;
+			}
+			final String oldExtension = BackupCompression.isCompressed(oldFile) ? BackupCompression
+			    .compressedExtension(plainExtension) : plainExtension;
+			if (!oldFile.renameTo(MFileManager.createBackupFile(backupDir, file, i, oldExtension))) {
 				return null;
 			}
 		}
 		return MFileManager.createBackupFile(backupDir, file, backupFileNumber, extension);
 	}
 
+	private static File findBackupFile(final File backupDir, final File file, final int number,
+	                                   final String plainExtension) {
+		final File plainFile = MFileManager.createBackupFile(backupDir, file, number, plainExtension);
+		if (plainFile.exists()) {
+			return plainFile;
+		}
+		final File compressedFile = MFileManager.createBackupFile(backupDir, file, number,
+		    BackupCompression.compressedExtension(plainExtension));
+		return compressedFile.exists() ? compressedFile : null;
+	}
+
+	/** @return true if a plain or a compressed backup with the number existed */
+	private static boolean deleteBackupFiles(final File backupDir, final File file, final int number,
+	                                         final String plainExtension) {
+		final File plainFile = MFileManager.createBackupFile(backupDir, file, number, plainExtension);
+		final File compressedFile = MFileManager.createBackupFile(backupDir, file, number,
+		    BackupCompression.compressedExtension(plainExtension));
+		final boolean existed = plainFile.exists() || compressedFile.exists();
+		plainFile.delete();
+		compressedFile.delete();
+		return existed;
+	}
+
 	FileFilter filefilter = new MindMapFilter();
+	final private Collection<IMapLoadStatisticsListener> loadStatisticsListeners = new LinkedList<IMapLoadStatisticsListener>();
 
 	public MFileManager() {
 		super();
@@ -252,6 +313,11 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		super.init();
 		createActions();
 		createPreferences();
+		final MapController mapController = Controller.getCurrentModeController().getMapController();
+		final MapJournalUpdater journalUpdater = new MapJournalUpdater(mapController);
+		mapController.addNodeChangeListener(journalUpdater);
+		mapController.addMapChangeListener(journalUpdater);
+		mapController.addMapLifeCycleListener(journalUpdater);
 		if (ResourceController.getResourceController().getBooleanProperty("single_backup_directory")) {
 			String value = ResourceController.getResourceController().getProperty("single_backup_directory_path");
 			// vb, 2010-10-14: I'm not exactly happy with putting this here - if you have a better place move it!
@@ -292,7 +358,7 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			return;
 		}
 		final int backupFileNumber = ResourceController.getResourceController().getIntProperty(BACKUP_FILE_NUMBER, 0);
-		MFileManager.backupFile(file, backupFileNumber, BACKUP_EXTENSION);
+		MFileManager.backupFile(file, backupFileNumber, backupExtension(BACKUP_EXTENSION));
 	}
 
 	private void createActions() {
@@ -501,7 +567,8 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 
 	private NodeModel loadTreeImpl(final MapModel map, final File f) throws FileNotFoundException, IOException,
 	        XMLException, MapConversionException {
-		final BufferedInputStream file = new BufferedInputStream(new FileInputStream(f));
+		final boolean isCompressed = BackupCompression.isCompressed(f);
+		final BufferedInputStream file = new BufferedInputStream(BackupCompression.openInputStream(f));
 		int versionInfoLength = 1000;
 		final byte[] buffer = new byte[versionInfoLength];
 		final int readCount = file.read(buffer);
@@ -528,18 +595,122 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 				//reader = UrlManager.getUpdateReader(f, FREEPLANE_VERSION_UPDATER_XSLT);
 				reader = isConverter.getConvertedStream(f);
 			}
+		} else if (!isCompressed && ResourceController.getResourceController().getBooleanProperty(LOAD_MAPS_MEMORY_MAPPED)) {
+			sequencedInput.close();
+			reader = new MappedFileReader(f, FileUtils.defaultCharset(), !Compat.isWindowsOS());
 		} else {
 			reader = new InputStreamReader(sequencedInput, FileUtils.defaultCharset());
 		}
+		if (!versionInterpreter.needsConversion) {
+			reader = replayJournal(map, f, reader);
+		}
 		try {
-			return Controller.getCurrentModeController().getMapController().getMapReader()
-			    .createNodeTreeFromXml(map, reader, Mode.FILE);
+			final long loadStart = System.nanoTime();
+			final MapReader mapReader = Controller.getCurrentModeController().getMapController().getMapReader();
+			final NodeModel rootNode;
+			if (!versionInterpreter.needsConversion && !isCompressed && !journalFile(f).isFile()
+			        && ResourceController.getResourceController().getBooleanProperty(LOAD_MAPS_FROM_SNAPSHOT)) {
+				rootNode = loadTreeUsingSnapshot(mapReader, map, f, reader);
+			}
+			else {
+				rootNode = mapReader.createNodeTreeFromXml(map, reader, Mode.FILE);
+			}
+			final long loadTime = System.nanoTime() - loadStart;
+			if (!loadStatisticsListeners.isEmpty()) {
+				if (reader instanceof MappedFileReader) {
+					final MappedFileReader mappedFileReader = (MappedFileReader) reader;
+					fireMapLoaded(new MapLoadStatistics(f, mappedFileReader.getByteCount(),
+					    mappedFileReader.getDecodeTime(), loadTime, mappedFileReader.isMemoryMapped()));
+				}
+				else {
+					fireMapLoaded(new MapLoadStatistics(f, f.length(), MapLoadStatistics.UNKNOWN_TIME, loadTime, false));
+				}
+			}
+			return rootNode;
 		}
 		finally {
 			FileUtils.silentlyClose(reader);
 		}
 	}
 
+	/**
+	 * Returns a reader of the map content restored from the journal left by a crash,
+	 * or the given reader if there is no journal for the current map file.
+	 * A journal which can not be applied is kept under another name and the user is informed.
+	 */
+	private Reader replayJournal(final MapModel map, final File f, final Reader reader) throws IOException {
+		MapJournal.waitForPendingWrites();
+		final File journalFile = journalFile(f);
+		if (!journalFile.isFile()) {
+			return reader;
+		}
+		if (!MapJournal.belongsTo(journalFile, f)) {
+			journalFile.delete();
+			return reader;
+		}
+		final StringBuilder content = new StringBuilder();
+		final char[] buffer = new char[64 * 1024];
+		for (int count = reader.read(buffer); count >= 0; count = reader.read(buffer)) {
+			content.append(buffer, 0, count);
+		}
+		reader.close();
+		final char[] document = new char[content.length()];
+		content.getChars(0, document.length, document, 0);
+		final String restoredContent;
+		try {
+			restoredContent = MapJournal.replay(journalFile, f, document);
+		}
+		catch (final IOException e) {
+			LogUtils.warn("can not apply journal " + journalFile, e);
+			final File keptJournalFile = new File(journalFile.getPath() + '.' + FAILED_JOURNAL_EXTENSION);
+			keptJournalFile.delete();
+			journalFile.renameTo(keptJournalFile);
+			Controller.getCurrentController().getViewController().invokeLater(new Runnable() {
+				public void run() {
+					UITools.errorMessage(TextUtils.format("map_journal_not_applied", f.getName(), keptJournalFile));
+				}
+			});
+			return new CharArrayReader(document);
+		}
+		if (restoredContent == null) {
+			return new CharArrayReader(document);
+		}
+		Controller.getCurrentController().getViewController().invokeLater(new Runnable() {
+			public void run() {
+				Controller.getCurrentModeController().getMapController().setSaved(map, false);
+				Controller.getCurrentController().getViewController()
+				    .out(TextUtils.format("map_restored_from_journal", f.getName()));
+			}
+		});
+		return new StringReader(restoredContent);
+	}
+
+	private NodeModel loadTreeUsingSnapshot(final MapReader mapReader, final MapModel map, final File f,
+	                                        final Reader reader) throws IOException, XMLException {
+		final MapSnapshotFile snapshotFile = new MapSnapshotFile(f, new File(backupDir(f), backupFileName(f) + '.'
+		        + MapSnapshotFile.SNAPSHOT_EXTENSION), FileUtils.defaultCharset());
+		XMLSnapshot snapshot = snapshotFile.read();
+		if (snapshot == null) {
+			snapshot = mapReader.createSnapshot(reader);
+			snapshotFile.write(snapshot);
+		}
+		return mapReader.createNodeTreeFromSnapshot(map, snapshot, Mode.FILE);
+	}
+
+	public void addLoadStatisticsListener(final IMapLoadStatisticsListener listener) {
+		loadStatisticsListeners.add(listener);
+	}
+
+	public void removeLoadStatisticsListener(final IMapLoadStatisticsListener listener) {
+		loadStatisticsListeners.remove(listener);
+	}
+
+	private void fireMapLoaded(final MapLoadStatistics statistics) {
+		for (final IMapLoadStatisticsListener listener : loadStatisticsListeners) {
+			listener.mapLoaded(statistics);
+		}
+	}
+
 	/**@deprecated -- use LinkController*/
 	@Deprecated
 	@Override
@@ -855,6 +1026,7 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 			writeToFile(map, file);
 			if (!isInternal) {
 				map.setSaved(true);
+				MapJournalUpdater.discard(map);
 			}
 			map.scheduleTimerForAutomaticSaving();
 			return true;
@@ -904,6 +1076,18 @@ public class MFileManager extends UrlManager implements IMapViewChangeListener {
 		}
 	}
 
+	static void writeToFile(final String xml, final File file) throws IOException {
+		final OutputStream out = BackupCompression.openOutputStream(file);
+		try {
+			final BufferedWriter fileout = new BufferedWriter(new OutputStreamWriter(out));
+			fileout.write(xml);
+			fileout.flush();
+		}
+		finally {
+			out.close();
+		}
+	}
+
 	public void setFile(final MapModel map, final File file) {
 		try {
 			final URL url = Compat.fileToUrl(file);
@@ -0,0 +1,789 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import org.freeplane.core.extension.IExtension;
+import org.freeplane.core.undo.IUndoHandler;
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.core.util.LogUtils;
+import org.freeplane.features.map.EncryptionModel;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeTraversal;
+
+/**
+ * Append only journal of the changes of a map made since it was saved.
+ *
+ * After each committed undo transaction a record with the changes is appended:
+ * the xml of each changed node without its children, the keys of the children of nodes
+ * whose children changed and the complete xml of inserted branches.
+ * The map without the children of the root node is only recorded if the map or the root node changed.
+ * Nodes are identified by their id, nodes without id get a key of the journal and are recorded with their branches.
+ * Encrypted nodes are recorded with their branches if anything below them changes.
+ * If a clone is involved, the complete map is recorded because the content of clones is written only once.
+ * A map file can be restored from its journal by replacing the changed nodes and children.
+ *
+ * The records are rendered on the event dispatch thread and written by a background thread,
+ * which synchronizes the journal with the disk at most once a second and at most a second after each record.
+ * The journal is deleted when the map is saved or closed.
+ *
+ * @author Dimitry Polivaev
+ */
+class MapJournal implements IExtension, ChangeListener {
+	static final String JOURNAL_EXTENSION = "journal";
+	private static final int MAGIC = 0x46504A31;
+	private static final int FORMAT_VERSION = 2;
+	private static final long SYNC_INTERVAL = 1000;
+	static final String BRANCH_PLACEHOLDER = "<?freeplane-branches?>";
+	private static final Pattern ID_PATTERN = Pattern.compile("^<node\\b[^>]*?\\sID\\s*=\\s*([\"'])(.*?)\\1");
+	private static final String NEW_NODE_KEY = "journal_";
+	private static final String ROOT_KEY = "";
+	private static final byte MAP_ENTRY = 1;
+	private static final byte NODE_ENTRY = 2;
+	private static final byte CHILDREN_ENTRY = 3;
+	private static final byte BRANCH_ENTRY = 4;
+	private static final byte FULL_MAP_ENTRY = 5;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(
+	    new ThreadFactory() {
+		    public Thread newThread(final Runnable r) {
+			    final Thread thread = Executors.defaultThreadFactory().newThread(r);
+			    thread.setName("map journal writer");
+			    thread.setDaemon(true);
+			    return thread;
+		    }
+	    });
+	final private Set<NodeModel> changedNodes = new LinkedHashSet<NodeModel>();
+	final private Set<NodeModel> changedChildren = new LinkedHashSet<NodeModel>();
+	final private Set<NodeModel> changedBranches = new LinkedHashSet<NodeModel>();
+	final private Map<NodeModel, String> newNodeKeys = new HashMap<NodeModel, String>();
+	private boolean hasChanges;
+	private boolean mapChanged;
+	final private File journalFile;
+	private long lastSync;
+	private boolean isSynced = true;
+	private boolean isSyncScheduled;
+	final private MapModel map;
+	final private File mapFile;
+	final private MapWriter mapWriter;
+	private FileOutputStream out;
+
+	MapJournal(final MapModel map, final MapWriter mapWriter, final File mapFile, final File journalFile) {
+		this.map = map;
+		this.mapWriter = mapWriter;
+		this.mapFile = mapFile;
+		this.journalFile = journalFile;
+	}
+
+	void mapChanged() {
+		hasChanges = true;
+		mapChanged = true;
+	}
+
+	void nodeChanged(final NodeModel node) {
+		hasChanges = true;
+		final NodeModel encryptedNode = outermostEncryptedNode(node);
+		if (encryptedNode != null) {
+			changedBranches.add(encryptedNode);
+		}
+		else {
+			changedNodes.add(node);
+		}
+	}
+
+	void childrenChanged(final NodeModel parent) {
+		hasChanges = true;
+		final NodeModel encryptedNode = outermostEncryptedNode(parent);
+		if (encryptedNode != null) {
+			changedBranches.add(encryptedNode);
+		}
+		else {
+			changedChildren.add(parent);
+		}
+	}
+
+	void nodeInserted(final NodeModel parent, final NodeModel child) {
+		childrenChanged(parent);
+		if (outermostEncryptedNode(parent) == null) {
+			changedBranches.add(child);
+		}
+	}
+
+	private static NodeModel outermostEncryptedNode(final NodeModel node) {
+		NodeModel encryptedNode = null;
+		for (NodeModel ancestor = node; ancestor != null; ancestor = ancestor.getParentNode()) {
+			if (EncryptionModel.getModel(ancestor) != null) {
+				encryptedNode = ancestor;
+			}
+		}
+		return encryptedNode;
+	}
+
+	public void stateChanged(final ChangeEvent e) {
+		recordChanges();
+	}
+
+	/**
+	 * Appends the collected changes unless a transaction is in progress.
+	 * Called when the undo handler changes and after change batches, which end after their transactions.
+	 */
+	void recordChanges() {
+		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
+		if (!hasChanges || undoHandler != null && undoHandler.getTransactionLevel() > 0) {
+			return;
+		}
+		final byte[] record;
+		try {
+			record = createRecord();
+		}
+		catch (final IOException ex) {
+			LogUtils.warn("can not write journal " + journalFile, ex);
+			return;
+		}
+		writer.execute(new Runnable() {
+			public void run() {
+				try {
+					append(record);
+				}
+				catch (final IOException ex) {
+					LogUtils.warn("can not write journal " + journalFile, ex);
+					close();
+				}
+			}
+		});
+	}
+
+	private String key(final NodeModel node) {
+		if (node.isRoot()) {
+			return ROOT_KEY;
+		}
+		final String key = newNodeKeys.get(node);
+		return key != null ? key : node.getID();
+	}
+
+	private String createKey(final NodeModel node) {
+		final String key = NEW_NODE_KEY + (newNodeKeys.size() + 1);
+		newNodeKeys.put(node, key);
+		return key;
+	}
+
+	private boolean isInMap(final NodeModel node) {
+		NodeModel ancestor = node;
+		while (ancestor.getParentNode() != null) {
+			ancestor = ancestor.getParentNode();
+		}
+		return ancestor == map.getRootNode();
+	}
+
+	/**
+	 * Nodes which are known to the journal neither by id nor by key are recorded with their branches,
+	 * the children of their parents are recorded too.
+	 */
+	private void addKeys() {
+		for (final NodeModel node : new ArrayList<NodeModel>(changedNodes)) {
+			if (key(node) == null) {
+				changedNodes.remove(node);
+				changedBranches.add(node);
+			}
+		}
+		final ArrayList<NodeModel> parents = new ArrayList<NodeModel>(changedChildren);
+		for (final NodeModel branch : changedBranches) {
+			if (!branch.isRoot() && key(branch) == null) {
+				createKey(branch);
+				parents.add(branch.getParentNode());
+			}
+		}
+		for (int i = 0; i < parents.size(); i++) {
+			final NodeModel parent = parents.get(i);
+			if (parent == null || !isInMap(parent)) {
+				continue;
+			}
+			if (key(parent) == null) {
+				createKey(parent);
+				changedBranches.add(parent);
+				parents.add(parent.getParentNode());
+				continue;
+			}
+			changedChildren.add(parent);
+			for (final NodeModel child : parent.getChildren()) {
+				if (key(child) == null) {
+					createKey(child);
+					changedBranches.add(child);
+				}
+			}
+		}
+	}
+
+	private boolean involvesClones() {
+		for (final NodeModel node : changedNodes) {
+			if (node.allClones().size() > 1) {
+				return true;
+			}
+		}
+		for (final NodeModel parent : changedChildren) {
+			if (parent.allClones().size() > 1) {
+				return true;
+			}
+			for (final NodeModel child : parent.getChildren()) {
+				if (child.allClones().size() > 1) {
+					return true;
+				}
+			}
+		}
+		for (final NodeModel branch : changedBranches) {
+			for (final NodeModel node : NodeTraversal.preOrder(branch).visitingLoadedChildrenOnly()) {
+				if (node.allClones().size() > 1) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private byte[] createRecord() throws IOException {
+		final ByteArrayOutputStream record = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(record);
+		data.writeLong(System.currentTimeMillis());
+		addKeys();
+		if (involvesClones()) {
+			final StringWriter mapXml = new StringWriter();
+			mapWriter.writeMapAsXml(map, mapXml, Mode.FILE, true, false);
+			data.writeInt(1);
+			data.writeByte(FULL_MAP_ENTRY);
+			writeString(data, mapXml.toString());
+		}
+		else {
+			writeEntries(data);
+		}
+		data.flush();
+		changedNodes.clear();
+		changedChildren.clear();
+		changedBranches.clear();
+		mapChanged = false;
+		hasChanges = false;
+		return record.toByteArray();
+	}
+
+	private void writeEntries(final DataOutputStream data) throws IOException {
+		final ArrayList<NodeModel> nodes = new ArrayList<NodeModel>();
+		final ArrayList<NodeModel> parents = new ArrayList<NodeModel>();
+		final ArrayList<NodeModel> branches = new ArrayList<NodeModel>();
+		final boolean writesSkeleton = mapChanged || changedNodes.contains(map.getRootNode())
+		        || changedBranches.contains(map.getRootNode());
+		for (final NodeModel node : changedNodes) {
+			if (!node.isRoot() && !changedBranches.contains(node) && isInMap(node)) {
+				nodes.add(node);
+			}
+		}
+		for (final NodeModel parent : changedChildren) {
+			if (!changedBranches.contains(parent) && isInMap(parent)) {
+				parents.add(parent);
+			}
+		}
+		for (final NodeModel branch : changedBranches) {
+			if (!branch.isRoot() && isInMap(branch)) {
+				branches.add(branch);
+			}
+		}
+		data.writeInt((writesSkeleton ? 1 : 0) + nodes.size() + parents.size() + branches.size());
+		if (writesSkeleton) {
+			final StringWriter skeleton = new StringWriter();
+			mapWriter.writeMapWithoutBranchesAsXml(map, skeleton, BRANCH_PLACEHOLDER);
+			data.writeByte(MAP_ENTRY);
+			writeString(data, skeleton.toString());
+		}
+		for (final NodeModel node : nodes) {
+			final StringWriter nodeXml = new StringWriter();
+			mapWriter.writeNodeWithExistingIdsAsXml(nodeXml, node, false);
+			data.writeByte(NODE_ENTRY);
+			data.writeUTF(key(node));
+			writeString(data, nodeXml.toString());
+		}
+		for (final NodeModel parent : parents) {
+			final List<NodeModel> children = parent.getChildren();
+			data.writeByte(CHILDREN_ENTRY);
+			data.writeUTF(key(parent));
+			data.writeInt(children.size());
+			for (final NodeModel child : children) {
+				data.writeUTF(key(child));
+			}
+		}
+		for (final NodeModel branch : branches) {
+			final StringWriter branchXml = new StringWriter();
+			mapWriter.writeNodeWithExistingIdsAsXml(branchXml, branch, true);
+			data.writeByte(BRANCH_ENTRY);
+			data.writeUTF(key(branch));
+			writeString(data, branchXml.toString());
+		}
+	}
+
+	private void append(final byte[] record) throws IOException {
+		final DataOutputStream journal = openJournal();
+		journal.writeInt(record.length);
+		journal.write(record);
+		journal.flush();
+		isSynced = false;
+		final long delay = lastSync + SYNC_INTERVAL - System.currentTimeMillis();
+		if (delay <= 0) {
+			sync();
+		}
+		else if (!isSyncScheduled) {
+			isSyncScheduled = true;
+			writer.schedule(new Runnable() {
+				public void run() {
+					isSyncScheduled = false;
+					try {
+						sync();
+					}
+					catch (final IOException ex) {
+						LogUtils.warn("can not write journal " + journalFile, ex);
+						close();
+					}
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void sync() throws IOException {
+		if (out != null && !isSynced) {
+			out.getFD().sync();
+			isSynced = true;
+			lastSync = System.currentTimeMillis();
+		}
+	}
+
+	private DataOutputStream openJournal() throws IOException {
+		if (out == null) {
+			final boolean continuesJournal = belongsTo(journalFile, mapFile);
+			journalFile.getParentFile().mkdirs();
+			out = new FileOutputStream(journalFile, continuesJournal);
+			if (!continuesJournal) {
+				final DataOutputStream header = new DataOutputStream(out);
+				header.writeInt(MAGIC);
+				header.writeInt(FORMAT_VERSION);
+				header.writeLong(mapFile.length());
+				header.writeLong(mapFile.lastModified());
+				header.flush();
+			}
+		}
+		return new DataOutputStream(out);
+	}
+
+	private void close() {
+		FileUtils.silentlyClose(out);
+		out = null;
+		isSynced = true;
+	}
+
+	/**
+	 * Deletes the journal after the map is saved or closed.
+	 */
+	void delete() {
+		changedNodes.clear();
+		changedChildren.clear();
+		changedBranches.clear();
+		newNodeKeys.clear();
+		mapChanged = false;
+		hasChanges = false;
+		writer.execute(new Runnable() {
+			public void run() {
+				close();
+				journalFile.delete();
+			}
+		});
+	}
+
+	/**
+	 * Waits until all records and deletions requested so far are written.
+	 */
+	static void waitForPendingWrites() {
+		try {
+			writer.submit(new Runnable() {
+				public void run() {
+				}
+			}).get();
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (final ExecutionException e) {
+			LogUtils.severe(e);
+		}
+	}
+
+	/**
+	 * Returns true if the journal was started for the current version of the map file.
+	 */
+	static boolean belongsTo(final File journalFile, final File mapFile) {
+		if (!journalFile.isFile()) {
+			return false;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(journalFile));
+			return matchesHeader(in, mapFile);
+		}
+		catch (final IOException e) {
+			return false;
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+	}
+
+	private static boolean matchesHeader(final DataInput in, final File mapFile) throws IOException {
+		return in.readInt() == MAGIC && in.readInt() == FORMAT_VERSION && in.readLong() == mapFile.length()
+		        && in.readLong() == mapFile.lastModified();
+	}
+
+	/**
+	 * Returns the map xml with all changes recorded in the journal applied to the given content of the map file,
+	 * or null if the journal does not exist, belongs to another version of the map file or contains no records.
+	 * @throws IOException if the journal can not be read or applied
+	 */
+	static String replay(final File journalFile, final File mapFile, final char[] document) throws IOException {
+		if (!journalFile.isFile()) {
+			return null;
+		}
+		final Restoration restoration = new Restoration(new String(document));
+		boolean hasRecords = false;
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile), 64 * 1024));
+			if (!matchesHeader(in, mapFile)) {
+				return null;
+			}
+			for (;;) {
+				final byte[] record;
+				try {
+					final int recordLength = in.readInt();
+					if (recordLength < 0 || recordLength > journalFile.length()) {
+						break;
+					}
+					record = new byte[recordLength];
+					in.readFully(record);
+				}
+				catch (final EOFException e) {
+					break;
+				}
+				restoration.apply(new DataInputStream(new ByteArrayInputStream(record)));
+				hasRecords = true;
+			}
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+		if (!hasRecords) {
+			return null;
+		}
+		return restoration.restore();
+	}
+
+	/**
+	 * Node of a saved map or of a recorded branch: the position of its element and the keys of its children.
+	 */
+	private static class SavedNode {
+		final private String document;
+		final private int start;
+		private int end;
+		final private List<String> childKeys = new ArrayList<String>();
+		final private List<int[]> childSpans = new ArrayList<int[]>();
+
+		SavedNode(final String document, final int start) {
+			this.document = document;
+			this.start = start;
+		}
+
+		String getXml() {
+			final StringBuilder xml = new StringBuilder(end - start);
+			int position = start;
+			for (final int[] childSpan : childSpans) {
+				xml.append(document, position, childSpan[0]);
+				position = childSpan[1];
+			}
+			xml.append(document, position, end);
+			return xml.toString();
+		}
+	}
+
+	/**
+	 * Applies the records of a journal to the map file.
+	 */
+	private static class Restoration {
+		final private Map<String, SavedNode> savedNodes = new HashMap<String, SavedNode>();
+		final private Map<String, String> nodeXml = new HashMap<String, String>();
+		final private Map<String, List<String>> children = new HashMap<String, List<String>>();
+		private String prefix;
+		private String suffix;
+		private int anonymousNodeCount;
+
+		Restoration(final String document) throws IOException {
+			reset(document);
+		}
+
+		private void reset(final String document) throws IOException {
+			savedNodes.clear();
+			nodeXml.clear();
+			children.clear();
+			final SavedNode root = parse(document, ROOT_KEY);
+			prefix = document.substring(0, root.start);
+			suffix = document.substring(root.end);
+		}
+
+		void apply(final DataInput data) throws IOException {
+			data.readLong();
+			final int entryCount = data.readInt();
+			for (int i = 0; i < entryCount; i++) {
+				final byte entryType = data.readByte();
+				switch (entryType) {
+					case FULL_MAP_ENTRY:
+						reset(readString(data));
+						break;
+					case MAP_ENTRY: {
+						final String skeleton = readString(data);
+						final int rootStart = skeleton.indexOf("<node", skeleton.indexOf("<map"));
+						final int rootEnd = skeleton.lastIndexOf("</node>");
+						if (rootStart < 0 || rootEnd < 0) {
+							throw new IOException("root node not found in journal");
+						}
+						prefix = skeleton.substring(0, rootStart);
+						suffix = skeleton.substring(rootEnd + "</node>".length());
+						nodeXml.put(ROOT_KEY, skeleton.substring(rootStart, rootEnd + "</node>".length()).replace(
+						    BRANCH_PLACEHOLDER, ""));
+						break;
+					}
+					case NODE_ENTRY: {
+						final String key = data.readUTF();
+						nodeXml.put(key, readString(data));
+						break;
+					}
+					case CHILDREN_ENTRY: {
+						final String key = data.readUTF();
+						final int childCount = data.readInt();
+						final List<String> childKeys = new ArrayList<String>(childCount);
+						for (int j = 0; j < childCount; j++) {
+							childKeys.add(data.readUTF());
+						}
+						children.put(key, childKeys);
+						break;
+					}
+					case BRANCH_ENTRY: {
+						final String key = data.readUTF();
+						parse(readString(data), key);
+						break;
+					}
+					default:
+						throw new IOException("unknown journal entry " + entryType);
+				}
+			}
+		}
+
+		/**
+		 * Registers the nodes of the xml, the first one by the given key and the others by their ids.
+		 * Changes recorded earlier for these nodes are replaced.
+		 */
+		private SavedNode parse(final String xml, final String key) throws IOException {
+			final ArrayList<SavedNode> openNodes = new ArrayList<SavedNode>();
+			SavedNode top = null;
+			int i = xml.indexOf('<');
+			while (i >= 0 && i < xml.length()) {
+				final int next;
+				if (xml.startsWith("<!--", i)) {
+					next = skipPast(xml, i + 4, "-->");
+				}
+				else if (xml.startsWith("<![CDATA[", i)) {
+					next = skipPast(xml, i + 9, "]]>");
+				}
+				else if (xml.startsWith("<?", i)) {
+					next = skipPast(xml, i + 2, "?>");
+				}
+				else if (xml.startsWith("<!", i)) {
+					next = skipPast(xml, i + 2, ">");
+				}
+				else if (xml.startsWith("</", i)) {
+					next = skipPast(xml, i + 2, ">");
+					if (xml.startsWith("</node", i) && !openNodes.isEmpty()) {
+						final SavedNode node = openNodes.remove(openNodes.size() - 1);
+						node.end = next;
+						if (openNodes.isEmpty()) {
+							break;
+						}
+						openNodes.get(openNodes.size() - 1).childSpans.add(new int[] { node.start, node.end });
+					}
+				}
+				else {
+					next = skipTag(xml, i + 1);
+					if (next < 0) {
+						break;
+					}
+					if (xml.startsWith("<node", i) && isNameEnd(xml.charAt(i + 5))) {
+						final SavedNode node = new SavedNode(xml, i);
+						final String nodeKey;
+						if (top == null) {
+							nodeKey = key;
+							top = node;
+						}
+						else {
+							final Matcher matcher = ID_PATTERN.matcher(xml.substring(i, next));
+							nodeKey = matcher.find() ? matcher.group(2) : "\u0000" + ++anonymousNodeCount;
+							openNodes.get(openNodes.size() - 1).childKeys.add(nodeKey);
+						}
+						savedNodes.put(nodeKey, node);
+						nodeXml.remove(nodeKey);
+						children.remove(nodeKey);
+						if (xml.charAt(next - 2) == '/') {
+							node.end = next;
+							if (!openNodes.isEmpty()) {
+								openNodes.get(openNodes.size() - 1).childSpans.add(new int[] { node.start, node.end });
+							}
+						}
+						else {
+							openNodes.add(node);
+						}
+						if (openNodes.isEmpty()) {
+							break;
+						}
+					}
+				}
+				if (next < 0) {
+					break;
+				}
+				i = xml.indexOf('<', next);
+			}
+			if (top == null || !openNodes.isEmpty()) {
+				throw new IOException("incomplete node xml");
+			}
+			return top;
+		}
+
+		private static boolean isNameEnd(final char c) {
+			return c == '>' || c == '/' || Character.isWhitespace(c);
+		}
+
+		private static int skipPast(final String xml, final int start, final String end) {
+			final int position = xml.indexOf(end, start);
+			return position < 0 ? -1 : position + end.length();
+		}
+
+		private static int skipTag(final String xml, final int start) {
+			char quote = 0;
+			for (int i = start; i < xml.length(); i++) {
+				final char c = xml.charAt(i);
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				}
+				else if (c == '"' || c == '\'') {
+					quote = c;
+				}
+				else if (c == '>') {
+					return i + 1;
+				}
+			}
+			return -1;
+		}
+
+		String restore() throws IOException {
+			final StringBuilder restored = new StringBuilder(prefix.length() + suffix.length());
+			restored.append(prefix);
+			appendNode(restored, ROOT_KEY);
+			restored.append(suffix);
+			return restored.toString();
+		}
+
+		private void appendNode(final StringBuilder restored, final String key) throws IOException {
+			final SavedNode savedNode = savedNodes.get(key);
+			String xml = nodeXml.get(key);
+			if (xml == null) {
+				if (savedNode == null) {
+					throw new IOException("node " + key + " not found in journal");
+				}
+				xml = savedNode.getXml();
+			}
+			List<String> childKeys = children.get(key);
+			if (childKeys == null) {
+				childKeys = savedNode != null ? savedNode.childKeys : Collections.<String> emptyList();
+			}
+			if (childKeys.isEmpty()) {
+				restored.append(xml);
+				return;
+			}
+			final int endTag = xml.lastIndexOf("</node>");
+			if (endTag >= 0) {
+				restored.append(xml, 0, endTag);
+			}
+			else {
+				restored.append(xml, 0, xml.lastIndexOf("/>")).append(">\n");
+			}
+			for (final String childKey : childKeys) {
+				appendNode(restored, childKey);
+				restored.append('\n');
+			}
+			restored.append(endTag >= 0 ? xml.substring(endTag) : "</node>");
+		}
+	}
+
+	private static String readString(final DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeString(final DataOutput out, final String string) throws IOException {
+		final byte[] bytes = string.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
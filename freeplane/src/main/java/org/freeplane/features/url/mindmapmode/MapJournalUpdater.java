@@ -0,0 +1,163 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.undo.IUndoHandler;
+import org.freeplane.features.map.IMapChangeListener;
+import org.freeplane.features.map.IMapLifeCycleListener;
+import org.freeplane.features.map.INodeChangeBatchListener;
+import org.freeplane.features.map.MapChangeEvent;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeChangeEvent;
+import org.freeplane.features.map.NodeDeletionEvent;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeMoveEvent;
+import org.freeplane.features.map.mindmapmode.MMapModel;
+
+/**
+ * Passes the changes of saved maps to their {@link MapJournal}.
+ *
+ * @author Dimitry Polivaev
+ */
+class MapJournalUpdater implements INodeChangeBatchListener, IMapChangeListener, IMapLifeCycleListener {
+	static final String JOURNAL_MAP_CHANGES = "journal_map_changes";
+	final private MapController mapController;
+	/** Journals which got changes since the last change batch ended. */
+	final private Set<MapJournal> changedJournals = new LinkedHashSet<MapJournal>();
+
+	MapJournalUpdater(final MapController mapController) {
+		this.mapController = mapController;
+	}
+
+	private MapJournal getJournal(final MapModel map) {
+		if (!(map instanceof MMapModel)) {
+			return null;
+		}
+		MapJournal journal = map.getExtension(MapJournal.class);
+		if (journal != null) {
+			return journal;
+		}
+		final File file = map.getFile();
+		final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
+		if (file == null || !file.isFile() || map.isReadOnly() || undoHandler == null
+		        || !ResourceController.getResourceController().getBooleanProperty(JOURNAL_MAP_CHANGES)) {
+			return null;
+		}
+		journal = new MapJournal(map, mapController.getMapWriter(), file, MFileManager.journalFile(file));
+		map.addExtension(journal);
+		undoHandler.addChangeListener(journal);
+		return journal;
+	}
+
+	private MapJournal getJournal(final NodeModel node) {
+		final MapJournal journal = node != null ? getJournal(node.getMap()) : null;
+		if (journal != null) {
+			changedJournals.add(journal);
+		}
+		return journal;
+	}
+
+	public void nodeChanged(final NodeChangeEvent event) {
+		final MapJournal journal = getJournal(event.getNode());
+		if (journal != null) {
+			journal.nodeChanged(event.getNode());
+		}
+	}
+
+	/** Records the changes of the batch, its transactions are committed before it ends. */
+	public void nodesChanged(final List<NodeChangeEvent> events) {
+		for (final NodeChangeEvent event : events) {
+			nodeChanged(event);
+		}
+		for (final MapJournal journal : changedJournals) {
+			journal.recordChanges();
+		}
+		changedJournals.clear();
+	}
+
+	public void mapChanged(final MapChangeEvent event) {
+		final MapJournal journal = event.getMap() != null ? getJournal(event.getMap()) : null;
+		if (journal != null) {
+			journal.mapChanged();
+		}
+	}
+
+	public void onNodeDeleted(final NodeDeletionEvent nodeDeletionEvent) {
+		final MapJournal journal = getJournal(nodeDeletionEvent.parent);
+		if (journal != null) {
+			journal.childrenChanged(nodeDeletionEvent.parent);
+		}
+	}
+
+	public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+		final MapJournal journal = getJournal(parent);
+		if (journal != null) {
+			journal.nodeInserted(parent, child);
+		}
+	}
+
+	public void onNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+		final MapJournal journal = getJournal(nodeMoveEvent.newParent);
+		if (journal != null) {
+			journal.childrenChanged(nodeMoveEvent.oldParent);
+			journal.childrenChanged(nodeMoveEvent.newParent);
+			journal.nodeChanged(nodeMoveEvent.child);
+		}
+	}
+
+	public void onPreNodeMoved(final NodeMoveEvent nodeMoveEvent) {
+	}
+
+	public void onPreNodeDelete(final NodeDeletionEvent nodeDeletionEvent) {
+	}
+
+	public void onCreate(final MapModel map) {
+	}
+
+	public void onRemove(final MapModel map) {
+		final MapJournal journal = map.getExtension(MapJournal.class);
+		if (journal != null) {
+			changedJournals.remove(journal);
+		}
+		discard(map);
+	}
+
+	/**
+	 * Deletes the journal after the map is saved or closed.
+	 */
+	static void discard(final MapModel map) {
+		final MapJournal journal = map.getExtension(MapJournal.class);
+		if (journal != null) {
+			journal.delete();
+			map.removeExtension(MapJournal.class);
+			final IUndoHandler undoHandler = map.getExtension(IUndoHandler.class);
+			if (undoHandler != null) {
+				undoHandler.removeChangeListener(journal);
+			}
+		}
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.File;
+
+/**
+ * Describes how long it took to load a map file.
+ *
+ * @author Dimitry Polivaev
+ */
+public class MapLoadStatistics {
+	public static final long UNKNOWN_TIME = -1;
+	private final long byteCount;
+	private final long decodeTime;
+	private final File file;
+	private final long loadTime;
+	private final boolean memoryMapped;
+
+	public MapLoadStatistics(final File file, final long byteCount, final long decodeTime, final long loadTime,
+	                         final boolean memoryMapped) {
+		this.file = file;
+		this.byteCount = byteCount;
+		this.decodeTime = decodeTime;
+		this.loadTime = loadTime;
+		this.memoryMapped = memoryMapped;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public long getByteCount() {
+		return byteCount;
+	}
+
+	/** nanoseconds spent decoding bytes to chars or {@link #UNKNOWN_TIME} */
+	public long getDecodeTime() {
+		return decodeTime;
+	}
+
+	/** nanoseconds spent reading, decoding and parsing the file */
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	public double getBytesPerSecond() {
+		if (loadTime <= 0) {
+			return 0;
+		}
+		return byteCount * 1e9 / loadTime;
+	}
+
+	@Override
+	public String toString() {
+		return "MapLoadStatistics [file=" + file + ", byteCount=" + byteCount + ", decodeTime=" + decodeTime
+		        + ", loadTime=" + loadTime + ", memoryMapped=" + memoryMapped + ", bytesPerSecond="
+		        + (long) getBytesPerSecond() + "]";
+	}
+}
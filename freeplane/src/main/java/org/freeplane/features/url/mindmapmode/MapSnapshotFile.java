@@ -0,0 +1,144 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+import org.freeplane.core.io.xml.XMLSnapshot;
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.core.util.LogUtils;
+
+/**
+ * Binary snapshot of a parsed map file used to open the map without parsing its xml again.
+ *
+ * The snapshot is only used if size, modification time, checksum and charset of the map file
+ * are the same as when the snapshot was written.
+ *
+ * @author Dimitry Polivaev
+ */
+class MapSnapshotFile {
+	static final String SNAPSHOT_EXTENSION = "snapshot";
+	private static final int MAGIC = 0x46505331;
+	private static final int FORMAT_VERSION = 1;
+	final private Charset charset;
+	final private File mapFile;
+	final private File snapshotFile;
+
+	MapSnapshotFile(final File mapFile, final File snapshotFile, final Charset charset) {
+		this.mapFile = mapFile;
+		this.snapshotFile = snapshotFile;
+		this.charset = charset;
+	}
+
+	private long calculateChecksum() throws IOException {
+		final CRC32 crc = new CRC32();
+		final InputStream in = new FileInputStream(mapFile);
+		try {
+			final byte[] buffer = new byte[64 * 1024];
+			for (;;) {
+				final int count = in.read(buffer);
+				if (count < 0) {
+					return crc.getValue();
+				}
+				crc.update(buffer, 0, count);
+			}
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+	}
+
+	/**
+	 * Returns the snapshot or null if there is no snapshot matching the map file.
+	 * A snapshot which can not be read is deleted.
+	 */
+	XMLSnapshot read() {
+		if (!snapshotFile.isFile()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile), 64 * 1024));
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !charset.name().equals(in.readUTF())
+			        || in.readLong() != mapFile.length() || in.readLong() != mapFile.lastModified()
+			        || in.readLong() != calculateChecksum()) {
+				return null;
+			}
+			return XMLSnapshot.read(in);
+		}
+		catch (final IOException e) {
+			delete(in, "can not read snapshot ", e);
+			return null;
+		}
+		catch (final RuntimeException e) {
+			delete(in, "can not read snapshot ", e);
+			return null;
+		}
+		finally {
+			FileUtils.silentlyClose(in);
+		}
+	}
+
+	private void delete(final Closeable stream, final String message, final Exception e) {
+		LogUtils.warn(message + snapshotFile, e);
+		FileUtils.silentlyClose(stream);
+		snapshotFile.delete();
+	}
+
+	void write(final XMLSnapshot snapshot) {
+		DataOutputStream out = null;
+		try {
+			final long length = mapFile.length();
+			final long lastModified = mapFile.lastModified();
+			final long checksum = calculateChecksum();
+			snapshotFile.getParentFile().mkdir();
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile), 64 * 1024));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeUTF(charset.name());
+			out.writeLong(length);
+			out.writeLong(lastModified);
+			out.writeLong(checksum);
+			snapshot.write(out);
+			out.close();
+			out = null;
+		}
+		catch (final IOException e) {
+			delete(out, "can not write snapshot ", e);
+		}
+		catch (final RuntimeException e) {
+			delete(out, "can not write snapshot ", e);
+		}
+		finally {
+			FileUtils.silentlyClose(out);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader decoding a file directly into the buffer passed by the caller.
+ *
+ * The file is either memory mapped as a whole or read through its channel in large blocks.
+ * Mapping is not used on Windows because a mapped file can not be replaced before the mapping is garbage collected.
+ *
+ * @author Dimitry Polivaev
+ */
+class MappedFileReader extends Reader {
+	private static final int BLOCK_SIZE = 1024 * 1024;
+	private final ByteBuffer bytes;
+	private long byteCount;
+	private final FileChannel channel;
+	private long decodeTime;
+	private final CharsetDecoder decoder;
+	private boolean endOfInput;
+	private boolean flushed;
+	private final boolean memoryMapped;
+	private int pendingChar;
+
+	MappedFileReader(final File file, final Charset charset, final boolean mapsFile) throws IOException {
+		channel = new FileInputStream(file).getChannel();
+		boolean opened = false;
+		try {
+			final long size = channel.size();
+			memoryMapped = mapsFile && size <= Integer.MAX_VALUE;
+			if (memoryMapped) {
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				byteCount = size;
+				endOfInput = true;
+			}
+			else {
+				bytes = ByteBuffer.allocateDirect(BLOCK_SIZE);
+				bytes.flip();
+				byteCount = 0;
+				endOfInput = false;
+			}
+			opened = true;
+		}
+		finally {
+			if (!opened) {
+				channel.close();
+			}
+		}
+		decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+		    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+		flushed = false;
+		pendingChar = -1;
+		decodeTime = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	long getByteCount() {
+		return byteCount;
+	}
+
+	long getDecodeTime() {
+		return decodeTime;
+	}
+
+	boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	@Override
+	public int read(final char[] cbuf, final int off, final int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		final CharBuffer chars = CharBuffer.wrap(cbuf, off, len);
+		if (pendingChar >= 0) {
+			chars.put((char) pendingChar);
+			pendingChar = -1;
+		}
+		while (chars.position() == off) {
+			if (flushed) {
+				return -1;
+			}
+			final long decodeStart = System.nanoTime();
+			CoderResult result = decoder.decode(bytes, chars, endOfInput);
+			if (result.isUnderflow() && endOfInput) {
+				result = decoder.flush(chars);
+				flushed = result.isUnderflow();
+			}
+			decodeTime += System.nanoTime() - decodeStart;
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (result.isOverflow() && chars.position() == off) {
+				decodeCharPair(chars);
+			}
+			else if (result.isUnderflow() && !endOfInput) {
+				readBlock();
+			}
+		}
+		return chars.position() - off;
+	}
+
+	private void decodeCharPair(final CharBuffer chars) throws IOException {
+		final CharBuffer pair = CharBuffer.allocate(2);
+		final CoderResult result = decoder.decode(bytes, pair, endOfInput);
+		if (result.isError()) {
+			result.throwException();
+		}
+		pair.flip();
+		chars.put(pair.get());
+		if (pair.hasRemaining()) {
+			pendingChar = pair.get();
+		}
+	}
+
+	private void readBlock() throws IOException {
+		bytes.compact();
+		final int count = channel.read(bytes);
+		bytes.flip();
+		if (count < 0) {
+			endOfInput = true;
+		}
+		else {
+			byteCount += count;
+		}
+	}
+}
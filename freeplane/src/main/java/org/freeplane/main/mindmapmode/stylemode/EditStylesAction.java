@@ -71,8 +71,7 @@ public class EditStylesAction extends AFreeplaneAction {
 		currentMapView = mapViewManager.getMapViewComponent();
 		mapViewManager.changeToMapView((Component)null);
 		
-		final IUndoHandler undoHandler = (IUndoHandler) map.getExtension(IUndoHandler.class);
-		undoHandler.startTransaction();
+		currentController.getModeController().startTransaction();
 		init();
 		SModeController modeController = getModeController();
 		modeController.getMapController().newMapView(styleMap);
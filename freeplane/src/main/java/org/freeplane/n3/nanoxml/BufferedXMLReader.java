@@ -0,0 +1,344 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.n3.nanoxml;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * IXMLReader scanning the main stream directly over a char array.
+ *
+ * Names, attribute values and plain text runs are returned as slices of the array.
+ * Streams started for entity expansion are read through a stack of readers like in {@link StdXMLReader},
+ * the fast scanning methods are only used while no such stream is open.
+ * Line terminators are normalized to '\n' the same way as LineNumberReader does.
+ *
+ * @author Dimitry Polivaev
+ */
+public class BufferedXMLReader implements IXMLReader {
+	private static class StackedReader {
+		final Reader reader;
+		final LineNumberReader lineReader;
+		final String publicId;
+		final URL systemId;
+
+		StackedReader(final Reader reader, final LineNumberReader lineReader, final String publicId,
+		              final URL systemId) {
+			this.reader = reader;
+			this.lineReader = lineReader;
+			this.publicId = publicId;
+			this.systemId = systemId;
+		}
+	}
+
+	private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	private char[] buffer;
+	private boolean lastCharReadFromBuffer;
+	private int limit;
+	private int lineNr;
+	private int position;
+	private String publicId;
+	private int pushedBack;
+	final private ArrayDeque<StackedReader> readers;
+	private Reader source;
+	private URL systemId;
+
+	public BufferedXMLReader(final Reader reader) {
+		this(reader, DEFAULT_BUFFER_SIZE);
+	}
+
+	public BufferedXMLReader(final Reader reader, final int bufferSize) {
+		this.source = reader;
+		buffer = new char[bufferSize];
+		readers = new ArrayDeque<StackedReader>();
+		position = 0;
+		limit = 0;
+		lineNr = 0;
+		pushedBack = -1;
+		publicId = "";
+		try {
+			systemId = new URL("file:.");
+		}
+		catch (final MalformedURLException e) {
+		}
+	}
+
+	public boolean atEOF() throws IOException {
+		int ch = readImpl();
+		while (ch < 0) {
+			if (readers.isEmpty()) {
+				return true;
+			}
+			popReader();
+			ch = readImpl();
+		}
+		unread((char) ch);
+		return false;
+	}
+
+	public boolean atEOFOfCurrentStream() throws IOException {
+		final int ch = readImpl();
+		if (ch < 0) {
+			return true;
+		}
+		else {
+			unread((char) ch);
+			return false;
+		}
+	}
+
+	private boolean canScanBuffer() {
+		return pushedBack < 0 && readers.isEmpty();
+	}
+
+	private boolean fill(final int keepFrom) throws IOException {
+		final int kept = limit - keepFrom;
+		if (keepFrom == 0 && limit == buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		else if (keepFrom > 0) {
+			System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+		}
+		position -= keepFrom;
+		limit = kept;
+		if (source == null) {
+			return false;
+		}
+		int count;
+		do {
+			count = source.read(buffer, limit, buffer.length - limit);
+		} while (count == 0);
+		if (count < 0) {
+			source.close();
+			source = null;
+			return false;
+		}
+		limit += count;
+		return true;
+	}
+
+	public int getLineNr() {
+		for (final StackedReader stackedReader : readers) {
+			if (stackedReader.lineReader != null) {
+				return stackedReader.lineReader.getLineNumber() + 1;
+			}
+		}
+		return lineNr + 1;
+	}
+
+	public String getPublicID() {
+		return publicId;
+	}
+
+	public int getStreamLevel() {
+		return readers.size();
+	}
+
+	public String getSystemID() {
+		return systemId.toString();
+	}
+
+	private static boolean isIdentifierChar(final char ch) {
+		return (ch == '_') || (ch == ':') || (ch == '-') || (ch == '.') || ((ch >= 'a') && (ch <= 'z'))
+		        || ((ch >= 'A') && (ch <= 'Z')) || ((ch >= '0') && (ch <= '9')) || (ch > '~');
+	}
+
+	public Reader openStream(final String publicID, final String systemID) throws MalformedURLException,
+	        FileNotFoundException, IOException {
+		final StdXMLReader streamOpener = new StdXMLReader(new StringReader(""));
+		streamOpener.setSystemID(systemId.toString());
+		final Reader reader = streamOpener.openStream(publicID, systemID);
+		publicId = streamOpener.getPublicID();
+		systemId = new URL(streamOpener.getSystemID());
+		return reader;
+	}
+
+	private void popReader() throws IOException {
+		final StackedReader stackedReader = readers.pop();
+		stackedReader.reader.close();
+		publicId = stackedReader.publicId;
+		systemId = stackedReader.systemId;
+	}
+
+	public char read() throws IOException {
+		int ch = readImpl();
+		while (ch < 0) {
+			if (readers.isEmpty()) {
+				throw new IOException("Unexpected EOF at line " + getLineNr());
+			}
+			popReader();
+			ch = readImpl();
+		}
+		return (char) ch;
+	}
+
+	private int readImpl() throws IOException {
+		lastCharReadFromBuffer = false;
+		if (pushedBack >= 0) {
+			final int ch = pushedBack;
+			pushedBack = -1;
+			return ch;
+		}
+		if (!readers.isEmpty()) {
+			return readers.peek().reader.read();
+		}
+		if (position == limit && !fill(position)) {
+			return -1;
+		}
+		final char ch = buffer[position++];
+		if (ch == '\r') {
+			if (position < limit || fill(position)) {
+				if (buffer[position] == '\n') {
+					position++;
+				}
+			}
+			lineNr++;
+			return '\n';
+		}
+		if (ch == '\n') {
+			lineNr++;
+		}
+		else {
+			lastCharReadFromBuffer = true;
+		}
+		return ch;
+	}
+
+	/**
+	 * Scans an identifier directly from the buffer.
+	 * Returns null if the buffer can not be scanned directly at the moment.
+	 */
+	String readIdentifier() throws IOException {
+		if (!canScanBuffer()) {
+			return null;
+		}
+		lastCharReadFromBuffer = false;
+		int start = position;
+		for (;;) {
+			if (position == limit) {
+				final boolean filled = fill(start);
+				start = 0;
+				if (!filled) {
+					break;
+				}
+			}
+			if (!isIdentifierChar(buffer[position])) {
+				break;
+			}
+			position++;
+		}
+		return new String(buffer, start, position - start);
+	}
+
+	/**
+	 * Scans the longest run of chars which need no special processing:
+	 * it stops before the delimiter, the entity char, '&amp;', tabs and line terminators.
+	 * Returns an empty string if the buffer can not be scanned directly at the moment.
+	 */
+	public String readPlainText(final char delimiter, final char entityChar) throws IOException {
+		if (!canScanBuffer()) {
+			return "";
+		}
+		lastCharReadFromBuffer = false;
+		int start = position;
+		for (;;) {
+			if (position == limit) {
+				final boolean filled = fill(start);
+				start = 0;
+				if (!filled) {
+					break;
+				}
+			}
+			final char ch = buffer[position];
+			if (ch == delimiter || ch == entityChar || ch == '&' || ch == '\t' || ch == '\n' || ch == '\r') {
+				break;
+			}
+			position++;
+		}
+		if (position == start) {
+			return "";
+		}
+		return new String(buffer, start, position - start);
+	}
+
+	public void setPublicID(final String publicID) {
+		publicId = publicID;
+	}
+
+	public void setSystemID(final String systemID) throws MalformedURLException {
+		systemId = new URL(systemId, systemID);
+	}
+
+	/**
+	 * Skips spaces, tabs and line terminators.
+	 * Returns false if the buffer can not be scanned directly at the moment.
+	 */
+	boolean skipWhitespace() throws IOException {
+		if (!canScanBuffer()) {
+			return false;
+		}
+		lastCharReadFromBuffer = false;
+		for (;;) {
+			if (position == limit && !fill(position)) {
+				return true;
+			}
+			final char ch = buffer[position];
+			if (ch == ' ' || ch == '\t') {
+				position++;
+			}
+			else if (ch == '\n' || ch == '\r') {
+				readImpl();
+			}
+			else {
+				return true;
+			}
+		}
+	}
+
+	public void startNewStream(final Reader reader) {
+		this.startNewStream(reader, false);
+	}
+
+	public void startNewStream(final Reader reader, final boolean isInternalEntity) {
+		if (isInternalEntity) {
+			readers.push(new StackedReader(reader, null, publicId, systemId));
+		}
+		else {
+			final LineNumberReader lineReader = new LineNumberReader(reader);
+			readers.push(new StackedReader(lineReader, lineReader, publicId, systemId));
+		}
+	}
+
+	public void unread(final char ch) throws IOException {
+		if (lastCharReadFromBuffer && position > 0 && buffer[position - 1] == ch) {
+			position--;
+			lastCharReadFromBuffer = false;
+			return;
+		}
+		pushedBack = ch;
+	}
+}
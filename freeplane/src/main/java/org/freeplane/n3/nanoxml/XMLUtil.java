@@ -388,6 +388,12 @@ class XMLUtil {
 	 *             if an error occurred reading the data
 	 */
 	static String scanIdentifier(final IXMLReader reader) throws IOException, XMLParseException {
+		if (reader instanceof BufferedXMLReader) {
+			final String identifier = ((BufferedXMLReader) reader).readIdentifier();
+			if (identifier != null) {
+				return identifier;
+			}
+		}
 		final StringBuilder result = new StringBuilder();
 		for (;;) {
 			final char ch = reader.read();
@@ -439,12 +445,21 @@ class XMLUtil {
 	 */
 	static String scanString(final IXMLReader reader, final char entityChar, final IXMLEntityResolver entityResolver)
 	        throws IOException, XMLParseException {
-		final StringBuilder result = new StringBuilder();
 		final int startingLevel = reader.getStreamLevel();
 		final char delim = reader.read();
 		if ((delim != '\'') && (delim != '"')) {
 			XMLUtil.errorExpectedInput(reader.getSystemID(), reader.getLineNr(), "delimited string");
 		}
+		String plainText = "";
+		if (reader instanceof BufferedXMLReader && reader.getStreamLevel() == startingLevel) {
+			plainText = ((BufferedXMLReader) reader).readPlainText(delim, entityChar);
+			final char ch = reader.read();
+			if (ch == delim && reader.getStreamLevel() == startingLevel) {
+				return plainText;
+			}
+			reader.unread(ch);
+		}
+		final StringBuilder result = new StringBuilder(plainText);
 		for (;;) {
 			String str = XMLUtil.read(reader, entityChar);
 			final char ch = str.charAt(0);
@@ -569,6 +584,9 @@ class XMLUtil {
 	static void skipWhitespace(final IXMLReader reader, final StringBuilder buffer) throws IOException {
 		char ch;
 		if (buffer == null) {
+			if (reader instanceof BufferedXMLReader && ((BufferedXMLReader) reader).skipWhitespace()) {
+				return;
+			}
 			do {
 				ch = reader.read();
 			} while ((ch == ' ') || (ch == '\t') || (ch == '\n'));
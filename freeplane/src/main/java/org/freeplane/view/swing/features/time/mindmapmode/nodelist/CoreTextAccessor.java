@@ -37,6 +37,10 @@ class CoreTextAccessor implements TextAccessor {
 	    return node.getText();
 	}
 
+	public String getPlainText() {
+		return node.getPlainText();
+	}
+
 	public void setText(String newText) {
 		((MTextController) TextController.getController()).setNodeText(node, newText);
     }
@@ -39,6 +39,11 @@ class DetailTextAccessor implements TextAccessor {
 		return details != null ? details : "";
 	}
 
+	public String getPlainText() {
+		final String details = DetailTextModel.getPlainDetailText(node);
+		return details != null ? details : "";
+	}
+
 	public void setText(String newText) {
 		((MTextController) TextController.getController()).setDetails(node, newText);
     }
@@ -88,6 +88,7 @@ import org.freeplane.features.map.NodeChangeEvent;
 import org.freeplane.features.map.NodeDeletionEvent;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.map.NodeMoveEvent;
+import org.freeplane.features.map.NodeTraversal;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.mode.ModeController;
 import org.freeplane.features.mode.mindmapmode.MModeController;
@@ -864,24 +865,23 @@ public class NodeList {
 		return model;
 	}
 
-	private void updateModel(final DefaultTableModel model, final NodeModel node) {
-		final ReminderExtension hook = ReminderExtension.getExtension(node);
-		Date date = null;
-		if (hook != null) {
-			date = new Date(hook.getRemindUserAt());
-		}
-		if (showAllNodes && node.hasVisibleContent() || hook != null) {
-			model.addRow(new Object[] {
-					date,
-					new TextHolder(new CoreTextAccessor(node)),
-					new IconsHolder(node),
-			        node.getHistoryInformation().getCreatedAt(),
-			        node.getHistoryInformation().getLastModifiedAt(),
-			        new TextHolder(new DetailTextAccessor(node)) ,
-			        new TextHolder(new NoteTextAccessor(node)) });
-		}
-		for (final NodeModel child : Controller.getCurrentModeController().getMapController().childrenUnfolded(node)) {
-			updateModel(model, child);
+	private void updateModel(final DefaultTableModel model, final NodeModel root) {
+		for (final NodeModel node : NodeTraversal.preOrder(root)) {
+			final ReminderExtension hook = ReminderExtension.getExtension(node);
+			Date date = null;
+			if (hook != null) {
+				date = new Date(hook.getRemindUserAt());
+			}
+			if (showAllNodes && node.hasVisibleContent() || hook != null) {
+				model.addRow(new Object[] {
+						date,
+						new TextHolder(new CoreTextAccessor(node)),
+						new IconsHolder(node),
+				        new Date(node.getCreatedAt()),
+				        new Date(node.getLastModifiedAt()),
+				        new TextHolder(new DetailTextAccessor(node)) ,
+				        new TextHolder(new NoteTextAccessor(node)) });
+			}
 		}
 	}
 	static private HashSet<Object> changeableProperties = new HashSet<Object>(
@@ -40,6 +40,11 @@ class NoteTextAccessor implements TextAccessor {
 	    return notesText != null ? notesText : "";
 	}
 
+	public String getPlainText() {
+		final String notesText = NoteModel.getPlainNoteText(node);
+		return notesText != null ? notesText : "";
+	}
+
 	public void setText(String newText) {
 		((MNoteController) Controller.getCurrentModeController().getExtension(NoteController.class)).setNoteText(node, newText);
     }
@@ -28,6 +28,9 @@ import org.freeplane.features.map.NodeModel;
 public interface TextAccessor {
 	String getText();
 
+	/** @return the text converted to plain text, conversions are cached by the node */
+	String getPlainText();
+
 	void setText(String newText);
 
 	NodeModel getNode();
@@ -19,7 +19,6 @@
  */
 package org.freeplane.view.swing.features.time.mindmapmode.nodelist;
 
-import org.freeplane.core.util.HtmlUtils;
 import org.freeplane.features.map.NodeModel;
 
 /**
@@ -29,7 +28,7 @@ import org.freeplane.features.map.NodeModel;
 /** removes html in notes before comparison. */
 public class TextHolder implements Comparable<TextHolder> {
 	final private TextAccessor textAccessor;
-	private String originalNotesText = null;
+	private String plainNotesText = null;
 	private String untaggedNotesText = null;
 
 
@@ -42,13 +41,10 @@ public class TextHolder implements Comparable<TextHolder> {
 	}
 
 	public String getUntaggedNotesText() {
-		final String notesText = textAccessor.getText();
-		if (notesText == null) {
-			return "";
-		}
-		if (untaggedNotesText == null || (originalNotesText != null && !originalNotesText.equals(notesText))) {
-			originalNotesText = notesText;
-			untaggedNotesText = HtmlUtils.htmlToPlain(notesText).replaceAll("\\s+", " ");
+		final String notesText = textAccessor.getPlainText();
+		if (untaggedNotesText == null || !notesText.equals(plainNotesText)) {
+			plainNotesText = notesText;
+			untaggedNotesText = notesText.replaceAll("\\s+", " ");
 		}
 		return untaggedNotesText;
 	}
@@ -546,7 +546,9 @@ public abstract class MainView extends ZoomableLabel {
 		URI link = NodeLinks.getLink(node);
 		if(link == null || "menuitem".equals(link.getScheme()) || ! LinkController.getController().formatNodeAsHyperlink(node))
 			return text;
-		if (HtmlUtils.isHtmlNode(text))
+		if (text == node.getUserObject())
+			text = node.getPlainText();
+		else if (HtmlUtils.isHtmlNode(text))
 			text = HtmlUtils.htmlToPlain(text);
 		StringBuilder sb = new StringBuilder("<html><body><a href=\"");
 		sb.append(link.toString());
@@ -0,0 +1,135 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.extension;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares extension lookups of {@link SmallExtensionMap} with the former linear scan.
+ *
+ * Each benchmark looks up the extensions which style resolution and painting ask for
+ * in nodes carrying typical extension mixes. Run it using {@link #main(String[])}.
+ *
+ * @author Dimitry Polivaev
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SmallExtensionMapBenchmark {
+	static class Style implements IExtension {}
+	static class Icons implements IExtension {}
+	static class Attributes implements IExtension {}
+	static class Note implements IExtension {}
+	static class Details implements IExtension {}
+	static class Links implements IExtension {}
+	static class Cloud implements IExtension {}
+	static class Edge implements IExtension {}
+	static class Font implements IExtension {}
+	static class Format implements IExtension {}
+
+	private static final IExtension[][] MIXES = {
+		{},
+		{ new Style() },
+		{ new Style(), new Icons() },
+		{ new Icons(), new Attributes(), new Note() },
+		{ new Style(), new Font(), new Edge(), new Links() },
+		{ new Style(), new Icons(), new Attributes(), new Note(), new Details(), new Cloud(), new Format() },
+	};
+	private static final Class<?>[] QUERIES = { Style.class, Font.class, Edge.class, Cloud.class, Icons.class,
+	        Format.class, Note.class, Details.class };
+	private static final int NODE_COUNT = 1024;
+
+	/** Former implementation scanning a list of extensions. */
+	static class LinearExtensionMap {
+		private final ArrayList<IExtension> collection = new ArrayList<IExtension>(5);
+
+		void put(final IExtension extension) {
+			collection.add(extension);
+		}
+
+		IExtension get(final Class<?> clazz) {
+			for (int i = 0; i < collection.size(); i++) {
+				final IExtension extension = collection.get(i);
+				if (clazz.equals(extension.getClass())) {
+					return extension;
+				}
+			}
+			return null;
+		}
+	}
+
+	private LinearExtensionMap[] linearMaps;
+	private SmallExtensionMap[] slotMaps;
+
+	@Setup
+	public void createNodes() {
+		linearMaps = new LinearExtensionMap[NODE_COUNT];
+		slotMaps = new SmallExtensionMap[NODE_COUNT];
+		for (int i = 0; i < NODE_COUNT; i++) {
+			final IExtension[] extensions = MIXES[i % MIXES.length];
+			linearMaps[i] = new LinearExtensionMap();
+			slotMaps[i] = new SmallExtensionMap();
+			for (final IExtension extension : extensions) {
+				linearMaps[i].put(extension);
+				slotMaps[i].put(extension.getClass(), extension);
+			}
+		}
+	}
+
+	@Benchmark
+	public void linearScan(final Blackhole blackhole) {
+		for (final LinearExtensionMap map : linearMaps) {
+			for (final Class<?> query : QUERIES) {
+				blackhole.consume(map.get(query));
+			}
+		}
+	}
+
+	@Benchmark
+	public void slotLookup(final Blackhole blackhole) {
+		for (final SmallExtensionMap map : slotMaps) {
+			for (final Class<?> query : QUERIES) {
+				blackhole.consume(map.get(query));
+			}
+		}
+	}
+
+	public static void main(final String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(SmallExtensionMapBenchmark.class.getSimpleName()).build()).run();
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.extension;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class SmallExtensionMapShould {
+	static class A implements IExtension {}
+	static class B implements IExtension {}
+	static class C implements IExtension {}
+
+	private final SmallExtensionMap map = new SmallExtensionMap();
+
+	@Test
+	public void returnNull_forMissingExtension() {
+		map.put(A.class, new A());
+		assertThat(map.get(B.class), nullValue());
+		assertThat(map.containsKey(B.class), equalTo(false));
+	}
+
+	@Test
+	public void returnPutExtensions() {
+		final A a = new A();
+		final B b = new B();
+		map.put(A.class, a);
+		map.put(B.class, b);
+		assertThat(map.get(A.class), sameInstance((IExtension) a));
+		assertThat(map.get(B.class), sameInstance((IExtension) b));
+		assertThat(map.size(), equalTo(2));
+	}
+
+	@Test
+	public void replaceExtensionOfSameClass() {
+		final A a1 = new A();
+		final A a2 = new A();
+		map.put(A.class, a1);
+		assertThat(map.put(A.class, a2), sameInstance((IExtension) a1));
+		assertThat(map.get(A.class), sameInstance((IExtension) a2));
+		assertThat(map.size(), equalTo(1));
+	}
+
+	@Test(expected = ClassCastException.class)
+	public void rejectExtensionOfOtherClass() {
+		map.put(A.class, new B());
+	}
+
+	@Test
+	public void keepInsertionOrder_afterRemove() {
+		final A a = new A();
+		final B b = new B();
+		final C c = new C();
+		map.put(C.class, c);
+		map.put(A.class, a);
+		map.put(B.class, b);
+		assertThat(map.remove(A.class), sameInstance((IExtension) a));
+		assertThat(new ArrayList<IExtension>(map.values()), equalTo(Arrays.<IExtension> asList(c, b)));
+		assertThat(map.get(B.class), sameInstance((IExtension) b));
+		assertThat(map.get(A.class), nullValue());
+	}
+
+	@Test
+	public void becomeEmpty_afterRemovingLastExtension() {
+		map.put(A.class, new A());
+		map.remove(A.class);
+		assertThat(map.isEmpty(), equalTo(true));
+		assertThat(map.values().isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void shareLayout_betweenMapsWithSameExtensionOrder() {
+		final SmallExtensionMap other = new SmallExtensionMap();
+		map.put(A.class, new A());
+		map.put(B.class, new B());
+		other.put(A.class, new A());
+		other.put(B.class, new B());
+		assertThat(other.layout(), sameInstance(map.layout()));
+	}
+
+	@Test
+	public void shareLayout_afterRemove() {
+		final SmallExtensionMap other = new SmallExtensionMap();
+		map.put(A.class, new A());
+		map.put(B.class, new B());
+		map.put(C.class, new C());
+		map.remove(A.class);
+		other.put(B.class, new B());
+		other.put(C.class, new C());
+		assertThat(other.layout(), sameInstance(map.layout()));
+	}
+
+	@Test
+	public void removeExtensions_byValuesIterator() {
+		final A a = new A();
+		final B b = new B();
+		final C c = new C();
+		map.put(A.class, a);
+		map.put(B.class, b);
+		map.put(C.class, c);
+		final Iterator<IExtension> iterator = map.values().iterator();
+		iterator.next();
+		iterator.next();
+		iterator.remove();
+		assertThat(iterator.next(), sameInstance((IExtension) c));
+		assertThat(new ArrayList<IExtension>(map.values()), equalTo(Arrays.<IExtension> asList(a, c)));
+		assertThat(map.get(B.class), nullValue());
+		assertThat(map.get(C.class), sameInstance((IExtension) c));
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.freeplane.core.io.IAttributeHandler;
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.junit.Test;
+
+public class ParallelTreeXmlReaderShould {
+	private static String createMap() {
+		final StringBuilder xml = new StringBuilder("<map version='1'>\n<!-- <node> -->\n<node TEXT='root'>\n");
+		for (int i = 0; i < 2000; i++) {
+			xml.append("<node TEXT='branch ").append(i).append("'>\n")
+			    .append("<richcontent TYPE='NOTE'><html><body>note &amp; ").append(i).append("</body></html></richcontent>\n")
+			    .append("<node TEXT='a/b &gt; c'>text<unknown B='2'><inner>x</inner></unknown></node>\n")
+			    .append("<node TEXT='leaf'/>\n")
+			    .append("</node>\n");
+		}
+		xml.append("<node TEXT='empty'/>\n</node>\n<extra/>\n</map>\n");
+		return xml.toString();
+	}
+
+	private ReadManager createReadManager(final StringBuilder log) {
+		final ReadManager readManager = new ReadManager();
+		final IElementDOMHandler domHandler = new IElementDOMHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+				log.append("dom ").append(tag).append(' ').append(dom.getLineNr()).append(' ')
+				    .append(dom.getChildrenCount()).append('\n');
+			}
+		};
+		readManager.addElementHandler("map", domHandler);
+		readManager.addElementHandler("node", domHandler);
+		readManager.addElementHandler("richcontent", new IElementContentHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object node, XMLElement attributes, String content) {
+				log.append("content ").append(content).append('\n');
+			}
+		});
+		readManager.addAttributeHandler("node", "TEXT", new IAttributeHandler() {
+			public void setAttribute(Object node, String value) {
+				log.append("text ").append(value).append('\n');
+			}
+		});
+		return readManager;
+	}
+
+	@Test
+	public void findRootChildren() throws Exception {
+		final List<int[]> branches = ParallelTreeXmlReader.findBranches(createMap().toCharArray());
+		assertThat(branches.size(), equalTo(2001));
+		assertThat(branches.get(0)[2], equalTo(3));
+	}
+
+	@Test
+	public void passSameElementsToHandlersAsTreeXmlReader() throws Exception {
+		final String xml = createMap();
+		final StringBuilder sequentialLog = new StringBuilder();
+		new TreeXmlReader(createReadManager(sequentialLog)).load(new StringReader(xml));
+		final char[] document = xml.toCharArray();
+		final List<int[]> branches = ParallelTreeXmlReader.findBranches(document);
+		final StringBuilder parallelLog = new StringBuilder();
+		new ParallelTreeXmlReader(createReadManager(parallelLog), false).load(null, document, branches);
+		assertThat(parallelLog.toString(), equalTo(sequentialLog.toString()));
+		final StringBuilder streamingLog = new StringBuilder();
+		new ParallelTreeXmlReader(createReadManager(streamingLog), true).load(null, document, branches);
+		assertThat(streamingLog.toString(), equalTo(sequentialLog.toString()));
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.freeplane.core.io.IAttributeHandler;
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.IElementHandler;
+import org.freeplane.core.io.IUnparsedElementHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.freeplane.n3.nanoxml.XMLWriter;
+import org.junit.Test;
+
+public class StreamingTreeXmlReaderShould {
+	private static final String XML = "<map version='1'>"
+	        + "<node TEXT='root' UNKNOWN='u'>"
+	        + "<plain KEPT='no'><unknown A='1'/></plain>"
+	        + "<node TEXT='child'>text<unknown B='2'><inner>x</inner></unknown></node>"
+	        + "<richcontent TYPE='NOTE'><html><body>note</body></html></richcontent>"
+	        + "<alternative KIND='second'/>"
+	        + "</node>"
+	        + "<extra/>"
+	        + "</map>";
+
+	private ReadManager createReadManager(final StringBuilder log) {
+		final ReadManager readManager = new ReadManager();
+		final IElementDOMHandler domHandler = new IElementDOMHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+				log.append("dom ").append(tag).append(':').append(toXml(dom)).append('\n');
+			}
+		};
+		readManager.addElementHandler("map", domHandler);
+		readManager.addElementHandler("node", domHandler);
+		readManager.addElementHandler("plain", new IElementHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+		});
+		readManager.addElementHandler("richcontent", new IElementContentHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return attributes == null ? null : tag;
+			}
+
+			public void endElement(Object parent, String tag, Object node, XMLElement attributes, String content) {
+				log.append("content ").append(toXml(attributes)).append(content).append('\n');
+			}
+		});
+		final IElementHandler refusingHandler = new IElementHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return null;
+			}
+		};
+		readManager.addElementHandler("alternative", refusingHandler);
+		readManager.addElementHandler("alternative", domHandler);
+		readManager.addAttributeHandler("node", "TEXT", new IAttributeHandler() {
+			public void setAttribute(Object node, String value) {
+				log.append("text ").append(value).append('\n');
+			}
+		});
+		readManager.addAttributeHandler("alternative", "KIND", new IAttributeHandler() {
+			public void setAttribute(Object node, String value) {
+				log.append("kind ").append(value).append('\n');
+			}
+		});
+		return readManager;
+	}
+
+	private ReadManager createUnparsedReadManager(final StringBuilder log) {
+		final ReadManager readManager = new ReadManager();
+		readManager.addElementHandler("map", new IElementHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+		});
+		readManager.addElementHandler("node", new IUnparsedElementHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return "folded";
+			}
+
+			public boolean keepsUnparsed(Object parent, String tag) {
+				return "folded".equals(parent);
+			}
+
+			public void unparsedElementRead(Object parent, String tag, XMLElement attributes, String content) {
+				log.append("unparsed ").append(toXml(attributes)).append(content).append('\n');
+			}
+		});
+		readManager.addAttributeHandler("node", "TEXT", new IAttributeHandler() {
+			public void setAttribute(Object node, String value) {
+				log.append("text ").append(value).append('\n');
+			}
+		});
+		return readManager;
+	}
+
+	private static String toXml(XMLElement element) {
+		final StringWriter out = new StringWriter();
+		try {
+			new XMLWriter(out).write(element, false);
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		return out.toString();
+	}
+
+	@Test
+	public void passSameElementsToHandlersAsTreeXmlReader() throws Exception {
+		final StringBuilder domLog = new StringBuilder();
+		new TreeXmlReader(createReadManager(domLog)).load(new StringReader(XML));
+		final StringBuilder streamingLog = new StringBuilder();
+		new StreamingTreeXmlReader(createReadManager(streamingLog)).load(new StringReader(XML));
+		assertThat(streamingLog.toString(), equalTo(domLog.toString()));
+	}
+
+	@Test
+	public void passUnparsedElementsAsRawXml() throws Exception {
+		final String xml = "<map><node TEXT='folded'><node TEXT='a&amp;b'>x<node TEXT='c'/><!-- c --></node><node/></node></map>";
+		final String expected = "text folded\n"
+		        + "unparsed <node TEXT=\"a&amp;b\"/>x<node TEXT='c'/><!-- c -->\n"
+		        + "unparsed <node/>null\n";
+		final StringBuilder domLog = new StringBuilder();
+		new TreeXmlReader(createUnparsedReadManager(domLog)).load(new StringReader(xml));
+		assertThat(domLog.toString(), equalTo(expected));
+		final StringBuilder streamingLog = new StringBuilder();
+		new StreamingTreeXmlReader(createUnparsedReadManager(streamingLog)).load(new StringReader(xml));
+		assertThat(streamingLog.toString(), equalTo(expected));
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.io.xml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.StringReader;
+
+import org.freeplane.core.io.IAttributeHandler;
+import org.freeplane.core.io.IElementContentHandler;
+import org.freeplane.core.io.IElementDOMHandler;
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.junit.Test;
+
+public class XMLSnapshotShould {
+	private static final String XML = "<map version='1'>\n"
+	        + "<node TEXT='root' UNKNOWN='u'>\n"
+	        + "<node TEXT='a/b &gt; c ä'>text<unknown B='2'><inner>x</inner></unknown></node>\n"
+	        + "<richcontent TYPE='NOTE'><html><body>note &amp; more</body></html></richcontent>\n"
+	        + "<node TEXT='leaf'/>\n"
+	        + "</node>\n"
+	        + "<extra/>\n"
+	        + "</map>\n";
+
+	private ReadManager createReadManager(final StringBuilder log) {
+		final ReadManager readManager = new ReadManager();
+		final IElementDOMHandler domHandler = new IElementDOMHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object element, XMLElement dom) {
+				log.append("dom ").append(tag).append(' ').append(dom.getLineNr()).append(' ')
+				    .append(dom.getChildrenCount()).append(' ').append(dom.getAttribute("UNKNOWN", null))
+				    .append('\n');
+			}
+		};
+		readManager.addElementHandler("map", domHandler);
+		readManager.addElementHandler("node", domHandler);
+		readManager.addElementHandler("richcontent", new IElementContentHandler() {
+			public Object createElement(Object parent, String tag, XMLElement attributes) {
+				return tag;
+			}
+
+			public void endElement(Object parent, String tag, Object node, XMLElement attributes, String content) {
+				log.append("content ").append(content).append('\n');
+			}
+		});
+		readManager.addAttributeHandler("node", "TEXT", new IAttributeHandler() {
+			public void setAttribute(Object node, String value) {
+				log.append("text ").append(value).append('\n');
+			}
+		});
+		return readManager;
+	}
+
+	@Test
+	public void replaySameElementsAfterWriteAndRead() throws Exception {
+		final StringBuilder expectedLog = new StringBuilder();
+		new TreeXmlReader(createReadManager(expectedLog)).load(new StringReader(XML));
+		final XMLSnapshot snapshot = XMLSnapshot.record(createReadManager(new StringBuilder()), new StringReader(XML));
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		snapshot.write(new DataOutputStream(bytes));
+		final XMLSnapshot readSnapshot = XMLSnapshot.read(new DataInputStream(new ByteArrayInputStream(bytes
+		    .toByteArray())));
+		final StringBuilder log = new StringBuilder();
+		readSnapshot.load(createReadManager(log), false, null);
+		assertThat(log.toString(), equalTo(expectedLog.toString()));
+		final StringBuilder streamingLog = new StringBuilder();
+		readSnapshot.load(createReadManager(streamingLog), true, null);
+		assertThat(streamingLog.toString(), equalTo(expectedLog.toString()));
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class HtmlToPlainConverterShould {
+	private static final String[] MARKUP = { "<html>", "<body>", "<head>", "<p>", "<P class='x'>", "</p>", "< p>",
+	        "<\np>", "<br>", "<BR/>", "<div>", "</div>", "<tr>", "<td>", "<td >", "<tdx>", "</td>", "<dt>", "<dd>",
+	        "<ul>", "<ol>", "<li>", "</li>", "<link>", "<b>", "</b>", "<font color=\"red\">", "<pre>", "</>", "<>",
+	        "<", ">", "a", "word", "x y", " ", "  ", "\n", "\t", "\r", "\f", "\u000B", "\u00a0", "&amp;", "&lt;",
+	        "&GT;", "&quot;", "&nbsp;", "&NbSp;", "&nbs\u017Fp;", "&#160;", "&#38;lt;", "&#x41;", "&#10;", "&foo;",
+	        "&", ";" };
+
+	/** @return the plain text or the exception thrown for malformed entities */
+	private static String htmlToPlain(final String html, final boolean removeNewLines, final boolean byPatterns) {
+		try {
+			return byPatterns ? HtmlUtils.htmlToPlainByPatterns(html, removeNewLines)
+			        : HtmlUtils.htmlToPlain(html, false, removeNewLines);
+		}
+		catch (final RuntimeException e) {
+			return e.getClass().getName();
+		}
+	}
+
+	private static void assertSameAsPatterns(final String html) {
+		assertThat(html, htmlToPlain(html, true, false), equalTo(htmlToPlain(html, true, true)));
+		assertThat(html, htmlToPlain(html, false, false), equalTo(htmlToPlain(html, false, true)));
+	}
+
+	@Test
+	public void convertLikePatternsRandomMarkup() throws Exception {
+		final Random random = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			final StringBuilder html = new StringBuilder();
+			for (int length = random.nextInt(40); length > 0; length--) {
+				html.append(MARKUP[random.nextInt(MARKUP.length)]);
+			}
+			assertSameAsPatterns(html.toString());
+		}
+	}
+
+	@Test
+	public void convertLikePatternsRichTextOfDocumentationMaps() throws Exception {
+		final Pattern htmlPattern = Pattern.compile("(?s)<html>.*?</html>");
+		for (final File map : new File("doc").listFiles()) {
+			if (map.getName().endsWith(".mm")) {
+				final Matcher matcher = htmlPattern.matcher(FileUtils.readFileToString(map, "UTF-8"));
+				while (matcher.find()) {
+					assertSameAsPatterns(matcher.group());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void replaceParagraphFollowedByWhitespaceOnly() throws Exception {
+		assertThat(HtmlUtils.htmlToPlain("<html><p>a</p><p>\n  b</p><p>c</p></html>"), equalTo("a\nbc"));
+	}
+
+	@Test
+	public void removeSpacesBeforeClosingTags() throws Exception {
+		assertThat(HtmlUtils.htmlToPlain("<html><ul><li>a </li><li></li></ul></html>"), equalTo("* a\n   *"));
+	}
+
+	@Test
+	public void notConvertUnbalancedAngleBrackets() throws Exception {
+		assertThat(new HtmlToPlainConverter("<html>a > b</html>", true).convert(), nullValue());
+		assertThat(new HtmlToPlainConverter("<html><b <i>x</html>", true).convert(), nullValue());
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.core.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.freeplane.n3.nanoxml.IXMLParser;
+import org.freeplane.n3.nanoxml.StdXMLReader;
+import org.freeplane.n3.nanoxml.XMLElement;
+import org.freeplane.n3.nanoxml.XMLParserFactory;
+import org.freeplane.n3.nanoxml.XMLWriter;
+
+/**
+ * Estimates the heap used by node texts, notes and details of the given maps
+ * as they were kept before, if all equal texts were shared by a pool, and with the xml compacted by {@link TextPool}.
+ *
+ * Usage: TextPoolReport map.mm...
+ *
+ * Plain texts are kept as one string per node, rich texts as an html string and an xml string
+ * unless both are the same.
+ * Sizes are estimated for a 64 bit VM with compressed references.
+ */
+public class TextPoolReport {
+	private static final int POOL_ENTRY_BYTES = 80;
+	private final List<String> plainTexts = new ArrayList<String>();
+	private final List<String> richTexts = new ArrayList<String>();
+
+	public static void main(final String[] args) throws Exception {
+		final TextPoolReport total = new TextPoolReport();
+		for (final String fileName : args) {
+			final TextPoolReport report = new TextPoolReport();
+			report.read(new File(fileName));
+			report.print(fileName);
+			total.plainTexts.addAll(report.plainTexts);
+			total.richTexts.addAll(report.richTexts);
+		}
+		if (args.length > 1) {
+			total.print("all maps");
+		}
+	}
+
+	private void read(final File file) throws Exception {
+		final IXMLParser parser = XMLParserFactory.createDefaultXMLParser();
+		final Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+		try {
+			parser.setReader(new StdXMLReader(reader));
+			collect((XMLElement) parser.parse());
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private void collect(final XMLElement element) throws Exception {
+		if ("node".equals(element.getName())) {
+			final String text = element.getAttribute("TEXT", null);
+			if (text != null) {
+				plainTexts.add(text);
+			}
+		}
+		else if ("richcontent".equals(element.getName())) {
+			final StringWriter xml = new StringWriter();
+			final XMLWriter writer = new XMLWriter(xml);
+			for (int i = 0; i < element.getChildrenCount(); i++) {
+				writer.write(element.getChildAtIndex(i), false);
+			}
+			richTexts.add(xml.toString());
+			return;
+		}
+		for (int i = 0; i < element.getChildrenCount(); i++) {
+			collect(element.getChildAtIndex(i));
+		}
+	}
+
+	private void print(final String name) {
+		long plain = 0;
+		final Map<String, String> allTexts = new HashMap<String, String>();
+		final Map<Object, Object> compactedXml = new IdentityHashMap<Object, Object>();
+		for (final String text : plainTexts) {
+			plain += bytes(text);
+			allTexts.put(text, text);
+		}
+		long unchanged = plain;
+		long compacted = plain;
+		for (final String xml : richTexts) {
+			final String html = HtmlUtils.toHtml(xml);
+			unchanged += bytes(html);
+			compacted += bytes(html);
+			if (html != xml) {
+				unchanged += bytes(xml);
+				compactedXml.put(TextPool.compact(new String(xml), html), xml);
+			}
+			allTexts.put(html, html);
+			allTexts.put(xml, xml);
+		}
+		long pooled = 0;
+		for (final String text : allTexts.keySet()) {
+			pooled += POOL_ENTRY_BYTES + bytes(text);
+		}
+		for (final Object xml : compactedXml.keySet()) {
+			if (xml instanceof String) {
+				compacted += bytes((String) xml);
+			}
+			else {
+				compacted += POOL_ENTRY_BYTES + compactBytes(TextPool.expand(xml));
+			}
+		}
+		System.out.println(String.format(
+		    "%s: %d plain texts, %d rich texts, %d KB unchanged, %d KB with all texts pooled, %d KB with compacted xml",
+		    name, plainTexts.size(), richTexts.size(), unchanged / 1024, pooled / 1024, compacted / 1024));
+	}
+
+	private static long align(final long bytes) {
+		return (bytes + 7) / 8 * 8;
+	}
+
+	private static long bytes(final String text) {
+		return align(24) + align(16 + 2L * text.length());
+	}
+
+	private static long compactBytes(final String text) {
+		return align(24) + align(16 + text.getBytes(StandardCharsets.UTF_8).length);
+	}
+}
@@ -0,0 +1,65 @@
+package org.freeplane.core.util;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class TextPoolShould {
+	private static String longText(final String content) {
+		final StringBuilder text = new StringBuilder("<html><body>");
+		for (int i = 0; i < 20; i++) {
+			text.append("<p>").append(content).append("</p>");
+		}
+		return text.append("</body></html>").toString();
+	}
+
+	@Test
+	public void keepShortTexts() throws Exception {
+		final String text = "short";
+		assertThat(TextPool.compact(text), sameInstance((Object) text));
+	}
+
+	@Test
+	public void expandCompactedLongTexts() throws Exception {
+		final String text = longText("äöü 日本");
+		final Object compacted = TextPool.compact(text);
+		assertThat(compacted, not(instanceOf(String.class)));
+		assertThat(TextPool.expand(compacted), equalTo(text));
+	}
+
+	@Test
+	public void shareEqualLongTexts() throws Exception {
+		final String text = longText("shared");
+		assertThat(TextPool.compact(new String(text)), sameInstance(TextPool.compact(new String(text))));
+	}
+
+	@Test
+	public void reuseEqualStoredText() throws Exception {
+		final String storedText = longText("stored");
+		assertThat(TextPool.compact(new String(storedText), storedText), sameInstance((Object) storedText));
+	}
+
+	@Test
+	public void decodeSharedTextOnceWhileExpandedTextsAreKept() throws Exception {
+		final Object compacted = TextPool.compact(longText("saved"));
+		final boolean kept = TextPool.keepExpandedTexts();
+		try {
+			assertThat(kept, equalTo(true));
+			assertThat(TextPool.keepExpandedTexts(), equalTo(false));
+			assertThat(TextPool.expand(compacted), sameInstance(TextPool.expand(compacted)));
+		}
+		finally {
+			TextPool.releaseExpandedTexts(kept);
+		}
+		assertThat(TextPool.expand(compacted), not(sameInstance(TextPool.expand(compacted))));
+	}
+
+	@Test
+	public void keepNull() throws Exception {
+		assertThat(TextPool.expand(TextPool.compact(null)), equalTo(null));
+	}
+}
@@ -0,0 +1,219 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.filter;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.filter.condition.ASelectableCondition;
+import org.freeplane.features.filter.condition.ICondition;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeTraversal;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.text.NodeContainsCondition;
+import org.freeplane.features.text.TextController;
+import org.junit.Test;
+
+public class FilterShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	private final MapModel map = Controller.getCurrentModeController().getMapController().newModel();
+	private final Random random = new Random(1);
+	private final List<NodeModel> nodes = new ArrayList<NodeModel>();
+	private final NodeModel root = node();
+	private final ArrayList<NodeModel> nodesWithChangedVisibility = new ArrayList<NodeModel>();
+
+	private static final ICondition CONTAINS_X = new ICondition() {
+		public boolean checkNode(final NodeModel node) {
+			return node.getText().contains("x");
+		}
+	};
+
+	private NodeModel node() {
+		final NodeModel node = new NodeModel(random.nextInt(3) == 0 ? "x" : "y", map);
+		nodes.add(node);
+		return node;
+	}
+
+	private NodeModel attachedNode() {
+		for (;;) {
+			final NodeModel node = nodes.get(random.nextInt(nodes.size()));
+			if (node == root || node.getParentNode() != null && node.getPathToRoot()[0] == root) {
+				return node;
+			}
+		}
+	}
+
+	private NodeModel attachedNodeOutside(final NodeModel subtree) {
+		for (;;) {
+			final NodeModel node = attachedNode();
+			if (!node.isDescendantOf(subtree) && node != subtree) {
+				return node;
+			}
+		}
+	}
+
+	private Map<NodeModel, Integer> filterResults() {
+		final Map<NodeModel, Integer> results = new IdentityHashMap<NodeModel, Integer>();
+		for (final NodeModel node : NodeTraversal.preOrder(root)) {
+			results.put(node, node.getFilterInfo());
+		}
+		return results;
+	}
+
+	private void assertSameResultsAsFullCalculation(final Filter filter) {
+		final Map<NodeModel, Integer> updatedResults = filterResults();
+		filter.calculateFilterResults(root);
+		assertThat(updatedResults, equalTo(filterResults()));
+	}
+
+	@Test
+	public void updateResultsLikeFullCalculation() {
+		for (int i = 0; i < 30; i++) {
+			attachedNode().insert(node());
+		}
+		final Filter filter = new Filter(CONTAINS_X, true, true, false);
+		filter.calculateFilterResults(root);
+		for (int i = 0; i < 3000; i++) {
+			final NodeModel node = attachedNode();
+			switch (random.nextInt(4)) {
+				case 0:
+					node.setText(node.getText().contains("x") ? "y" : "x");
+					filter.updateChangedNode(node, nodesWithChangedVisibility);
+					break;
+				case 1:
+					final NodeModel child = node();
+					child.insert(node());
+					node.insert(child);
+					filter.updateInsertedSubtree(child, nodesWithChangedVisibility);
+					break;
+				case 2:
+					if (node != root) {
+						final NodeModel parent = node.getParentNode();
+						parent.remove(parent.getIndex(node));
+						filter.updateRemainingChildren(parent, nodesWithChangedVisibility);
+					}
+					break;
+				default:
+					if (node != root) {
+						final NodeModel oldParent = node.getParentNode();
+						final NodeModel newParent = attachedNodeOutside(node);
+						oldParent.remove(oldParent.getIndex(node));
+						newParent.insert(node);
+						filter.updateInsertedSubtree(node, nodesWithChangedVisibility);
+						filter.updateRemainingChildren(oldParent, nodesWithChangedVisibility);
+					}
+			}
+			assertSameResultsAsFullCalculation(filter);
+		}
+	}
+
+	@Test
+	public void recheckChildrenOfChangedNodesForParentConditions() {
+		for (int i = 0; i < 30; i++) {
+			attachedNode().insert(node());
+		}
+		final Filter filter = new Filter(new NodeContainsCondition(TextController.FILTER_PARENT, "x", false), true,
+		    true, false);
+		filter.calculateFilterResults(root);
+		for (int i = 0; i < 300; i++) {
+			final NodeModel node = attachedNode();
+			node.setText(node.getText().contains("x") ? "y" : "x");
+			filter.updateChangedNode(node, nodesWithChangedVisibility);
+			assertSameResultsAsFullCalculation(filter);
+		}
+	}
+
+	@Test
+	public void checkNodesInParallelLikeSequentially() {
+		for (int i = 0; i < 2 * ParallelMatchChecker.MINIMAL_NODE_COUNT; i++) {
+			attachedNode().insert(node());
+		}
+		final Filter filter = new Filter(new NodeContainsCondition(TextController.FILTER_NODE, "x", false), true,
+		    true, false);
+		final List<NodeModel> preOrder = new ArrayList<NodeModel>();
+		for (final NodeModel node : NodeTraversal.preOrder(root)) {
+			preOrder.add(node);
+		}
+		filter.calculateFilterResults(root, ParallelMatchChecker.check(
+		    (ASelectableCondition) filter.getCondition(), preOrder), false);
+		final Map<NodeModel, Integer> parallelResults = filterResults();
+		final ResourceController resourceController = ResourceController.getResourceController();
+		resourceController.setProperty("filter.parallel", false);
+		try {
+			filter.calculateFilterResults(root);
+		}
+		finally {
+			resourceController.setProperty("filter.parallel", true);
+		}
+		assertThat(parallelResults, equalTo(filterResults()));
+	}
+
+	@Test
+	public void collectNodesWithChangedVisibility() {
+		final NodeModel parent = new NodeModel("y", map);
+		final NodeModel child = new NodeModel("y", map);
+		root.insert(parent);
+		parent.insert(child);
+		final Filter filter = new Filter(CONTAINS_X, true, false, false);
+		filter.calculateFilterResults(root);
+		child.setText("x");
+		filter.updateChangedNode(child, nodesWithChangedVisibility);
+		assertThat(nodesWithChangedVisibility.size(), equalTo(2));
+		assertThat(filter.isVisible(parent), equalTo(true));
+		assertThat(filter.isVisible(child), equalTo(true));
+	}
+
+	@Test
+	public void completePartialResultsLikeFullCalculation() {
+		for (int i = 0; i < 300; i++) {
+			attachedNode().insert(node());
+		}
+		final Filter filter = new Filter(CONTAINS_X, true, true, false);
+		final List<NodeModel> preOrder = new ArrayList<NodeModel>();
+		for (final NodeModel node : NodeTraversal.preOrder(root)) {
+			preOrder.add(node);
+		}
+		final byte[] results = new byte[preOrder.size()];
+		final int checkedNodeCount = preOrder.size() / 3;
+		for (int i = 0; i < checkedNodeCount; i++) {
+			results[i] = filter.checkNode(preOrder.get(i)) ? ParallelMatchChecker.MATCHED
+			        : ParallelMatchChecker.NOT_MATCHED;
+		}
+		filter.calculateFilterResults(root, results, false);
+		for (int i = checkedNodeCount; i < preOrder.size(); i++) {
+			if (filter.checkNode(preOrder.get(i))) {
+				filter.updateMatch(preOrder.get(i), true, nodesWithChangedVisibility);
+			}
+		}
+		assertSameResultsAsFullCalculation(filter);
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.filter;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.freeplane.features.filter.condition.ASelectableCondition;
+import org.freeplane.features.map.NodeModel;
+import org.junit.Test;
+
+public class ParallelMatchCheckerShould {
+	private static final ASelectableCondition CONTAINS_X = new ASelectableCondition() {
+		public boolean checkNode(final NodeModel node) {
+			return node.getText().contains("x");
+		}
+
+		@Override
+		public boolean canCheckConcurrently(final NodeModel node) {
+			return !node.getText().startsWith("=");
+		}
+
+		@Override
+		protected String createDescription() {
+			return "contains x";
+		}
+
+		@Override
+		protected String getName() {
+			return "contains_x";
+		}
+	};
+
+	@Test
+	public void checkAllNodesWhichCanBeCheckedConcurrently() {
+		final List<NodeModel> nodes = new ArrayList<NodeModel>();
+		final String[] texts = { "x", "y", "=x" };
+		for (int i = 0; i < 10000; i++) {
+			nodes.add(new NodeModel(texts[i % 3], null));
+		}
+		final byte[] results = ParallelMatchChecker.check(CONTAINS_X, nodes);
+		for (int i = 0; i < results.length; i++) {
+			final byte[] expected = { ParallelMatchChecker.MATCHED, ParallelMatchChecker.NOT_MATCHED,
+			        ParallelMatchChecker.UNCHECKED };
+			assertThat(results[i], equalTo(expected[i % 3]));
+		}
+	}
+}
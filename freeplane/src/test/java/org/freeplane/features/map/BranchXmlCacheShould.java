@@ -0,0 +1,74 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class BranchXmlCacheShould {
+	final private MapModel map = null;
+	final private NodeModel root = new NodeModel("root", map);
+	final private NodeModel branch = new NodeModel("branch", map);
+	final private NodeModel otherBranch = new NodeModel("other branch", map);
+	final private NodeModel child = new NodeModel("child", map);
+	final private BranchXmlCache cache = new BranchXmlCache();
+
+	public BranchXmlCacheShould() {
+		root.insert(branch);
+		root.insert(otherBranch);
+		branch.insert(child);
+		cache.put(branch, "<node/>");
+		cache.put(otherBranch, "<node/>");
+	}
+
+	@Test
+	public void dropBranchContainingChangedNode() {
+		cache.remove(child);
+		assertThat(cache.get(branch), nullValue());
+		assertThat(cache.get(otherBranch), equalTo("<node/>"));
+	}
+
+	@Test
+	public void keepBranchesAfterRootChange() {
+		cache.remove(root);
+		assertThat(cache.size(), equalTo(2));
+	}
+
+	@Test
+	public void dropAllBranchesAfterModificationTimesOptionChange() {
+		cache.checkWriterOptions(true, false);
+		assertThat(cache.size(), equalTo(0));
+	}
+
+	@Test
+	public void dropAllBranchesAfterFoldingOptionChange() {
+		cache.checkWriterOptions(false, true);
+		assertThat(cache.size(), equalTo(0));
+	}
+
+	@Test
+	public void keepBranchesWhileOptionsAreUnchanged() {
+		cache.checkWriterOptions(false, false);
+		assertThat(cache.size(), equalTo(2));
+	}
+}
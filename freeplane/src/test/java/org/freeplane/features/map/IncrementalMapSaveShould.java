@@ -0,0 +1,123 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.link.NodeLinks;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.main.headlessmode.MapViewManagerWithoutSelection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IncrementalMapSaveShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapModel map = mapController.newModel();
+	final private NodeModel root = map.getRootNode();
+	final private IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+	final private String saveFolding = ResourceController.getResourceController().getProperty(
+	    NodeBuilder.RESOURCES_SAVE_FOLDING);
+
+	private NodeModel addBranch(final String text) {
+		final NodeModel branch = mapController.newNode(text, map);
+		root.insert(branch);
+		return branch;
+	}
+
+	private String save(final boolean incrementally) throws IOException {
+		ResourceController.getResourceController().setProperty(NodeWriter.SAVE_MAPS_INCREMENTALLY, incrementally);
+		final StringWriter writer = new StringWriter();
+		mapController.getMapWriter().writeMapAsXml(map, writer, Mode.FILE, true, false);
+		return writer.toString();
+	}
+
+	@Before
+	public void useMapViewManagerWithoutSelection() {
+		Controller.getCurrentController().setMapViewManager(new MapViewManagerWithoutSelection());
+	}
+
+	@After
+	public void resetOptions() {
+		Controller.getCurrentController().setMapViewManager(mapViewManager);
+		ResourceController.getResourceController().setProperty(NodeWriter.SAVE_MAPS_INCREMENTALLY, false);
+		ResourceController.getResourceController().setProperty(NodeBuilder.RESOURCES_SAVE_FOLDING, saveFolding);
+	}
+
+	@Test
+	public void writeSameXmlAsFullSaveAfterLinkTargetIsDeleted() throws Exception {
+		final NodeModel source = addBranch("source");
+		final NodeModel target = addBranch("target");
+		NodeLinks.createLinkExtension(source).setLocalHyperlink(source, target.createID());
+		assertSameXmlAsFullSaveAfterDeletion(target);
+	}
+
+	@Test
+	public void writeSameXmlAsFullSaveAfterTargetOfLinkRestoredByUndoIsDeleted() throws Exception {
+		final NodeModel source = addBranch("source");
+		final NodeModel target = addBranch("target");
+		NodeLinks.createLinkExtension(source).setHyperLink(new URI("#" + target.createID()));
+		assertSameXmlAsFullSaveAfterDeletion(target);
+	}
+
+	@Test
+	public void writeSameXmlAsFullSaveAfterFoldingIsNoLongerSaved() throws Exception {
+		assertSameXmlAsFullSaveAfterFoldingOptionChange(NodeBuilder.RESOURCES_ALWAYS_SAVE_FOLDING,
+		    NodeBuilder.RESOURCES_NEVER_SAVE_FOLDING);
+	}
+
+	@Test
+	public void writeSameXmlAsFullSaveAfterFoldingIsSaved() throws Exception {
+		assertSameXmlAsFullSaveAfterFoldingOptionChange(NodeBuilder.RESOURCES_NEVER_SAVE_FOLDING,
+		    NodeBuilder.RESOURCES_ALWAYS_SAVE_FOLDING);
+	}
+
+	private void assertSameXmlAsFullSaveAfterFoldingOptionChange(final String oldOption, final String newOption)
+	        throws IOException {
+		final NodeModel branch = addBranch("folded");
+		branch.insert(mapController.newNode("child", map));
+		branch.setFolded(true);
+		ResourceController.getResourceController().setProperty(NodeBuilder.RESOURCES_SAVE_FOLDING, oldOption);
+		save(true);
+		save(true);
+		ResourceController.getResourceController().setProperty(NodeBuilder.RESOURCES_SAVE_FOLDING, newOption);
+		assertThat(save(true), equalTo(save(false)));
+	}
+
+	private void assertSameXmlAsFullSaveAfterDeletion(final NodeModel branch) throws IOException {
+		save(true);
+		root.remove(root.getIndex(branch));
+		map.unregistryNodes(branch);
+		assertThat(save(true), equalTo(save(false)));
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.main.headlessmode.MapViewManagerWithoutSelection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MapControllerShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	private static final String PROPERTY = "property";
+	private static final String OTHER_PROPERTY = "other property";
+
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+	final private MapModel map = mapController.newModel();
+	final private NodeModel node = mapController.newNode("node", map);
+	final private List<String> immediateChanges = new ArrayList<String>();
+	final private List<List<String>> batches = new ArrayList<List<String>>();
+	final private List<NodeModel> batchedNodes = new ArrayList<NodeModel>();
+
+	final private AMapChangeListenerAdapter immediateListener = new AMapChangeListenerAdapter() {
+		@Override
+		public void nodeChanged(final NodeChangeEvent event) {
+			immediateChanges.add(describe(event));
+		}
+
+		@Override
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			immediateChanges.add("inserted " + child.getText());
+		}
+	};
+
+	private class BatchListener extends AMapChangeListenerAdapter implements INodeChangeBatchListener {
+		private List<String> structureChanges = new ArrayList<String>();
+
+		@Override
+		public void nodeChanged(final NodeChangeEvent event) {
+			batches.add(Arrays.asList(describe(event)));
+		}
+
+		@Override
+		public void onNodeInserted(final NodeModel parent, final NodeModel child, final int newIndex) {
+			structureChanges.add("inserted " + child.getText());
+		}
+
+		public void nodesChanged(final List<NodeChangeEvent> events) {
+			final List<String> batch = structureChanges;
+			structureChanges = new ArrayList<String>();
+			for (final NodeChangeEvent event : events) {
+				batch.add(describe(event));
+				batchedNodes.add(event.getNode());
+			}
+			batches.add(batch);
+		}
+	}
+
+	final private BatchListener batchListener = new BatchListener();
+
+	private String describe(final NodeChangeEvent event) {
+		return event.getNode().getText() + " " + event.getProperty() + " " + event.getOldValue() + "->"
+		        + event.getNewValue();
+	}
+
+	private void change(final NodeModel node, final Object property, final Object oldValue, final Object newValue) {
+		mapController.nodeRefresh(node, property, oldValue, newValue);
+	}
+
+	private void insertChild(final String text) {
+		final NodeModel child = mapController.newNode(text, map);
+		node.insert(child);
+		mapController.fireNodeInserted(node, child, node.getIndex(child));
+	}
+
+	/** Batches are used on the event dispatch thread which also delivers the changes of unfinished batches. */
+	private void onEventDispatchThread(final Runnable runnable) throws Exception {
+		EventQueue.invokeAndWait(runnable);
+	}
+
+	@Before
+	public void addListeners() {
+		Controller.getCurrentController().setMapViewManager(new MapViewManagerWithoutSelection());
+		map.getRootNode().insert(node);
+		mapController.addNodeChangeListener(immediateListener);
+		mapController.addNodeChangeListener(batchListener);
+		mapController.addMapChangeListener(immediateListener);
+		mapController.addMapChangeListener(batchListener);
+	}
+
+	@After
+	public void removeListeners() {
+		mapController.removeNodeChangeListener(immediateListener);
+		mapController.removeNodeChangeListener(batchListener);
+		mapController.removeMapChangeListener(immediateListener);
+		mapController.removeMapChangeListener(batchListener);
+		Controller.getCurrentController().setMapViewManager(mapViewManager);
+	}
+
+	@Test
+	public void deliverChangesOutsideOfBatchesImmediately() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				change(node, PROPERTY, 1, 2);
+				assertThat(batches, equalTo(Arrays.asList(Arrays.asList("node property 1->2"))));
+			}
+		});
+	}
+
+	@Test
+	public void mergeChangesOfSameNodeAndPropertyKeepingFirstOldAndLastNewValue() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 1, 2);
+				change(node, OTHER_PROPERTY, "a", "b");
+				change(node, PROPERTY, 2, 3);
+				assertThat(batches.isEmpty(), equalTo(true));
+				mapController.endChangeBatch();
+				assertThat(batches,
+				    equalTo(Arrays.asList(Arrays.asList("node property 1->3", "node other property a->b"))));
+			}
+		});
+	}
+
+	@Test
+	public void notifyPlainListenersImmediatelyDuringBatch() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 1, 2);
+				change(node, PROPERTY, 2, 3);
+				assertThat(immediateChanges, equalTo(Arrays.asList("node property 1->2", "node property 2->3")));
+				mapController.endChangeBatch();
+			}
+		});
+	}
+
+	@Test
+	public void deliverNestedBatchesWhenOutermostBatchEnds() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 1, 2);
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 2, 3);
+				mapController.endChangeBatch();
+				assertThat(batches.isEmpty(), equalTo(true));
+				mapController.endChangeBatch();
+				assertThat(batches, equalTo(Arrays.asList(Arrays.asList("node property 1->3"))));
+			}
+		});
+	}
+
+	@Test
+	public void ignoreUnpairedEndOfBatch() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				mapController.endChangeBatch();
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 1, 2);
+				assertThat(batches.isEmpty(), equalTo(true));
+				mapController.endChangeBatch();
+				assertThat(batches.size(), equalTo(1));
+			}
+		});
+	}
+
+	@Test
+	public void deliverChangeOfClonedNodeForEachClone() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				final NodeModel clone = node.cloneTree();
+				map.getRootNode().insert(clone);
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 1, 2);
+				mapController.endChangeBatch();
+				assertThat(batches,
+				    equalTo(Arrays.asList(Arrays.asList("node property 1->2", "node property 1->2"))));
+				assertThat(batchedNodes, equalTo(Arrays.asList(node, clone)));
+			}
+		});
+	}
+
+	@Test
+	public void deliverInsertionsToBatchListenersWhenBatchEnds() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				mapController.beginChangeBatch();
+				insertChild("child");
+				change(node, PROPERTY, 1, 2);
+				assertThat(immediateChanges, equalTo(Arrays.asList("inserted child", "node property 1->2")));
+				assertThat(batches.isEmpty(), equalTo(true));
+				mapController.endChangeBatch();
+				assertThat(batches, equalTo(Arrays.asList(Arrays.asList("inserted child", "node property 1->2"))));
+			}
+		});
+	}
+
+	@Test
+	public void deliverInsertionsOutsideOfBatchesImmediately() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				insertChild("child");
+				assertThat(batchListener.structureChanges, equalTo(Arrays.asList("inserted child")));
+			}
+		});
+	}
+
+	@Test
+	public void deliverChangesOfBatchWhichIsNeverEnded() throws Exception {
+		onEventDispatchThread(new Runnable() {
+			public void run() {
+				mapController.beginChangeBatch();
+				change(node, PROPERTY, 1, 2);
+			}
+		});
+		try {
+			onEventDispatchThread(new Runnable() {
+				public void run() {
+					assertThat(batches, equalTo(Arrays.asList(Arrays.asList("node property 1->2"))));
+				}
+			});
+		}
+		finally {
+			onEventDispatchThread(new Runnable() {
+				public void run() {
+					mapController.endChangeBatch();
+				}
+			});
+		}
+	}
+}
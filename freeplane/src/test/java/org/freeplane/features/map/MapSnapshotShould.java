@@ -0,0 +1,119 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.mode.Controller;
+import org.junit.Test;
+
+public class MapSnapshotShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapModel map = mapController.newModel();
+	private int attempts = 0;
+
+	@Test
+	public void returnResultOfUnchangedMap() {
+		final String text = map.readConsistently(new IMapReadTask<String>() {
+			public String read(final MapSnapshot snapshot) {
+				attempts++;
+				return snapshot.getRootNode().getText();
+			}
+		});
+		assertThat(text, equalTo(map.getRootNode().getText()));
+		assertThat(attempts, equalTo(1));
+	}
+
+	@Test
+	public void readAgainIfMapIsChangedDuringRead() {
+		final Integer result = map.readConsistently(new IMapReadTask<Integer>() {
+			public Integer read(final MapSnapshot snapshot) {
+				attempts++;
+				if (attempts == 1) {
+					map.modified();
+				}
+				return attempts;
+			}
+		});
+		assertThat(result, equalTo(2));
+	}
+
+	@Test
+	public void readAgainIfTaskFailsOnStaleSnapshot() {
+		final Integer result = map.readConsistently(new IMapReadTask<Integer>() {
+			public Integer read(final MapSnapshot snapshot) {
+				attempts++;
+				if (attempts == 1) {
+					map.modified();
+					throw new IndexOutOfBoundsException();
+				}
+				return attempts;
+			}
+		});
+		assertThat(result, equalTo(2));
+	}
+
+	@Test
+	public void throwStaleSnapshotException_ifMapIsChangedDuringEachRead() {
+		try {
+			map.readConsistently(new IMapReadTask<Integer>() {
+				public Integer read(final MapSnapshot snapshot) {
+					attempts++;
+					map.modified();
+					return attempts;
+				}
+			});
+		}
+		catch (final StaleSnapshotException e) {
+			assertThat(attempts > 1, equalTo(true));
+			return;
+		}
+		throw new AssertionError("StaleSnapshotException expected");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void passExceptionsThrownOnValidSnapshot() {
+		map.readConsistently(new IMapReadTask<Integer>() {
+			public Integer read(final MapSnapshot snapshot) {
+				throw new IllegalArgumentException();
+			}
+		});
+	}
+
+	@Test
+	public void becomeStale_whenChildIsInserted() {
+		final MapSnapshot snapshot = map.createSnapshot();
+		map.getRootNode().insert(new NodeModel("child", map));
+		assertThat(snapshot.isStale(), equalTo(true));
+	}
+
+	@Test
+	public void stayValid_whenUserObjectIsSetWithoutChangeEvent() {
+		final MapSnapshot snapshot = map.createSnapshot();
+		map.getRootNode().setUserObject("changed");
+		assertThat(snapshot.isStale(), equalTo(false));
+	}
+}
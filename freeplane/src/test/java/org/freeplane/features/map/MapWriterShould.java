@@ -0,0 +1,121 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.main.headlessmode.MapViewManagerWithoutSelection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MapWriterShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapModel map = mapController.newModel();
+	final private NodeModel root = map.getRootNode();
+	final private IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+
+	private NodeModel addBranch(final String text) {
+		final NodeModel branch = mapController.newNode(text, map);
+		root.insert(branch);
+		branch.insert(mapController.newNode(text + " child", map));
+		return branch;
+	}
+
+	private String write(final MapWriter mapWriter) throws IOException {
+		final StringWriter writer = new StringWriter();
+		mapWriter.writeMapAsXml(map, writer, Mode.FILE, true, false);
+		return writer.toString();
+	}
+
+	private String writeOnOtherThread(final MapWriter mapWriter) throws InterruptedException {
+		final StringBuilder xml = new StringBuilder();
+		final Thread thread = new Thread(new Runnable() {
+			public void run() {
+				try {
+					xml.append(write(mapWriter));
+				}
+				catch (final IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+		thread.start();
+		thread.join();
+		return xml.toString();
+	}
+
+	@Before
+	public void useMapViewManagerWithoutSelection() {
+		Controller.getCurrentController().setMapViewManager(new MapViewManagerWithoutSelection());
+	}
+
+	@After
+	public void resetOptions() {
+		Controller.getCurrentController().setMapViewManager(mapViewManager);
+		ResourceController.getResourceController().setProperty(NodeWriter.SAVE_MAPS_INCREMENTALLY, false);
+	}
+
+	@Test
+	public void allocateMissingIdsBeforeBackgroundWriting() {
+		final NodeModel branch = addBranch("branch");
+		mapController.getMapWriter().createBackgroundWriter(map);
+		assertThat(branch.getID(), notNullValue());
+		assertThat(branch.getChildAt(0).getID(), notNullValue());
+	}
+
+	@Test
+	public void writeSameXmlInBackgroundAsOnEventDispatchThread() throws Exception {
+		addBranch("a");
+		addBranch("b");
+		final MapWriter backgroundWriter = mapController.getMapWriter().createBackgroundWriter(map);
+		assertThat(writeOnOtherThread(backgroundWriter), equalTo(write(mapController.getMapWriter())));
+	}
+
+	@Test
+	public void notUseBranchXmlCacheInBackground() throws Exception {
+		addBranch("a");
+		ResourceController.getResourceController().setProperty(NodeWriter.SAVE_MAPS_INCREMENTALLY, true);
+		writeOnOtherThread(mapController.getMapWriter().createBackgroundWriter(map));
+		assertThat(map.getExtension(BranchXmlCache.class), nullValue());
+	}
+
+	@Test
+	public void notWriteMapsWithDecryptedNodesInBackground() {
+		final NodeModel branch = addBranch("encrypted");
+		branch.addExtension(new EncryptionModel(branch));
+		assertThat(mapController.getMapWriter().createBackgroundWriter(map), nullValue());
+	}
+}
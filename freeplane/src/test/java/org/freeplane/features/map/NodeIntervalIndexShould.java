@@ -0,0 +1,117 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.awt.EventQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class NodeIntervalIndexShould {
+	private final MapModel map = Mockito.mock(MapModel.class);
+	private final NodeModel root = new NodeModel("root", null);
+	private final NodeModel a = new NodeModel("a", null);
+	private final NodeModel a1 = new NodeModel("a1", null);
+	private final NodeModel b = new NodeModel("b", null);
+	private final NodeIntervalIndex index = new NodeIntervalIndex(map);
+
+	public NodeIntervalIndexShould() {
+		root.insert(a);
+		root.insert(b);
+		a.insert(a1);
+		Mockito.when(map.getRootNode()).thenReturn(root);
+		Mockito.when(map.getStructureVersion()).thenReturn(1);
+	}
+
+	private NodeIntervalIndex.Intervals getIntervalsOnEventDispatchThread() throws Exception {
+		final AtomicReference<NodeIntervalIndex.Intervals> intervals = new AtomicReference<NodeIntervalIndex.Intervals>();
+		EventQueue.invokeAndWait(new Runnable() {
+			@Override
+			public void run() {
+				intervals.set(index.getIntervals());
+			}
+		});
+		return intervals.get();
+	}
+
+	@Test
+	public void notBuildIntervalsBeforeEnoughParentsWereWalked() throws Exception {
+		index.walked(10);
+		assertThat(getIntervalsOnEventDispatchThread(), nullValue());
+	}
+
+	@Test
+	public void answerAncestryDepthAndSubtreeSize() throws Exception {
+		index.walked(10000);
+		final NodeIntervalIndex.Intervals intervals = getIntervalsOnEventDispatchThread();
+		final int rootNumber = intervals.numberOf(root);
+		final int aNumber = intervals.numberOf(a);
+		final int a1Number = intervals.numberOf(a1);
+		final int bNumber = intervals.numberOf(b);
+		assertThat(intervals.isDescendant(a1Number, rootNumber), equalTo(true));
+		assertThat(intervals.isDescendant(a1Number, aNumber), equalTo(true));
+		assertThat(intervals.isDescendant(a1Number, bNumber), equalTo(false));
+		assertThat(intervals.isDescendant(aNumber, aNumber), equalTo(false));
+		assertThat(intervals.depth(a1Number), equalTo(2));
+		assertThat(intervals.subtreeSize(rootNumber), equalTo(4));
+		assertThat(intervals.subtreeSize(aNumber), equalTo(2));
+		assertThat(intervals.isComplete(rootNumber), equalTo(true));
+	}
+
+	@Test
+	public void notBuildIntervalsOutsideOfEventDispatchThread() {
+		index.walked(10000);
+		assertThat(index.getIntervals(), nullValue());
+	}
+
+	@Test
+	public void notLoadChildrenAndMarkTheirAncestorsIncomplete() throws Exception {
+		final UnloadedChildren unloadedChildren = Mockito.mock(UnloadedChildren.class);
+		a1.setUnloadedChildren(unloadedChildren);
+		index.walked(10000);
+		final NodeIntervalIndex.Intervals intervals = getIntervalsOnEventDispatchThread();
+		Mockito.verifyZeroInteractions(unloadedChildren);
+		assertThat(intervals.isComplete(intervals.numberOf(a1)), equalTo(false));
+		assertThat(intervals.isComplete(intervals.numberOf(a)), equalTo(false));
+		assertThat(intervals.isComplete(intervals.numberOf(root)), equalTo(false));
+		assertThat(intervals.isComplete(intervals.numberOf(b)), equalTo(true));
+		assertThat(intervals.depth(intervals.numberOf(a1)), equalTo(2));
+	}
+
+	@Test
+	public void notIndexNodesOutsideOfTheTree() throws Exception {
+		index.walked(10000);
+		assertThat(getIntervalsOnEventDispatchThread().numberOf(new NodeModel("other", null)), equalTo(-1));
+	}
+
+	@Test
+	public void dropIntervalsAfterStructuralChange() throws Exception {
+		index.walked(10000);
+		assertThat(getIntervalsOnEventDispatchThread(), notNullValue());
+		Mockito.when(map.getStructureVersion()).thenReturn(2);
+		assertThat(getIntervalsOnEventDispatchThread(), nullValue());
+	}
+}
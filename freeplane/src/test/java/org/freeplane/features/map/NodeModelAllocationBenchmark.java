@@ -0,0 +1,98 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.freeplane.features.map.NodeModel.CloneType.TREE;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the memory allocated per node of a generated branch.
+ *
+ * Each operation creates a node with {@link #CHILD_COUNT} children, the GC profiler
+ * reports the allocated bytes per node as gc.alloc.rate.norm. Run it using {@link #main(String[])},
+ * which first prints the heap retained per node of a map with {@link #RETAINED_NODE_COUNT} nodes.
+ *
+ * @author Dimitry Polivaev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeModelAllocationBenchmark {
+	private static final int CHILD_COUNT = 8;
+	private static final Object TEXT = "node";
+	private static final int RETAINED_NODE_COUNT = 1000000;
+
+	@Benchmark
+	@OperationsPerInvocation(CHILD_COUNT + 1)
+	public NodeModel createBranch() {
+		final NodeModel parent = new NodeModel(TEXT, null);
+		parent.setClones(new SingleNodeList(parent, TREE));
+		for (int i = 0; i < CHILD_COUNT; i++) {
+			parent.insert(new NodeModel(TEXT, null));
+		}
+		return parent;
+	}
+
+	static long retainedBytesPerNode(final int nodeCount) {
+		final long before = usedHeapAfterGc();
+		final NodeModel root = new NodeModel(TEXT, null);
+		root.setClones(new SingleNodeList(root, TREE));
+		int created = 1;
+		for (NodeModel parent = root; created < nodeCount; parent = parent.getChildAt(0)) {
+			for (int i = 0; i < CHILD_COUNT && created < nodeCount; i++, created++) {
+				parent.insert(new NodeModel(TEXT, null));
+			}
+		}
+		final long after = usedHeapAfterGc();
+		if (root.getChildCount() == 0) {
+			throw new IllegalStateException();
+		}
+		return (after - before) / nodeCount;
+	}
+
+	private static long usedHeapAfterGc() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	public static void main(final String[] args) throws Exception {
+		System.out.println("retained bytes per node: " + retainedBytesPerNode(RETAINED_NODE_COUNT));
+		new Runner(new OptionsBuilder().include(NodeModelAllocationBenchmark.class.getSimpleName())
+		    .addProfiler(GCProfiler.class).build()).run();
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class NodeRegistryShould {
+	private final NodeRegistry registry = new NodeRegistry();
+
+	private NodeModel node() {
+		return Mockito.mock(NodeModel.class);
+	}
+
+	@Test
+	public void findNodesByNumberedAndLegacyIds() {
+		final NodeModel numbered = node();
+		final NodeModel legacy = node();
+		registry.put("ID_17", numbered);
+		registry.put("Freemind_Link_1", legacy);
+		assertThat(registry.get("ID_17"), sameInstance(numbered));
+		assertThat(registry.get("Freemind_Link_1"), sameInstance(legacy));
+		assertThat(registry.containsNumber(17), equalTo(true));
+		assertThat(registry.size(), equalTo(2));
+	}
+
+	@Test
+	public void keepIdsWithLeadingZerosApart() {
+		final NodeModel node = node();
+		registry.put("ID_017", node);
+		assertThat(registry.get("ID_17"), nullValue());
+		assertThat(registry.get("ID_017"), sameInstance(node));
+	}
+
+	@Test
+	public void removeEntries() {
+		registry.put("ID_1", node());
+		registry.put("ID_X", node());
+		registry.remove("ID_1");
+		registry.remove("ID_X");
+		assertThat(registry.get("ID_1"), nullValue());
+		assertThat(registry.get("ID_X"), nullValue());
+		assertThat(registry.size(), equalTo(0));
+	}
+
+	@Test
+	public void findRemainingNodes_afterManyInsertionsAndRemovals() {
+		final int count = 10000;
+		final NodeModel[] nodes = new NodeModel[count];
+		for (int i = 0; i < count; i++) {
+			nodes[i] = node();
+			registry.put(NodeRegistry.idOf(i * 31), nodes[i]);
+		}
+		for (int i = 0; i < count; i += 2) {
+			registry.remove(NodeRegistry.idOf(i * 31));
+		}
+		for (int i = 0; i < count; i++) {
+			final NodeModel expected = i % 2 == 0 ? null : nodes[i];
+			assertThat(registry.get(NodeRegistry.idOf(i * 31)), sameInstance(expected));
+		}
+		assertThat(registry.size(), equalTo(count / 2));
+	}
+}
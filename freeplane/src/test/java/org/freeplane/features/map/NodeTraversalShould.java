@@ -0,0 +1,126 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class NodeTraversalShould {
+	private final MapModel map = null;
+	private final NodeModel root = node("root");
+	private final NodeModel a = node("a");
+	private final NodeModel a1 = node("a1");
+	private final NodeModel a2 = node("a2");
+	private final NodeModel b = node("b");
+	private final NodeModel b1 = node("b1");
+
+	public NodeTraversalShould() {
+		root.insert(a);
+		root.insert(b);
+		a.insert(a1);
+		a.insert(a2);
+		b.insert(b1);
+	}
+
+	private NodeModel node(final String text) {
+		return new NodeModel(text, map);
+	}
+
+	private static String texts(final Iterable<NodeModel> nodes) {
+		final StringBuilder texts = new StringBuilder();
+		for (final NodeModel node : nodes) {
+			texts.append(node.getText()).append(' ');
+		}
+		return texts.toString().trim();
+	}
+
+	@Test
+	public void visitNodesInPreOrder() {
+		assertThat(texts(NodeTraversal.preOrder(root)), equalTo("root a a1 a2 b b1"));
+	}
+
+	@Test
+	public void visitNodesInPostOrder() {
+		assertThat(texts(NodeTraversal.postOrder(root)), equalTo("a1 a2 a b1 b root"));
+	}
+
+	@Test
+	public void visitNodesBreadthFirst() {
+		assertThat(texts(NodeTraversal.breadthFirst(root)), equalTo("root a b a1 a2 b1"));
+	}
+
+	@Test
+	public void skipChildren() {
+		final StringBuilder texts = new StringBuilder();
+		final NodeTraversal.NodeIterator iterator = NodeTraversal.preOrder(root).iterator();
+		while (iterator.hasNext()) {
+			final NodeModel node = iterator.next();
+			texts.append(node.getText()).append(iterator.depth()).append(' ');
+			if (node == a) {
+				iterator.skipChildren();
+			}
+		}
+		assertThat(texts.toString().trim(), equalTo("root0 a1 b1 b12"));
+	}
+
+	@Test
+	public void selectNodesAndDescendIntoChildrenOfOtherNodes() {
+		final NodeTraversal traversal = NodeTraversal.preOrder(root).selecting(new org.freeplane.features.filter.condition.ICondition() {
+			public boolean checkNode(final NodeModel node) {
+				return node.getText().length() == 2;
+			}
+		});
+		assertThat(texts(traversal), equalTo("a1 a2 b1"));
+	}
+
+	@Test
+	public void callVisitorBeforeAndAfterChildren() {
+		final StringBuilder events = new StringBuilder();
+		NodeTraversal.walk(root, new NodeTraversal.INodeVisitor() {
+			public boolean enter(final NodeModel node) {
+				events.append('<').append(node.getText());
+				return node != b;
+			}
+
+			public void leave(final NodeModel node) {
+				events.append('>');
+			}
+		});
+		assertThat(events.toString(), equalTo("<root<a<a1><a2>><b>>"));
+	}
+
+	@Test
+	public void walkDeepTrees() {
+		final NodeModel top = node("top");
+		NodeModel parent = top;
+		for (int i = 0; i < 100000; i++) {
+			final NodeModel child = node("");
+			parent.insert(child);
+			parent = child;
+		}
+		int count = 0;
+		for (@SuppressWarnings("unused") final NodeModel node : NodeTraversal.postOrder(top)) {
+			count++;
+		}
+		assertThat(count, equalTo(100001));
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.awt.EventQueue;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class SubtreeAggregatesShould {
+	private final NodeModel root = node("root");
+	private final NodeModel a = node("a");
+	private final NodeModel a1 = node("a1");
+	private final NodeModel a2 = node("a2");
+	private final NodeModel b = node("b");
+
+	public SubtreeAggregatesShould() {
+		root.insert(a);
+		root.insert(b);
+		a.insert(a1);
+		a.insert(a2);
+	}
+
+	private NodeModel node(final String text) {
+		return new NodeModel(text, null);
+	}
+
+	private static String aggregates(final NodeModel node) {
+		final SubtreeAggregates aggregates = SubtreeAggregates.of(node);
+		return aggregates.getDescendantCount() + " " + aggregates.getUnfoldedDescendantCount() + " "
+		        + aggregates.hasFoldedDescendant() + " " + aggregates.getHeight();
+	}
+
+	@Test
+	public void describeSubtree() {
+		assertThat(aggregates(root), equalTo("4 4 false 2"));
+		assertThat(aggregates(a), equalTo("2 2 false 1"));
+		assertThat(aggregates(b), equalTo("0 0 false 0"));
+	}
+
+	@Test
+	public void countFoldedDescendants() {
+		a.setFolded(true);
+		assertThat(aggregates(root), equalTo("4 2 true 2"));
+		assertThat(aggregates(a), equalTo("2 0 false 1"));
+	}
+
+	@Test
+	public void notLoadChildrenOfFoldedNodesToFindFoldedDescendant() {
+		final UnloadedChildren unloadedChildren = Mockito.mock(UnloadedChildren.class);
+		a.setFolded(true);
+		a.setUnloadedChildren(unloadedChildren);
+		assertThat(SubtreeAggregates.hasFoldedDescendant(root), equalTo(true));
+		Mockito.verifyZeroInteractions(unloadedChildren);
+	}
+
+	@Test
+	public void findFoldedDescendantInKeptValues() throws Exception {
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				SubtreeAggregates.of(root);
+				assertThat(SubtreeAggregates.hasFoldedDescendant(root), equalTo(false));
+				a1.setFolded(true);
+				assertThat(SubtreeAggregates.hasFoldedDescendant(root), equalTo(true));
+				assertThat(SubtreeAggregates.hasFoldedDescendant(a1), equalTo(false));
+			}
+		});
+	}
+
+	@Test
+	public void updateKeptValuesOnChangesInSubtree() throws Exception {
+		EventQueue.invokeAndWait(new Runnable() {
+			public void run() {
+				assertThat(aggregates(root), equalTo("4 4 false 2"));
+				a1.insert(node("a11"));
+				assertThat(aggregates(root), equalTo("5 5 false 3"));
+				a.setFolded(true);
+				assertThat(aggregates(root), equalTo("5 2 true 3"));
+				root.remove(0);
+				assertThat(aggregates(root), equalTo("1 1 false 1"));
+			}
+		});
+	}
+}
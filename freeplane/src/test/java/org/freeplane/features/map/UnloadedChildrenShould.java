@@ -0,0 +1,94 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.freeplane.core.resources.ResourceController;
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.mode.Controller;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UnloadedChildrenShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	private static final String LOAD_FOLDED_BRANCHES_LAZILY = "load_folded_branches_lazily";
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapModel map = mapController.newModel();
+
+	@Before
+	public void loadFoldedBranchesLazily() {
+		ResourceController.getResourceController().setProperty(LOAD_FOLDED_BRANCHES_LAZILY, true);
+	}
+
+	@After
+	public void resetLazyLoading() {
+		ResourceController.getResourceController().setProperty(LOAD_FOLDED_BRANCHES_LAZILY, false);
+	}
+
+	private NodeModel load(final String xml) throws Exception {
+		return mapController.getMapReader().createNodeTreeFromXml(map, new StringReader(xml), Mode.FILE);
+	}
+
+	@Test
+	public void collectIdsOfNodesOnly() {
+		final UnloadedChildren unloadedChildren = new UnloadedChildren(mapController.getMapReader());
+		final String xml = "<node TEXT=\"a\" ID=\"ID_1\"><hook NAME=\"x\" ID=\"ID_2\"/>"
+		        + "<node TREE_ID=\"ID_3\" TEXT=\"b\" ID=\"ID_4\"/></node>";
+		assertThat(new ArrayList<String>(unloadedChildren.add(xml)), equalTo(Arrays.asList("ID_1", "ID_4")));
+	}
+
+	@Test
+	public void countOnlyChildrenWhichCouldBeLoaded() {
+		final NodeModel node = mapController.newNode("node", map);
+		final UnloadedChildren unloadedChildren = new UnloadedChildren(mapController.getMapReader());
+		unloadedChildren.add("<node TEXT=\"a\"/>");
+		unloadedChildren.add("<node TEXT=\"b\"");
+		node.setUnloadedChildren(unloadedChildren);
+		assertThat(node.hasChildren(), equalTo(true));
+		assertThat(node.getChildCount(), equalTo(1));
+		assertThat(node.hasUnloadedChildren(), equalTo(false));
+	}
+
+	@Test
+	public void keepFoldedBranchUnloaded() throws Exception {
+		final NodeModel top = load("<node TEXT=\"top\"><node TEXT=\"folded\" FOLDED=\"true\">"
+		        + "<node TEXT=\"a\" ID=\"ID_1\"/></node><node TEXT=\"target\" ID=\"ID_2\"/></node>");
+		assertThat(top.getChildAt(0).hasUnloadedChildren(), equalTo(true));
+	}
+
+	@Test
+	public void loadFoldedBranchWithConnectorImmediately() throws Exception {
+		final NodeModel top = load("<node TEXT=\"top\"><node TEXT=\"folded\" FOLDED=\"true\">"
+		        + "<node TEXT=\"a\" ID=\"ID_1\"><arrowlink DESTINATION=\"ID_2\"/></node></node>"
+		        + "<node TEXT=\"target\" ID=\"ID_2\"/></node>");
+		assertThat(top.getChildAt(0).hasUnloadedChildren(), equalTo(false));
+	}
+}
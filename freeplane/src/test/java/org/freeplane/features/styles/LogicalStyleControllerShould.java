@@ -0,0 +1,101 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.styles;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.Collection;
+
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.IPropertyHandler;
+import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.main.headlessmode.MapViewManagerWithoutSelection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LogicalStyleControllerShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	private static final Integer COUNTING_GETTER = 1000;
+
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private LogicalStyleController logicalStyleController = LogicalStyleController.getController();
+	final private IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+	final private MapModel map = mapController.newModel();
+	final private NodeModel node = map.getRootNode();
+	private int computations = 0;
+	private boolean changesNodeDuringComputation = false;
+
+	@Before
+	public void addCountingGetter() {
+		Controller.getCurrentController().setMapViewManager(new MapViewManagerWithoutSelection());
+		logicalStyleController.addStyleGetter(COUNTING_GETTER, new IPropertyHandler<Collection<IStyle>, NodeModel>() {
+			public Collection<IStyle> getProperty(final NodeModel node, final Collection<IStyle> currentValue) {
+				computations++;
+				if (changesNodeDuringComputation) {
+					changesNodeDuringComputation = false;
+					changeNode();
+				}
+				return currentValue;
+			}
+		});
+	}
+
+	@After
+	public void removeCountingGetter() {
+		logicalStyleController.removeStyleGetter(COUNTING_GETTER, null);
+		Controller.getCurrentController().setMapViewManager(mapViewManager);
+	}
+
+	private void changeNode() {
+		mapController.nodeRefresh(node, "property", 1, 2);
+	}
+
+	@Test
+	public void computeStylesOnce_forRepeatedRequests() {
+		logicalStyleController.getStyles(node);
+		logicalStyleController.getStyles(node);
+		assertThat(computations, equalTo(1));
+	}
+
+	@Test
+	public void computeStylesAgain_afterNodeChange() {
+		logicalStyleController.getStyles(node);
+		changeNode();
+		logicalStyleController.getStyles(node);
+		assertThat(computations, equalTo(2));
+	}
+
+	@Test
+	public void notKeepStyles_whichWereComputedDuringNodeChange() {
+		changesNodeDuringComputation = true;
+		logicalStyleController.getStyles(node);
+		logicalStyleController.getStyles(node);
+		assertThat(computations, equalTo(2));
+	}
+}
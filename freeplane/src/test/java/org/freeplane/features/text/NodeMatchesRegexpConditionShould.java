@@ -0,0 +1,60 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.text;
+
+import static org.freeplane.features.text.NodeMatchesRegexpCondition.requiredText;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class NodeMatchesRegexpConditionShould {
+	@Test
+	public void requireWholeLiteralPattern() throws Exception {
+		assertThat(requiredText("abc"), equalTo("abc"));
+	}
+
+	@Test
+	public void requireLongestLiteralRun() throws Exception {
+		assertThat(requiredText("hi.*world"), equalTo("world"));
+		assertThat(requiredText("\\d+abc"), equalTo("abc"));
+	}
+
+	@Test
+	public void requireEscapedCharacters() throws Exception {
+		assertThat(requiredText("\\.txt"), equalTo(".txt"));
+	}
+
+	@Test
+	public void notRequireQuantifiedCharactersAndGroups() throws Exception {
+		assertThat(requiredText("abcd?e"), equalTo("abc"));
+		assertThat(requiredText("ab+cd"), nullValue());
+		assertThat(requiredText("x{2,3}abcd"), equalTo("abcd"));
+		assertThat(requiredText("(abc)?defg"), equalTo("defg"));
+	}
+
+	@Test
+	public void requireNothingForAlternativesAndShortLiterals() throws Exception {
+		assertThat(requiredText("abcd|efgh"), nullValue());
+		assertThat(requiredText("(?i)abcd"), nullValue());
+		assertThat(requiredText("ab"), nullValue());
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.text;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.junit.Test;
+
+public class NodeTextIndexShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	private static final String CHARACTERS = "aAbBsSßäÄiIıİkKK ";
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapModel map = mapController.newModel();
+	final private NodeModel root = map.getRootNode();
+	final private Random random = new Random(1);
+
+	private NodeModel addNode(final Object text) {
+		final NodeModel node = mapController.newNode(text, map);
+		root.insert(node);
+		return node;
+	}
+
+	private String randomText(final int length) {
+		final StringBuilder text = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			text.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+		}
+		return text.toString();
+	}
+
+	private String randomQuery(final List<String> texts) {
+		final String text = texts.get(random.nextInt(texts.size()));
+		final int length = 3 + random.nextInt(3);
+		final int start = random.nextInt(text.length() - length);
+		final String query = text.substring(start, start + length);
+		return random.nextBoolean() ? query.toUpperCase() : query;
+	}
+
+	private List<NodeModel> matchingNodes(final String query) {
+		final NodeContainsCondition condition = new NodeContainsCondition(TextController.FILTER_ANYTEXT, query, false);
+		final List<NodeModel> nodes = new ArrayList<NodeModel>();
+		for (final NodeModel node : root.getChildren()) {
+			if (condition.checkNode(node)) {
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+
+	private List<NodeModel> nodesWhichMayContain(final String query) {
+		final List<NodeModel> nodes = new ArrayList<NodeModel>();
+		for (final NodeModel node : root.getChildren()) {
+			if (NodeTextIndex.mayContain(node, TextController.FILTER_NODE, query)) {
+				nodes.add(node);
+			}
+		}
+		return nodes;
+	}
+
+	private NodeTextIndex buildIndex() {
+		NodeTextIndex.remove(map);
+		return NodeTextIndex.buildNow(map, mapController);
+	}
+
+	private void assertIndexFindsAllMatches(final List<String> texts) {
+		final List<String> queries = new ArrayList<String>();
+		final List<List<NodeModel>> expectedMatches = new ArrayList<List<NodeModel>>();
+		NodeTextIndex.remove(map);
+		for (int i = 0; i < 200; i++) {
+			final String query = randomQuery(texts);
+			queries.add(query);
+			expectedMatches.add(matchingNodes(query));
+		}
+		buildIndex();
+		for (int i = 0; i < queries.size(); i++) {
+			assertThat(queries.get(i), matchingNodes(queries.get(i)), equalTo(expectedMatches.get(i)));
+		}
+	}
+
+	@Test
+	public void findAllMatchesOfRandomTexts() {
+		final List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 300; i++) {
+			final String text = randomText(20);
+			texts.add(text);
+			addNode(text);
+		}
+		assertIndexFindsAllMatches(texts);
+	}
+
+	@Test
+	public void findAllMatchesOfHtmlTexts() {
+		final List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 300; i++) {
+			final String text = randomText(20);
+			texts.add(text);
+			addNode("<html><head></head><body><p>" + text.replace("ä", "&#228;") + "</p></body></html>");
+		}
+		assertIndexFindsAllMatches(texts);
+	}
+
+	@Test
+	public void skipNodesWithoutQueriedText() {
+		final NodeModel matchingNode = addNode("first text");
+		addNode("second text");
+		buildIndex();
+		final List<NodeModel> expected = new ArrayList<NodeModel>();
+		expected.add(matchingNode);
+		assertThat(nodesWhichMayContain("FIRST"), equalTo(expected));
+	}
+
+	@Test
+	public void neverSkipTransformedNodes() {
+		final NodeModel formula = addNode("=\"fir\" + \"st\"");
+		final NodeModel number = addNode(Integer.valueOf(12345));
+		addNode("second text");
+		buildIndex();
+		final List<NodeModel> expected = new ArrayList<NodeModel>();
+		expected.add(formula);
+		expected.add(number);
+		assertThat(nodesWhichMayContain("first"), equalTo(expected));
+	}
+
+	@Test
+	public void indexChangedNodes() {
+		final NodeModel node = addNode("first text");
+		final NodeTextIndex index = buildIndex();
+		node.setText("second text");
+		index.nodeChanged(node);
+		assertThat(nodesWhichMayContain("first").isEmpty(), equalTo(true));
+		assertThat(nodesWhichMayContain("second").size(), equalTo(1));
+	}
+
+	@Test
+	public void indexNodesInsertedAgainAfterDeletion() {
+		final NodeModel node = addNode("first text");
+		final NodeTextIndex index = buildIndex();
+		root.remove(0);
+		index.subtreeDeleted(node);
+		node.setText("second text");
+		root.insert(node);
+		assertThat(nodesWhichMayContain("second").size(), equalTo(1));
+		assertThat(nodesWhichMayContain("first").isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void findAllMatchesAfterManyDeletions() {
+		final List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			final String text = randomText(20);
+			texts.add(text);
+			addNode(text);
+		}
+		final NodeTextIndex index = buildIndex();
+		for (int i = 0; i < 80; i++) {
+			final NodeModel node = root.getChildAt(0);
+			root.remove(0);
+			index.subtreeDeleted(node);
+		}
+		final List<String> remainingTexts = texts.subList(80, 100);
+		for (int i = 0; i < 50; i++) {
+			final String query = randomQuery(remainingTexts);
+			final List<NodeModel> indexedMatches = matchingNodes(query);
+			NodeTextIndex.remove(map);
+			assertThat(query, indexedMatches, equalTo(matchingNodes(query)));
+			map.addExtension(index);
+		}
+	}
+
+	@Test
+	public void answerConcurrentQueriesLikeSequentialOnes() throws InterruptedException {
+		final List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 300; i++) {
+			final String text = randomText(20);
+			texts.add(text);
+			addNode(text);
+		}
+		buildIndex();
+		final List<String> queries = new ArrayList<String>();
+		final List<List<NodeModel>> expectedResults = new ArrayList<List<NodeModel>>();
+		for (int i = 0; i < 50; i++) {
+			final String query = randomQuery(texts);
+			queries.add(query);
+			expectedResults.add(nodesWhichMayContain(query));
+		}
+		final List<List<List<NodeModel>>> concurrentResults = new ArrayList<List<List<NodeModel>>>();
+		final List<Thread> threads = new ArrayList<Thread>();
+		NodeTextIndex.beginConcurrentQueries(map);
+		try {
+			for (int i = 0; i < 4; i++) {
+				final List<List<NodeModel>> results = new ArrayList<List<NodeModel>>();
+				concurrentResults.add(results);
+				final Thread thread = new Thread(new Runnable() {
+					public void run() {
+						for (final String query : queries) {
+							results.add(nodesWhichMayContain(query));
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+		}
+		finally {
+			NodeTextIndex.endConcurrentQueries(map);
+		}
+		for (final List<List<NodeModel>> results : concurrentResults) {
+			assertThat(results, equalTo(expectedResults));
+		}
+	}
+}
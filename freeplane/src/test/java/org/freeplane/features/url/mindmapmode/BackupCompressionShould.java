@@ -0,0 +1,81 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class BackupCompressionShould {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String TEXT = "<map><node TEXT=\"äöü € 😀\"/></map>\n";
+
+	private File createTempFile(final String suffix) throws IOException {
+		final File file = File.createTempFile("backup", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static String read(final File file) throws IOException {
+		final InputStream in = BackupCompression.openInputStream(file);
+		try {
+			final ByteArrayOutputStream content = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[16];
+			for (int count = in.read(buffer); count >= 0; count = in.read(buffer)) {
+				content.write(buffer, 0, count);
+			}
+			return new String(content.toByteArray(), UTF_8);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void restoreCompressedContent() throws IOException {
+		final File file = createTempFile(".mm");
+		final OutputStream out = new FileOutputStream(file);
+		out.write(TEXT.getBytes(UTF_8));
+		out.close();
+		final File backup = createTempFile("." + BackupCompression.compressedExtension("bak"));
+		BackupCompression.compress(file, backup);
+		assertThat(read(backup), equalTo(TEXT));
+		assertThat(BackupCompression.contentLength(backup), equalTo(file.length()));
+	}
+
+	@Test
+	public void writeCompressedFilesOnlyForCompressedExtension() throws IOException {
+		final File file = createTempFile(".autosave");
+		final OutputStream out = BackupCompression.openOutputStream(file);
+		out.write(TEXT.getBytes(UTF_8));
+		out.close();
+		assertThat(file.length(), equalTo((long) TEXT.getBytes(UTF_8).length));
+		assertThat(read(file), equalTo(TEXT));
+	}
+}
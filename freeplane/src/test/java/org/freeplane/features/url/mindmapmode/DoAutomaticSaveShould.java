@@ -0,0 +1,120 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.core.util.Compat;
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.main.headlessmode.MapViewManagerWithoutSelection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DoAutomaticSaveShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapModel map = mapController.newModel();
+	final private IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+	private File mapFile;
+	private File backupDir;
+
+	@Before
+	public void createMapFile() throws Exception {
+		Controller.getCurrentController().setMapViewManager(new MapViewManagerWithoutSelection());
+		mapFile = File.createTempFile("map", ".mm");
+		backupDir = new File(mapFile.getParentFile(), DoAutomaticSave.BACKUP_DIR);
+		map.setURL(Compat.fileToUrl(mapFile));
+		final NodeModel child = mapController.newNode("child", map);
+		map.getRootNode().insert(child);
+		child.insert(mapController.newNode("grandchild", map));
+	}
+
+	@After
+	public void deleteFiles() {
+		Controller.getCurrentController().setMapViewManager(mapViewManager);
+		for (int i = 1; i <= 2; i++) {
+			autosaveFile(i).delete();
+		}
+		mapFile.delete();
+	}
+
+	private File autosaveFile(final int number) {
+		return MFileManager.createBackupFile(backupDir, mapFile, number,
+		    MFileManager.backupExtension(DoAutomaticSave.AUTOSAVE_EXTENSION));
+	}
+
+	private void saveAutomatically() {
+		final DoAutomaticSave autosave = new DoAutomaticSave(map, 2, false, false, null);
+		map.setSaved(false);
+		autosave.run();
+	}
+
+	private String read(final File file) throws IOException {
+		final InputStream in = BackupCompression.openInputStream(file);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			FileUtils.copyStream(in, out);
+			return out.toString();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private String mapXml() throws IOException {
+		final StringWriter writer = new StringWriter();
+		mapController.getMapWriter().writeMapAsXml(map, writer, Mode.FILE, true, false);
+		return writer.toString();
+	}
+
+	@Test
+	public void writeMapXmlRenderedInBackground() throws Exception {
+		saveAutomatically();
+		assertThat(read(autosaveFile(1)), equalTo(mapXml()));
+	}
+
+	@Test
+	public void rotateAutosaveFiles() throws Exception {
+		saveAutomatically();
+		final String firstXml = read(autosaveFile(1));
+		map.getRootNode().getChildAt(0).setUserObject("changed");
+		saveAutomatically();
+		assertThat(read(autosaveFile(1)), equalTo(firstXml));
+		assertThat(read(autosaveFile(2)), equalTo(mapXml()));
+	}
+}
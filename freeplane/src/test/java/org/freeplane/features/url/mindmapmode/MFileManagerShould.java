@@ -0,0 +1,93 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MFileManagerShould {
+	private static final String PLAIN = "bak";
+	private static final String COMPRESSED = "bak.gz";
+	private File backupDir;
+	private File mapFile;
+
+	@Before
+	public void createBackupDir() throws IOException {
+		backupDir = File.createTempFile("backup", "");
+		backupDir.delete();
+		backupDir.mkdir();
+		mapFile = new File(backupDir.getParentFile(), "map.mm");
+	}
+
+	@After
+	public void deleteBackupDir() {
+		for (final File file : backupDir.listFiles()) {
+			file.delete();
+		}
+		backupDir.delete();
+	}
+
+	private File backup(final int number, final String extension) throws IOException {
+		final File backup = MFileManager.createBackupFile(backupDir, mapFile, number, extension);
+		backup.createNewFile();
+		return backup;
+	}
+
+	private boolean exists(final int number, final String extension) {
+		return MFileManager.createBackupFile(backupDir, mapFile, number, extension).exists();
+	}
+
+	@Test
+	public void rotatePlainAndCompressedBackupsTogether() throws IOException {
+		backup(1, PLAIN);
+		backup(2, COMPRESSED);
+		final File next = MFileManager.renameBackupFiles(backupDir, mapFile, 2, COMPRESSED);
+		assertThat(next, equalTo(MFileManager.createBackupFile(backupDir, mapFile, 2, COMPRESSED)));
+		assertThat(exists(1, PLAIN), equalTo(false));
+		assertThat(exists(1, COMPRESSED), equalTo(true));
+		assertThat(exists(2, PLAIN) || exists(2, COMPRESSED), equalTo(false));
+	}
+
+	@Test
+	public void continueNumberingAfterBackupsOfOtherKind() throws IOException {
+		backup(1, COMPRESSED);
+		final File next = MFileManager.renameBackupFiles(backupDir, mapFile, 3, PLAIN);
+		assertThat(next, equalTo(MFileManager.createBackupFile(backupDir, mapFile, 2, PLAIN)));
+		assertThat(exists(1, COMPRESSED), equalTo(true));
+	}
+
+	@Test
+	public void deleteSurplusBackupsOfBothKinds() throws IOException {
+		backup(1, PLAIN);
+		backup(2, PLAIN);
+		backup(3, PLAIN);
+		backup(4, COMPRESSED);
+		MFileManager.renameBackupFiles(backupDir, mapFile, 2, PLAIN);
+		assertThat(exists(3, PLAIN), equalTo(false));
+		assertThat(exists(4, COMPRESSED), equalTo(false));
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+
+import org.freeplane.core.ui.menubuilders.HeadlessFreeplaneRunner;
+import org.freeplane.core.util.FileUtils;
+import org.freeplane.features.map.MapController;
+import org.freeplane.features.map.MapModel;
+import org.freeplane.features.map.MapWriter;
+import org.freeplane.features.map.MapWriter.Mode;
+import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.mode.Controller;
+import org.freeplane.features.ui.IMapViewManager;
+import org.freeplane.main.headlessmode.MapViewManagerWithoutSelection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MapJournalShould {
+	static {
+		new HeadlessFreeplaneRunner();
+	}
+
+	final private IMapViewManager mapViewManager = Controller.getCurrentController().getMapViewManager();
+	final private MapController mapController = Controller.getCurrentModeController().getMapController();
+	final private MapWriter mapWriter = mapController.getMapWriter();
+	final private MapModel map = mapController.newModel();
+	final private NodeModel root = map.getRootNode();
+	final private NodeModel a = addNode(root, "a");
+	final private NodeModel a1 = addNode(a, "a1");
+	final private NodeModel b = addNode(root, "b");
+	private File mapFile;
+	private File journalFile;
+	private MapJournal journal;
+
+	private NodeModel addNode(final NodeModel parent, final String text) {
+		final NodeModel node = mapController.newNode(text, map);
+		parent.insert(node);
+		return node;
+	}
+
+	@Before
+	public void saveMap() throws IOException {
+		Controller.getCurrentController().setMapViewManager(new MapViewManagerWithoutSelection());
+		root.setText("root");
+		mapFile = File.createTempFile("journal", ".mm");
+		journalFile = new File(mapFile.getPath() + ".journal");
+		final OutputStreamWriter out = new OutputStreamWriter(new FileOutputStream(mapFile), FileUtils.defaultCharset());
+		mapWriter.writeMapAsXml(map, out, Mode.FILE, true, false);
+		journal = new MapJournal(map, mapWriter, mapFile, journalFile);
+	}
+
+	@After
+	public void deleteFiles() {
+		Controller.getCurrentController().setMapViewManager(mapViewManager);
+		journal.delete();
+		MapJournal.waitForPendingWrites();
+		mapFile.delete();
+	}
+
+	private String replay() throws IOException {
+		MapJournal.waitForPendingWrites();
+		return MapJournal.replay(journalFile, mapFile, FileUtils.slurpFile(mapFile).toCharArray());
+	}
+
+	private String restoredTexts() throws Exception {
+		final MapModel restoredMap = mapController.newModel();
+		final NodeModel restoredRoot = mapController.getMapReader().createNodeTreeFromXml(restoredMap,
+		    new StringReader(replay()), Mode.FILE);
+		return texts(restoredRoot);
+	}
+
+	private static String texts(final NodeModel node) {
+		final StringBuilder texts = new StringBuilder(node.getText());
+		if (node.hasChildren()) {
+			texts.append('(');
+			for (final NodeModel child : node.getChildren()) {
+				if (texts.charAt(texts.length() - 1) != '(') {
+					texts.append(',');
+				}
+				texts.append(texts(child));
+			}
+			texts.append(')');
+		}
+		return texts.toString();
+	}
+
+	@Test
+	public void restoreChangedNode() throws Exception {
+		a.setText("changed");
+		journal.nodeChanged(a);
+		journal.stateChanged(null);
+		assertThat(restoredTexts(), equalTo("root(changed(a1),b)"));
+	}
+
+	@Test
+	public void recordChangedNodeWithoutItsChildren() throws Exception {
+		a.setText("changed");
+		journal.nodeChanged(a);
+		journal.stateChanged(null);
+		MapJournal.waitForPendingWrites();
+		final String journalContent = FileUtils.slurpFile(journalFile);
+		assertThat(journalContent.contains("changed"), equalTo(true));
+		assertThat(journalContent.contains("a1"), equalTo(false));
+	}
+
+	@Test
+	public void restoreInsertedMovedAndDeletedNodes() throws Exception {
+		final NodeModel newNode = addNode(b, "new");
+		addNode(newNode, "new child");
+		journal.nodeInserted(b, newNode);
+		a.remove(a.getIndex(a1));
+		journal.childrenChanged(a);
+		journal.stateChanged(null);
+		root.remove(root.getIndex(b));
+		a.insert(b);
+		journal.childrenChanged(root);
+		journal.childrenChanged(a);
+		journal.nodeChanged(b);
+		journal.stateChanged(null);
+		assertThat(restoredTexts(), equalTo("root(a(b(new(new child))))"));
+	}
+
+	@Test
+	public void restoreChangesInNewNodesWithoutAllocatingIds() throws Exception {
+		final NodeModel newNode = addNode(root, "new");
+		final NodeModel newChild = addNode(newNode, "new child");
+		journal.nodeInserted(root, newNode);
+		journal.stateChanged(null);
+		newChild.setText("changed child");
+		journal.nodeChanged(newChild);
+		journal.stateChanged(null);
+		assertThat(newNode.getID(), nullValue());
+		assertThat(newChild.getID(), nullValue());
+		assertThat(restoredTexts(), equalTo("root(a(a1),b,new(changed child))"));
+	}
+
+	@Test
+	public void restoreChangedMap() throws Exception {
+		root.setText("new root");
+		journal.nodeChanged(root);
+		journal.stateChanged(null);
+		assertThat(restoredTexts(), equalTo("new root(a(a1),b)"));
+	}
+
+	@Test
+	public void restoreChangedClones() throws Exception {
+		final NodeModel clone = a.cloneContent();
+		b.insert(clone);
+		journal.nodeInserted(b, clone);
+		journal.stateChanged(null);
+		a.setText("changed");
+		journal.nodeChanged(a);
+		journal.stateChanged(null);
+		assertThat(restoredTexts(), equalTo("root(changed(a1),b(changed))"));
+	}
+
+	@Test(expected = IOException.class)
+	public void failIfNodeIsNeitherJournaledNorSaved() throws Exception {
+		final NodeModel newNode = addNode(root, "new");
+		newNode.createID();
+		journal.childrenChanged(root);
+		journal.stateChanged(null);
+		replay();
+	}
+}
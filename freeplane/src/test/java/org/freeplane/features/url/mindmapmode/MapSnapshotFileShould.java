@@ -0,0 +1,107 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+
+import org.freeplane.core.io.ReadManager;
+import org.freeplane.core.io.xml.XMLSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MapSnapshotFileShould {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String XML = "<map version=\"1\"><node TEXT=\"root\"><node TEXT=\"child\"/></node></map>\n";
+	/** magic, version, charset name, length, modification time and checksum */
+	private static final int HEADER_LENGTH = 4 + 4 + 2 + UTF_8.name().length() + 3 * 8;
+	private File mapFile;
+	private File snapshotFile;
+	private MapSnapshotFile mapSnapshotFile;
+
+	@Before
+	public void writeMap() throws Exception {
+		mapFile = File.createTempFile("map", ".mm");
+		snapshotFile = File.createTempFile("map", ".snapshot");
+		write(mapFile, XML.getBytes(UTF_8));
+		mapSnapshotFile = new MapSnapshotFile(mapFile, snapshotFile, UTF_8);
+		mapSnapshotFile.write(XMLSnapshot.record(new ReadManager(), new StringReader(XML)));
+	}
+
+	@After
+	public void deleteFiles() {
+		mapFile.delete();
+		snapshotFile.delete();
+	}
+
+	private static void write(final File file, final byte[] content) throws IOException {
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private void replaceSnapshotContent(final byte... content) throws IOException {
+		final byte[] snapshot = new byte[HEADER_LENGTH + content.length];
+		final DataInputStream in = new DataInputStream(new FileInputStream(snapshotFile));
+		try {
+			in.readFully(snapshot, 0, HEADER_LENGTH);
+		}
+		finally {
+			in.close();
+		}
+		System.arraycopy(content, 0, snapshot, HEADER_LENGTH, content.length);
+		write(snapshotFile, snapshot);
+	}
+
+	@Test
+	public void readWrittenSnapshot() {
+		assertThat(mapSnapshotFile.read(), notNullValue());
+	}
+
+	@Test
+	public void deleteTruncatedSnapshot() throws IOException {
+		replaceSnapshotContent((byte) 2);
+		assertThat(mapSnapshotFile.read(), nullValue());
+		assertThat(snapshotFile.exists(), equalTo(false));
+	}
+
+	@Test
+	public void deleteSnapshotReferringToMissingStrings() throws IOException {
+		replaceSnapshotContent((byte) 0, (byte) 1, (byte) 5);
+		assertThat(mapSnapshotFile.read(), nullValue());
+		assertThat(snapshotFile.exists(), equalTo(false));
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.features.url.mindmapmode;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+public class MappedFileReaderShould {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String TEXT = "<map><node TEXT=\"äöü € 😀\"/></map>\n";
+
+	private File createFile() throws IOException {
+		final File file = File.createTempFile("mapped", ".mm");
+		file.deleteOnExit();
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(file), UTF_8);
+		try {
+			writer.write(TEXT);
+		}
+		finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private String read(final MappedFileReader reader, final int chunkSize) throws IOException {
+		try {
+			final StringBuilder result = new StringBuilder();
+			final char[] buffer = new char[chunkSize];
+			for (;;) {
+				final int count = reader.read(buffer, 0, chunkSize);
+				if (count < 0) {
+					return result.toString();
+				}
+				result.append(buffer, 0, count);
+			}
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void decodeMappedFile() throws Exception {
+		final File file = createFile();
+		final MappedFileReader reader = new MappedFileReader(file, UTF_8, true);
+		assertThat(read(reader, 1024), equalTo(TEXT));
+		assertThat(reader.getByteCount(), equalTo(file.length()));
+	}
+
+	@Test
+	public void decodeFileReadInBlocks() throws Exception {
+		final File file = createFile();
+		final MappedFileReader reader = new MappedFileReader(file, UTF_8, false);
+		assertThat(read(reader, 1024), equalTo(TEXT));
+		assertThat(reader.getByteCount(), equalTo(file.length()));
+	}
+
+	@Test
+	public void decodeSurrogatePairsIntoSingleCharBuffer() throws Exception {
+		assertThat(read(new MappedFileReader(createFile(), UTF_8, true), 1), equalTo(TEXT));
+	}
+}
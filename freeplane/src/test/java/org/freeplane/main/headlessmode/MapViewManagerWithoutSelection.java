@@ -0,0 +1,34 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.main.headlessmode;
+
+import org.freeplane.features.map.IMapSelection;
+
+/**
+ * Headless map view manager for tests writing maps, it has no selection instead of throwing.
+ *
+ * @author Dimitry Polivaev
+ */
+public class MapViewManagerWithoutSelection extends HeadlessMapViewController {
+	@Override
+	public IMapSelection getMapSelection() {
+		return null;
+	}
+}
@@ -0,0 +1,66 @@
+/*
+ *  Freeplane - mind map editor
+ *  Copyright (C) 2016 Dimitry Polivaev
+ *
+ *  This file author is Dimitry Polivaev
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.freeplane.n3.nanoxml;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+public class BufferedXMLReaderShould {
+	private static final String XML = "<?xml version='1.0'?>\r\n"
+	        + "<!-- comment -->\r\n"
+	        + "<map version=\"freeplane 1.5\">\r\n"
+	        + "<node TEXT=\"a &amp; b &lt;c&gt; &#x41;&#66;\" ID='ID_1'\tCREATED=\"1\"\r\n MODIFIED=\"2\">\n"
+	        + "<attribute NAME=\"multi\nline\ttab\" VALUE=\"&quot;quoted&quot; 'single'\"/>\r"
+	        + "text &amp; more<![CDATA[<raw & data>]]>\r\n"
+	        + "<node TEXT=\"äöü long long long long long long long long value\"/>"
+	        + "<empty></empty>"
+	        + "</node>\r\n"
+	        + "</map>\r\n";
+
+	private String parse(final IXMLReader reader) throws Exception {
+		final StdXMLParser parser = new StdXMLParser();
+		parser.setReader(reader);
+		parser.setBuilder(new StdXMLBuilder());
+		parser.setValidator(new NonValidator());
+		final XMLElement root = (XMLElement) parser.parse();
+		final StringWriter out = new StringWriter();
+		new XMLWriter(out).write(root, true);
+		return out.toString() + reader.getLineNr();
+	}
+
+	@Test
+	public void produceSameDocumentAsStdXMLReader() throws Exception {
+		final String expected = parse(new StdXMLReader(new StringReader(XML)));
+		assertThat(parse(new BufferedXMLReader(new StringReader(XML))), equalTo(expected));
+	}
+
+	@Test
+	public void produceSameDocumentWithSmallBuffer() throws Exception {
+		final String expected = parse(new StdXMLReader(new StringReader(XML)));
+		for (int bufferSize = 1; bufferSize < 20; bufferSize++) {
+			assertThat(parse(new BufferedXMLReader(new StringReader(XML), bufferSize)), equalTo(expected));
+		}
+	}
+}
@@ -19,6 +19,7 @@
  */
 package org.freeplane.plugin.script;
 
+import java.awt.EventQueue;
 import java.io.File;
 import java.io.PrintStream;
 import java.security.AccessController;
@@ -31,8 +32,10 @@ import org.codehaus.groovy.ast.ASTNode;
 import org.codehaus.groovy.ast.ModuleNode;
 import org.codehaus.groovy.control.CompilerConfiguration;
 import org.codehaus.groovy.runtime.InvokerHelper;
+import org.freeplane.features.map.MapController;
 import org.freeplane.features.map.NodeModel;
 import org.freeplane.features.mode.Controller;
+import org.freeplane.features.mode.ModeController;
 import org.freeplane.plugin.script.proxy.ProxyFactory;
 
 import groovy.lang.Binding;
@@ -130,13 +133,17 @@ public class GroovyScript implements IScript {
             }
             final PrintStream oldOut = System.out;
             ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+            MapController changeBatchController = null;
             try {
                 trustedCompileAndCache();
                 final Binding binding = createBinding(node);
                 compiledScript.setBinding(binding);
                 System.setOut(outStream);
+                changeBatchController = startChangeBatch();
 				return compiledScript.run();
             } finally {
+                if (changeBatchController != null)
+                    changeBatchController.endChangeBatch();
                 System.setOut(oldOut);
                 Thread.currentThread().setContextClassLoader(contextClassLoader);
             }
@@ -155,6 +162,18 @@ public class GroovyScript implements IScript {
         }
     }
 
+    /** node changes made by the script are delivered to views and batch listeners when it ends */
+    private MapController startChangeBatch() {
+        if (!EventQueue.isDispatchThread())
+            return null;
+        final ModeController modeController = Controller.getCurrentModeController();
+        if (modeController == null)
+            return null;
+        final MapController mapController = modeController.getMapController();
+        mapController.beginChangeBatch();
+        return mapController;
+    }
+
     private ScriptingSecurityManager createScriptingSecurityManager() {
         return new ScriptSecurity(script, specificPermissions, outStream)
                 .getScriptingSecurityManager();
@@ -85,6 +85,11 @@ public class ScriptCondition extends ASelectableCondition {
         return false;
 	}
 
+	@Override
+	public boolean checksOtherNodes() {
+		return true;
+	}
+
 	private void setErrorStatus(final String info) {
 		if(! errorReported){
 			errorReported = true;
@@ -38,6 +38,7 @@ import org.freeplane.features.map.MapController.Direction;
 import org.freeplane.features.map.MapModel;
 import org.freeplane.features.map.MapNavigationUtils;
 import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.SubtreeAggregates;
 import org.freeplane.features.map.mindmapmode.MMapController;
 import org.freeplane.features.mode.Controller;
 import org.freeplane.features.nodelocation.LocationController;
@@ -266,6 +267,26 @@ class NodeProxy extends AbstractProxy<NodeModel> implements Node {
 		return getDelegate().getNodeLevel(countHidden);
 	}
 
+	// NodeRO: R
+	public int getDescendantCount() {
+		return SubtreeAggregates.of(getDelegate()).getDescendantCount();
+	}
+
+	// NodeRO: R
+	public int getUnfoldedDescendantCount() {
+		return SubtreeAggregates.of(getDelegate()).getUnfoldedDescendantCount();
+	}
+
+	// NodeRO: R
+	public boolean hasFoldedDescendant() {
+		return SubtreeAggregates.of(getDelegate()).hasFoldedDescendant();
+	}
+
+	// NodeRO: R
+	public int getSubtreeHeight() {
+		return SubtreeAggregates.of(getDelegate()).getHeight();
+	}
+
 	// NodeRO: R
 	public String getPlainNote() {
 		final String noteText = NoteModel.getNoteText(getDelegate());
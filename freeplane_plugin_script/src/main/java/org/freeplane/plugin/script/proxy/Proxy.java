@@ -998,6 +998,23 @@ public interface Proxy {
 		 * current filter are counted. */
 		int getNodeLevel(boolean countHidden);
 
+		/** The number of children, grandchildren and so on of this node.
+		 * Children of encrypted nodes which are not decrypted are not counted.
+		 * @since 1.6.1 */
+		int getDescendantCount();
+
+		/** The number of descendants which are not hidden by folding this node or any of its descendants.
+		 * @since 1.6.1 */
+		int getUnfoldedDescendantCount();
+
+		/** returns true if any descendant of this node (not the node itself) is folded.
+		 * @since 1.6.1 */
+		boolean hasFoldedDescendant();
+
+		/** The length of the longest path from this node down to a leaf, 0 if the node has no children.
+		 * @since 1.6.1 */
+		int getSubtreeHeight();
+
 		/** returns the text of the details as a Convertible. Convertibles behave like Strings in most respects.
 		 * Additionally String methods are overridden to handle Convertible arguments as if the argument were the
 		 * result of Convertible.getText().
@@ -7,10 +7,8 @@ import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
-import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -23,6 +21,7 @@ import org.freeplane.features.format.FormattedDate;
 import org.freeplane.features.format.FormattedNumber;
 import org.freeplane.features.format.IFormattedObject;
 import org.freeplane.features.map.NodeModel;
+import org.freeplane.features.map.NodeTraversal;
 import org.freeplane.features.text.TextController;
 import org.freeplane.features.text.mindmapmode.MTextController;
 import org.freeplane.plugin.script.ScriptContext;
@@ -89,25 +88,17 @@ public class ProxyUtils {
     }
 
 	/** finds from any node downwards.
-	 * @param condition if null every node will match. */
-	@SuppressWarnings("unchecked")
+	 * @param condition if null every node will match.
+	 * @param breadthFirst if true a node is listed before its descendants, otherwise after them. */
 	private static List<NodeModel> findImpl(final ICondition condition, final NodeModel node, boolean breadthFirst) {
-		final boolean nodeMatches = condition == null || condition.checkNode(node);
-		// a shortcut for non-matching leaves
-		if (node.isLeaf() && !nodeMatches) {
-			return Collections.EMPTY_LIST;
+		final NodeTraversal traversal = breadthFirst ? NodeTraversal.preOrder(node) : NodeTraversal.postOrder(node);
+		traversal.includingEncryptedChildren();
+		if (condition != null) {
+			traversal.selecting(condition);
 		}
 		final List<NodeModel> matches = new ArrayList<NodeModel>();
-		if (nodeMatches && breadthFirst) {
-			matches.add(node);
-		}
-		final Enumeration<NodeModel> children = node.children();
-		while (children.hasMoreElements()) {
-			final NodeModel child = children.nextElement();
-			matches.addAll(ProxyUtils.findImpl(condition, child, breadthFirst));
-		}
-		if (nodeMatches && !breadthFirst) {
-			matches.add(node);
+		for (final NodeModel match : traversal) {
+			matches.add(match);
 		}
 		return matches;
 	}